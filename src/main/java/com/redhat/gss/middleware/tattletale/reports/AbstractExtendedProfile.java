@@ -21,19 +21,31 @@
  */
 package com.redhat.gss.middleware.tattletale.reports;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.zip.GZIPInputStream;
 import org.jboss.tattletale.core.ArchiveType;
 
 import org.jboss.tattletale.profiles.AbstractProfile;
+import org.jboss.tattletale.profiles.ClassTable;
 import org.jboss.tattletale.profiles.Profile;
+import org.jboss.tattletale.utils.Metrics;
 
 /**Ø
  * Base profile class.
@@ -48,7 +60,7 @@ public abstract class AbstractExtendedProfile extends AbstractProfile implements
    // note this works for EAP 4.x and EAP 5.x, it has not been configured to work with EAP 6 yet
    
    // class => List<String>location (there could be multiple locations)
-   protected Map<String, ArrayList<String>> classMap = new HashMap<>();
+   private Locations classLocations;
    
    /**
     * Constructor
@@ -61,8 +73,7 @@ public abstract class AbstractExtendedProfile extends AbstractProfile implements
     */
    public AbstractExtendedProfile(String classSet, ArchiveType type, String name, int version, String location)
    {
-      this (type, name, version, location);
-      loadProfile(classSet);
+      super(classSet, type, name, version, location);
    }
 
    /**
@@ -81,70 +92,336 @@ public abstract class AbstractExtendedProfile extends AbstractProfile implements
    public List<String> getLocationProvided(String clz)
    {
       // TODO subprofiles not implemented here
-      
-      return classMap.get(clz);
+      load();
+      return classLocations != null ? classLocations.get(clz) : null;
    }
 
    /**
-    * Loads this profile's class list from the resources.
+    * Loads this profile's class list from the resources, from its precompiled
+    * form when the build made one.
     *
     * @param resourceFile File name
     */
    @Override
    protected void loadProfile(String resourceFile)
    {      
+      long start = System.nanoTime();
       InputStream is = null;
       try
       {
-         is = this.getClass().getClassLoader().getResourceAsStream(resourceFile);
+         ByteBuffer compiled = ClassTable.map(this.getClass().getClassLoader(), ClassTable.compiledName(resourceFile));
+         if (compiled != null)
+         {
+            classLocations = Locations.read(compiled);
+         }
+         else
+         {
+            is = this.getClass().getClassLoader().getResourceAsStream(resourceFile);
+            classLocations = Locations.parse(is);
+         }
+         // set super classSet to be the table of classes
+         super.classSet = classLocations.classes;
+      }
+      catch (Exception e)
+      {
+         // Ignore
+      }
+      finally
+      {
+         try
+         {
+            if (is != null)
+            {
+               is.close();
+            }
+         }
+         catch (IOException ioe)
+         {
+            // Ignore
+         }
+         Metrics.profileLoaded(getName(), System.nanoTime() - start);
+      }
+   }
+
+   /**
+    * Compile class lists into their precompiled form next to them
+    *
+    * @param args The directory, followed by the <code>.clz.gz</code> class lists to compile
+    * @exception IOException If an error occurs
+    */
+   public static void main(String[] args) throws IOException
+   {
+      if (args.length < 1)
+      {
+         System.out.println("Usage: AbstractExtendedProfile <directory> [<class list>.clz.gz]*");
+         return;
+      }
+
+      File directory = new File(args[0]);
+      for (int i = 1; i < args.length; i++)
+      {
+         Locations locations;
+         try (InputStream is = new FileInputStream(new File(directory, args[i])))
+         {
+            locations = Locations.parse(is);
+         }
+
+         try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(new File(directory, ClassTable.compiledName(args[i]))))))
+         {
+            locations.write(out);
+         }
+      }
+   }
+
+   /**
+    * The classes and their locations: the table of the classes, each location once,
+    * and the location ids of the n-th class in the table in ids from offsets[n] up to
+    * offsets[n + 1].
+    */
+   static class Locations
+   {
+      /** The classes */
+      private final ClassTable classes;
+
+      /** The locations */
+      private final String[] locations;
+
+      /** Where the locations of each class start in ids */
+      private final int[] offsets;
+
+      /** The locations of the classes */
+      private final int[] ids;
+
+      /**
+       * Constructor
+       *
+       * @param classes   The classes
+       * @param locations The locations
+       * @param offsets   Where the locations of each class start in ids
+       * @param ids       The locations of the classes
+       */
+      Locations(ClassTable classes, String[] locations, int[] offsets, int[] ids)
+      {
+         this.classes = classes;
+         this.locations = locations;
+         this.offsets = offsets;
+         this.ids = ids;
+      }
+
+      /**
+       * Get the locations of a class
+       *
+       * @param clz The class name
+       * @return The locations, in file order; <code>null</code> if the class isn't listed
+       */
+      List<String> get(String clz)
+      {
+         int index = classes.indexOf(clz);
+         if (index == -1)
+         {
+            return null;
+         }
+         return new LocationList(index);
+      }
 
+      /**
+       * Get the number of bytes the structure takes on the heap when the table is
+       * read into memory: the table, the offsets and ids, and the characters of the
+       * locations
+       *
+       * @return The number of bytes
+       */
+      long getFootprint()
+      {
+         long footprint = classes.length() + 4L * (offsets.length + ids.length);
+         for (String location : locations)
+         {
+            footprint += 2L * location.length();
+         }
+         return footprint;
+      }
+
+      /**
+       * Parse a gzipped class list, where a line ending with = gives the location
+       * of the classes that follow
+       *
+       * @param is The stream
+       * @return The locations
+       * @exception IOException If an error occurs
+       */
+      static Locations parse(InputStream is) throws IOException
+      {
          GZIPInputStream gis = new GZIPInputStream(is);
          InputStreamReader isr = new InputStreamReader(gis);
          BufferedReader br = new BufferedReader(isr);
 
+         Map<String, Integer> locationIndex = new HashMap<>();
+         List<String> locationList = new ArrayList<>();
+         List<String> lineClasses = new ArrayList<>();
+         int[] lineLocations = new int[1024];
+
          String s = br.readLine();
          String currentLocation = "<not initialized>";
+         Integer currentId = null;
          while (s != null)
          {
             if(s.endsWith("="))
             {
                currentLocation = s.substring(0, s.length()-1);
+               currentId = null;
             }
             else
             {
-               ArrayList<String> tmpList = classMap.get(s);
-               if(tmpList == null)
+               if (currentId == null)
+               {
+                  currentId = locationIndex.get(currentLocation);
+                  if (currentId == null)
+                  {
+                     currentId = locationList.size();
+                     locationIndex.put(currentLocation, currentId);
+                     locationList.add(currentLocation);
+                  }
+               }
+               if (lineClasses.size() == lineLocations.length)
                {
-                  tmpList = new ArrayList<>(1);
+                  lineLocations = Arrays.copyOf(lineLocations, 2 * lineLocations.length);
                }
-               tmpList.add(currentLocation);
-               
-               classMap.put(s, tmpList);
-               
-               //classSet.add(s); // classSet can just be map.keySet()
+               lineLocations[lineClasses.size()] = currentId;
+               lineClasses.add(s);
             }
             
             s = br.readLine();
          }
-         // set super classSet to be the map keySet
-         super.classSet = classMap.keySet();
+
+         // group the location ids by class, in table order and keeping the file order
+         int[] lineIndexes = new int[lineClasses.size()];
+         ClassTable table = ClassTable.of(lineClasses, lineIndexes);
+         int[] offsets = new int[table.size() + 1];
+         for (int i = 0; i < lineIndexes.length; i++)
+         {
+            offsets[lineIndexes[i] + 1]++;
+         }
+         for (int i = 0; i < table.size(); i++)
+         {
+            offsets[i + 1] += offsets[i];
+         }
+         int[] ids = new int[lineIndexes.length];
+         int[] next = Arrays.copyOf(offsets, table.size());
+         for (int i = 0; i < lineIndexes.length; i++)
+         {
+            ids[next[lineIndexes[i]]++] = lineLocations[i];
+         }
+
+         return new Locations(table, locationList.toArray(new String[locationList.size()]), offsets, ids);
       }
-      catch (Exception e)
+
+      /**
+       * Read the precompiled form
+       *
+       * @param buffer The buffer
+       * @return The locations
+       * @exception IOException If the buffer isn't in the expected format
+       */
+      static Locations read(ByteBuffer buffer) throws IOException
       {
-         // Ignore
+         ByteBuffer in = buffer.duplicate();
+         int length = in.getInt();
+         ByteBuffer table = in.slice();
+         table.limit(length);
+         in.position(in.position() + length);
+
+         String[] locations = new String[in.getInt()];
+         for (int i = 0; i < locations.length; i++)
+         {
+            byte[] location = new byte[in.getInt()];
+            in.get(location);
+            locations[i] = new String(location, StandardCharsets.UTF_8);
+         }
+
+         int[] offsets = new int[in.getInt()];
+         in.asIntBuffer().get(offsets);
+         in.position(in.position() + 4 * offsets.length);
+
+         int[] ids = new int[in.getInt()];
+         in.asIntBuffer().get(ids);
+
+         // a heap buffer holds the whole file; keep a copy of the table only
+         if (!buffer.isDirect())
+         {
+            byte[] bytes = new byte[length];
+            table.get(bytes);
+            table = ByteBuffer.wrap(bytes);
+         }
+
+         return new Locations(ClassTable.wrap(table.slice()), locations, offsets, ids);
       }
-      finally
+
+      /**
+       * Write the precompiled form
+       *
+       * @param out The stream
+       * @exception IOException If an error occurs
+       */
+      void write(DataOutputStream out) throws IOException
       {
-         try
+         out.writeInt(classes.length());
+         classes.writeTo(out);
+
+         out.writeInt(locations.length);
+         for (String location : locations)
          {
-            if (is != null)
+            byte[] bytes = location.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+         }
+
+         out.writeInt(offsets.length);
+         for (int offset : offsets)
+         {
+            out.writeInt(offset);
+         }
+
+         out.writeInt(ids.length);
+         for (int id : ids)
+         {
+            out.writeInt(id);
+         }
+         out.flush();
+      }
+
+      /**
+       * The locations of a class, read from the shared arrays.
+       */
+      private class LocationList extends AbstractList<String> implements RandomAccess
+      {
+         /** The index of the class in the table */
+         private final int index;
+
+         /**
+          * Constructor
+          *
+          * @param index The index of the class in the table
+          */
+         LocationList(int index)
+         {
+            this.index = index;
+         }
+
+         @Override
+         public String get(int i)
+         {
+            if (i < 0 || i >= size())
             {
-               is.close();
+               throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
             }
+            return locations[ids[offsets[index] + i]];
          }
-         catch (IOException ioe)
+
+         @Override
+         public int size()
          {
-            // Ignore
+            return offsets[index + 1] - offsets[index];
          }
       }
    }
@@ -21,10 +21,14 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.zip.InflaterInputStream;
 
 import org.jboss.tattletale.core.Archive;
+import org.jboss.tattletale.reporting.AbstractReport;
 import org.jboss.tattletale.reporting.Dump;
+import org.jboss.tattletale.reporting.Filter;
 import org.jboss.tattletale.reporting.Report;
 import org.jboss.tattletale.reporting.Report.ReportSeverity;
 import org.jboss.tattletale.reporting.Report.ReportStatus;
@@ -346,6 +350,8 @@ public class Main
 
       private final Map<String, Object> reportParameters = new HashMap<>();
 
+      private final ConcurrentMap<String, Filter> initializedFilters = new ConcurrentHashMap<>();
+
       ReportSetBuilder(String destination, boolean allReports, Set<String> reportSet, Properties filters) throws IOException
       {
          this.outputDir = setupOutputDir(destination);
@@ -370,6 +376,10 @@ public class Main
             return;
          if ((this.filters != null) && (this.filters.getProperty(report.getId()) != null))
          {
+            if (report instanceof AbstractReport)
+            {
+               ((AbstractReport) report).setFilters(this.initializedFilters);
+            }
             report.setFilter(this.filters.getProperty(report.getId()));
          }
          report.generate(this.outputDir);
@@ -44,6 +44,7 @@ import org.jboss.tattletale.core.ArchiveType;
 import org.jboss.tattletale.core.Location;
 import org.jboss.tattletale.core.NestableArchive;
 import org.jboss.tattletale.profiles.AbstractProfile;
+import org.jboss.tattletale.profiles.ProfileRegistry;
 import org.jboss.tattletale.reporting.Dump;
 import org.jboss.tattletale.reporting.Filter;
 import org.jboss.tattletale.reporting.KeyFilter;
@@ -207,32 +208,32 @@ public class PackagedJBossClasses extends SummaryDetailReport
          if(eapVersion.contains("4.2"))
          {
             System.out.println("Using EAP 4.2 Profile");
-            return new EAP429();
+            return ProfileRegistry.get(EAP429.class);
          }
          if(eapVersion.contains("4.3"))
          {
             System.out.println("Using EAP 4.3 Profile");
-            return new EAP4310();
+            return ProfileRegistry.get(EAP4310.class);
          }
          if(eapVersion.contains("5"))
          {
             System.out.println("Using EAP 5.1.x Profile");
-            return new EAP512();
+            return ProfileRegistry.get(EAP512.class);
          }
          if(eapVersion.contains("6"))
          {
             System.out.println("Using EAP 6.0.0 Profile");
-            return new EAP600();
+            return ProfileRegistry.get(EAP600.class);
          }
          if(eapVersion.contains("7"))
          {
             System.out.println("Using EAP 7.0.0 Profile");
-            return new EAP700();
+            return ProfileRegistry.get(EAP700.class);
          }         
       }
       // Default to EAP 5.1.x for now
       System.out.println("Using EAP 5.1.x Profile");
-      return new EAP512();     
+      return ProfileRegistry.get(EAP512.class);     
    }
    
    /**
@@ -43,6 +43,7 @@ import org.jboss.tattletale.profiles.Java8;
 import org.jboss.tattletale.profiles.JavaEE5;
 import org.jboss.tattletale.profiles.JavaEE6;
 import org.jboss.tattletale.profiles.JavaEE7;
+import org.jboss.tattletale.profiles.ProfileRegistry;
 import org.jboss.tattletale.profiles.SunJava5;
 import org.jboss.tattletale.profiles.SunJava6;
 import org.jboss.tattletale.reporting.Dump;
@@ -392,7 +393,10 @@ public class PackagedJDKJ2EEClasses extends SummaryDetailReport
       {
          // TODO change this to look for class with the version, else pick one based on the major version number
     	  //AbstractProfile profile = null;
-    	  AbstractProfile[] profiles = new AbstractProfile[] { new EAP429(), new EAP512(), new EAP600(), new EAP700(), new SunJava5(), new SunJava6(), new Java7(), new Java8(), new JavaEE5(), new JavaEE6(), new JavaEE7() };
+    	  AbstractProfile[] profiles = new AbstractProfile[] { ProfileRegistry.get(EAP429.class), ProfileRegistry.get(EAP512.class),
+    			  ProfileRegistry.get(EAP600.class), ProfileRegistry.get(EAP700.class), ProfileRegistry.get(SunJava5.class),
+    			  ProfileRegistry.get(SunJava6.class), ProfileRegistry.get(Java7.class), ProfileRegistry.get(Java8.class),
+    			  ProfileRegistry.get(JavaEE5.class), ProfileRegistry.get(JavaEE6.class), ProfileRegistry.get(JavaEE7.class) };
     	  for(AbstractProfile p : profiles) {
     		  if(profileCode.equalsIgnoreCase(p.getProfileCode())) {
     			  return p;    			  
@@ -36,6 +36,7 @@ import org.jboss.tattletale.core.Location;
 import org.jboss.tattletale.core.NestableArchive;
 import org.jboss.tattletale.profiles.AbstractProfile;
 import org.jboss.tattletale.profiles.JavaEE5;
+import org.jboss.tattletale.profiles.ProfileRegistry;
 import org.jboss.tattletale.profiles.SunJava6;
 import org.jboss.tattletale.reporting.Dump;
 import org.jboss.tattletale.reporting.Filter;
@@ -123,7 +124,7 @@ public class PackagedJDKJ2EEFrameworksReport extends SummaryDetailReport
       String[] profileProblemLevel = new String[]
       {"PROBLEM", "PROBLEM"};
       AbstractProfile[] profiles = new AbstractProfile[]
-      {new SunJava6(), new JavaEE5()};
+      {ProfileRegistry.get(SunJava6.class), ProfileRegistry.get(JavaEE5.class)};
 
       boolean archiveNameWritten;
 
@@ -181,7 +182,7 @@ public class PackagedJDKJ2EEFrameworksReport extends SummaryDetailReport
 */
       
       AbstractProfile[] profiles = new AbstractProfile[]
-      {new SunJava6(), new JavaEE5()};
+      {ProfileRegistry.get(SunJava6.class), ProfileRegistry.get(JavaEE5.class)};
 
       // archives comes from AbstractReport, if given an ear, it only contains an EarArchive, we now have to call to get all subArchives
 
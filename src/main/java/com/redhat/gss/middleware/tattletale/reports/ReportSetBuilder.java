@@ -9,7 +9,11 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.jboss.tattletale.reporting.AbstractReport;
+import org.jboss.tattletale.reporting.Filter;
 import org.jboss.tattletale.reporting.Report;
 
 /**
@@ -33,6 +37,9 @@ public class ReportSetBuilder
 
    private final Map<String, Object> reportParameters = new HashMap<>();
 
+   /** The filters initialized for the reports of this run */
+   private final ConcurrentMap<String, Filter> initializedFilters = new ConcurrentHashMap<>();
+
    /**
     * @param destination Where the reports go
     * @param allReports  Should all reports be generated ?
@@ -83,6 +90,10 @@ public class ReportSetBuilder
       {
          if (filters != null && filters.getProperty(report.getId()) != null)
          {
+            if (report instanceof AbstractReport)
+            {
+               ((AbstractReport) report).setFilters(initializedFilters);
+            }
             report.setFilter(filters.getProperty(report.getId()));
          }
          report.generate(outputDir);
@@ -26,7 +26,6 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -38,12 +37,29 @@ import java.util.SortedSet;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.jboss.tattletale.analyzers.Analyzer;
-import org.jboss.tattletale.analyzers.ArchiveScanner;
+import org.jboss.tattletale.analyzers.AbstractScanner;
+import org.jboss.tattletale.analyzers.ArchiveInput;
+import org.jboss.tattletale.analyzers.ArchiveScanListener;
+import org.jboss.tattletale.analyzers.DirectoryScanListener;
 import org.jboss.tattletale.analyzers.DirectoryScanner;
+import org.jboss.tattletale.analyzers.ParallelArchiveScanner;
+import org.jboss.tattletale.analyzers.ParallelClassScanner;
+import org.jboss.tattletale.analyzers.ScanCache;
 import org.jboss.tattletale.core.Archive;
 import org.jboss.tattletale.core.ArchiveType;
 import org.jboss.tattletale.core.Location;
@@ -56,28 +72,38 @@ import org.jboss.tattletale.profiles.Java8;
 import org.jboss.tattletale.profiles.JavaEE5;
 import org.jboss.tattletale.profiles.JavaEE6;
 import org.jboss.tattletale.profiles.JavaEE7;
-import org.jboss.tattletale.profiles.Profile;
+import org.jboss.tattletale.profiles.Profile;
+import org.jboss.tattletale.profiles.ProfileIndex;
+import org.jboss.tattletale.profiles.ProfileRegistry;
 import org.jboss.tattletale.profiles.Seam22;
 import org.jboss.tattletale.profiles.Spring25;
 import org.jboss.tattletale.profiles.Spring30;
 import org.jboss.tattletale.profiles.SunJava5;
 import org.jboss.tattletale.profiles.SunJava6;
+import org.jboss.tattletale.reporting.AbstractReport;
+import org.jboss.tattletale.reporting.ArchiveGraph;
 import org.jboss.tattletale.reporting.BlackListedReport;
+import org.jboss.tattletale.reporting.CLSReport;
 import org.jboss.tattletale.reporting.CircularDependencyReport;
 import org.jboss.tattletale.reporting.ClassLocationReport;
 import org.jboss.tattletale.reporting.Dump;
 import org.jboss.tattletale.reporting.EarReport;
+import org.jboss.tattletale.reporting.Filter;
 import org.jboss.tattletale.reporting.JBossDeploymentStructureReport;
 import org.jboss.tattletale.reporting.JarReport;
 import org.jboss.tattletale.reporting.MultipleJarsReport;
 import org.jboss.tattletale.reporting.PackageMultipleJarsReport;
 import org.jboss.tattletale.reporting.PackageMultipleJarsReportSummary;
+import org.jboss.tattletale.reporting.ProviderIndex;
 import org.jboss.tattletale.reporting.Report;
 import static org.jboss.tattletale.reporting.Report.ReportSeverity;
 import org.jboss.tattletale.reporting.Report.ReportStatus;
+import org.jboss.tattletale.reporting.RowWriter;
 import org.jboss.tattletale.reporting.UnusedJarReport;
 import org.jboss.tattletale.reporting.WarReport;
 import org.jboss.tattletale.utils.Configuration;
+import org.jboss.tattletale.utils.Metrics;
+import org.jboss.tattletale.utils.PrefixTrie;
 import org.jboss.tattletale.utils.ReflectionUtils;
 
 /**
@@ -91,6 +117,12 @@ import org.jboss.tattletale.utils.ReflectionUtils;
 public class Main 
 {
     private static final Logger logger = Logger.getLogger(Main.class.getName());
+
+   /** The number of archives that can wait for their report to be written */
+   private static final int ARCHIVE_REPORT_QUEUE = 16;
+
+   /** The number of reports that can wait for each report thread */
+   private static final int REPORT_QUEUE_PER_THREAD = 4;
     
    /** Source */
    private String source;
@@ -134,6 +166,27 @@ public class Main
    /** Scan */
    private String scan;
 
+   /** Number of threads used to scan archives */
+   private Integer scanThreads;
+
+   /** Class file reader: tattletale or javassist */
+   private String classReader;
+
+   /** Size in bytes above which nested archives are copied to a scratch file */
+   private Long spillThreshold;
+
+   /** Scan cache directory */
+   private String scanCache;
+
+   /** Number of threads used to generate reports */
+   private Integer reportThreads;
+
+   /** Format of the data files written by the reports: json or csv */
+   private String dataFormat;
+
+   /** Write the HTML pages */
+   private Boolean html;
+
    /** A List of the Constructors used to create dependency reports */
    private final List<Class<? extends Report>> dependencyReports;
 
@@ -164,6 +217,13 @@ public class Main
       this.deleteOutputDirectory = true;
       this.reports = null;
       this.scan = ".jar,.war,.ear";
+      this.scanThreads = null;
+      this.classReader = null;
+      this.spillThreshold = null;
+      this.scanCache = null;
+      this.reportThreads = null;
+      this.dataFormat = null;
+      this.html = null;
 
       this.dependencyReports = new ArrayList<>();
       dependencyReports.add(JBossDeploymentStructureReport.class);
@@ -339,6 +399,76 @@ public class Main
       this.scan = scan;
    }
 
+   /**
+    * Set the number of threads used to scan archives
+    *
+    * @param scanThreads The value
+    */
+   public void setScanThreads(int scanThreads)
+   {
+      this.scanThreads = scanThreads;
+   }
+
+   /**
+    * Set the class file reader
+    *
+    * @param classReader The value; "javassist" parses every class with Javassist
+    */
+   public void setClassReader(String classReader)
+   {
+      this.classReader = classReader;
+   }
+
+   /**
+    * Set the size above which nested archives are copied to a scratch file instead of being read in memory
+    *
+    * @param spillThreshold The value in bytes
+    */
+   public void setSpillThreshold(long spillThreshold)
+   {
+      this.spillThreshold = spillThreshold;
+   }
+
+   /**
+    * Set the scan cache directory
+    *
+    * @param scanCache The value; unchanged archives found in the cache aren't scanned again
+    */
+   public void setScanCache(String scanCache)
+   {
+      this.scanCache = scanCache;
+   }
+
+   /**
+    * Set the number of threads used to generate reports
+    *
+    * @param reportThreads The value
+    */
+   public void setReportThreads(int reportThreads)
+   {
+      this.reportThreads = reportThreads;
+   }
+
+   /**
+    * Set the format of the data files written by the reports
+    *
+    * @param dataFormat The value: json or csv
+    */
+   public void setDataFormat(String dataFormat)
+   {
+      this.dataFormat = dataFormat;
+   }
+
+   /**
+    * Set whether the HTML pages are written
+    *
+    * @param html The value
+    */
+   public void setHtml(boolean html)
+   {
+      this.html = html;
+   }
+
    /**
     * Execute
     *
@@ -346,6 +476,8 @@ public class Main
     */
    public void execute() throws Exception
    {
+      long start = System.nanoTime();
+      Metrics.reset();
 	   
       Properties config;
       Properties filters;
@@ -475,6 +607,12 @@ public class Main
          }
       }
 
+      if (blacklistedSet != null)
+      {
+         // Compile the black list once for all scanners
+         blacklistedSet = new PrefixTrie(blacklistedSet);
+      }
+
       if (excludes != null)
       {
          excludeSet = new HashSet<>();
@@ -537,49 +675,99 @@ public class Main
          classloaderStructure = "org.jboss.tattletale.reporting.classloader.NoopClassLoaderStructure";
       }
 
-      if (scan != null)
+      if (scanThreads == null && config.getProperty("scanThreads") != null)
       {
-         DirectoryScanner.setArchives(scan);
+         scanThreads = Integer.valueOf(config.getProperty("scanThreads").trim());
       }
-      else
+
+      if (scanThreads == null || scanThreads.intValue() <= 0)
+      {
+         scanThreads = ParallelArchiveScanner.getDefaultThreads();
+      }
+
+      ParallelClassScanner.setThreads(scanThreads);
+
+      if (reportThreads == null && config.getProperty("reportThreads") != null)
+      {
+         reportThreads = Integer.valueOf(config.getProperty("reportThreads").trim());
+      }
+
+      if (reportThreads == null || reportThreads.intValue() <= 0)
+      {
+         reportThreads = scanThreads;
+      }
+
+      if (classReader == null)
       {
-         DirectoryScanner.setArchives(".jar, .war, .ear");
+         classReader = config.getProperty("classReader");
       }
 
-      Map<String, SortedSet<Location>> locationsMap = new HashMap<>();
-      SortedSet<Archive> archives = new TreeSet<>();
-      SortedMap<String, SortedSet<String>> gProvides = new TreeMap<>();
+      if (dataFormat == null)
+      {
+         dataFormat = config.getProperty("dataFormat");
+      }
+
+      // fail before scanning on an unknown format
+      RowWriter.Format.of(dataFormat);
+
+      if (html == null)
+      {
+         html = config.getProperty("html") == null || Boolean.valueOf(config.getProperty("html").trim());
+      }
+
+      AbstractScanner.setUseJavassist(classReader != null && "javassist".equalsIgnoreCase(classReader.trim()));
+
+      if (spillThreshold == null && config.getProperty("spillThreshold") != null)
+      {
+         spillThreshold = Long.valueOf(config.getProperty("spillThreshold").trim());
+      }
+
+      ArchiveInput.setSpillThreshold(spillThreshold != null ? spillThreshold : ArchiveInput.DEFAULT_SPILL_THRESHOLD);
+
+      DirectoryScanner directoryScanner =
+         new DirectoryScanner(scan != null ? scan : ".jar, .war, .ear", excludeSet, scanThreads);
+
+      final Map<String, SortedSet<Location>> locationsMap = new HashMap<>();
+      final SortedSet<Archive> archives = new TreeSet<>();
+      final SortedMap<String, SortedSet<String>> gProvides = new TreeMap<>();
+      final Set<String> relocated = new HashSet<>();
+      final ArchiveReportWriter archiveReportWriter =
+         new ArchiveReportWriter(destination, allReports, reportSet, filters);
 
       // Load up selected profiles
       logger.info("Load up selected profiles");
       List<Profile> known = getKnownProfiles(allProfiles, profileSet);
 
-      logger.info("Scan source file...");
-      StringTokenizer st = new StringTokenizer(source, "#");
-
-      List<File> fileList = new ArrayList<>();
-      Analyzer analyzer = new Analyzer();
-
-      while (st.hasMoreTokens())
+      if (scanCache == null)
       {
-         File f = new File(st.nextToken());
-         if (f.isDirectory())
-         {
-            fileList.addAll(DirectoryScanner.scan(f, excludeSet));
-         }
-         else
-         {
-            fileList.add(f);
-         }
+         scanCache = config.getProperty("scanCache");
       }
 
-      for (File file : fileList)
+      ScanCache cache = null;
+      if (scanCache != null && !scanCache.trim().isEmpty())
       {
-         ArchiveScanner scanner = analyzer.getScanner(file);
+         cache = new ScanCache(new File(scanCache.trim()), known, blacklistedSet);
+      }
 
-         if (scanner != null)
+      logger.info("Scan source file...");
+      long scanStart = System.nanoTime();
+      ParallelArchiveScanner scanner = new ParallelArchiveScanner(scanThreads, cache);
+      ArchiveScanListener merge = new ArchiveScanListener()
+      {
+         @Override
+         public void archiveScanned(File file, Archive archive, SortedMap<String, SortedSet<String>> provides)
          {
-            Archive archive = scanner.scan(file, gProvides, known, blacklistedSet);
+            for (Map.Entry<String, SortedSet<String>> entry : provides.entrySet())
+            {
+               SortedSet<String> ss = gProvides.get(entry.getKey());
+               if (ss == null)
+               {
+                  ss = new TreeSet<>();
+                  gProvides.put(entry.getKey(), ss);
+               }
+               ss.addAll(entry.getValue());
+            }
+
             if (archive != null)
             {
                SortedSet<Location> locations = locationsMap.get(archive.getName());
@@ -587,15 +775,66 @@ public class Main
                {
                   locations = new TreeSet<>();
                }
+               else
+               {
+                  relocated.add(archive.getName());
+               }
                locations.addAll(archive.getLocations());
                locationsMap.put(archive.getName(), locations);
 
                if (!archives.contains(archive))
                {
                   archives.add(archive);
+                  archiveReportWriter.add(archive);
                }
             }
          }
+
+         @Override
+         public void archiveCopied(File file, Archive archive, Location location)
+         {
+            locationsMap.get(archive.getName()).add(location);
+            relocated.add(archive.getName());
+         }
+      };
+
+      try (final ParallelArchiveScanner.Session session = scanner.open(known, blacklistedSet, merge))
+      {
+         // Archives found in a directory are scanned while the rest of the directory is listed
+         DirectoryScanListener discovered = new DirectoryScanListener()
+         {
+            @Override
+            public void fileFound(File file) throws IOException
+            {
+               session.add(file);
+            }
+         };
+
+         StringTokenizer st = new StringTokenizer(source, "#");
+         while (st.hasMoreTokens())
+         {
+            File f = new File(st.nextToken());
+            if (f.isDirectory())
+            {
+               directoryScanner.scanArchives(f, discovered);
+            }
+            else
+            {
+               session.add(f);
+            }
+         }
+
+         session.finish();
+      }
+      finally
+      {
+         archiveReportWriter.finish();
+      }
+      Metrics.wallTime("scan", System.nanoTime() - scanStart);
+
+      if (cache != null)
+      {
+         logger.info(cache.getStatistics());
       }
 
       for (Archive a : archives)
@@ -612,17 +851,45 @@ public class Main
       // Write out report
       if (archives.size() > 0)
       {
-         ReportSetBuilder reportSetBuilder = new ReportSetBuilder(destination, allReports, reportSet, filters);
+         ReportSetBuilder reportSetBuilder = archiveReportWriter.getReportSetBuilder();
+         long reportStart = System.nanoTime();
+
+         // The pages written while scanning only list the locations known at that time
+         for (Archive a : archives)
+         {
+            if (relocated.contains(a.getName()))
+            {
+               addArchiveReport(a, reportSetBuilder);
+            }
+         }
 
          reportSetBuilder.addReportParameter("setCLS", classloaderStructure);
          reportSetBuilder.addReportParameter("setKnown", known);
          reportSetBuilder.addReportParameter("setArchives", archives);
          reportSetBuilder.addReportParameter("setConfig", config);
          reportSetBuilder.addReportParameter("setGlobalProvides", gProvides);
+         reportSetBuilder.addReportParameter("setArchiveGraph",
+                                             new ArchiveGraph(archives, CLSReport.createCLS(classloaderStructure)));
+         reportSetBuilder.addReportParameter("setProviderIndex", new ProviderIndex(gProvides));
+         reportSetBuilder.addReportParameter("setDataFormat", dataFormat);
+         reportSetBuilder.addReportParameter("setHtml", html);
 
          loadCustomReports(config, reportSet);
          
-         outputReport(reportSetBuilder, archives);
+         try
+         {
+            outputReport(reportSetBuilder);
+         }
+         finally
+         {
+            reportSetBuilder.shutdown();
+         }
+         Metrics.wallTime("reports", System.nanoTime() - reportStart);
+         Metrics.wallTime("total", System.nanoTime() - start);
+
+         File metrics = new File(reportSetBuilder.getOutputDir(), "metrics.json");
+         logger.info("Generate metrics (file://" + metrics.getPath() + ")");
+         Metrics.write(metrics);
       }
    }
 
@@ -635,16 +902,18 @@ public class Main
     private List<Profile> getKnownProfiles(boolean allProfiles, Set<String> profileSet) {
         
         List<Profile> known = new ArrayList<>();
-        AbstractProfile[] profilesObjects = new AbstractProfile[]{new SunJava5(), new SunJava6(), new Java7(), new Java8(),
-            new JavaEE5(), new JavaEE6(), new JavaEE7(),
-            new CDI10(), new Seam22(), new Spring25(), new Spring30(), new JBossAS7Profile()};
+        AbstractProfile[] profilesObjects = new AbstractProfile[]{ProfileRegistry.get(SunJava5.class),
+            ProfileRegistry.get(SunJava6.class), ProfileRegistry.get(Java7.class), ProfileRegistry.get(Java8.class),
+            ProfileRegistry.get(JavaEE5.class), ProfileRegistry.get(JavaEE6.class), ProfileRegistry.get(JavaEE7.class),
+            ProfileRegistry.get(CDI10.class), ProfileRegistry.get(Seam22.class), ProfileRegistry.get(Spring25.class),
+            ProfileRegistry.get(Spring30.class), ProfileRegistry.get(JBossAS7Profile.class)};
         for (AbstractProfile p : profilesObjects)
         {
             if (p.included(allProfiles, profileSet))
             {
                 known.add(p);
             }
-      } return known;
+      } return new ProfileIndex(known);
     }
 
    /**
@@ -735,8 +1004,10 @@ public class Main
     *
     * @throws Exception In case of fail on settings
     */
-   private void outputReport(ReportSetBuilder reportSetBuilder, SortedSet<Archive> archives) throws Exception
+   private void outputReport(ReportSetBuilder reportSetBuilder) throws Exception
    {
+      SortedSet<Report> archiveReports = reportSetBuilder.getReportSet();
+
       reportSetBuilder.clear();
       for (Class<? extends Report> reportDef : dependencyReports)
       {
@@ -759,17 +1030,21 @@ public class Main
       SortedSet<Report> customReportSet = reportSetBuilder.getReportSet();
       reportSetBuilder.clear();
 
-      logger.info("Add archives report");
-      addJarReports(archives, reportSetBuilder);
-
-      SortedSet<Report> archiveReports = reportSetBuilder.getReportSet();
+      // the index needs the status of every report
+      reportSetBuilder.finish();
 
-
-      String outputDir = reportSetBuilder.getOutputDir();
-      logger.info("Generate HTML index (file://"+outputDir+File.separator+"index.html)");
-      Dump.generateIndex(dependencyReportSet, generalReportSet, archiveReports, customReportSet, outputDir);
-      logger.info("Generate CSS");
-      Dump.generateCSS(outputDir);
+      if (html)
+      {
+         String outputDir = reportSetBuilder.getOutputDir();
+         logger.info("Generate HTML index (file://"+outputDir+File.separator+"index.html)");
+         Dump.generateIndex(dependencyReportSet, generalReportSet, archiveReports, customReportSet, outputDir);
+         logger.info("Generate CSS");
+         Dump.generateCSS(outputDir);
+      }
+      else
+      {
+         logger.warning("html=false: the HTML index and the archive pages are not written");
+      }
 
       if (failOnInfo || failOnWarn || failOnError)
       {
@@ -825,29 +1100,32 @@ public class Main
    }
    
    /**
-    * Add the reports based on the archive that we have.
-    * @param archives - the collection of Archives.
+    * Add the report of an archive.
+    * @param a - the Archive.
     * @param reportSetBuilder - the Report Set Builder required to add a new JarReport if there is a JarArchive found.
     */
 
-   private void addJarReports(Collection<Archive> archives, ReportSetBuilder reportSetBuilder)
+   private void addArchiveReport(Archive a, ReportSetBuilder reportSetBuilder)
    {
-      for (Archive a : archives)
+      // the archive pages have no data file
+      if (!html)
       {
-         if (a.getType() == ArchiveType.WAR)
-         {
-            NestableArchive na = (NestableArchive) a;
-            reportSetBuilder.addReport(new WarReport(na));
-         }
-         else if (a.getType() == ArchiveType.JAR)
-         {
-            reportSetBuilder.addReport(new JarReport(a));
-         }
-         else if (a.getType() == ArchiveType.EAR)
-         {
-            NestableArchive na = (NestableArchive) a;
-            reportSetBuilder.addReport(new EarReport(na));
-         }
+         return;
+      }
+
+      if (a.getType() == ArchiveType.WAR)
+      {
+         NestableArchive na = (NestableArchive) a;
+         reportSetBuilder.addReport(new WarReport(na));
+      }
+      else if (a.getType() == ArchiveType.JAR)
+      {
+         reportSetBuilder.addReport(new JarReport(a));
+      }
+      else if (a.getType() == ArchiveType.EAR)
+      {
+         NestableArchive na = (NestableArchive) a;
+         reportSetBuilder.addReport(new EarReport(na));
       }
    }
 
@@ -983,6 +1261,9 @@ public class Main
    /**
     * This helper class generates reports from report definitions and gathers
     * report definitions into a SortedSet which can be used to build the index.
+    * <p>
+    * The reports are generated concurrently on a bounded pool once they are added,
+    * while the report sets are filled in the order the reports are added.
     *
     * @author Mike Moore
     */
@@ -995,6 +1276,9 @@ public class Main
       private final Set<String> reportSet;
       private SortedSet<Report> returnReportSet = new TreeSet<>();
       private final Map<String, Object> reportParameters = new HashMap<>();
+      private final ConcurrentMap<String, Filter> initializedFilters = new ConcurrentHashMap<>();
+      private final ExecutorService executor;
+      private final List<GeneratedReport> generating = new ArrayList<>();
 
       /**
        * @param destination Where the reports go
@@ -1011,6 +1295,13 @@ public class Main
          this.allReports = allReports;
          this.reportSet = reportSet;
          this.filters = filters;
+
+         // when every thread is busy and the queue is full, the caller generates the report itself
+         int threads = reportThreads != null ? reportThreads.intValue() : 1;
+         this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                                                new ArrayBlockingQueue<Runnable>(REPORT_QUEUE_PER_THREAD * threads),
+                                                new ReportThreadFactory(),
+                                                new ThreadPoolExecutor.CallerRunsPolicy());
       }
 
       /**
@@ -1041,17 +1332,64 @@ public class Main
        *
        * @param report the definition of the report to generate
        */
-      void addReport(Report report)
+      void addReport(final Report report)
       {
          if (allReports || reportSet.contains(report.getId()))
          {
             if (filters != null && filters.getProperty(report.getId()) != null)
             {
+               if (report instanceof AbstractReport)
+               {
+                  ((AbstractReport) report).setFilters(initializedFilters);
+               }
                report.setFilter(filters.getProperty(report.getId()));
             }
-            logger.log(Level.INFO, "Generating report : {0}", report.getId());
-            report.generate(outputDir);
             returnReportSet.add(report);
+
+            Future<?> future = executor.submit(new Runnable()
+            {
+               @Override
+               public void run()
+               {
+                  logger.log(Level.INFO, "Generating report : {0}", report.getId());
+                  long start = System.nanoTime();
+                  report.generate(outputDir);
+                  Metrics.reportGenerated(report.getId(), System.nanoTime() - start);
+               }
+            });
+            synchronized (generating)
+            {
+               generating.add(new GeneratedReport(report, returnReportSet, future));
+            }
+         }
+      }
+
+      /**
+       * Wait for the reports added so far to be generated. A report that failed is
+       * logged and left out of its report set, the others are kept.
+       *
+       * @throws InterruptedException If interrupted while waiting
+       */
+      void finish() throws InterruptedException
+      {
+         List<GeneratedReport> reports;
+         synchronized (generating)
+         {
+            reports = new ArrayList<>(generating);
+            generating.clear();
+         }
+
+         for (GeneratedReport generated : reports)
+         {
+            try
+            {
+               generated.future.get();
+            }
+            catch (ExecutionException ee)
+            {
+               logger.log(Level.SEVERE, "Report " + generated.report.getId() + " failed", ee.getCause());
+               generated.reportSet.remove(generated.report);
+            }
          }
       }
 
@@ -1086,6 +1424,12 @@ public class Main
          return returnReportSet;
       }
 
+      /** Stop the report threads once the reports are generated */
+      void shutdown()
+      {
+         executor.shutdown();
+      }
+
       /** @return the String representation of the output directory */
       String getOutputDir()
       {
@@ -1168,5 +1512,152 @@ public class Main
          }
       }
    }
+
+   /**
+    * This helper class writes the reports of the archives on a thread of its own
+    * while the scan continues. At most a few archives are waiting to be written,
+    * so the scan slows down when the reports can't keep up.
+    */
+   private class ArchiveReportWriter
+   {
+      private final String destination;
+      private final boolean allReports;
+      private final Set<String> reportSet;
+      private final Properties filters;
+      private final ExecutorService executor;
+      private final Semaphore capacity;
+      private ReportSetBuilder reportSetBuilder;
+      private volatile Throwable failure;
+
+      /**
+       * @param destination Where the reports go
+       * @param allReports  Should all reports be generated ?
+       * @param reportSet   The set of reports that should be generated
+       * @param filters     The filters
+       */
+      ArchiveReportWriter(String destination, boolean allReports, Set<String> reportSet, Properties filters)
+      {
+         this.destination = destination;
+         this.allReports = allReports;
+         this.reportSet = reportSet;
+         this.filters = filters;
+         this.executor = Executors.newSingleThreadExecutor();
+         this.capacity = new Semaphore(ARCHIVE_REPORT_QUEUE);
+      }
+
+      /**
+       * Queue the report of an archive; waits while the queue is full
+       *
+       * @param archive The archive
+       */
+      void add(final Archive archive)
+      {
+         capacity.acquireUninterruptibly();
+         executor.execute(new Runnable()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  if (failure == null)
+                  {
+                     addArchiveReport(archive, getReportSetBuilder());
+                  }
+               }
+               catch (Throwable t)
+               {
+                  failure = t;
+               }
+               finally
+               {
+                  capacity.release();
+               }
+            }
+         });
+      }
+
+      /**
+       * Wait for the queued reports to be written
+       *
+       * @throws Exception If a report couldn't be written
+       */
+      void finish() throws Exception
+      {
+         executor.shutdown();
+         executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+
+         // the reports of relocated archives are written again once the scan is over
+         if (reportSetBuilder != null)
+         {
+            reportSetBuilder.finish();
+         }
+
+         if (failure instanceof Exception)
+         {
+            throw (Exception) failure;
+         }
+         if (failure instanceof Error)
+         {
+            throw (Error) failure;
+         }
+      }
+
+      /**
+       * The report set builder is created, and the output directory set up,
+       * once the first archive is known
+       *
+       * @return The report set builder holding the archive reports
+       *
+       * @throws Exception If the output directory can't be set up
+       */
+      ReportSetBuilder getReportSetBuilder() throws Exception
+      {
+         if (reportSetBuilder == null)
+         {
+            logger.info("Add archives report");
+            reportSetBuilder = new ReportSetBuilder(destination, allReports, reportSet, filters);
+         }
+         return reportSetBuilder;
+      }
+   }
+
+   /**
+    * A report being generated, with the report set it belongs to
+    */
+   private static class GeneratedReport
+   {
+      private final Report report;
+      private final SortedSet<Report> reportSet;
+      private final Future<?> future;
+
+      /**
+       * @param report    The report
+       * @param reportSet The report set holding the report
+       * @param future    The generation of the report
+       */
+      GeneratedReport(Report report, SortedSet<Report> reportSet, Future<?> future)
+      {
+         this.report = report;
+         this.reportSet = reportSet;
+         this.future = future;
+      }
+   }
+
+   /**
+    * Creates named daemon threads for the report pool
+    */
+   private static class ReportThreadFactory implements ThreadFactory
+   {
+      private final AtomicInteger counter = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r)
+      {
+         Thread t = new Thread(r, "tattletale-report-" + counter.incrementAndGet());
+         t.setDaemon(true);
+         return t;
+      }
+   }
 }
 
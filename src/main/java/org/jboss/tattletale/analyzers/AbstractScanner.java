@@ -40,7 +40,10 @@ import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
 import org.jboss.tattletale.core.Archive;
-import org.jboss.tattletale.profiles.Profile;
+import org.jboss.tattletale.profiles.Profile;
+import org.jboss.tattletale.profiles.ProfileIndex;
+import org.jboss.tattletale.utils.Metrics;
+import org.jboss.tattletale.utils.PrefixTrie;
 
 import javassist.ClassPool;
 import javassist.CtClass;
@@ -55,6 +58,53 @@ import javassist.NotFoundException;
  * */
 public abstract class AbstractScanner implements ArchiveScanner
 {
+   /** Class file reader of each scanning thread */
+   private static final ThreadLocal<ClassFileReader> CLASS_FILE_READERS = new ThreadLocal<ClassFileReader>()
+   {
+      @Override
+      protected ClassFileReader initialValue()
+      {
+         return new ClassFileReader();
+      }
+   };
+
+   /** Parse every class with Javassist instead of the class file reader */
+   private static volatile boolean useJavassist = false;
+
+   /** The nested archives scanned so far; <code>null</code> to scan every copy */
+   private DuplicateArchives duplicates;
+
+   /**
+    * Set whether every class is parsed with Javassist. By default classes are read by
+    * {@link ClassFileReader}, and Javassist is only used for classes that it can't read.
+    *
+    * @param value The value
+    */
+   public static void setUseJavassist(boolean value)
+   {
+      useJavassist = value;
+   }
+
+   /**
+    * Set the nested archives scanned so far, which byte-identical copies are taken from
+    *
+    * @param value The value; <code>null</code> to scan every copy
+    */
+   void setDuplicates(DuplicateArchives value)
+   {
+      duplicates = value;
+   }
+
+   /**
+    * Get the nested archives scanned so far
+    *
+    * @return The value; <code>null</code> if every copy is scanned
+    */
+   DuplicateArchives getDuplicates()
+   {
+      return duplicates;
+   }
+
    /**
     * Read the manifest
     *
@@ -148,6 +198,78 @@ public abstract class AbstractScanner implements ArchiveScanner
       }
    }
 
+   /**
+    * Scan the class entries of an archive; large archives are split across the class parsing threads.
+    *
+    * @param input        The archive
+    * @param classEntries The class entries, in archive order
+    * @param blacklisted  The set of black listed packages
+    * @param known        The set of known archives
+    * @param result       The result that the classes are added to
+    */
+   protected void scanClasses(ArchiveInput input, List<ClassEntry> classEntries, Set<String> blacklisted,
+                              List<Profile> known, ClassScanResult result)
+   {
+      ParallelClassScanner.scan(this, input, classEntries, blacklisted, known, result);
+   }
+
+   /**
+    * Scan class entries one by one on the calling thread
+    *
+    * @param input       The archive
+    * @param entries     The class entries
+    * @param blacklisted The set of black listed packages
+    * @param known       The set of known archives
+    * @param result      The result that the classes are added to
+    */
+   void scanClassEntries(ArchiveInput input, List<ClassEntry> entries, Set<String> blacklisted, List<Profile> known,
+                         ClassScanResult result)
+   {
+      long start = System.nanoTime();
+      int failures = 0;
+
+      // Compile the black list once for all the classes
+      Set<String> blacklist = blacklisted != null ? PrefixTrie.of(blacklisted) : null;
+
+      for (ClassEntry entry : entries)
+      {
+         InputStream entryStream = null;
+         try
+         {
+            entryStream = entry.openStream();
+            result.setClassVersion(scanClasses(entryStream, blacklist, known, result.getClassVersion(),
+                  result.getProvides(), result.getRequires(), result.getProfiles(), result.getClassDependencies(),
+                  result.getPackageDependencies(), result.getBlacklistedDependencies()));
+         }
+         catch (Exception e)
+         {
+            System.err.println("Error happened while scanning following class:");
+            System.err.println(input.getPath() + ":" + entry.getName());
+            e.printStackTrace();
+            System.err.println("Continue to generate the rest of report, please wait ... ");
+            failures++;
+         }
+         finally
+         {
+            try
+            {
+               if (entryStream != null)
+               {
+                  entryStream.close();
+               }
+            }
+            catch (IOException ioe)
+            {
+               // Ignore
+            }
+         }
+      }
+
+      Metrics.count("classes", entries.size());
+      Metrics.count("parseFailures", failures);
+      Metrics.threadTime("classParsing", System.nanoTime() - start);
+   }
+
 /**
     * Static method called to scan class files within an input stream and populate the data structure parameters.
     *
@@ -165,7 +287,7 @@ public abstract class AbstractScanner implements ArchiveScanner
     *
     * @return An {@link Integer} representing the class version.
     *
-    * @throws IOException - if the Javassist ClassPool cannot make the CtClass based on the input stream.
+    * @throws IOException - if neither the class file reader nor the Javassist ClassPool can read the input stream.
     */
 
    public Integer scanClasses(InputStream is, Set<String> blacklisted, List<Profile> known, Integer classVersion,
@@ -175,51 +297,107 @@ public abstract class AbstractScanner implements ArchiveScanner
                            SortedMap<String, SortedSet<String>> blacklistedDependencies)
       throws IOException
    {
-      ClassPool classPool = new ClassPool();
-      CtClass ctClz = classPool.makeClass(is);
+      String className;
+      int majorVersion;
+      Long serialVersionUID = null;
+      Collection c;
 
-      if (classVersion == null)
+      ClassFileReader reader = null;
+      CtClass ctClz = null;
+      if (useJavassist)
+      {
+         ctClz = new ClassPool().makeClass(is);
+      }
+      else
       {
-         classVersion = ctClz.getClassFile2().getMajorVersion();
+         reader = CLASS_FILE_READERS.get();
+         try
+         {
+            reader.read(is);
+         }
+         catch (Exception e)
+         {
+            Metrics.count("parseFallbacks", 1);
+            ctClz = new ClassPool().makeClass(reader.getInputStream());
+            reader = null;
+         }
       }
 
-      Long serialVersionUID = null;
-      try
+      if (reader != null)
       {
-         CtField field = ctClz.getField("serialVersionUID");
-         serialVersionUID = (Long) field.getConstantValue();
+         className = reader.getClassName();
+         majorVersion = reader.getMajorVersion();
+         serialVersionUID = reader.getSerialVersionUID();
+         c = reader.getRefClasses();
       }
-      catch (NotFoundException nfe)
+      else
       {
-         // Ignore - not serializable
+         className = ctClz.getName();
+         majorVersion = ctClz.getClassFile2().getMajorVersion();
+         try
+         {
+            CtField field = ctClz.getField("serialVersionUID");
+            serialVersionUID = (Long) field.getConstantValue();
+         }
+         catch (NotFoundException nfe)
+         {
+            // Ignore - not serializable
+         }
+         c = ctClz.getRefClasses();
       }
 
-      provides.put(ctClz.getName(), serialVersionUID);
+      if (classVersion == null)
+      {
+         classVersion = majorVersion;
+      }
+
+      provides.put(className, serialVersionUID);
 
-      int pkgIdx = ctClz.getName().lastIndexOf(".");
+      int pkgIdx = className.lastIndexOf(".");
       String pkg = null;
 
       if (pkgIdx != -1)
       {
-         pkg = ctClz.getName().substring(0, pkgIdx);
+         pkg = className.substring(0, pkgIdx);
+      }
+
+      // Classify all the references in one go, so profile matching is timed once per class
+      boolean[] provided = null;
+      if (known != null)
+      {
+         long profileStart = System.nanoTime();
+         provided = new boolean[c.size()];
+         int i = 0;
+         for (Object ref : c)
+         {
+            Profile p = ProfileIndex.findProvider(known, (String) ref);
+            if (p != null)
+            {
+               profiles.add(p.getName());
+               provided[i] = true;
+            }
+            i++;
+         }
+         Metrics.threadTime("profileMatching", System.nanoTime() - profileStart);
       }
 
-      Collection c = ctClz.getRefClasses();
+      PrefixTrie blacklist = blacklisted != null ? PrefixTrie.of(blacklisted) : null;
       Iterator it = c.iterator();
+      int index = 0;
 
       while (it.hasNext())
       {
          String s = (String) it.next();
          requires.add(s);
 
-         SortedSet<String> cd = classDependencies.get(ctClz.getName());
+         SortedSet<String> cd = classDependencies.get(className);
          if (cd == null)
          {
             cd = new TreeSet<>();
          }
 
          cd.add(s);
-         classDependencies.put(ctClz.getName(), cd);
+         classDependencies.put(className, cd);
 
          int rPkgIdx = s.lastIndexOf(".");
          String rPkg = null;
@@ -229,21 +407,8 @@ public abstract class AbstractScanner implements ArchiveScanner
             rPkg = s.substring(0, rPkgIdx);
          }
 
-         boolean include = true;
-
-         if (known != null)
-         {
-            Iterator<Profile> kit = known.iterator();
-            while (include && kit.hasNext())
-            {
-               Profile p = kit.next();
-               if (p.doesProvide(s))
-               {
-                  profiles.add(p.getName());
-                  include = false;
-               }
-            }
-         }
+         boolean include = provided == null || !provided[index];
+         index++;
 
          if (pkg != null && rPkg != null && !pkg.equals(rPkg) && include)
          {
@@ -257,21 +422,9 @@ public abstract class AbstractScanner implements ArchiveScanner
             packageDependencies.put(pkg, pd);
          }
 
-         if (blacklisted != null)
+         if (blacklist != null)
          {
-            boolean bl = false;
-
-            Iterator<String> bit = blacklisted.iterator();
-            while (!bl && bit.hasNext())
-            {
-               String blp = bit.next();
-               if (s.startsWith(blp))
-               {
-                  bl = true;
-               }
-            }
-
-            if (bl)
+            if (blacklist.matches(s))
             {
                String key = pkg;
 
@@ -291,6 +444,7 @@ public abstract class AbstractScanner implements ArchiveScanner
             }
          }
       }
+
       return classVersion;
    }
 
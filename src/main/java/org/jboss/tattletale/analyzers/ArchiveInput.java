@@ -0,0 +1,620 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.analyzers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Enumeration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+import org.jboss.tattletale.utils.Metrics;
+
+/**
+ * The entries of an archive, read one after the other.
+ * <p>
+ * Archives on disk are read through {@link JarFile}. Archives nested inside another archive
+ * are read from memory through their central directory; only nested archives bigger than the spill threshold are copied to
+ * a scratch file, and scratch files are reused from one archive to the next.
+ */
+public abstract class ArchiveInput implements Closeable
+{
+   /** Default spill threshold: 64 MB */
+   public static final long DEFAULT_SPILL_THRESHOLD = 64L * 1024L * 1024L;
+
+   /** Nested archives bigger than this are copied to a scratch file */
+   private static volatile long spillThreshold = DEFAULT_SPILL_THRESHOLD;
+
+   /** Scratch files that aren't in use */
+   private static final Queue<File> SCRATCH_FILES = new ConcurrentLinkedQueue<>();
+
+   /** The name */
+   private final String name;
+
+   /** The path */
+   private final String path;
+
+   /** The content hash of a nested archive */
+   private String digest;
+
+   /**
+    * Constructor
+    *
+    * @param name The file name
+    * @param path The path; nested archives use the path of their parent followed by the entry name
+    */
+   ArchiveInput(String name, String path)
+   {
+      this.name = name;
+      this.path = path;
+   }
+
+   /**
+    * Set the size above which nested archives are copied to a scratch file instead of being read in memory
+    *
+    * @param value The value in bytes
+    */
+   public static void setSpillThreshold(long value)
+   {
+      spillThreshold = value;
+   }
+
+   /**
+    * Open an archive on disk
+    *
+    * @param file The file
+    * @return The archive input
+    * @exception IOException If the file isn't an archive
+    */
+   public static ArchiveInput open(File file) throws IOException
+   {
+      return new FileArchiveInput(file.getName(), file.getCanonicalPath(), new JarFile(file), null);
+   }
+
+   /**
+    * Get the name
+    *
+    * @return The file name of the archive
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * Get the path
+    *
+    * @return The canonical path of an archive on disk; for a nested archive the path of
+    *         its parent followed by the entry name
+    */
+   public String getPath()
+   {
+      return path;
+   }
+
+   /**
+    * Get the content hash
+    *
+    * @return The SHA-1 of a nested archive as hex string; <code>null</code> for an archive on disk
+    */
+   public String getDigest()
+   {
+      return digest;
+   }
+
+   /**
+    * Get the next entry
+    *
+    * @return The entry; <code>null</code> when there are no more entries
+    * @exception IOException If the archive can't be read
+    */
+   public abstract JarEntry getNextEntry() throws IOException;
+
+   /**
+    * Get the content of the current entry; closing the stream doesn't close the archive
+    *
+    * @param entry The entry returned by the last call to {@link #getNextEntry()}
+    * @return The input stream
+    * @exception IOException If the entry can't be read
+    */
+   public abstract InputStream getInputStream(JarEntry entry) throws IOException;
+
+   /**
+    * Get a class entry that can be read after moving on to other entries
+    *
+    * @param entry The entry returned by the last call to {@link #getNextEntry()}
+    * @return The class entry
+    * @exception IOException If the entry can't be read
+    */
+   public abstract ClassEntry getClassEntry(JarEntry entry) throws IOException;
+
+   /**
+    * Get the manifest; a nested archive only knows its manifest once all entries have been read
+    *
+    * @return The manifest; <code>null</code> if there is none
+    * @exception IOException If the manifest can't be read
+    */
+   public abstract Manifest getManifest() throws IOException;
+
+   /**
+    * Open an archive nested inside this one; the content hash of the nested archive is computed
+    * while it is read
+    *
+    * @param entry The entry returned by the last call to {@link #getNextEntry()}
+    * @return The archive input
+    * @exception IOException If the entry can't be read
+    */
+   public ArchiveInput openNested(JarEntry entry) throws IOException
+   {
+      String entryName = entry.getName();
+      String nestedName = entryName.substring(entryName.lastIndexOf('/') + 1);
+      String nestedPath = path + File.separator + entryName.replace('/', File.separatorChar);
+      long threshold = spillThreshold;
+      long start = System.nanoTime();
+
+      MessageDigest md = Digests.sha1();
+      InputStream is = new DigestInputStream(getInputStream(entry), md);
+      ArchiveInput nested = null;
+      try
+      {
+         if (entry.getSize() > threshold)
+         {
+            nested = spill(nestedName, nestedPath, null, is);
+         }
+         else
+         {
+            ByteArrayOutputStream buffer =
+               new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 8192);
+            byte[] chunk = new byte[8192];
+            int n;
+            while (nested == null && (n = is.read(chunk)) != -1)
+            {
+               buffer.write(chunk, 0, n);
+               if (buffer.size() > threshold)
+               {
+                  nested = spill(nestedName, nestedPath, buffer, is);
+               }
+            }
+
+            if (nested == null)
+            {
+               nested = MemoryArchiveInput.open(nestedName, nestedPath, buffer.toByteArray());
+               if (nested == null)
+               {
+                  nested = spill(nestedName, nestedPath, buffer, is);
+               }
+               else
+               {
+                  Metrics.count("nestedBytes", buffer.size());
+               }
+            }
+         }
+      }
+      finally
+      {
+         is.close();
+      }
+
+      nested.digest = Digests.toHex(md.digest());
+
+      Metrics.count("nestedArchives", 1);
+      Metrics.threadTime("extraction", System.nanoTime() - start);
+      return nested;
+   }
+
+   /**
+    * Copy a nested archive to a scratch file
+    *
+    * @param nestedName The file name of the nested archive
+    * @param nestedPath The path of the nested archive
+    * @param head       The bytes already read; may be <code>null</code>
+    * @param rest       The rest of the nested archive
+    * @return The archive input
+    * @exception IOException If the scratch file can't be written
+    */
+   private static ArchiveInput spill(String nestedName, String nestedPath, ByteArrayOutputStream head,
+                                     InputStream rest)
+      throws IOException
+   {
+      File scratch = SCRATCH_FILES.poll();
+      if (scratch == null)
+      {
+         scratch = File.createTempFile("tattletale-", ".scratch");
+         scratch.deleteOnExit();
+      }
+
+      try
+      {
+         OutputStream out = new FileOutputStream(scratch);
+         try
+         {
+            if (head != null)
+            {
+               head.writeTo(out);
+            }
+
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = rest.read(chunk)) != -1)
+            {
+               out.write(chunk, 0, n);
+            }
+         }
+         finally
+         {
+            out.close();
+         }
+
+         Metrics.count("nestedBytes", scratch.length());
+         Metrics.count("spilledArchives", 1);
+         return new FileArchiveInput(nestedName, nestedPath, new JarFile(scratch), scratch);
+      }
+      catch (IOException ioe)
+      {
+         SCRATCH_FILES.offer(scratch);
+         throw ioe;
+      }
+   }
+
+   /**
+    * An archive read through {@link JarFile}
+    */
+   private static class FileArchiveInput extends ArchiveInput
+   {
+      /** The archive */
+      private final JarFile jarFile;
+
+      /** The entries */
+      private final Enumeration<JarEntry> entries;
+
+      /** The scratch file to give back when closed; <code>null</code> for archives on disk */
+      private final File scratch;
+
+      /**
+       * Constructor
+       *
+       * @param name    The file name
+       * @param path    The path
+       * @param jarFile The archive
+       * @param scratch The scratch file holding the archive, if any
+       */
+      FileArchiveInput(String name, String path, JarFile jarFile, File scratch)
+      {
+         super(name, path);
+         this.jarFile = jarFile;
+         this.entries = jarFile.entries();
+         this.scratch = scratch;
+      }
+
+      @Override
+      public JarEntry getNextEntry()
+      {
+         return entries.hasMoreElements() ? entries.nextElement() : null;
+      }
+
+      @Override
+      public InputStream getInputStream(JarEntry entry) throws IOException
+      {
+         return jarFile.getInputStream(entry);
+      }
+
+      @Override
+      public ClassEntry getClassEntry(final JarEntry entry)
+      {
+         return new ClassEntry()
+         {
+            @Override
+            public String getName()
+            {
+               return entry.getName();
+            }
+
+            @Override
+            public InputStream openStream() throws IOException
+            {
+               return jarFile.getInputStream(entry);
+            }
+         };
+      }
+
+      @Override
+      public Manifest getManifest() throws IOException
+      {
+         return jarFile.getManifest();
+      }
+
+      @Override
+      public void close() throws IOException
+      {
+         try
+         {
+            jarFile.close();
+         }
+         finally
+         {
+            if (scratch != null)
+            {
+               SCRATCH_FILES.offer(scratch);
+            }
+         }
+      }
+   }
+
+   /**
+    * A nested archive read from memory through its central directory, as {@link JarFile}
+    * reads an archive on disk. Archives the central directory can't be read for here,
+    * such as Zip64 archives, are copied to a scratch file instead.
+    */
+   private static class MemoryArchiveInput extends ArchiveInput
+   {
+      /** Signature of the end of central directory record */
+      private static final int END_SIGNATURE = 0x06054b50;
+
+      /** Signature of a central directory header */
+      private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+      /** Signature of a local file header */
+      private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+      /** The archive */
+      private final byte[] data;
+
+      /** The entries, in central directory order */
+      private final JarEntry[] entries;
+
+      /** The offset of the data of each entry */
+      private final int[] offsets;
+
+      /** The position of the next entry */
+      private int next;
+
+      /**
+       * Constructor
+       *
+       * @param name    The file name
+       * @param path    The path
+       * @param data    The archive
+       * @param entries The entries
+       * @param offsets The offset of the data of each entry
+       */
+      private MemoryArchiveInput(String name, String path, byte[] data, JarEntry[] entries, int[] offsets)
+      {
+         super(name, path);
+         this.data = data;
+         this.entries = entries;
+         this.offsets = offsets;
+         this.next = 0;
+      }
+
+      /**
+       * Read the central directory of an archive
+       *
+       * @param name The file name
+       * @param path The path
+       * @param data The archive
+       * @return The archive input; <code>null</code> if the central directory can't be read here
+       */
+      static MemoryArchiveInput open(String name, String path, byte[] data)
+      {
+         int end = data.length - 22;
+         int min = Math.max(0, end - 65535);
+         while (end >= min && readInt(data, end) != END_SIGNATURE)
+         {
+            end--;
+         }
+         if (end < min)
+         {
+            return null;
+         }
+
+         int count = readShort(data, end + 10);
+         long size = readInt(data, end + 12) & 0xFFFFFFFFL;
+         long start = readInt(data, end + 16) & 0xFFFFFFFFL;
+         if (count == 0xFFFF || start + size > end)
+         {
+            return null;
+         }
+
+         JarEntry[] entries = new JarEntry[count];
+         int[] offsets = new int[count];
+         int pos = (int) start;
+         for (int i = 0; i < count; i++)
+         {
+            if (pos + 46 > end || readInt(data, pos) != CENTRAL_SIGNATURE)
+            {
+               return null;
+            }
+
+            int flags = readShort(data, pos + 8);
+            int method = readShort(data, pos + 10);
+            long compressedSize = readInt(data, pos + 20) & 0xFFFFFFFFL;
+            long local = readInt(data, pos + 42) & 0xFFFFFFFFL;
+            int nameLength = readShort(data, pos + 28);
+            if ((flags & 1) != 0 || (method != ZipEntry.STORED && method != ZipEntry.DEFLATED)
+                || compressedSize == 0xFFFFFFFFL || local + 30 > start)
+            {
+               return null;
+            }
+
+            int headerEnd = (int) local + 30 + readShort(data, (int) local + 26) + readShort(data, (int) local + 28);
+            if (readInt(data, (int) local) != LOCAL_SIGNATURE || headerEnd + compressedSize > start)
+            {
+               return null;
+            }
+
+            JarEntry entry = new JarEntry(new String(data, pos + 46, nameLength, StandardCharsets.UTF_8));
+            entry.setMethod(method);
+            entry.setCrc(readInt(data, pos + 16) & 0xFFFFFFFFL);
+            entry.setSize(readInt(data, pos + 24) & 0xFFFFFFFFL);
+            entry.setCompressedSize(compressedSize);
+            entries[i] = entry;
+            offsets[i] = headerEnd;
+
+            pos += 46 + nameLength + readShort(data, pos + 30) + readShort(data, pos + 32);
+         }
+
+         return new MemoryArchiveInput(name, path, data, entries, offsets);
+      }
+
+      @Override
+      public JarEntry getNextEntry()
+      {
+         return next < entries.length ? entries[next++] : null;
+      }
+
+      @Override
+      public InputStream getInputStream(JarEntry entry)
+      {
+         return openEntry(next - 1);
+      }
+
+      @Override
+      public ClassEntry getClassEntry(final JarEntry entry)
+      {
+         final int index = next - 1;
+
+         return new ClassEntry()
+         {
+            @Override
+            public String getName()
+            {
+               return entry.getName();
+            }
+
+            @Override
+            public InputStream openStream()
+            {
+               return openEntry(index);
+            }
+         };
+      }
+
+      @Override
+      public Manifest getManifest() throws IOException
+      {
+         for (int i = 0; i < entries.length; i++)
+         {
+            if (JarFile.MANIFEST_NAME.equalsIgnoreCase(entries[i].getName()))
+            {
+               try (InputStream is = openEntry(i))
+               {
+                  return new Manifest(is);
+               }
+            }
+         }
+         return null;
+      }
+
+      @Override
+      public void close()
+      {
+         // Nothing to release
+      }
+
+      /**
+       * Get the content of an entry
+       *
+       * @param index The position of the entry
+       * @return The input stream
+       */
+      private InputStream openEntry(int index)
+      {
+         JarEntry entry = entries[index];
+         InputStream is = new ByteArrayInputStream(data, offsets[index], (int) entry.getCompressedSize());
+         if (entry.getMethod() == ZipEntry.STORED)
+         {
+            return is;
+         }
+
+         return new InflaterInputStream(is, new Inflater(true), 4096)
+         {
+            /** Whether the dummy byte the inflater may need at the end has been given */
+            private boolean eof;
+
+            @Override
+            protected void fill() throws IOException
+            {
+               if (eof)
+               {
+                  throw new EOFException("Unexpected end of entry " + getName());
+               }
+               len = in.read(buf, 0, buf.length);
+               if (len == -1)
+               {
+                  buf[0] = 0;
+                  len = 1;
+                  eof = true;
+               }
+               inf.setInput(buf, 0, len);
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+               inf.end();
+               super.close();
+            }
+         };
+      }
+
+      /**
+       * Read a little-endian 16 bit value
+       *
+       * @param b   The bytes
+       * @param off The offset
+       * @return The value
+       */
+      private static int readShort(byte[] b, int off)
+      {
+         return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8;
+      }
+
+      /**
+       * Read a little-endian 32 bit value
+       *
+       * @param b   The bytes
+       * @param off The offset
+       * @return The value
+       */
+      private static int readInt(byte[] b, int off)
+      {
+         return readShort(b, off) | readShort(b, off + 2) << 16;
+      }
+   }
+}
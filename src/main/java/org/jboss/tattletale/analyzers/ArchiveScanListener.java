@@ -0,0 +1,56 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.analyzers;
+
+import java.io.File;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import org.jboss.tattletale.core.Archive;
+import org.jboss.tattletale.core.Location;
+
+/**
+ * Callback used by {@link ParallelArchiveScanner} to hand over the result of each scanned file.
+ * Results are always delivered on the calling thread and in the order of the file list.
+ */
+public interface ArchiveScanListener
+{
+   /**
+    * An archive has been scanned
+    *
+    * @param file      The file that was scanned
+    * @param archive   The archive; <code>null</code> if the file didn't contain any classes
+    * @param gProvides The provides that the scan contributed to the global provides map
+    */
+   public void archiveScanned(File file, Archive archive, SortedMap<String, SortedSet<String>> gProvides);
+
+   /**
+    * A file has been found to be a byte-identical copy of a file that was scanned before; the
+    * archive of the earlier file is passed as is, and isn't changed by the scanner
+    *
+    * @param file     The copy
+    * @param archive  The archive of the earlier file
+    * @param location The location of the copy
+    */
+   public void archiveCopied(File file, Archive archive, Location location);
+}
@@ -0,0 +1,719 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.analyzers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Minimal class file reader that only looks at what the scanners need: the class name,
+ * the major version, the serialVersionUID constant and the referenced classes.
+ * <p>
+ * The referenced classes are the same as Javassist's <code>CtClass.getRefClasses()</code>:
+ * CONSTANT_Class, CONSTANT_NameAndType and CONSTANT_MethodType entries, field and method
+ * descriptors, and the class names used in annotations.
+ * <p>
+ * The class file, the constant pool offsets and the reference set are kept between calls,
+ * so an instance should be reused for many classes, but by one thread at a time.
+ */
+public class ClassFileReader
+{
+   /** CONSTANT_Utf8 */
+   private static final int CONSTANT_UTF8 = 1;
+
+   /** CONSTANT_Integer */
+   private static final int CONSTANT_INTEGER = 3;
+
+   /** CONSTANT_Float */
+   private static final int CONSTANT_FLOAT = 4;
+
+   /** CONSTANT_Long */
+   private static final int CONSTANT_LONG = 5;
+
+   /** CONSTANT_Double */
+   private static final int CONSTANT_DOUBLE = 6;
+
+   /** CONSTANT_Class */
+   private static final int CONSTANT_CLASS = 7;
+
+   /** CONSTANT_String */
+   private static final int CONSTANT_STRING = 8;
+
+   /** CONSTANT_Fieldref */
+   private static final int CONSTANT_FIELDREF = 9;
+
+   /** CONSTANT_Methodref */
+   private static final int CONSTANT_METHODREF = 10;
+
+   /** CONSTANT_InterfaceMethodref */
+   private static final int CONSTANT_INTERFACEMETHODREF = 11;
+
+   /** CONSTANT_NameAndType */
+   private static final int CONSTANT_NAMEANDTYPE = 12;
+
+   /** CONSTANT_MethodHandle */
+   private static final int CONSTANT_METHODHANDLE = 15;
+
+   /** CONSTANT_MethodType */
+   private static final int CONSTANT_METHODTYPE = 16;
+
+   /** CONSTANT_InvokeDynamic */
+   private static final int CONSTANT_INVOKEDYNAMIC = 18;
+
+   /** CONSTANT_Module */
+   private static final int CONSTANT_MODULE = 19;
+
+   /** CONSTANT_Package */
+   private static final int CONSTANT_PACKAGE = 20;
+
+   /** ACC_STATIC */
+   private static final int ACC_STATIC = 0x0008;
+
+   /** The class file */
+   private byte[] buffer;
+
+   /** Length of the class file in the buffer */
+   private int length;
+
+   /** Offset of every constant pool entry, just after its tag */
+   private int[] offsets;
+
+   /** Constant pool tags */
+   private byte[] tags;
+
+   /** Constant pool count */
+   private int constantPoolCount;
+
+   /** Scratch space for decoding strings */
+   private char[] chars;
+
+   /** Class name */
+   private String className;
+
+   /** Major version */
+   private int majorVersion;
+
+   /** serialVersionUID */
+   private Long serialVersionUID;
+
+   /** Referenced classes */
+   private final Set<String> refClasses;
+
+   /** Constructor */
+   public ClassFileReader()
+   {
+      this.buffer = new byte[8192];
+      this.length = 0;
+      this.offsets = new int[256];
+      this.tags = new byte[256];
+      this.chars = new char[128];
+      this.refClasses = new HashSet<>();
+   }
+
+   /**
+    * Read a class file
+    *
+    * @param is The input stream positioned at the start of the class file
+    * @exception IOException If the stream can't be read or doesn't contain a supported class file
+    */
+   public void read(InputStream is) throws IOException
+   {
+      length = 0;
+      int n;
+      while ((n = is.read(buffer, length, buffer.length - length)) != -1)
+      {
+         length += n;
+         if (length == buffer.length)
+         {
+            byte[] bigger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, bigger, 0, length);
+            buffer = bigger;
+         }
+      }
+
+      parse();
+   }
+
+   /**
+    * Get the bytes of the last read class file, e.g. to hand them to another parser
+    *
+    * @return The input stream
+    */
+   public InputStream getInputStream()
+   {
+      return new ByteArrayInputStream(buffer, 0, length);
+   }
+
+   /**
+    * Get the class name
+    *
+    * @return The fully qualified name of the last read class
+    */
+   public String getClassName()
+   {
+      return className;
+   }
+
+   /**
+    * Get the major version
+    *
+    * @return The major version of the last read class
+    */
+   public int getMajorVersion()
+   {
+      return majorVersion;
+   }
+
+   /**
+    * Get the serialVersionUID
+    *
+    * @return The constant value of the static serialVersionUID field; <code>null</code> if there is none
+    */
+   public Long getSerialVersionUID()
+   {
+      return serialVersionUID;
+   }
+
+   /**
+    * Get the referenced classes, including the class itself
+    *
+    * @return The classes referenced by the last read class; the set is reused by the next read
+    */
+   public Set<String> getRefClasses()
+   {
+      return refClasses;
+   }
+
+   /**
+    * Parse the class file in the buffer
+    *
+    * @exception IOException If the class file isn't supported
+    */
+   private void parse() throws IOException
+   {
+      className = null;
+      serialVersionUID = null;
+      refClasses.clear();
+
+      if (readInt(0) != 0xCAFEBABE)
+      {
+         throw new IOException("bad magic number: " + Integer.toHexString(readInt(0)));
+      }
+
+      majorVersion = readU2(6);
+
+      int count = readU2(8);
+      constantPoolCount = count;
+      if (offsets.length < count)
+      {
+         offsets = new int[count];
+         tags = new byte[count];
+      }
+
+      int pos = 10;
+      for (int i = 1; i < count; i++)
+      {
+         int tag = readU1(pos);
+         tags[i] = (byte) tag;
+         offsets[i] = pos + 1;
+
+         switch (tag)
+         {
+            case CONSTANT_UTF8:
+               pos += 3 + readU2(pos + 1);
+               break;
+            case CONSTANT_CLASS:
+            case CONSTANT_STRING:
+            case CONSTANT_METHODTYPE:
+            case CONSTANT_MODULE:
+            case CONSTANT_PACKAGE:
+               pos += 3;
+               break;
+            case CONSTANT_METHODHANDLE:
+               pos += 4;
+               break;
+            case CONSTANT_INTEGER:
+            case CONSTANT_FLOAT:
+            case CONSTANT_FIELDREF:
+            case CONSTANT_METHODREF:
+            case CONSTANT_INTERFACEMETHODREF:
+            case CONSTANT_NAMEANDTYPE:
+            case CONSTANT_INVOKEDYNAMIC:
+               pos += 5;
+               break;
+            case CONSTANT_LONG:
+            case CONSTANT_DOUBLE:
+               pos += 9;
+               i++;
+               if (i < count)
+               {
+                  tags[i] = 0;
+               }
+               break;
+            default:
+               throw new IOException("invalid constant type: " + tag + " at " + i);
+         }
+      }
+
+      for (int i = 1; i < count; i++)
+      {
+         switch (tags[i])
+         {
+            case CONSTANT_CLASS:
+               String name = utf8(readU2(offsets[i]));
+               if (name.charAt(0) == '[')
+               {
+                  addDescriptor(name);
+               }
+               else
+               {
+                  addClass(name);
+               }
+               break;
+            case CONSTANT_NAMEANDTYPE:
+               addDescriptor(utf8(readU2(offsets[i] + 2)));
+               break;
+            case CONSTANT_METHODTYPE:
+               addDescriptor(utf8(readU2(offsets[i])));
+               break;
+            default:
+               break;
+         }
+      }
+
+      int thisClass = readU2(pos + 2);
+      if (thisClass <= 0 || thisClass >= count || tags[thisClass] != CONSTANT_CLASS)
+      {
+         throw new IOException("invalid this_class: " + thisClass);
+      }
+      className = utf8(readU2(offsets[thisClass])).replace('/', '.');
+
+      int interfaces = readU2(pos + 6);
+      pos += 8 + interfaces * 2;
+
+      pos = members(pos, true);
+      pos = members(pos, false);
+      attributes(pos, false);
+   }
+
+   /**
+    * Read the fields or the methods
+    *
+    * @param pos    The offset of the member count
+    * @param fields Whether the members are fields
+    * @return The offset after the members
+    * @exception IOException If the class file isn't supported
+    */
+   private int members(int pos, boolean fields) throws IOException
+   {
+      int count = readU2(pos);
+      pos += 2;
+      boolean found = false;
+
+      for (int i = 0; i < count; i++)
+      {
+         int accessFlags = readU2(pos);
+         int nameIndex = readU2(pos + 2);
+         addDescriptor(utf8(readU2(pos + 4)));
+
+         if (fields && !found && "serialVersionUID".equals(utf8(nameIndex)))
+         {
+            serialVersionUID = serialVersionUID(pos + 6, accessFlags);
+            found = true;
+         }
+
+         pos = attributes(pos + 6, false);
+      }
+
+      return pos;
+   }
+
+   /**
+    * Get the serialVersionUID constant of a field
+    *
+    * @param pos         The offset of the attribute count of the field
+    * @param accessFlags The access flags of the field
+    * @return The value; <code>null</code> if the field has no constant value
+    * @exception IOException If the constant isn't a long, which the scanners don't support
+    */
+   private Long serialVersionUID(int pos, int accessFlags) throws IOException
+   {
+      if ((accessFlags & ACC_STATIC) == 0)
+      {
+         return null;
+      }
+
+      int count = readU2(pos);
+      pos += 2;
+
+      for (int i = 0; i < count; i++)
+      {
+         if ("ConstantValue".equals(utf8(readU2(pos))))
+         {
+            int index = readU2(pos + 6);
+            if (index == 0)
+            {
+               return null;
+            }
+
+            if (index >= constantPoolCount || tags[index] != CONSTANT_LONG)
+            {
+               throw new IOException("serialVersionUID isn't a long constant");
+            }
+
+            return Long.valueOf(((long) readInt(offsets[index]) << 32) | (readInt(offsets[index] + 4) & 0xFFFFFFFFL));
+         }
+         pos += 6 + readInt(pos + 2);
+      }
+
+      return null;
+   }
+
+   /**
+    * Read the attributes and collect the class names used in annotations
+    *
+    * @param pos  The offset of the attribute count
+    * @param code Whether the attributes belong to a Code attribute
+    * @return The offset after the attributes
+    * @exception IOException If the class file isn't supported
+    */
+   private int attributes(int pos, boolean code) throws IOException
+   {
+      int count = readU2(pos);
+      pos += 2;
+
+      for (int i = 0; i < count; i++)
+      {
+         String name = utf8(readU2(pos));
+         int attributeLength = readInt(pos + 2);
+         int start = pos + 6;
+
+         if ("RuntimeVisibleAnnotations".equals(name) || "RuntimeInvisibleAnnotations".equals(name))
+         {
+            annotations(start);
+         }
+         else if ("RuntimeVisibleParameterAnnotations".equals(name) ||
+                  "RuntimeInvisibleParameterAnnotations".equals(name))
+         {
+            int parameters = readU1(start);
+            int p = start + 1;
+            for (int j = 0; j < parameters; j++)
+            {
+               p = annotations(p);
+            }
+         }
+         else if ("RuntimeVisibleTypeAnnotations".equals(name) || "RuntimeInvisibleTypeAnnotations".equals(name))
+         {
+            typeAnnotations(start);
+         }
+         else if ("Code".equals(name) && !code)
+         {
+            int codeLength = readInt(start + 4);
+            int exceptions = readU2(start + 8 + codeLength);
+            attributes(start + 10 + codeLength + exceptions * 8, true);
+         }
+
+         pos = start + attributeLength;
+      }
+
+      return pos;
+   }
+
+   /**
+    * Read an annotation array
+    *
+    * @param pos The offset of the annotation count
+    * @return The offset after the annotations
+    * @exception IOException If the class file isn't supported
+    */
+   private int annotations(int pos) throws IOException
+   {
+      int count = readU2(pos);
+      pos += 2;
+
+      for (int i = 0; i < count; i++)
+      {
+         pos = annotation(pos);
+      }
+
+      return pos;
+   }
+
+   /**
+    * Read a type annotation array
+    *
+    * @param pos The offset of the annotation count
+    * @exception IOException If the class file isn't supported
+    */
+   private void typeAnnotations(int pos) throws IOException
+   {
+      int count = readU2(pos);
+      pos += 2;
+
+      for (int i = 0; i < count; i++)
+      {
+         int targetType = readU1(pos);
+         pos++;
+
+         switch (targetType)
+         {
+            case 0x00:
+            case 0x01:
+            case 0x16:
+               pos += 1;
+               break;
+            case 0x10:
+            case 0x11:
+            case 0x12:
+            case 0x17:
+            case 0x42:
+            case 0x43:
+            case 0x44:
+            case 0x45:
+            case 0x46:
+               pos += 2;
+               break;
+            case 0x13:
+            case 0x14:
+            case 0x15:
+               break;
+            case 0x40:
+            case 0x41:
+               pos += 2 + readU2(pos) * 6;
+               break;
+            case 0x47:
+            case 0x48:
+            case 0x49:
+            case 0x4a:
+            case 0x4b:
+               pos += 3;
+               break;
+            default:
+               throw new IOException("invalid target type: " + targetType);
+         }
+
+         pos += 1 + readU1(pos) * 2;
+         pos = annotation(pos);
+      }
+   }
+
+   /**
+    * Read an annotation
+    *
+    * @param pos The offset of the annotation
+    * @return The offset after the annotation
+    * @exception IOException If the class file isn't supported
+    */
+   private int annotation(int pos) throws IOException
+   {
+      addDescriptor(utf8(readU2(pos)));
+
+      int pairs = readU2(pos + 2);
+      pos += 4;
+
+      for (int i = 0; i < pairs; i++)
+      {
+         pos = elementValue(pos + 2);
+      }
+
+      return pos;
+   }
+
+   /**
+    * Read an annotation element value
+    *
+    * @param pos The offset of the element value
+    * @return The offset after the element value
+    * @exception IOException If the class file isn't supported
+    */
+   private int elementValue(int pos) throws IOException
+   {
+      int tag = readU1(pos);
+
+      if (tag == 'e' || tag == 'c')
+      {
+         addDescriptor(utf8(readU2(pos + 1)));
+         return pos + (tag == 'e' ? 5 : 3);
+      }
+      else if (tag == '@')
+      {
+         return annotation(pos + 1);
+      }
+      else if (tag == '[')
+      {
+         int count = readU2(pos + 1);
+         pos += 3;
+         for (int i = 0; i < count; i++)
+         {
+            pos = elementValue(pos);
+         }
+         return pos;
+      }
+
+      return pos + 3;
+   }
+
+   /**
+    * Add the classes of a descriptor; the descriptor is scanned the same way as Javassist does
+    *
+    * @param desc The descriptor
+    */
+   private void addDescriptor(String desc)
+   {
+      int i = 0;
+      for (;;)
+      {
+         int j = desc.indexOf('L', i);
+         if (j < 0)
+         {
+            break;
+         }
+
+         int k = desc.indexOf(';', j);
+         if (k < 0)
+         {
+            break;
+         }
+
+         i = k + 1;
+         addClass(desc.substring(j + 1, k));
+      }
+   }
+
+   /**
+    * Add a class
+    *
+    * @param internalName The class name with '/' separators
+    */
+   private void addClass(String internalName)
+   {
+      refClasses.add(internalName.replace('/', '.'));
+   }
+
+   /**
+    * Decode a CONSTANT_Utf8 entry
+    *
+    * @param index The constant pool index
+    * @return The value
+    * @exception IOException If the entry isn't a valid CONSTANT_Utf8
+    */
+   private String utf8(int index) throws IOException
+   {
+      if (index <= 0 || index >= constantPoolCount || tags[index] != CONSTANT_UTF8)
+      {
+         throw new IOException("not a CONSTANT_Utf8 entry: " + index);
+      }
+
+      int pos = offsets[index];
+      int len = readU2(pos);
+      pos += 2;
+      int end = pos + len;
+      if (end > length)
+      {
+         throw new IOException("truncated class file");
+      }
+
+      if (chars.length < len)
+      {
+         chars = new char[len];
+      }
+
+      int n = 0;
+      while (pos < end)
+      {
+         int c = buffer[pos++] & 0xFF;
+         if (c < 0x80)
+         {
+            chars[n++] = (char) c;
+         }
+         else if ((c & 0xE0) == 0xC0 && pos < end)
+         {
+            chars[n++] = (char) (((c & 0x1F) << 6) | (buffer[pos++] & 0x3F));
+         }
+         else if ((c & 0xF0) == 0xE0 && pos + 1 < end)
+         {
+            chars[n++] = (char) (((c & 0x0F) << 12) | ((buffer[pos] & 0x3F) << 6) | (buffer[pos + 1] & 0x3F));
+            pos += 2;
+         }
+         else
+         {
+            throw new UTFDataFormatException("malformed CONSTANT_Utf8 entry: " + index);
+         }
+      }
+
+      return new String(chars, 0, n);
+   }
+
+   /**
+    * Read an unsigned byte
+    *
+    * @param pos The offset
+    * @return The value
+    * @exception IOException If the offset is past the end of the class file
+    */
+   private int readU1(int pos) throws IOException
+   {
+      if (pos >= length)
+      {
+         throw new IOException("truncated class file");
+      }
+      return buffer[pos] & 0xFF;
+   }
+
+   /**
+    * Read an unsigned short
+    *
+    * @param pos The offset
+    * @return The value
+    * @exception IOException If the offset is past the end of the class file
+    */
+   private int readU2(int pos) throws IOException
+   {
+      if (pos + 1 >= length)
+      {
+         throw new IOException("truncated class file");
+      }
+      return ((buffer[pos] & 0xFF) << 8) | (buffer[pos + 1] & 0xFF);
+   }
+
+   /**
+    * Read an int
+    *
+    * @param pos The offset
+    * @return The value
+    * @exception IOException If the offset is past the end of the class file
+    */
+   private int readInt(int pos) throws IOException
+   {
+      if (pos + 3 >= length)
+      {
+         throw new IOException("truncated class file");
+      }
+      return ((buffer[pos] & 0xFF) << 24) | ((buffer[pos + 1] & 0xFF) << 16) |
+             ((buffer[pos + 2] & 0xFF) << 8) | (buffer[pos + 3] & 0xFF);
+   }
+}
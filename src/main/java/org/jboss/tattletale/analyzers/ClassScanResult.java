@@ -0,0 +1,193 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.analyzers;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The classes found while scanning an archive: what they provide, require and depend on.
+ * <p>
+ * Partial results of a chunked scan are combined with {@link #merge(ClassScanResult)}.
+ */
+public class ClassScanResult
+{
+   /** Class version of the first scanned class */
+   private Integer classVersion;
+
+   /** Provides */
+   private final SortedMap<String, Long> provides;
+
+   /** Requires */
+   private final SortedSet<String> requires;
+
+   /** Profiles */
+   private final SortedSet<String> profiles;
+
+   /** Class dependencies */
+   private final SortedMap<String, SortedSet<String>> classDependencies;
+
+   /** Package dependencies */
+   private final SortedMap<String, SortedSet<String>> packageDependencies;
+
+   /** Blacklisted dependencies */
+   private final SortedMap<String, SortedSet<String>> blacklistedDependencies;
+
+   /** Constructor */
+   public ClassScanResult()
+   {
+      this.classVersion = null;
+      this.provides = new TreeMap<>();
+      this.requires = new TreeSet<>();
+      this.profiles = new TreeSet<>();
+      this.classDependencies = new TreeMap<>();
+      this.packageDependencies = new TreeMap<>();
+      this.blacklistedDependencies = new TreeMap<>();
+   }
+
+   /**
+    * Get the class version
+    *
+    * @return The value; <code>null</code> if no class has been scanned
+    */
+   public Integer getClassVersion()
+   {
+      return classVersion;
+   }
+
+   /**
+    * Set the class version
+    *
+    * @param classVersion The value
+    */
+   public void setClassVersion(Integer classVersion)
+   {
+      this.classVersion = classVersion;
+   }
+
+   /**
+    * Get the provides
+    *
+    * @return The value
+    */
+   public SortedMap<String, Long> getProvides()
+   {
+      return provides;
+   }
+
+   /**
+    * Get the requires
+    *
+    * @return The value
+    */
+   public SortedSet<String> getRequires()
+   {
+      return requires;
+   }
+
+   /**
+    * Get the profiles
+    *
+    * @return The value
+    */
+   public SortedSet<String> getProfiles()
+   {
+      return profiles;
+   }
+
+   /**
+    * Get the class dependencies
+    *
+    * @return The value
+    */
+   public SortedMap<String, SortedSet<String>> getClassDependencies()
+   {
+      return classDependencies;
+   }
+
+   /**
+    * Get the package dependencies
+    *
+    * @return The value
+    */
+   public SortedMap<String, SortedSet<String>> getPackageDependencies()
+   {
+      return packageDependencies;
+   }
+
+   /**
+    * Get the blacklisted dependencies
+    *
+    * @return The value
+    */
+   public SortedMap<String, SortedSet<String>> getBlacklistedDependencies()
+   {
+      return blacklistedDependencies;
+   }
+
+   /**
+    * Merge a partial result that was scanned from later entries of the same archive
+    *
+    * @param other The partial result
+    */
+   public void merge(ClassScanResult other)
+   {
+      if (classVersion == null)
+      {
+         classVersion = other.classVersion;
+      }
+
+      provides.putAll(other.provides);
+      requires.addAll(other.requires);
+      profiles.addAll(other.profiles);
+      mergeDependencies(classDependencies, other.classDependencies);
+      mergeDependencies(packageDependencies, other.packageDependencies);
+      mergeDependencies(blacklistedDependencies, other.blacklistedDependencies);
+   }
+
+   /**
+    * Merge a dependency map into another
+    *
+    * @param target The target map
+    * @param source The source map
+    */
+   private static void mergeDependencies(SortedMap<String, SortedSet<String>> target,
+                                         SortedMap<String, SortedSet<String>> source)
+   {
+      for (Map.Entry<String, SortedSet<String>> entry : source.entrySet())
+      {
+         SortedSet<String> deps = target.get(entry.getKey());
+         if (deps == null)
+         {
+            target.put(entry.getKey(), entry.getValue());
+         }
+         else
+         {
+            deps.addAll(entry.getValue());
+         }
+      }
+   }
+}
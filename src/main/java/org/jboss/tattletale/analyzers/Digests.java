@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.analyzers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Content hashes of files and archives
+ */
+final class Digests
+{
+   /** Constructor */
+   private Digests()
+   {
+   }
+
+   /**
+    * Compute the SHA-1 of a file
+    *
+    * @param file The file
+    * @return The hash as hex string
+    * @exception IOException If the file can't be read
+    */
+   static String sha1(File file) throws IOException
+   {
+      MessageDigest md = sha1();
+
+      try (InputStream is = new FileInputStream(file))
+      {
+         byte[] buffer = new byte[65536];
+         int n;
+         while ((n = is.read(buffer)) != -1)
+         {
+            md.update(buffer, 0, n);
+         }
+      }
+
+      return toHex(md.digest());
+   }
+
+   /**
+    * Compute a fingerprint of an archive from its central directory: the name, CRC and size of
+    * every entry. Only the central directory is read, so this is much cheaper than hashing the file.
+    *
+    * @param file The archive
+    * @return The fingerprint as hex string
+    * @exception IOException If the file isn't an archive
+    */
+   static String centralDirectory(File file) throws IOException
+   {
+      MessageDigest md = sha1();
+
+      try (ZipFile zipFile = new ZipFile(file))
+      {
+         Enumeration<? extends ZipEntry> entries = zipFile.entries();
+         while (entries.hasMoreElements())
+         {
+            ZipEntry entry = entries.nextElement();
+            md.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(Long.toHexString(entry.getCrc()).getBytes(StandardCharsets.US_ASCII));
+            md.update((byte) ':');
+            md.update(Long.toHexString(entry.getSize()).getBytes(StandardCharsets.US_ASCII));
+            md.update((byte) 0);
+         }
+      }
+
+      return toHex(md.digest());
+   }
+
+   /**
+    * Get a SHA-1 digest
+    *
+    * @return The digest
+    */
+   static MessageDigest sha1()
+   {
+      try
+      {
+         return MessageDigest.getInstance("SHA-1");
+      }
+      catch (NoSuchAlgorithmException nsae)
+      {
+         throw new IllegalStateException(nsae);
+      }
+   }
+
+   /**
+    * Convert bytes to a hex string
+    *
+    * @param bytes The bytes
+    * @return The hex string
+    */
+   static String toHex(byte[] bytes)
+   {
+      StringBuilder sb = new StringBuilder(bytes.length * 2);
+      for (byte b : bytes)
+      {
+         sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+         sb.append(Character.forDigit(b & 0xF, 16));
+      }
+      return sb.toString();
+   }
+}
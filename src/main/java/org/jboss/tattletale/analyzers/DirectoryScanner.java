@@ -19,48 +19,134 @@
  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
  */
+
 package org.jboss.tattletale.analyzers;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+
+import org.jboss.tattletale.utils.Metrics;
 
 /**
  * Directory scanner
+ * <p>
+ * Directories are listed in parallel, with the attributes of every file read once, and the
+ * archives found are handed over as soon as all paths sorting before them are known. Files are
+ * delivered in the order of their paths, so the result is the same as sorting the full listing.
  *
  * @author Jesper Pedersen <jesper.pedersen@jboss.org>
  */
 public class DirectoryScanner
 {
+   /** Sorts directory entries so that a depth-first walk yields the files in path order */
+   private static final Comparator<Entry> ENTRY_ORDER = new Comparator<Entry>()
+   {
+      @Override
+      public int compare(Entry e1, Entry e2)
+      {
+         return e1.key.compareTo(e2.key);
+      }
+   };
+
+   /** Archive types scanned by the deprecated static methods; <code>null</code> for the default */
+   private static volatile String defaultArchives;
+
    /** Archives types that should be scanned */
-   private static Set<String> archives = new HashSet<String>();
+   private final Set<String> archives;
+
+   /** The excludes; <code>null</code> if there are none */
+   private final Pattern excludes;
+
+   /** Number of directory listing threads */
+   private final int threads;
 
-   static
+   /**
+    * Constructor
+    *
+    * @param scan     The archive types that should be scanned, as comma separated list of extensions
+    * @param excludes The set of excludes; <code>null</code> if there are none
+    * @param threads  The number of directory listing threads
+    */
+   public DirectoryScanner(String scan, Set<String> excludes, int threads)
    {
-      archives.add(".jar");
-      archives.add(".war");
+      this.archives = parseArchives(scan);
+      this.excludes = compileExcludes(excludes);
+      this.threads = Math.max(1, threads);
    }
 
-   /** Constructor */
-   private DirectoryScanner()
+   /**
+    * Set the archive types scanned by the deprecated static methods
+    *
+    * @param scan The archive types, as comma separated list of extensions
+    * @deprecated Use {@link #DirectoryScanner(String, Set, int)}
+    */
+   @Deprecated
+   public static void setArchives(String scan)
    {
+      defaultArchives = scan;
    }
 
    /**
-    * Set archives
+    * Scan a directory for archives
     *
-    * @param scan The archives
+    * @param file The root directory
+    * @return The sorted list of archives; <code>null</code> if the directory can't be read
+    * @deprecated Use {@link #scanArchives(File)}
     */
-   public static void setArchives(String scan)
+   @Deprecated
+   public static List<File> scan(File file)
    {
-      archives.clear();
+      return scan(file, null);
+   }
+
+   /**
+    * Scan a directory for archives
+    *
+    * @param file     The root directory
+    * @param excludes The set of excludes
+    * @return The sorted list of archives; <code>null</code> if the directory can't be read
+    * @deprecated Use {@link #scanArchives(File)}
+    */
+   @Deprecated
+   public static List<File> scan(File file, Set<String> excludes)
+   {
+      try
+      {
+         return new DirectoryScanner(defaultArchives, excludes, 1).scanArchives(file);
+      }
+      catch (IOException ioe)
+      {
+         System.err.println(ioe.getMessage());
+      }
+
+      return null;
+   }
+
+   /**
+    * Parse the archive types
+    *
+    * @param scan The archive types
+    * @return The extensions
+    */
+   private static Set<String> parseArchives(String scan)
+   {
+      Set<String> result = new HashSet<String>();
 
       if (scan != null)
       {
@@ -74,118 +160,283 @@ public class DirectoryScanner
                token = token.substring(1);
             }
 
-            archives.add(token.toLowerCase(Locale.US));
+            result.add(token.toLowerCase(Locale.US));
          }
       }
 
-      if (archives.isEmpty())
+      if (result.isEmpty())
       {
-         archives.add(".jar");
-         archives.add(".war");
+         result.add(".jar");
+         result.add(".war");
       }
+
+      return Collections.unmodifiableSet(result);
    }
 
    /**
-    * Scan a directory for JAR files
+    * Compile the excludes into a single pattern that is searched for in the path of each file.
+    * An exclude matches if it is part of the path; <code>*</code> and <code>?</code> match within
+    * a path element and <code>**</code> across path elements.
     *
-    * @param file The root directory
-    * @return The list of JAR files
+    * @param excludes The excludes
+    * @return The pattern; <code>null</code> if there are no excludes
     */
-   public static List<File> scan(File file)
+   private static Pattern compileExcludes(Set<String> excludes)
    {
-      return scan(file, null);
+      if (excludes == null || excludes.isEmpty())
+      {
+         return null;
+      }
+
+      StringBuilder regex = new StringBuilder();
+      for (String exclude : excludes)
+      {
+         if (regex.length() > 0)
+         {
+            regex.append('|');
+         }
+
+         int start = 0;
+         for (int i = 0; i < exclude.length(); i++)
+         {
+            char c = exclude.charAt(i);
+            if (c == '*' || c == '?')
+            {
+               if (i > start)
+               {
+                  regex.append(Pattern.quote(exclude.substring(start, i)));
+               }
+
+               if (c == '?')
+               {
+                  regex.append("[^/\\\\]");
+               }
+               else if (i + 1 < exclude.length() && exclude.charAt(i + 1) == '*')
+               {
+                  regex.append(".*");
+                  i++;
+               }
+               else
+               {
+                  regex.append("[^/\\\\]*");
+               }
+               start = i + 1;
+            }
+         }
+
+         if (start < exclude.length())
+         {
+            regex.append(Pattern.quote(exclude.substring(start)));
+         }
+      }
+
+      return Pattern.compile(regex.toString());
    }
 
+   /**
+    * Scan a directory for archives
+    *
+    * @param file The root directory
+    * @return The sorted list of archives
+    * @exception IOException If the directory can't be read
+    */
+   public List<File> scanArchives(File file) throws IOException
+   {
+      final List<File> result = new ArrayList<File>();
+
+      scanArchives(file, new DirectoryScanListener()
+      {
+         @Override
+         public void fileFound(File f)
+         {
+            result.add(f);
+         }
+      });
+
+      return result;
+   }
 
    /**
-    * Scan a directory for JAR files
+    * Scan a directory for archives, handing each archive to the listener as soon as it is known
     *
     * @param file     The root directory
-    * @param excludes The set of excludes
-    * @return The list of files
+    * @param listener The listener
+    * @exception IOException If the directory can't be read, or the listener fails
     */
-   public static List<File> scan(File file, Set<String> excludes)
+   public void scanArchives(File file, DirectoryScanListener listener) throws IOException
    {
+      ForkJoinPool pool = new ForkJoinPool(threads);
       try
       {
-         return getFileListing(file, excludes);
+         DirectoryTask root = new DirectoryTask(file);
+         pool.execute(root);
+         deliver(root, listener);
+      }
+      finally
+      {
+         pool.shutdownNow();
+      }
+   }
 
+   /**
+    * Hand the archives of a directory and its sub-directories to the listener, in path order
+    *
+    * @param task     The task listing the directory
+    * @param listener The listener
+    * @exception IOException If the listener fails
+    */
+   private void deliver(DirectoryTask task, DirectoryScanListener listener) throws IOException
+   {
+      List<Entry> entries;
+      try
+      {
+         entries = task.get();
       }
-      catch (Exception e)
+      catch (InterruptedException ie)
       {
-         System.err.println(e.getMessage());
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while scanning " + task.directory, ie);
+      }
+      catch (ExecutionException ee)
+      {
+         throw new IOException(ee.getCause());
       }
 
-      return null;
+      for (Entry entry : entries)
+      {
+         if (entry.subdirectory != null)
+         {
+            deliver(entry.subdirectory, listener);
+         }
+         else
+         {
+            listener.fileFound(entry.file);
+         }
+      }
    }
 
+   /**
+    * Is the file an archive that should be scanned
+    *
+    * @param name The file name
+    * @return True if the extension is one of the archive types
+    */
+   private boolean isArchive(String name)
+   {
+      int index = name.lastIndexOf('.');
+      return index != -1 && archives.contains(name.substring(index));
+   }
 
    /**
-    * Recursively walk a directory tree and return a List of all
-    * Files found; the List is sorted using File.compareTo().
+    * Is the path excluded
     *
-    * @param aStartingDir is a valid directory, which can be read.
-    * @param excludes     The set of excludes
-    * @return - the list of the files without the specific exclusions
-    * @throws Exception
+    * @param path The absolute path
+    * @return True if an exclude matches
     */
-   private static List<File> getFileListing(File aStartingDir, Set<String> excludes) throws Exception
+   private boolean isExcluded(String path)
    {
-      List<File> result = getFileListingNoSort(aStartingDir, excludes);
-      Collections.sort(result);
-      return result;
+      return excludes != null && excludes.matcher(path).find();
    }
 
-   private static List<File> getFileListingNoSort(File aStartingDir, Set<String> excludes) throws Exception
+   /**
+    * An archive, or a sub-directory being listed
+    */
+   private static class Entry
    {
-      List<File> result = new ArrayList<File>();
+      /** The sort key: the name, followed by a separator for directories */
+      private final String key;
 
-      File[] filesAndDirs = aStartingDir.listFiles();
+      /** The archive */
+      private final File file;
 
-      List<File> filesDirs = Arrays.asList(filesAndDirs);
+      /** The task listing the sub-directory */
+      private final DirectoryTask subdirectory;
 
-      for (File file : filesDirs)
+      /**
+       * Constructor
+       *
+       * @param key          The sort key
+       * @param file         The archive
+       * @param subdirectory The task listing the sub-directory
+       */
+      Entry(String key, File file, DirectoryTask subdirectory)
       {
-         if (file.isFile())
-         {
-            String extension = null;
+         this.key = key;
+         this.file = file;
+         this.subdirectory = subdirectory;
+      }
+   }
 
-            if (file.getName().lastIndexOf(".") != -1)
-            {
-               extension = file.getName().substring(file.getName().lastIndexOf("."));
-            }
+   /**
+    * Lists a directory; every sub-directory is forked as a task of its own
+    */
+   private class DirectoryTask extends RecursiveTask<List<Entry>>
+   {
+      /** The directory */
+      private final File directory;
+
+      /**
+       * Constructor
+       *
+       * @param directory The directory
+       */
+      DirectoryTask(File directory)
+      {
+         this.directory = directory;
+      }
 
-            if (extension != null && archives.contains(extension))
+      @Override
+      protected List<Entry> compute()
+      {
+         long start = System.nanoTime();
+         List<Entry> result = new ArrayList<Entry>();
+
+         try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toPath()))
+         {
+            for (Path path : stream)
             {
-               boolean include = true;
+               String name = path.getFileName().toString();
+               BasicFileAttributes attributes;
+               try
+               {
+                  attributes = Files.readAttributes(path, BasicFileAttributes.class);
+               }
+               catch (IOException ioe)
+               {
+                  // Dangling link
+                  continue;
+               }
 
-               if (excludes != null)
+               File file = new File(directory, name);
+               if (attributes.isRegularFile())
                {
-                  Iterator<String> it = excludes.iterator();
-                  while (include && it.hasNext())
+                  if (isArchive(name) && !isExcluded(file.getAbsolutePath()))
                   {
-                     String exclude = it.next();
-
-                     if (file.getName().equals(exclude) || file.getAbsolutePath().indexOf(exclude) != -1)
-                     {
-                        include = false;
-                     }
+                     result.add(new Entry(name, file, null));
                   }
                }
-
-               if (include)
+               else if (attributes.isDirectory())
                {
-                  result.add(file);
+                  // Everything below a directory whose path matches an exclude is excluded as well
+                  if (!isExcluded(file.getAbsolutePath() + File.separator))
+                  {
+                     DirectoryTask task = new DirectoryTask(file);
+                     task.fork();
+                     result.add(new Entry(name + "/", null, task));
+                  }
                }
             }
          }
-         else if (file.isDirectory())
+         catch (IOException ioe)
          {
-            List<File> deeperList = getFileListingNoSort(file, excludes);
-            result.addAll(deeperList);
+            System.err.println(directory + ": " + ioe.getMessage());
          }
-      }
 
-      return result;
+         Collections.sort(result, ENTRY_ORDER);
+
+         Metrics.count("directories", 1);
+         Metrics.threadTime("discovery", System.nanoTime() - start);
+         return result;
+      }
    }
 }
@@ -0,0 +1,67 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.analyzers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.tattletale.core.Archive;
+
+/**
+ * The nested archives scanned so far, by name and content hash, so that byte-identical
+ * copies in other archives don't have to be scanned again.
+ */
+class DuplicateArchives
+{
+   /** The first scanned archive of each name and content hash */
+   private final ConcurrentMap<String, Archive> archives;
+
+   /** Constructor */
+   DuplicateArchives()
+   {
+      this.archives = new ConcurrentHashMap<>();
+   }
+
+   /**
+    * Get a scanned archive
+    *
+    * @param name   The archive name
+    * @param digest The content hash
+    * @return The archive; <code>null</code> if no copy has been scanned yet
+    */
+   Archive get(String name, String digest)
+   {
+      return archives.get(name + "@" + digest);
+   }
+
+   /**
+    * Remember a scanned archive; the first one scanned is kept
+    *
+    * @param digest  The content hash
+    * @param archive The archive
+    */
+   void put(String digest, Archive archive)
+   {
+      archives.putIfAbsent(archive.getName() + "@" + digest, archive);
+   }
+}
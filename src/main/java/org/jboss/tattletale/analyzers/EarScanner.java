@@ -28,17 +28,14 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
 import org.jboss.tattletale.core.Archive;
@@ -87,60 +84,45 @@ public class EarScanner extends AbstractScanner
       if (ear == null || !ear.exists())
          return null;
 
+      ArchiveInput earInput;
+      try
+      {
+         earInput = ArchiveInput.open(ear);
+      }
+      catch (IOException ioe)
+      {
+         ioe.printStackTrace();
+         return null;
+      }
+
       EarArchive earArchive = null;
       List<Archive> subArchiveList = new ArrayList<>();
-      ArchiveScanner jarScanner = new JarScanner();
-      ArchiveScanner warScanner = new WarScanner();
-      JarFile earFile = null;
-      String name = ear.getName();
+      JarScanner jarScanner = new JarScanner();
+      WarScanner warScanner = new WarScanner();
+      jarScanner.setDuplicates(getDuplicates());
+      warScanner.setDuplicates(getDuplicates());
+      String name = earInput.getName();
       try
       {
-         String canonicalPath = ear.getCanonicalPath();
-         earFile = new JarFile(ear);
-         File extractedDir = ear.isFile() ? Extractor.extract(earFile) : ear;
-         Integer classVersion = null;
-         SortedSet<String> requires = new TreeSet<>();
-         SortedMap<String, Long> provides = new TreeMap<>();
-         SortedSet<String> profiles = new TreeSet<>();
-         SortedMap<String, SortedSet<String>> classDependencies = new TreeMap<>();
-         SortedMap<String, SortedSet<String>> packageDependencies = new TreeMap<>();
-         SortedMap<String, SortedSet<String>> blacklistedDependencies = new TreeMap<>();
+         String canonicalPath = earInput.getPath();
+         List<ClassEntry> classEntries = new ArrayList<>();
          List<String> lSign = null;
 
-         Enumeration<JarEntry> earEntries = earFile.entries();
+         JarEntry earEntry;
 
-         while (earEntries.hasMoreElements())
+         while ((earEntry = earInput.getNextEntry()) != null)
          {
-            JarEntry earEntry = earEntries.nextElement();
             String entryName = earEntry.getName();
-            InputStream entryStream = null;
-
             if (entryName.endsWith(".class"))
             {
-               try
-               {
-                  entryStream = earFile.getInputStream(earEntry);
-                  classVersion = scanClasses(entryStream, blacklisted, known, classVersion, provides,
-                        requires, profiles, classDependencies, packageDependencies, blacklistedDependencies);
-               }
-               catch (Exception openException)
-               {
-                  openException.printStackTrace();
-               }
-               finally
-               {
-                  if (entryStream != null)
-                  {
-                     entryStream.close();
-                  }
-               }
+               classEntries.add(earInput.getClassEntry(earEntry));
             }
             else if (entryName.contains("META-INF") && entryName.endsWith(".SF"))
             {
                InputStream is = null;
                try
                {
-                  is = earFile.getInputStream(earEntry);
+                  is = earInput.getInputStream(earEntry);
 
                   InputStreamReader isr = new InputStreamReader(is);
                   LineNumberReader lnr = new LineNumberReader(isr);
@@ -178,20 +160,28 @@ public class EarScanner extends AbstractScanner
             }
             else if (entryName.endsWith(".jar"))
             {
-               File jarFile = new File(extractedDir.getCanonicalPath(), entryName);
-               Archive jarArchive = jarScanner.scan(jarFile, gProvides, known, blacklisted);
+               Archive jarArchive = jarScanner.scan(earInput, earEntry, gProvides, known, blacklisted);
                if (jarArchive != null)
                   subArchiveList.add(jarArchive);
             }
             else if (entryName.endsWith(".war"))
             {
-               File warFile = new File(extractedDir.getCanonicalPath(), entryName);
-               Archive warArchive = warScanner.scan(warFile, gProvides, known, blacklisted);
+               Archive warArchive = warScanner.scan(earInput, earEntry, gProvides, known, blacklisted);
                if (warArchive != null)
                   subArchiveList.add(warArchive);
             }
          }
 
+         ClassScanResult classes = new ClassScanResult();
+         scanClasses(earInput, classEntries, blacklisted, known, classes);
+         Integer classVersion = classes.getClassVersion();
+         SortedSet<String> requires = classes.getRequires();
+         SortedMap<String, Long> provides = classes.getProvides();
+         SortedSet<String> profiles = classes.getProfiles();
+         SortedMap<String, SortedSet<String>> classDependencies = classes.getClassDependencies();
+         SortedMap<String, SortedSet<String>> packageDependencies = classes.getPackageDependencies();
+         SortedMap<String, SortedSet<String>> blacklistedDependencies = classes.getBlacklistedDependencies();
+
          if (provides.size() == 0 && subArchiveList.isEmpty())
          {
             return null;
@@ -199,7 +189,7 @@ public class EarScanner extends AbstractScanner
 
          String version = null;
          List<String> lManifest = null;
-         Manifest manifest = earFile.getManifest();
+         Manifest manifest = earInput.getManifest();
 
          if (manifest != null)
          {
@@ -254,10 +244,7 @@ public class EarScanner extends AbstractScanner
       {
          try
          {
-            if (earFile != null)
-            {
-               earFile.close();
-            }
+            earInput.close();
          }
          catch (IOException closeException)
          {
@@ -27,17 +27,14 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
 import org.jboss.tattletale.core.Archive;
@@ -75,58 +72,133 @@ public class JarScanner extends AbstractScanner
     */
    public Archive scan(File file, Map<String, SortedSet<String>> gProvides, List<Profile> known,
                        Set<String> blacklisted)
+   {
+      try
+      {
+         return scan(ArchiveInput.open(file), gProvides, known, blacklisted);
+      }
+      catch (IOException ioe)
+      {
+         ioe.printStackTrace();
+         // Probably not a JAR archive
+      }
+      return null;
+   }
+
+   /**
+    * Scan an archive nested inside another archive
+    *
+    * @param parent      The parent archive
+    * @param entry       The entry of the nested archive
+    * @param gProvides   The global provides map
+    * @param known       The set of known archives
+    * @param blacklisted The set of black listed packages
+    * @return The archive
+    */
+   Archive scan(ArchiveInput parent, JarEntry entry, Map<String, SortedSet<String>> gProvides, List<Profile> known,
+                Set<String> blacklisted)
+   {
+      try
+      {
+         ArchiveInput jarInput = parent.openNested(entry);
+         DuplicateArchives duplicates = getDuplicates();
+         if (duplicates == null)
+         {
+            return scan(jarInput, gProvides, known, blacklisted);
+         }
+
+         Archive original = duplicates.get(jarInput.getName(), jarInput.getDigest());
+         if (original != null)
+         {
+            jarInput.close();
+            return copy(original, jarInput.getPath(), gProvides);
+         }
+
+         Archive archive = scan(jarInput, gProvides, known, blacklisted);
+         if (archive != null)
+         {
+            duplicates.put(jarInput.getDigest(), archive);
+         }
+         return archive;
+      }
+      catch (IOException ioe)
+      {
+         ioe.printStackTrace();
+         // Probably not a JAR archive
+      }
+      return null;
+   }
+
+   /**
+    * Copy the archive scanned from a byte-identical copy to another location; the scanned
+    * data is shared, only the location and the parent archive differ
+    *
+    * @param original  The scanned archive
+    * @param path      The path of the copy
+    * @param gProvides The global provides map
+    * @return The archive
+    */
+   private Archive copy(Archive original, String path, Map<String, SortedSet<String>> gProvides)
+   {
+      String version = original.getLocations().first().getVersion();
+      Archive archive = new JarArchive(original.getName(), original.getVersion(), original.getManifest(),
+                                       original.getSign(), original.getRequires(), original.getProvides(),
+                                       original.getClassDependencies(), original.getPackageDependencies(),
+                                       original.getBlackListedDependencies(), new Location(path, version));
+      addProfilesToArchive(archive, original.getProfiles());
+
+      if (gProvides != null)
+      {
+         for (String provide : archive.getProvides().keySet())
+         {
+            SortedSet<String> ss = gProvides.get(provide);
+            if (ss == null)
+            {
+               ss = new TreeSet<String>();
+            }
+
+            ss.add(archive.getName());
+            gProvides.put(provide, ss);
+         }
+      }
+
+      return archive;
+   }
+
+   /**
+    * Scan an archive
+    *
+    * @param jarInput    The archive, which is closed afterwards
+    * @param gProvides   The global provides map
+    * @param known       The set of known archives
+    * @param blacklisted The set of black listed packages
+    * @return The archive
+    */
+   private Archive scan(ArchiveInput jarInput, Map<String, SortedSet<String>> gProvides, List<Profile> known,
+                        Set<String> blacklisted)
    {
       Archive archive = null;
-      JarFile jarFile = null;
-      String name = file.getName();
+      String name = jarInput.getName();
       try
       {
-         String canonicalPath = file.getCanonicalPath();
-         jarFile = new JarFile(file);
-         Integer classVersion = null;
-         SortedSet<String> requires = new TreeSet<String>();
-         SortedMap<String, Long> provides = new TreeMap<String, Long>();
-         SortedSet<String> profiles = new TreeSet<String>();
-         SortedMap<String, SortedSet<String>> classDependencies = new TreeMap<String, SortedSet<String>>();
-         SortedMap<String, SortedSet<String>> packageDependencies = new TreeMap<String, SortedSet<String>>();
-         SortedMap<String, SortedSet<String>> blacklistedDependencies = new TreeMap<String, SortedSet<String>>();
+         String canonicalPath = jarInput.getPath();
+         List<ClassEntry> classEntries = new ArrayList<ClassEntry>();
          List<String> lSign = null;
-         Enumeration<JarEntry> jarEntries = jarFile.entries();
+         JarEntry jarEntry;
 
-         while (jarEntries.hasMoreElements())
+         while ((jarEntry = jarInput.getNextEntry()) != null)
          {
-            JarEntry jarEntry = jarEntries.nextElement();
             String entryName = jarEntry.getName();
-            InputStream entryStream = null;
             if (entryName.endsWith(".class"))
             {
-               try
-               {
-                  entryStream = jarFile.getInputStream(jarEntry);
-                  classVersion = scanClasses(entryStream, blacklisted, known, classVersion, provides, requires,
-                        profiles, classDependencies, packageDependencies, blacklistedDependencies);
-               }
-               catch (Exception ie)
-               {
-            	  System.err.println("Error happened while scanning following class:");
-            	  System.err.println(jarFile.getName()+":"+jarEntry.getName());
-                  ie.printStackTrace();
-                  System.err.println("Continue to generate the rest of report, please wait ... ");
-               }
-               finally
-               {
-                  if (entryStream != null)
-                  {
-                     entryStream.close();
-                  }
-               }
+               classEntries.add(jarInput.getClassEntry(jarEntry));
             }
             else if (entryName.contains("META-INF") && entryName.endsWith(".SF"))
             {
                InputStream is = null;
                try
                {
-                  is = jarFile.getInputStream(jarEntry);
+                  is = jarInput.getInputStream(jarEntry);
 
                   InputStreamReader isr = new InputStreamReader(is);
                   LineNumberReader lnr = new LineNumberReader(isr);
@@ -164,6 +236,16 @@ public class JarScanner extends AbstractScanner
             }
          }
 
+         ClassScanResult classes = new ClassScanResult();
+         scanClasses(jarInput, classEntries, blacklisted, known, classes);
+         Integer classVersion = classes.getClassVersion();
+         SortedSet<String> requires = classes.getRequires();
+         SortedMap<String, Long> provides = classes.getProvides();
+         SortedSet<String> profiles = classes.getProfiles();
+         SortedMap<String, SortedSet<String>> classDependencies = classes.getClassDependencies();
+         SortedMap<String, SortedSet<String>> packageDependencies = classes.getPackageDependencies();
+         SortedMap<String, SortedSet<String>> blacklistedDependencies = classes.getBlacklistedDependencies();
+
          if (provides.size() == 0)
          {
             return null;
@@ -171,7 +253,7 @@ public class JarScanner extends AbstractScanner
 
          String version = null;
          List<String> lManifest = null;
-         Manifest manifest = jarFile.getManifest();
+         Manifest manifest = jarInput.getManifest();
          if (manifest != null)
          {
             version = versionFromManifest(manifest);
@@ -220,10 +302,7 @@ public class JarScanner extends AbstractScanner
       {
          try
          {
-            if (jarFile != null)
-            {
-               jarFile.close();
-            }
+            jarInput.close();
          }
          catch (IOException ioe)
          {
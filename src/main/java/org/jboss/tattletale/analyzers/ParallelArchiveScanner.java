@@ -0,0 +1,634 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.analyzers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jboss.tattletale.core.Archive;
+import org.jboss.tattletale.core.Location;
+import org.jboss.tattletale.profiles.Profile;
+import org.jboss.tattletale.utils.Metrics;
+
+/**
+ * Scans a list of files using a pool of worker threads.
+ * <p>
+ * Each file is scanned against its own global provides map, and the results are handed to an
+ * {@link ArchiveScanListener} in the order of the file list, so merging them yields exactly the
+ * same model as a sequential scan. Files can also be added to a {@link Session} while they are
+ * still being discovered.
+ * <p>
+ * Byte-identical copies of an archive are only scanned once: a file with the same name and the
+ * same content as an earlier file is reported to the listener as a copy of the earlier file, and
+ * nested archives are matched on their content hash while they are read.
+ */
+public class ParallelArchiveScanner
+{
+   private static final Logger logger = Logger.getLogger(ParallelArchiveScanner.class.getName());
+
+   /** Number of worker threads */
+   private final int threads;
+
+   /** Analyzer */
+   private final Analyzer analyzer;
+
+   /** Scan cache; may be <code>null</code> */
+   private final ScanCache cache;
+
+   /** Maximum number of files per worker thread that are added, but not handed to the listener yet */
+   private static final int PENDING_PER_THREAD = 4;
+
+   /**
+    * Constructor
+    *
+    * @param threads The number of worker threads; a value of 1 or less scans on the calling thread
+    */
+   public ParallelArchiveScanner(int threads)
+   {
+      this(threads, null);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param threads The number of worker threads; a value of 1 or less scans on the calling thread
+    * @param cache   The scan cache; <code>null</code> to scan every file
+    */
+   public ParallelArchiveScanner(int threads, ScanCache cache)
+   {
+      this.threads = threads;
+      this.analyzer = new Analyzer();
+      this.cache = cache;
+   }
+
+   /**
+    * Get the default number of worker threads
+    *
+    * @return The number of available processors
+    */
+   public static int getDefaultThreads()
+   {
+      return Runtime.getRuntime().availableProcessors();
+   }
+
+   /**
+    * Scan the files
+    *
+    * @param files       The files to scan
+    * @param known       The set of known archives
+    * @param blacklisted The set of black listed packages
+    * @param listener    The listener receiving the results, in file order
+    * @throws IOException Thrown if a scanner fails
+    */
+   public void scan(List<File> files, List<Profile> known, Set<String> blacklisted, ArchiveScanListener listener)
+      throws IOException
+   {
+      try (Session session = open(known, blacklisted, listener))
+      {
+         for (File file : files)
+         {
+            session.add(file);
+         }
+         session.finish();
+      }
+   }
+
+   /**
+    * Open a scan session that files can be added to while they are discovered
+    *
+    * @param known       The set of known archives
+    * @param blacklisted The set of black listed packages
+    * @param listener    The listener receiving the results, in the order the files are added
+    * @return The session
+    */
+   public Session open(List<Profile> known, Set<String> blacklisted, ArchiveScanListener listener)
+   {
+      return new Session(known, blacklisted, listener);
+   }
+
+   /**
+    * Hand a copy of an already scanned file to the listener
+    *
+    * @param file     The copy
+    * @param archive  The archive of the original; <code>null</code> if it had none
+    * @param listener The listener
+    * @throws IOException Thrown if the path of the copy can't be resolved
+    */
+   private void deliverCopy(File file, Archive archive, ArchiveScanListener listener) throws IOException
+   {
+      if (archive == null)
+      {
+         // the provides of the original have been merged already
+         listener.archiveScanned(file, null, new TreeMap<String, SortedSet<String>>());
+         return;
+      }
+
+      Metrics.count("copiedArchives", 1);
+      String version = archive.getLocations().first().getVersion();
+      listener.archiveCopied(file, archive, new Location(file.getCanonicalPath(), version));
+   }
+
+   /**
+    * Scan a single file
+    *
+    * @param file        The file
+    * @param gProvides   The global provides map
+    * @param known       The set of known archives
+    * @param blacklisted The set of black listed packages
+    * @param duplicates  The nested archives scanned so far
+    * @return The archive; <code>null</code> if there isn't a scanner for the file or it doesn't contain classes
+    * @throws IOException Thrown if the scanner fails
+    */
+   private Archive scan(File file, SortedMap<String, SortedSet<String>> gProvides, List<Profile> known,
+                        Set<String> blacklisted, DuplicateArchives duplicates) throws IOException
+   {
+      ArchiveScanner scanner = analyzer.getScanner(file);
+
+      if (scanner == null)
+      {
+         return null;
+      }
+
+      if (scanner instanceof AbstractScanner)
+      {
+         ((AbstractScanner) scanner).setDuplicates(duplicates);
+      }
+
+      long start = System.nanoTime();
+      Archive archive;
+
+      ScanCache.Entry entry = cache != null ? cache.load(file, gProvides) : null;
+      if (entry != null)
+      {
+         archive = entry.getArchive();
+         Metrics.count("cachedArchives", 1);
+      }
+      else
+      {
+         archive = scanner.scan(file, gProvides, known, blacklisted);
+         if (cache != null)
+         {
+            cache.store(file, archive, gProvides);
+         }
+      }
+
+      long nanos = System.nanoTime() - start;
+      Metrics.count("archives", 1);
+      Metrics.count("bytesRead", file.length());
+      Metrics.threadTime("archiveScan", nanos);
+      Metrics.archiveScanned(file.getPath(), nanos);
+      return archive;
+   }
+
+   /**
+    * A scan of files that are added one after the other. Files are scanned as soon as they are
+    * added, and the results are handed to the listener on the thread adding the files, in the
+    * order the files were added.
+    */
+   public class Session implements Closeable
+   {
+      /** The set of known archives */
+      private final List<Profile> known;
+
+      /** The set of black listed packages */
+      private final Set<String> blacklisted;
+
+      /** The listener */
+      private final ArchiveScanListener listener;
+
+      /** The worker threads; <code>null</code> when scanning on the calling thread */
+      private final ExecutorService executor;
+
+      /** The nested archives scanned so far */
+      private final DuplicateArchives duplicates;
+
+      /** The files that have been added, but not handed to the listener yet */
+      private final Deque<Pending> pending;
+
+      /** The maximum number of pending files */
+      private final int maxPending;
+
+      /** The files that have been scanned, by file name */
+      private final Map<String, List<Fingerprint>> scanned;
+
+      /**
+       * Constructor
+       *
+       * @param known       The set of known archives
+       * @param blacklisted The set of black listed packages
+       * @param listener    The listener
+       */
+      Session(List<Profile> known, Set<String> blacklisted, ArchiveScanListener listener)
+      {
+         this.known = known;
+         this.blacklisted = blacklisted;
+         this.listener = listener;
+         this.duplicates = new DuplicateArchives();
+         this.pending = new ArrayDeque<>();
+         this.scanned = new HashMap<>();
+
+         if (threads > 1)
+         {
+            logger.log(Level.INFO, "Scanning with {0} threads", threads);
+            this.executor = Executors.newFixedThreadPool(threads, new ScannerThreadFactory());
+            this.maxPending = threads * PENDING_PER_THREAD;
+         }
+         else
+         {
+            this.executor = null;
+            this.maxPending = 1;
+         }
+      }
+
+      /**
+       * Add a file; the results of the files scanned so far are handed to the listener. When too
+       * many files are pending, this waits for the oldest ones, so that a fast producer can't get
+       * ahead of the scanners by more than a few files per thread.
+       *
+       * @param file The file
+       * @throws IOException Thrown if a scanner fails
+       */
+      public void add(File file) throws IOException
+      {
+         Pending p = new Pending(new Fingerprint(file));
+         p.original = findOriginal(p.fingerprint);
+
+         if (p.original == null)
+         {
+            ScanTask task = new ScanTask(file, known, blacklisted, duplicates);
+            if (executor != null)
+            {
+               p.future = executor.submit(task);
+            }
+            else
+            {
+               p.result = task.call();
+            }
+         }
+
+         pending.add(p);
+         deliver(false);
+
+         while (pending.size() >= maxPending)
+         {
+            deliverNext(true);
+         }
+      }
+
+      /**
+       * Wait for all files to be scanned and hand the results to the listener
+       *
+       * @throws IOException Thrown if a scanner fails
+       */
+      public void finish() throws IOException
+      {
+         deliver(true);
+      }
+
+      @Override
+      public void close()
+      {
+         if (executor != null)
+         {
+            executor.shutdownNow();
+         }
+      }
+
+      /**
+       * Hand the results to the listener, in the order the files were added
+       *
+       * @param wait Whether to wait for the files that are still being scanned
+       * @throws IOException Thrown if a scanner failed
+       */
+      private void deliver(boolean wait) throws IOException
+      {
+         while (!pending.isEmpty() && deliverNext(wait))
+         {
+            // Next
+         }
+      }
+
+      /**
+       * Hand the result of the oldest pending file to the listener
+       *
+       * @param wait Whether to wait for the file if it is still being scanned
+       * @return True if the result was handed over
+       * @throws IOException Thrown if the scanner failed
+       */
+      private boolean deliverNext(boolean wait) throws IOException
+      {
+         Pending p = pending.peek();
+
+         if (p.original != null)
+         {
+            deliverCopy(p.fingerprint.file, p.original.archive, listener);
+         }
+         else
+         {
+            if (p.result == null)
+            {
+               if (!wait && !p.future.isDone())
+               {
+                  return false;
+               }
+               p.result = getResult(p.future);
+               p.future = null;
+            }
+            listener.archiveScanned(p.fingerprint.file, p.result.archive, p.result.gProvides);
+
+            // only the archive is kept for the copies still to come
+            p.fingerprint.archive = p.result.archive;
+         }
+
+         pending.remove();
+         return true;
+      }
+
+      /**
+       * Find the file that a file is a byte-identical copy of. Only files with the same name are
+       * compared, first on the central directory of the archive and then on the content hash.
+       * The hash of each file is computed at most once.
+       *
+       * @param p The file
+       * @return The earlier file; <code>null</code> if the file isn't a copy
+       */
+      private Fingerprint findOriginal(Fingerprint p)
+      {
+         String name = p.file.getName();
+         List<Fingerprint> candidates = scanned.get(name);
+
+         if (candidates == null)
+         {
+            candidates = new ArrayList<>(1);
+            scanned.put(name, candidates);
+         }
+         else if (p.getKey() != null)
+         {
+            for (Fingerprint candidate : candidates)
+            {
+               if (p.getKey().equals(candidate.getKey()))
+               {
+                  try
+                  {
+                     if (candidate.getDigest().equals(p.getDigest()))
+                     {
+                        return candidate;
+                     }
+                  }
+                  catch (IOException ioe)
+                  {
+                     // Scan it on its own
+                  }
+               }
+            }
+         }
+
+         candidates.add(p);
+         return null;
+      }
+   }
+
+   /**
+    * A file that has been added to a session and is waiting to be handed to the listener
+    */
+   private static class Pending
+   {
+      /** The file */
+      private final Fingerprint fingerprint;
+
+      /** The file this is a copy of; <code>null</code> if it is scanned */
+      private Fingerprint original;
+
+      /** The scan in progress */
+      private Future<ScanResult> future;
+
+      /** The result */
+      private ScanResult result;
+
+      /**
+       * Constructor
+       *
+       * @param fingerprint The file
+       */
+      Pending(Fingerprint fingerprint)
+      {
+         this.fingerprint = fingerprint;
+      }
+   }
+
+   /**
+    * What is kept of a file for the whole session to match later copies against it
+    */
+   private static class Fingerprint
+   {
+      /** The file */
+      private final File file;
+
+      /** The length and central directory fingerprint; computed on demand */
+      private String key;
+
+      /** The content hash; computed on demand */
+      private String digest;
+
+      /** The archive, once handed to the listener; <code>null</code> if it has none */
+      private Archive archive;
+
+      /**
+       * Constructor
+       *
+       * @param file The file
+       */
+      Fingerprint(File file)
+      {
+         this.file = file;
+      }
+
+      /**
+       * Get the key that copies are matched on
+       *
+       * @return The key; <code>null</code> if the file isn't an archive
+       */
+      String getKey()
+      {
+         if (key == null)
+         {
+            try
+            {
+               key = file.isFile() ? file.length() + ":" + Digests.centralDirectory(file) : "";
+            }
+            catch (IOException ioe)
+            {
+               key = "";
+            }
+         }
+         return key.isEmpty() ? null : key;
+      }
+
+      /**
+       * Get the content hash
+       *
+       * @return The SHA-1 as hex string
+       * @throws IOException Thrown if the file can't be read
+       */
+      String getDigest() throws IOException
+      {
+         if (digest == null)
+         {
+            digest = Digests.sha1(file);
+         }
+         return digest;
+      }
+   }
+
+   /**
+    * Wait for a scan result
+    *
+    * @param future The future
+    * @return The result
+    * @throws IOException Thrown if the scanner failed
+    */
+   private ScanResult getResult(Future<ScanResult> future) throws IOException
+   {
+      try
+      {
+         return future.get();
+      }
+      catch (InterruptedException ie)
+      {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while scanning", ie);
+      }
+      catch (ExecutionException ee)
+      {
+         Throwable cause = ee.getCause();
+         if (cause instanceof IOException)
+         {
+            throw (IOException) cause;
+         }
+         if (cause instanceof RuntimeException)
+         {
+            throw (RuntimeException) cause;
+         }
+         if (cause instanceof Error)
+         {
+            throw (Error) cause;
+         }
+         throw new IOException(cause);
+      }
+   }
+
+   /**
+    * The result of scanning a file
+    */
+   private static class ScanResult
+   {
+      /** The archive */
+      private final Archive archive;
+
+      /** The provides of the archive */
+      private final SortedMap<String, SortedSet<String>> gProvides;
+
+      /**
+       * Constructor
+       *
+       * @param archive   The archive
+       * @param gProvides The provides of the archive
+       */
+      ScanResult(Archive archive, SortedMap<String, SortedSet<String>> gProvides)
+      {
+         this.archive = archive;
+         this.gProvides = gProvides;
+      }
+   }
+
+   /**
+    * Scans a single file on a worker thread
+    */
+   private class ScanTask implements Callable<ScanResult>
+   {
+      private final File file;
+      private final List<Profile> known;
+      private final Set<String> blacklisted;
+      private final DuplicateArchives duplicates;
+
+      /**
+       * Constructor
+       *
+       * @param file        The file
+       * @param known       The set of known archives
+       * @param blacklisted The set of black listed packages
+       * @param duplicates  The nested archives scanned so far
+       */
+      ScanTask(File file, List<Profile> known, Set<String> blacklisted, DuplicateArchives duplicates)
+      {
+         this.file = file;
+         this.known = known;
+         this.blacklisted = blacklisted;
+         this.duplicates = duplicates;
+      }
+
+      @Override
+      public ScanResult call() throws IOException
+      {
+         SortedMap<String, SortedSet<String>> gProvides = new TreeMap<>();
+         Archive archive = scan(file, gProvides, known, blacklisted, duplicates);
+         return new ScanResult(archive, gProvides);
+      }
+   }
+
+   /**
+    * Creates named daemon threads for the scanner pool
+    */
+   private static class ScannerThreadFactory implements ThreadFactory
+   {
+      private final AtomicInteger counter = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r)
+      {
+         Thread t = new Thread(r, "tattletale-scanner-" + counter.incrementAndGet());
+         t.setDaemon(true);
+         return t;
+      }
+   }
+}
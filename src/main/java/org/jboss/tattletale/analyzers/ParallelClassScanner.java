@@ -0,0 +1,197 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.analyzers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.tattletale.profiles.Profile;
+
+/**
+ * Splits the class entries of a large archive across a shared pool of threads.
+ * <p>
+ * Every chunk of entries is parsed into its own {@link ClassScanResult}, and the partial results
+ * are merged in entry order, so the outcome is the same as scanning the entries one by one.
+ */
+public class ParallelClassScanner
+{
+   /** Archives with fewer class entries than this are scanned on the calling thread */
+   private static final int MIN_ENTRIES_PER_CHUNK = 256;
+
+   /** Number of class parsing threads */
+   private static int threads = Runtime.getRuntime().availableProcessors();
+
+   /** The shared class parsing pool */
+   private static ExecutorService executor = null;
+
+   /** Constructor */
+   private ParallelClassScanner()
+   {
+   }
+
+   /**
+    * Set the number of class parsing threads
+    *
+    * @param value The value; 1 or less disables parallel class parsing
+    */
+   public static synchronized void setThreads(int value)
+   {
+      if (value != threads && executor != null)
+      {
+         executor.shutdown();
+         executor = null;
+      }
+      threads = value;
+   }
+
+   /**
+    * Scan the class entries of an archive
+    *
+    * @param scanner      The scanner
+    * @param input        The archive
+    * @param classEntries The class entries, in archive order
+    * @param blacklisted  The set of black listed packages
+    * @param known        The set of known archives
+    * @param result       The result that the entries are added to
+    */
+   static void scan(AbstractScanner scanner, ArchiveInput input, List<ClassEntry> classEntries,
+                    Set<String> blacklisted, List<Profile> known, ClassScanResult result)
+   {
+      int chunks = Math.min(getThreads(), classEntries.size() / MIN_ENTRIES_PER_CHUNK);
+
+      if (chunks <= 1)
+      {
+         scanner.scanClassEntries(input, classEntries, blacklisted, known, result);
+         return;
+      }
+
+      ExecutorService pool = getExecutor();
+      List<Future<ClassScanResult>> futures = new ArrayList<>(chunks);
+      int size = classEntries.size();
+
+      for (int i = 0; i < chunks; i++)
+      {
+         List<ClassEntry> chunk = classEntries.subList(i * size / chunks, (i + 1) * size / chunks);
+         futures.add(pool.submit(new ChunkTask(scanner, input, chunk, blacklisted, known)));
+      }
+
+      for (Future<ClassScanResult> future : futures)
+      {
+         try
+         {
+            result.merge(future.get());
+         }
+         catch (InterruptedException ie)
+         {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning " + input.getPath(), ie);
+         }
+         catch (ExecutionException ee)
+         {
+            throw new IllegalStateException("Failed to scan " + input.getPath(), ee.getCause());
+         }
+      }
+   }
+
+   /**
+    * Get the number of class parsing threads
+    *
+    * @return The value
+    */
+   private static synchronized int getThreads()
+   {
+      return threads;
+   }
+
+   /**
+    * Get the shared class parsing pool
+    *
+    * @return The pool
+    */
+   private static synchronized ExecutorService getExecutor()
+   {
+      if (executor == null)
+      {
+         executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+         {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+               Thread t = new Thread(r, "tattletale-class-scanner-" + counter.incrementAndGet());
+               t.setDaemon(true);
+               return t;
+            }
+         });
+      }
+      return executor;
+   }
+
+   /**
+    * Parses one chunk of class entries into a partial result
+    */
+   private static class ChunkTask implements Callable<ClassScanResult>
+   {
+      private final AbstractScanner scanner;
+      private final ArchiveInput input;
+      private final List<ClassEntry> entries;
+      private final Set<String> blacklisted;
+      private final List<Profile> known;
+
+      /**
+       * Constructor
+       *
+       * @param scanner     The scanner
+       * @param input       The archive
+       * @param entries     The class entries of this chunk
+       * @param blacklisted The set of black listed packages
+       * @param known       The set of known archives
+       */
+      ChunkTask(AbstractScanner scanner, ArchiveInput input, List<ClassEntry> entries, Set<String> blacklisted,
+                List<Profile> known)
+      {
+         this.scanner = scanner;
+         this.input = input;
+         this.entries = entries;
+         this.blacklisted = blacklisted;
+         this.known = known;
+      }
+
+      @Override
+      public ClassScanResult call()
+      {
+         ClassScanResult partial = new ClassScanResult();
+         scanner.scanClassEntries(input, entries, blacklisted, known, partial);
+         return partial;
+      }
+   }
+}
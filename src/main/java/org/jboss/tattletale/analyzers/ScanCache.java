@@ -0,0 +1,266 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.analyzers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jboss.tattletale.Version;
+import org.jboss.tattletale.core.Archive;
+import org.jboss.tattletale.profiles.Profile;
+
+/**
+ * On-disk cache of archive scan results.
+ * <p>
+ * Every scanned file gets one cache file holding its {@link Archive} and its global provides.
+ * An entry is used when the canonical path and the size of the file are unchanged and either the
+ * modification time or the content hash still match. Entries written by another cache format,
+ * another Tattletale version, or with other profiles or black listed packages are ignored.
+ */
+public class ScanCache
+{
+   private static final Logger logger = Logger.getLogger(ScanCache.class.getName());
+
+   /** Cache format version; increase it whenever the layout of a cache file changes */
+   static final int FORMAT_VERSION = 1;
+
+   /** The cache directory */
+   private final File directory;
+
+   /** Profiles and black listed packages the results depend on */
+   private final String settings;
+
+   /** Hits */
+   private final AtomicInteger hits;
+
+   /** Misses */
+   private final AtomicInteger misses;
+
+   /**
+    * Constructor
+    *
+    * @param directory   The cache directory; created if needed
+    * @param known       The set of known archives
+    * @param blacklisted The set of black listed packages
+    * @exception IOException If the directory can't be created
+    */
+   public ScanCache(File directory, List<Profile> known, Set<String> blacklisted) throws IOException
+   {
+      if (!directory.isDirectory() && !directory.mkdirs())
+      {
+         throw new IOException("Could not create " + directory);
+      }
+
+      StringBuilder sb = new StringBuilder();
+      if (known != null)
+      {
+         for (Profile profile : known)
+         {
+            sb.append(profile.getName()).append(',');
+         }
+      }
+      sb.append('|');
+      if (blacklisted != null)
+      {
+         for (String bl : new TreeSet<>(blacklisted))
+         {
+            sb.append(bl).append(',');
+         }
+      }
+
+      this.directory = directory;
+      this.settings = sb.toString();
+      this.hits = new AtomicInteger();
+      this.misses = new AtomicInteger();
+   }
+
+   /**
+    * Load the scan result of a file
+    *
+    * @param file      The file
+    * @param gProvides The global provides map that the cached provides are added to
+    * @return The entry; <code>null</code> if the file has to be scanned
+    */
+   public Entry load(File file, SortedMap<String, SortedSet<String>> gProvides)
+   {
+      try
+      {
+         String path = file.getCanonicalPath();
+         File cacheFile = getCacheFile(path);
+         Archive archive = null;
+         SortedMap<String, SortedSet<String>> provides = null;
+         boolean touched = false;
+
+         if (cacheFile.isFile())
+         {
+            try (ObjectInputStream ois = new ObjectInputStream(
+               new BufferedInputStream(new FileInputStream(cacheFile))))
+            {
+               if (ois.readInt() == FORMAT_VERSION &&
+                   String.valueOf(Version.VERSION).equals(ois.readUTF()) &&
+                   settings.equals(ois.readUTF()) &&
+                   path.equals(ois.readUTF()) &&
+                   file.length() == ois.readLong())
+               {
+                  long lastModified = ois.readLong();
+                  String hash = ois.readUTF();
+                  touched = file.lastModified() != lastModified;
+
+                  if (!touched || hash.equals(Digests.sha1(file)))
+                  {
+                     archive = (Archive) ois.readObject();
+                     @SuppressWarnings("unchecked")
+                     SortedMap<String, SortedSet<String>> p =
+                        (SortedMap<String, SortedSet<String>>) ois.readObject();
+                     provides = p;
+                  }
+               }
+            }
+         }
+
+         if (provides != null)
+         {
+            if (touched)
+            {
+               // Same content with a new modification time; remember the new one
+               store(file, archive, provides);
+            }
+
+            gProvides.putAll(provides);
+            hits.incrementAndGet();
+            return new Entry(archive);
+         }
+      }
+      catch (IOException | ClassNotFoundException | ClassCastException e)
+      {
+         logger.log(Level.FINE, "Ignoring scan cache entry for " + file, e);
+      }
+
+      misses.incrementAndGet();
+      return null;
+   }
+
+   /**
+    * Store the scan result of a file
+    *
+    * @param file      The file
+    * @param archive   The archive; <code>null</code> if the file didn't contain classes
+    * @param gProvides The global provides of the file
+    */
+   public void store(File file, Archive archive, SortedMap<String, SortedSet<String>> gProvides)
+   {
+      try
+      {
+         String path = file.getCanonicalPath();
+         File cacheFile = getCacheFile(path);
+         File tmp = new File(directory, cacheFile.getName() + "." + Thread.currentThread().getId() + ".tmp");
+
+         try (ObjectOutputStream oos = new ObjectOutputStream(
+            new BufferedOutputStream(new FileOutputStream(tmp))))
+         {
+            oos.writeInt(FORMAT_VERSION);
+            oos.writeUTF(String.valueOf(Version.VERSION));
+            oos.writeUTF(settings);
+            oos.writeUTF(path);
+            oos.writeLong(file.length());
+            oos.writeLong(file.lastModified());
+            oos.writeUTF(Digests.sha1(file));
+            oos.writeObject(archive);
+            oos.writeObject(gProvides);
+         }
+
+         Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (IOException ioe)
+      {
+         logger.log(Level.WARNING, "Could not store scan cache entry for " + file, ioe);
+      }
+   }
+
+   /**
+    * Get the statistics
+    *
+    * @return A line with the number of hits and misses
+    */
+   public String getStatistics()
+   {
+      return "Scan cache " + directory + ": " + hits.get() + " hits, " + misses.get() + " misses";
+   }
+
+   /**
+    * Get the cache file of an archive
+    *
+    * @param path The canonical path of the archive
+    * @return The cache file
+    */
+   private File getCacheFile(String path)
+   {
+      return new File(directory, Digests.toHex(Digests.sha1().digest(path.getBytes(StandardCharsets.UTF_8))) + ".ser");
+   }
+
+   /**
+    * A cached scan result
+    */
+   public static class Entry
+   {
+      /** The archive */
+      private final Archive archive;
+
+      /**
+       * Constructor
+       *
+       * @param archive The archive
+       */
+      Entry(Archive archive)
+      {
+         this.archive = archive;
+      }
+
+      /**
+       * Get the archive
+       *
+       * @return The archive; <code>null</code> if the file didn't contain classes
+       */
+      public Archive getArchive()
+      {
+         return archive;
+      }
+   }
+}
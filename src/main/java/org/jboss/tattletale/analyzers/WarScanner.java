@@ -28,17 +28,14 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
 import org.jboss.tattletale.core.Archive;
@@ -80,60 +77,82 @@ public class WarScanner extends AbstractScanner
       if (war == null || !war.exists())
          return null;
 
+      try
+      {
+         return scan(ArchiveInput.open(war), gProvides, known, blacklisted);
+      }
+      catch (IOException ioe)
+      {
+         System.err.println("Scan: " + ioe.getMessage());
+         ioe.printStackTrace(System.err);
+      }
+      return null;
+   }
+
+   /**
+    * Scan a .war archive nested inside another archive
+    *
+    * @param parent      The parent archive
+    * @param entry       The entry of the nested .war archive
+    * @param gProvides   The global provides map
+    * @param known       The set of known archives
+    * @param blacklisted The set of black listed packages
+    * @return The archive
+    */
+   Archive scan(ArchiveInput parent, JarEntry entry, Map<String, SortedSet<String>> gProvides, List<Profile> known,
+                Set<String> blacklisted)
+   {
+      try
+      {
+         return scan(parent.openNested(entry), gProvides, known, blacklisted);
+      }
+      catch (IOException ioe)
+      {
+         System.err.println("Scan: " + ioe.getMessage());
+         ioe.printStackTrace(System.err);
+      }
+      return null;
+   }
+
+   /**
+    * Scan a .war archive
+    *
+    * @param warInput    The archive, which is closed afterwards
+    * @param gProvides   The global provides map
+    * @param known       The set of known archives
+    * @param blacklisted The set of black listed packages
+    * @return The archive
+    */
+   private Archive scan(ArchiveInput warInput, Map<String, SortedSet<String>> gProvides, List<Profile> known,
+                        Set<String> blacklisted)
+   {
       WarArchive warArchive = null;
       List<Archive> subArchiveList = new ArrayList<Archive>();
-      ArchiveScanner jarScanner = new JarScanner();
-      JarFile warFile = null;
-      String name = war.getName();
+      JarScanner jarScanner = new JarScanner();
+      jarScanner.setDuplicates(getDuplicates());
+      String name = warInput.getName();
       try
       {
 
-         String canonicalPath = war.getCanonicalPath();
-         warFile = new JarFile(war);
-         File extractedDir = war.isFile() ? Extractor.extract(warFile) : war;
-         Integer classVersion = null;
-         SortedSet<String> requires = new TreeSet<String>();
-         SortedMap<String, Long> provides = new TreeMap<String, Long>();
-         SortedSet<String> profiles = new TreeSet<String>();
-         SortedMap<String, SortedSet<String>> classDependencies = new TreeMap<String, SortedSet<String>>();
-         SortedMap<String, SortedSet<String>> packageDependencies = new TreeMap<String, SortedSet<String>>();
-         SortedMap<String, SortedSet<String>> blacklistedDependencies = new TreeMap<String, SortedSet<String>>();
+         String canonicalPath = warInput.getPath();
+         List<ClassEntry> classEntries = new ArrayList<ClassEntry>();
          List<String> lSign = null;
 
-         Enumeration<JarEntry> warEntries = warFile.entries();
+         JarEntry warEntry;
 
-         while (warEntries.hasMoreElements())
+         while ((warEntry = warInput.getNextEntry()) != null)
          {
-            JarEntry warEntry = warEntries.nextElement();
             String entryName = warEntry.getName();
-            InputStream entryStream = null;
             if (entryName.endsWith(".class"))
             {
-               try
-               {
-                  entryStream = warFile.getInputStream(warEntry);
-                  classVersion = scanClasses(entryStream, blacklisted, known, classVersion, provides,
-                        requires, profiles, classDependencies, packageDependencies, blacklistedDependencies);
-
-               }
-               catch (Exception openException)
-               {
-                  openException.printStackTrace();
-               }
-               finally
-               {
-                  if (entryStream != null)
-                  {
-                     entryStream.close();
-                  }
-               }
+               classEntries.add(warInput.getClassEntry(warEntry));
             }
             else if (entryName.contains("META-INF") && entryName.endsWith(".SF"))
             {
                InputStream is = null;
                try
                {
-                  is = warFile.getInputStream(warEntry);
+                  is = warInput.getInputStream(warEntry);
 
                   InputStreamReader isr = new InputStreamReader(is);
                   LineNumberReader lnr = new LineNumberReader(isr);
@@ -171,12 +190,21 @@ public class WarScanner extends AbstractScanner
             }
             else if (entryName.endsWith(".jar"))
             {
-               File jarFile = new File(extractedDir.getCanonicalPath(), entryName);
-               Archive jarArchive = jarScanner.scan(jarFile, gProvides, known, blacklisted);
+               Archive jarArchive = jarScanner.scan(warInput, warEntry, gProvides, known, blacklisted);
                if (jarArchive != null)
                   subArchiveList.add(jarArchive);
             }
          }
+         ClassScanResult classes = new ClassScanResult();
+         scanClasses(warInput, classEntries, blacklisted, known, classes);
+         Integer classVersion = classes.getClassVersion();
+         SortedSet<String> requires = classes.getRequires();
+         SortedMap<String, Long> provides = classes.getProvides();
+         SortedSet<String> profiles = classes.getProfiles();
+         SortedMap<String, SortedSet<String>> classDependencies = classes.getClassDependencies();
+         SortedMap<String, SortedSet<String>> packageDependencies = classes.getPackageDependencies();
+         SortedMap<String, SortedSet<String>> blacklistedDependencies = classes.getBlacklistedDependencies();
+
          if (provides.size() == 0 && subArchiveList.size() == 0)
          {
             return null;
@@ -185,7 +213,7 @@ public class WarScanner extends AbstractScanner
 
          String version = null;
          List<String> lManifest = null;
-         Manifest manifest = warFile.getManifest();
+         Manifest manifest = warInput.getManifest();
 
          if (manifest != null)
          {
@@ -240,10 +268,7 @@ public class WarScanner extends AbstractScanner
       {
          try
          {
-            if (warFile != null)
-            {
-               warFile.close();
-            }
+            warInput.close();
          }
          catch (IOException ioe)
          {
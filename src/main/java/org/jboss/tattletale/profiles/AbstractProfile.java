@@ -31,6 +31,7 @@ import java.util.zip.GZIPInputStream;
 import org.jboss.tattletale.core.ArchiveType;
 
 import org.jboss.tattletale.core.Location;
+import org.jboss.tattletale.utils.Metrics;
 
 /**
  * Base profile class.
@@ -58,6 +59,12 @@ public abstract class AbstractProfile implements Profile
    /** Set of sub-subProfiles */
    protected Set<Profile> subProfiles = new HashSet<>();
 
+   /** The class set file, until it is loaded */
+   private String resource;
+
+   /** Whether the class set file is loaded */
+   private volatile boolean loaded;
+
 
    /**
     * Constructor
@@ -71,7 +78,7 @@ public abstract class AbstractProfile implements Profile
    public AbstractProfile(String classSet, ArchiveType type, String name, int version, String location)
    {
       this (type, name, version, location);
-      loadProfile(classSet);
+      this.resource = classSet;
    }
 
    /**
@@ -99,6 +106,7 @@ public abstract class AbstractProfile implements Profile
    @Override
    public boolean doesProvide(String clz)
    {
+      load();
       if (classSet.contains(clz))
       {
          return true;
@@ -163,15 +171,47 @@ public abstract class AbstractProfile implements Profile
    }
 
    /**
-    * Loads this profile's class list from the resources.
+    * Loads the class set file on first use, once only
+    * however many threads share the profile.
+    */
+   protected final void load()
+   {
+      if (!loaded)
+      {
+         synchronized (this)
+         {
+            if (!loaded)
+            {
+               if (resource != null)
+               {
+                  loadProfile(resource);
+                  resource = null;
+               }
+               loaded = true;
+            }
+         }
+      }
+   }
+
+   /**
+    * Loads this profile's class list from the resources, from its precompiled
+    * {@link ClassTable} when the build made one.
     *
     * @param resourceFile File name
     */
    protected void loadProfile(String resourceFile)
    {
+      long start = System.nanoTime();
       InputStream is = null;
       try
       {
+         ClassTable table = ClassTable.open(this.getClass().getClassLoader(), resourceFile);
+         if (table != null)
+         {
+            classSet = table;
+            return;
+         }
+
          is = this.getClass().getClassLoader().getResourceAsStream(resourceFile);
 
          GZIPInputStream gis = new GZIPInputStream(is);
@@ -202,6 +242,7 @@ public abstract class AbstractProfile implements Profile
          {
             // Ignore
          }
+         Metrics.profileLoaded(getName(), System.nanoTime() - start);
       }
    }
 
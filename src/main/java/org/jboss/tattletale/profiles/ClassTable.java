@@ -0,0 +1,623 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.profiles;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An immutable set of class names, read in place from the precompiled form of a profile's
+ * class list.
+ * <p>
+ * The names are sorted by their UTF-8 bytes and front coded: each one only stores the bytes
+ * that differ from the name before it, and every {@link #INTERVAL}th name is stored whole so
+ * a lookup is a binary search over those followed by a short scan. The table is memory mapped
+ * when the resource is a file, and otherwise read into a single buffer; either way nothing is
+ * parsed up front.
+ * <p>
+ * {@link #main(String[])} compiles <code>.clz.gz</code> class lists at build time.
+ */
+public final class ClassTable extends AbstractSet<String>
+{
+   /** Magic number, "TTCT" */
+   private static final int MAGIC = 0x54544354;
+
+   /** Format version */
+   private static final int VERSION = 1;
+
+   /** Every how many names one is stored whole */
+   private static final int INTERVAL = 16;
+
+   /** Header size: magic, version, size and number of restarts */
+   private static final int HEADER = 16;
+
+   /** The table */
+   private final ByteBuffer buffer;
+
+   /** The number of names */
+   private final int size;
+
+   /** The number of names stored whole */
+   private final int restarts;
+
+   /** Position of the first name */
+   private final int data;
+
+   /**
+    * Constructor
+    *
+    * @param buffer The table
+    * @exception IOException If the table isn't in the expected format
+    */
+   private ClassTable(ByteBuffer buffer) throws IOException
+   {
+      if (buffer.limit() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+      {
+         throw new IOException("Not a class table");
+      }
+      this.buffer = buffer;
+      this.size = buffer.getInt(8);
+      this.restarts = buffer.getInt(12);
+      this.data = HEADER + 4 * restarts;
+   }
+
+   /**
+    * Get the name of the precompiled form of a class list
+    *
+    * @param resource The class list, e.g. <code>jdk8.clz.gz</code>
+    * @return The precompiled name, e.g. <code>jdk8.clz.bin</code>
+    */
+   public static String compiledName(String resource)
+   {
+      String name = resource.endsWith(".gz") ? resource.substring(0, resource.length() - 3) : resource;
+      return name + ".bin";
+   }
+
+   /**
+    * Open the precompiled form of a class list
+    *
+    * @param cl       The class loader
+    * @param resource The class list, e.g. <code>jdk8.clz.gz</code>
+    * @return The table; <code>null</code> if there is no precompiled form
+    * @exception IOException If the precompiled form can't be read
+    */
+   public static ClassTable open(ClassLoader cl, String resource) throws IOException
+   {
+      ByteBuffer buffer = map(cl, compiledName(resource));
+      return buffer != null ? new ClassTable(buffer) : null;
+   }
+
+   /**
+    * Map a resource, or read it into a buffer when it isn't a file
+    *
+    * @param cl   The class loader
+    * @param name The resource
+    * @return The buffer; <code>null</code> if there is no such resource
+    * @exception IOException If the resource can't be read
+    */
+   public static ByteBuffer map(ClassLoader cl, String name) throws IOException
+   {
+      URL url = cl.getResource(name);
+      if (url == null)
+      {
+         return null;
+      }
+
+      if ("file".equals(url.getProtocol()))
+      {
+         try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ))
+         {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         }
+         catch (URISyntaxException use)
+         {
+            // Read it as a stream
+         }
+      }
+
+      try (InputStream is = url.openStream())
+      {
+         ByteArrayOutputStream bos = new ByteArrayOutputStream();
+         byte[] chunk = new byte[8192];
+         int n;
+         while ((n = is.read(chunk)) != -1)
+         {
+            bos.write(chunk, 0, n);
+         }
+         return ByteBuffer.wrap(bos.toByteArray());
+      }
+   }
+
+   /**
+    * Read a table in place
+    *
+    * @param buffer The buffer, holding the table only
+    * @return The table
+    * @exception IOException If the buffer doesn't hold a table
+    */
+   public static ClassTable wrap(ByteBuffer buffer) throws IOException
+   {
+      return new ClassTable(buffer);
+   }
+
+   /**
+    * Build a table in memory
+    *
+    * @param classes The class names
+    * @return The table
+    */
+   public static ClassTable of(Collection<String> classes)
+   {
+      return of(new ArrayList<>(classes), null);
+   }
+
+   /**
+    * Build a table in memory, telling where each class went
+    *
+    * @param classes The class names; may repeat
+    * @param indexes Filled with the index in the table of each class; may be <code>null</code>
+    * @return The table
+    */
+   public static ClassTable of(List<String> classes, int[] indexes)
+   {
+      try
+      {
+         ByteArrayOutputStream bos = new ByteArrayOutputStream();
+         writeSorted(sort(classes, indexes), new DataOutputStream(bos));
+         return new ClassTable(ByteBuffer.wrap(bos.toByteArray()));
+      }
+      catch (IOException ioe)
+      {
+         // Not from memory
+         throw new IllegalStateException(ioe);
+      }
+   }
+
+   /**
+    * Is the class in the table
+    *
+    * @param o The class name
+    * @return True if it is; otherwise false
+    */
+   @Override
+   public boolean contains(Object o)
+   {
+      return o instanceof String && indexOf((String) o) != -1;
+   }
+
+   /**
+    * Get the position of a class in the table, that is in iteration order
+    *
+    * @param clz The class name
+    * @return The index; -1 if the class isn't in the table
+    */
+   public int indexOf(String clz)
+   {
+      if (size == 0)
+      {
+         return -1;
+      }
+      byte[] key = clz.getBytes(StandardCharsets.UTF_8);
+
+      // Last block whose first name is not after the key
+      int low = 0;
+      int high = restarts - 1;
+      while (low < high)
+      {
+         int mid = (low + high + 1) >>> 1;
+         if (compareWhole(data + buffer.getInt(HEADER + 4 * mid), key) <= 0)
+         {
+            low = mid;
+         }
+         else
+         {
+            high = mid - 1;
+         }
+      }
+
+      // Scan the block, tracking how much of the key the current name matches
+      int pos = data + buffer.getInt(HEADER + 4 * low);
+      int end = Math.min(size, (low + 1) * INTERVAL);
+      int matched = 0;
+      for (int i = low * INTERVAL; i < end; i++)
+      {
+         int shared = readVarInt(pos);
+         pos += varIntLength(shared);
+         int length = readVarInt(pos);
+         pos += varIntLength(length);
+
+         if (shared < matched)
+         {
+            // Differs from the name before at a byte where that one still matched the key
+            return -1;
+         }
+         if (shared == matched)
+         {
+            int j = 0;
+            while (j < length && matched + j < key.length && buffer.get(pos + j) == key[matched + j])
+            {
+               j++;
+            }
+            if (j == length && matched + j == key.length)
+            {
+               return i;
+            }
+            if (j < length && (matched + j == key.length
+                               || (buffer.get(pos + j) & 0xff) > (key[matched + j] & 0xff)))
+            {
+               return -1;
+            }
+            matched += j;
+         }
+         pos += length;
+      }
+      return -1;
+   }
+
+   /**
+    * Get an iterator over the class names, in table order
+    *
+    * @return The iterator
+    */
+   @Override
+   public Iterator<String> iterator()
+   {
+      return new Iterator<String>()
+      {
+         private int index;
+         private int pos = data;
+         private byte[] name = new byte[128];
+
+         @Override
+         public boolean hasNext()
+         {
+            return index < size;
+         }
+
+         @Override
+         public String next()
+         {
+            if (!hasNext())
+            {
+               throw new NoSuchElementException();
+            }
+            int shared = readVarInt(pos);
+            pos += varIntLength(shared);
+            int length = readVarInt(pos);
+            pos += varIntLength(length);
+
+            if (shared + length > name.length)
+            {
+               byte[] larger = new byte[Math.max(shared + length, 2 * name.length)];
+               System.arraycopy(name, 0, larger, 0, shared);
+               name = larger;
+            }
+            for (int j = 0; j < length; j++)
+            {
+               name[shared + j] = buffer.get(pos + j);
+            }
+            pos += length;
+            index++;
+            return new String(name, 0, shared + length, StandardCharsets.UTF_8);
+         }
+
+         @Override
+         public void remove()
+         {
+            throw new UnsupportedOperationException();
+         }
+      };
+   }
+
+   /**
+    * Write the table as it is laid out
+    *
+    * @param out The stream
+    * @exception IOException If an error occurs
+    */
+   public void writeTo(DataOutputStream out) throws IOException
+   {
+      ByteBuffer bytes = buffer.duplicate();
+      bytes.clear();
+      byte[] chunk = new byte[8192];
+      while (bytes.hasRemaining())
+      {
+         int n = Math.min(chunk.length, bytes.remaining());
+         bytes.get(chunk, 0, n);
+         out.write(chunk, 0, n);
+      }
+   }
+
+   /**
+    * Get the number of bytes of the table
+    *
+    * @return The length
+    */
+   public int length()
+   {
+      return buffer.capacity();
+   }
+
+   /**
+    * Get the number of class names
+    *
+    * @return The size
+    */
+   @Override
+   public int size()
+   {
+      return size;
+   }
+
+   /**
+    * Compare a name stored whole with a key
+    *
+    * @param pos The position of the name
+    * @param key The key
+    * @return Negative, zero or positive as the name is before, equal to or after the key
+    */
+   private int compareWhole(int pos, byte[] key)
+   {
+      pos += varIntLength(0);
+      int length = readVarInt(pos);
+      pos += varIntLength(length);
+
+      int n = Math.min(length, key.length);
+      for (int j = 0; j < n; j++)
+      {
+         int diff = (buffer.get(pos + j) & 0xff) - (key[j] & 0xff);
+         if (diff != 0)
+         {
+            return diff;
+         }
+      }
+      return length - key.length;
+   }
+
+   /**
+    * Read a variable length int
+    *
+    * @param pos The position
+    * @return The value
+    */
+   private int readVarInt(int pos)
+   {
+      int value = 0;
+      int shift = 0;
+      byte b;
+      do
+      {
+         b = buffer.get(pos++);
+         value |= (b & 0x7f) << shift;
+         shift += 7;
+      }
+      while (b < 0);
+      return value;
+   }
+
+   /**
+    * Get the number of bytes of a variable length int
+    *
+    * @param value The value
+    * @return The length
+    */
+   private static int varIntLength(int value)
+   {
+      int length = 1;
+      while ((value >>>= 7) != 0)
+      {
+         length++;
+      }
+      return length;
+   }
+
+   /**
+    * Write a variable length int
+    *
+    * @param out   The stream
+    * @param value The value
+    * @exception IOException If an error occurs
+    */
+   private static void writeVarInt(DataOutputStream out, int value) throws IOException
+   {
+      while ((value & ~0x7f) != 0)
+      {
+         out.writeByte((value & 0x7f) | 0x80);
+         value >>>= 7;
+      }
+      out.writeByte(value);
+   }
+
+   /**
+    * Write class names as a table
+    *
+    * @param classes The class names
+    * @param out     The stream
+    * @exception IOException If an error occurs
+    */
+   public static void write(Collection<String> classes, DataOutputStream out) throws IOException
+   {
+      writeSorted(sort(new ArrayList<>(classes), null), out);
+   }
+
+   /**
+    * Sort class names by their UTF-8 bytes, without repeats
+    *
+    * @param classes The class names; may repeat
+    * @param indexes Filled with the index in the result of each class; may be <code>null</code>
+    * @return The sorted names
+    */
+   private static List<byte[]> sort(List<String> classes, int[] indexes)
+   {
+      final byte[][] names = new byte[classes.size()][];
+      Integer[] order = new Integer[names.length];
+      for (int i = 0; i < names.length; i++)
+      {
+         names[i] = classes.get(i).getBytes(StandardCharsets.UTF_8);
+         order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>()
+      {
+         @Override
+         public int compare(Integer a, Integer b)
+         {
+            byte[] x = names[a];
+            byte[] y = names[b];
+            int n = Math.min(x.length, y.length);
+            for (int j = 0; j < n; j++)
+            {
+               int diff = (x[j] & 0xff) - (y[j] & 0xff);
+               if (diff != 0)
+               {
+                  return diff;
+               }
+            }
+            return x.length - y.length;
+         }
+      });
+
+      List<byte[]> sorted = new ArrayList<>();
+      for (Integer i : order)
+      {
+         if (sorted.isEmpty() || !Arrays.equals(sorted.get(sorted.size() - 1), names[i]))
+         {
+            sorted.add(names[i]);
+         }
+         if (indexes != null)
+         {
+            indexes[i] = sorted.size() - 1;
+         }
+      }
+      return sorted;
+   }
+
+   /**
+    * Write sorted class names as a table
+    *
+    * @param names The names, sorted by their bytes and without repeats
+    * @param out   The stream
+    * @exception IOException If an error occurs
+    */
+   private static void writeSorted(List<byte[]> names, DataOutputStream out) throws IOException
+   {
+      int restarts = (names.size() + INTERVAL - 1) / INTERVAL;
+      ByteArrayOutputStream entries = new ByteArrayOutputStream();
+      DataOutputStream data = new DataOutputStream(entries);
+      int[] offsets = new int[restarts];
+      byte[] previous = new byte[0];
+      for (int i = 0; i < names.size(); i++)
+      {
+         byte[] name = names.get(i);
+         int shared = 0;
+         if (i % INTERVAL == 0)
+         {
+            offsets[i / INTERVAL] = data.size();
+         }
+         else
+         {
+            int n = Math.min(previous.length, name.length);
+            while (shared < n && previous[shared] == name[shared])
+            {
+               shared++;
+            }
+         }
+         writeVarInt(data, shared);
+         writeVarInt(data, name.length - shared);
+         data.write(name, shared, name.length - shared);
+         previous = name;
+      }
+      data.flush();
+
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(names.size());
+      out.writeInt(restarts);
+      for (int offset : offsets)
+      {
+         out.writeInt(offset);
+      }
+      entries.writeTo(out);
+      out.flush();
+   }
+
+   /**
+    * Compile class lists into tables next to them
+    *
+    * @param args The directory, followed by the <code>.clz.gz</code> class lists to compile
+    * @exception IOException If an error occurs
+    */
+   public static void main(String[] args) throws IOException
+   {
+      if (args.length < 1)
+      {
+         System.out.println("Usage: ClassTable <directory> [<class list>.clz.gz]*");
+         return;
+      }
+
+      File directory = new File(args[0]);
+      for (int i = 1; i < args.length; i++)
+      {
+         List<String> classes = new ArrayList<>();
+         try (BufferedReader br = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(new FileInputStream(new File(directory, args[i]))))))
+         {
+            String s = br.readLine();
+            while (s != null)
+            {
+               classes.add(s);
+               s = br.readLine();
+            }
+         }
+
+         try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(new File(directory, compiledName(args[i]))))))
+         {
+            write(classes, out);
+         }
+      }
+   }
+}
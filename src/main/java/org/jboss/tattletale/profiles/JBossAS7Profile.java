@@ -22,11 +22,21 @@
 
 package org.jboss.tattletale.profiles;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.zip.GZIPInputStream;
@@ -34,6 +44,7 @@ import java.util.zip.GZIPInputStream;
 
 import javassist.bytecode.ClassFile;
 import org.jboss.tattletale.core.ArchiveType;
+import org.jboss.tattletale.utils.Metrics;
 
 /**
  * Profile for JBoss AS 7.
@@ -49,15 +60,18 @@ public class JBossAS7Profile extends AbstractProfile implements ExtendedProfile
    private static final ArchiveType ARCHIVE_TYPE = ArchiveType.JAR;
    private static final int CLASSFILE_VERSION = ClassFile.JAVA_6;
 
+   /** Class name to module identifier */
+   private Modules classModules;
+
    /** Constructor */
    public JBossAS7Profile()
    {
-      super(ARCHIVE_TYPE, PROFILE_NAME, CLASSFILE_VERSION, PROFILE_LOCATION);
-      this.loadProfile(CLASS_SET);
+      super(CLASS_SET, ARCHIVE_TYPE, PROFILE_NAME, CLASSFILE_VERSION, PROFILE_LOCATION);
    }
 
    /**
-    * Implementation from {@link ExtendedProfile}.
+    * Implementation from {@link ExtendedProfile}. A nested class that isn't listed
+    * resolves to the module of its enclosing class.
     *
     * @param clz  - the class name
     * @return     - the module identifier
@@ -65,25 +79,20 @@ public class JBossAS7Profile extends AbstractProfile implements ExtendedProfile
 
    public String getModuleIdentifier(String clz)
    {
-      for (Profile p : subProfiles)
+      load();
+      if (classModules == null)
       {
-         if (p.doesProvide(clz))
-         {
-            return p.getModuleIdentifier();
-         }
+         return null;
       }
-      return null;
-   }
-
-   /**
-    * Makes the call on the superclass.
-    *
-    * @param clz The class name
-    * @return - whether or not the class name is provided or not.
-    */
-   public boolean doesProvide(String clz)
-   {
-      return super.doesProvide(clz);
+      String moduleIdentifier = classModules.get(clz);
+      int dollar = clz.lastIndexOf('$');
+      while (moduleIdentifier == null && dollar > 0)
+      {
+         clz = clz.substring(0, dollar);
+         moduleIdentifier = classModules.get(clz);
+         dollar = clz.lastIndexOf('$');
+      }
+      return moduleIdentifier;
    }
 
    /**
@@ -109,59 +118,250 @@ public class JBossAS7Profile extends AbstractProfile implements ExtendedProfile
       return PROFILE_NAME;
    }
 
+   /**
+    * Loads the class to module index, from its precompiled form when the build
+    * made one.
+    *
+    * @param classSet The class list
+    */
    @Override
    protected void loadProfile(String classSet)
    {
+      long start = System.nanoTime();
       InputStream inputStream = null;
       try
       {
-         inputStream = this.getClass().getClassLoader().getResourceAsStream(classSet);
-         GZIPInputStream gis = new GZIPInputStream(inputStream);
-         InputStreamReader isr = new InputStreamReader(gis);
-         BufferedReader br = new BufferedReader(isr);
-         Map <String, ProfileArchive> profileMapping = new HashMap<String, ProfileArchive>();
+         ByteBuffer compiled = ClassTable.map(this.getClass().getClassLoader(), ClassTable.compiledName(classSet));
+         if (compiled != null)
+         {
+            classModules = Modules.read(compiled);
+         }
+         else
+         {
+            inputStream = this.getClass().getClassLoader().getResourceAsStream(classSet);
+            classModules = Modules.parse(inputStream);
+         }
+
+         // the index is the class set as well
+         this.classSet = classModules.classes;
+      }
+      catch (IOException ioe)
+      {
+         ioe.printStackTrace();
+      }
+      finally
+      {
+         try
+         {
+            if (inputStream != null)
+            {
+               inputStream.close();
+            }
+         }
+         catch (IOException closeException)
+         {
+            // No op.
+         }
+         Metrics.profileLoaded(getName(), System.nanoTime() - start);
+      }
+   }
+
+   /**
+    * Compile class to module lists into their precompiled form next to them
+    *
+    * @param args The directory, followed by the <code>.clz.gz</code> lists to compile
+    * @exception IOException If an error occurs
+    */
+   public static void main(String[] args) throws IOException
+   {
+      if (args.length < 1)
+      {
+         System.out.println("Usage: JBossAS7Profile <directory> [<class list>.clz.gz]*");
+         return;
+      }
+
+      File directory = new File(args[0]);
+      for (int i = 1; i < args.length; i++)
+      {
+         Modules modules;
+         try (InputStream is = new FileInputStream(new File(directory, args[i])))
+         {
+            modules = Modules.parse(is);
+         }
+
+         try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(new File(directory, ClassTable.compiledName(args[i]))))))
+         {
+            modules.write(out);
+         }
+      }
+   }
+
+   /**
+    * The classes and their modules: the table of the classes, each module once, and
+    * the module id of the n-th class in the table in ids[n]
+    */
+   static class Modules
+   {
+      /** The classes */
+      private final ClassTable classes;
+
+      /** The module identifiers */
+      private final String[] modules;
+
+      /** The module of each class */
+      private final int[] ids;
+
+      /**
+       * Constructor
+       *
+       * @param classes The classes
+       * @param modules The module identifiers
+       * @param ids     The module of each class
+       */
+      Modules(ClassTable classes, String[] modules, int[] ids)
+      {
+         this.classes = classes;
+         this.modules = modules;
+         this.ids = ids;
+      }
+
+      /**
+       * Get the classes
+       *
+       * @return The table of the classes
+       */
+      ClassTable getClasses()
+      {
+         return classes;
+      }
+
+      /**
+       * Get the module of a class
+       *
+       * @param clz The class name
+       * @return The module identifier; <code>null</code> if the class isn't listed
+       */
+      String get(String clz)
+      {
+         int index = classes.indexOf(clz);
+         return index != -1 ? modules[ids[index]] : null;
+      }
+
+      /**
+       * Parse a gzipped list of class, archive and module lines. A class listed in
+       * several modules belongs to the first one in the list.
+       *
+       * @param is The stream
+       * @return The modules
+       * @exception IOException If an error occurs
+       */
+      static Modules parse(InputStream is) throws IOException
+      {
+         BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(is)));
+
+         Map<String, Integer> moduleIndex = new HashMap<>();
+         List<String> moduleList = new ArrayList<>();
+         List<String> lineClasses = new ArrayList<>();
+         int[] lineModules = new int[1024];
 
          String s = br.readLine();
          while (s != null)
          {
             StringTokenizer tokenizer = new StringTokenizer(s, ",");
             String className = tokenizer.nextToken();
-            String archiveName = tokenizer.nextToken();
+            tokenizer.nextToken();
             String moduleIdentifier = "";
 
             if (tokenizer.hasMoreTokens())
                moduleIdentifier = tokenizer.nextToken();
 
-            ProfileArchive profileArchive = profileMapping.get(archiveName);
-
-            if (profileArchive == null)
+            Integer id = moduleIndex.get(moduleIdentifier);
+            if (id == null)
+            {
+               id = moduleList.size();
+               moduleIndex.put(moduleIdentifier, id);
+               moduleList.add(moduleIdentifier);
+            }
+            if (lineClasses.size() == lineModules.length)
             {
-               profileArchive = new ProfileArchive(archiveName, moduleIdentifier);
-               profileMapping.put(archiveName, profileArchive);
+               lineModules = Arrays.copyOf(lineModules, 2 * lineModules.length);
             }
+            lineModules[lineClasses.size()] = id;
+            lineClasses.add(className);
 
-            profileArchive.addClass(className);
             s = br.readLine();
          }
-         subProfiles.addAll(profileMapping.values());
+
+         int[] lineIndexes = new int[lineClasses.size()];
+         ClassTable table = ClassTable.of(lineClasses, lineIndexes);
+         int[] ids = new int[table.size()];
+         Arrays.fill(ids, -1);
+         for (int i = 0; i < lineIndexes.length; i++)
+         {
+            if (ids[lineIndexes[i]] == -1)
+            {
+               ids[lineIndexes[i]] = lineModules[i];
+            }
+         }
+
+         return new Modules(table, moduleList.toArray(new String[moduleList.size()]), ids);
       }
-      catch (IOException ioe)
+
+      /**
+       * Read the precompiled form
+       *
+       * @param buffer The buffer
+       * @return The modules
+       * @exception IOException If the buffer isn't in the expected format
+       */
+      static Modules read(ByteBuffer buffer) throws IOException
       {
-         ioe.printStackTrace();
+         ByteBuffer in = buffer.duplicate();
+         int length = in.getInt();
+         ByteBuffer table = in.slice();
+         table.limit(length);
+         in.position(in.position() + length);
+
+         String[] modules = new String[in.getInt()];
+         for (int i = 0; i < modules.length; i++)
+         {
+            byte[] module = new byte[in.getInt()];
+            in.get(module);
+            modules[i] = new String(module, StandardCharsets.UTF_8);
+         }
+
+         int[] ids = new int[in.getInt()];
+         in.asIntBuffer().get(ids);
+
+         return new Modules(ClassTable.wrap(table.slice()), modules, ids);
       }
-      finally
+
+      /**
+       * Write the precompiled form
+       *
+       * @param out The stream
+       * @exception IOException If an error occurs
+       */
+      void write(DataOutputStream out) throws IOException
       {
-         try
+         out.writeInt(classes.length());
+         classes.writeTo(out);
+
+         out.writeInt(modules.length);
+         for (String module : modules)
          {
-            if (inputStream != null)
-            {
-               inputStream.close();
-            }
+            byte[] bytes = module.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
          }
-         catch (IOException closeException)
+
+         out.writeInt(ids.length);
+         for (int id : ids)
          {
-            // No op.
+            out.writeInt(id);
          }
+         out.flush();
       }
    }
 }
@@ -92,4 +92,14 @@ public class ProfileArchive implements Profile
    {
       classes.add(className);
    }
+
+   /**
+    * Gets the classes in the archive.
+    *
+    * @return     - the set of class names.
+    */
+   Set<String> getClasses()
+   {
+      return classes;
+   }
 }
@@ -0,0 +1,223 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.profiles;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * An immutable list of profiles, compiled into a single index from class name
+ * to the profiles providing it.
+ * <p>
+ * The classes of all the profiles, sub-profiles included, are merged into one sorted
+ * {@link ClassTable}, with a bitmask per entry where bit <i>i</i> is set when the
+ * <i>i</i>-th profile provides the class. {@link #getProvider(String)} therefore costs a
+ * single search however many profiles and sub-profiles are selected. Profiles whose
+ * classes cannot be listed, and any profile beyond the 64th, are asked through
+ * {@link Profile#doesProvide(String)} instead.
+ */
+public class ProfileIndex extends AbstractList<Profile> implements RandomAccess
+{
+   /** The profiles, in order */
+   private final Profile[] profiles;
+
+   /** The classes of the indexed profiles */
+   private final ClassTable classes;
+
+   /** The bitmask of the profiles providing each class, in table order */
+   private final long[] masks;
+
+   /** Indexes of the profiles not in the bitmasks, ascending */
+   private final int[] unindexed;
+
+   /**
+    * Constructor
+    *
+    * @param profiles The profiles, in order of precedence
+    */
+   public ProfileIndex(List<Profile> profiles)
+   {
+      this.profiles = profiles.toArray(new Profile[profiles.size()]);
+
+      List<String> names = new ArrayList<>();
+      List<Integer> bits = new ArrayList<>();
+      List<Integer> others = new ArrayList<>();
+      for (int i = 0; i < this.profiles.length; i++)
+      {
+         List<Set<String>> sets = new ArrayList<>();
+         if (i >= Long.SIZE || !classesOf(this.profiles[i], sets))
+         {
+            others.add(i);
+            continue;
+         }
+
+         for (Set<String> set : sets)
+         {
+            for (String clz : set)
+            {
+               names.add(clz);
+               bits.add(i);
+            }
+         }
+      }
+
+      int[] indexes = new int[names.size()];
+      this.classes = ClassTable.of(names, indexes);
+      this.masks = new long[classes.size()];
+      for (int k = 0; k < indexes.length; k++)
+      {
+         masks[indexes[k]] |= 1L << bits.get(k).intValue();
+      }
+
+      this.unindexed = new int[others.size()];
+      for (int i = 0; i < unindexed.length; i++)
+      {
+         unindexed[i] = others.get(i).intValue();
+      }
+   }
+
+   /**
+    * Find the first of the profiles providing a class
+    *
+    * @param known The profiles; may be <code>null</code>
+    * @param clz   The class name
+    * @return The profile; <code>null</code> if none provides the class
+    */
+   public static Profile findProvider(List<Profile> known, String clz)
+   {
+      if (known == null)
+      {
+         return null;
+      }
+      if (known instanceof ProfileIndex)
+      {
+         return ((ProfileIndex) known).getProvider(clz);
+      }
+      for (Profile p : known)
+      {
+         if (p.doesProvide(clz))
+         {
+            return p;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Get the first profile providing a class
+    *
+    * @param clz The class name
+    * @return The profile; <code>null</code> if none provides the class
+    */
+   public Profile getProvider(String clz)
+   {
+      long mask = getMask(clz);
+      int first = mask == 0L ? profiles.length : Long.numberOfTrailingZeros(mask);
+
+      for (int i : unindexed)
+      {
+         if (i > first)
+         {
+            break;
+         }
+         if (profiles[i].doesProvide(clz))
+         {
+            return profiles[i];
+         }
+      }
+      return first < profiles.length ? profiles[first] : null;
+   }
+
+   /**
+    * Get the bitmask of the indexed profiles providing a class
+    *
+    * @param clz The class name
+    * @return The bitmask; 0 if none of them provides the class
+    */
+   long getMask(String clz)
+   {
+      int index = classes.indexOf(clz);
+      return index != -1 ? masks[index] : 0L;
+   }
+
+   /**
+    * Get a profile
+    *
+    * @param index The index
+    * @return The profile
+    */
+   @Override
+   public Profile get(int index)
+   {
+      return profiles[index];
+   }
+
+   /**
+    * Get the number of profiles
+    *
+    * @return The size
+    */
+   @Override
+   public int size()
+   {
+      return profiles.length;
+   }
+
+   /**
+    * Collect the class sets a profile is made of, sub-profiles included
+    *
+    * @param profile The profile
+    * @param sets    The class sets
+    * @return False if the classes can't be listed
+    */
+   private static boolean classesOf(Profile profile, List<Set<String>> sets)
+   {
+      if (profile instanceof ProfileArchive)
+      {
+         sets.add(((ProfileArchive) profile).getClasses());
+         return true;
+      }
+      if (!(profile instanceof AbstractProfile))
+      {
+         return false;
+      }
+
+      AbstractProfile ap = (AbstractProfile) profile;
+      ap.load();
+      sets.add(ap.classSet);
+      if (ap.subProfiles != null)
+      {
+         for (Profile sub : ap.subProfiles)
+         {
+            if (!classesOf(sub, sets))
+            {
+               return false;
+            }
+         }
+      }
+      return true;
+   }
+}
@@ -0,0 +1,73 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.profiles;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The profiles of the process, one shared instance per profile class.
+ * <p>
+ * The instances are cheap to create: an {@link AbstractProfile} only loads its class set
+ * the first time it is asked about a class, so profiles that are never used cost nothing.
+ */
+public final class ProfileRegistry
+{
+   /** Profile class to the shared instance */
+   private static final ConcurrentMap<Class<? extends Profile>, Profile> PROFILES = new ConcurrentHashMap<>();
+
+   /** Constructor */
+   private ProfileRegistry()
+   {
+   }
+
+   /**
+    * Get the shared instance of a profile
+    *
+    * @param type The profile class; must have a public no-argument constructor
+    * @param <T>  The profile type
+    * @return The profile
+    */
+   public static <T extends Profile> T get(Class<T> type)
+   {
+      Profile profile = PROFILES.get(type);
+      if (profile == null)
+      {
+         try
+         {
+            profile = type.getConstructor().newInstance();
+         }
+         catch (ReflectiveOperationException roe)
+         {
+            throw new IllegalArgumentException("Can't create profile " + type.getName(), roe);
+         }
+
+         Profile shared = PROFILES.putIfAbsent(type, profile);
+         if (shared != null)
+         {
+            profile = shared;
+         }
+      }
+      return type.cast(profile);
+   }
+}
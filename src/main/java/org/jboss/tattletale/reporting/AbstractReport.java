@@ -29,6 +29,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
 
 import org.jboss.tattletale.Version;
 import org.jboss.tattletale.core.Archive;
@@ -69,6 +71,9 @@ public abstract class AbstractReport implements Report
 
    /** Filter implementation */
    private Filter filterImpl;
+
+   /** The initialized filters of the run, by filter class and value; <code>null</code> if not shared */
+   private ConcurrentMap<String, Filter> filters;
    
    /** Index filename */
    protected static final String INDEX_HTML = "index.html";
@@ -78,6 +83,18 @@ public abstract class AbstractReport implements Report
 
     /** Archive report paths */
    private final Map<String, String> reportPaths = new HashMap<>();
+
+   /** The format of the data file; <code>null</code> for none */
+   private RowWriter.Format dataFormat;
+
+   /** Write the HTML page */
+   private boolean html = true;
+
+   /** The data file, while the HTML content is written along with it */
+   private RowWriter dataRows;
+
+   /** Logger */
+   private static final Logger logger = Logger.getLogger(AbstractReport.class.getName());
     
    /**
     * Constructor
@@ -184,8 +201,34 @@ public abstract class AbstractReport implements Report
    public void setFilter(String filter)
    {
       this.filter = filter;
-      this.filterImpl = createFilter();
-      this.filterImpl.init(filter);
+
+      Filter created = createFilter();
+      if (filters == null)
+      {
+         created.init(filter);
+         this.filterImpl = created;
+         return;
+      }
+
+      String key = created.getClass().getName() + "=" + filter;
+      Filter shared = filters.get(key);
+      if (shared == null)
+      {
+         created.init(filter);
+         shared = filters.putIfAbsent(key, created);
+      }
+      this.filterImpl = shared != null ? shared : created;
+   }
+
+   /**
+    * Set the initialized filters shared by the reports of a run; a filter set
+    * afterwards is taken from them, or added to them
+    *
+    * @param filters The filters, by filter class and value
+    */
+   public void setFilters(ConcurrentMap<String, Filter> filters)
+   {
+      this.filters = filters;
    }
 
    /**
@@ -218,19 +261,44 @@ public abstract class AbstractReport implements Report
    @Override
    public void generate(String outputDirectory)
    {
+      String[] columns = dataFormat != null ? getDataColumns() : null;
+      if (!html && columns == null)
+      {
+         logger.warning("Skipping the " + getName() + " report: html=false and it has no data file");
+         return;
+      }
+
       try
       {
          createOutputDir(outputDirectory);
-         try (BufferedWriter bw = getBufferedWriter()) {
-             writeHtmlHead(bw);
-             
-             writeHtmlBodyHeader(bw);
-             writeHtmlBodyContent(bw);
-             writeHtmlBodyFooter(bw);
-             
-             writeHtmlFooter(bw);
-             
-             bw.flush();
+         File file = columns != null ? new File(getOutputDirectory(), "index." + dataFormat.getExtension()) : null;
+         try (RowWriter rows = file != null ? new RowWriter(file, dataFormat, columns) : null)
+         {
+            boolean together = html && rows != null && isDataWrittenWithHtml();
+            if (html)
+            {
+               dataRows = together ? rows : null;
+               try (BufferedWriter bw = getBufferedWriter()) {
+                   writeHtmlHead(bw);
+                   
+                   writeHtmlBodyHeader(bw);
+                   writeHtmlBodyContent(bw);
+                   writeHtmlBodyFooter(bw);
+                   
+                   writeHtmlFooter(bw);
+                   
+                   bw.flush();
+               }
+               finally
+               {
+                  dataRows = null;
+               }
+            }
+
+            if (rows != null && !together)
+            {
+               writeDataRows(rows);
+            }
          }
       }
       catch (IOException ioe)
@@ -275,6 +343,80 @@ public abstract class AbstractReport implements Report
       return new BufferedWriter(fw, 8192);
    }
 
+   /**
+    * Set the format of the data file written next to the HTML page
+    *
+    * @param dataFormat The format: json or csv; <code>null</code> or empty for none
+    */
+   public void setDataFormat(String dataFormat)
+   {
+      this.dataFormat = RowWriter.Format.of(dataFormat);
+   }
+
+   /**
+    * Set whether the HTML page is written
+    *
+    * @param html The value
+    */
+   public void setHtml(boolean html)
+   {
+      this.html = html;
+   }
+
+   /**
+    * Is the HTML page written
+    *
+    * @return The value
+    */
+   public boolean isHtml()
+   {
+      return html;
+   }
+
+   /**
+    * Get the columns of the data file
+    *
+    * @return The column names; <code>null</code> if the report has no data file
+    */
+   protected String[] getDataColumns()
+   {
+      return null;
+   }
+
+   /**
+    * Write the rows of the data file, one per call of
+    * {@link RowWriter#writeRow(Object...)} as they are found. The report status is
+    * set here too, as the HTML content may not be written.
+    *
+    * @param rows The row writer
+    * @exception IOException If an error occurs
+    */
+   protected void writeDataRows(RowWriter rows) throws IOException
+   {
+   }
+
+   /**
+    * Are the rows of the data file written along with the HTML content, in the same pass
+    * over the report's data, rather than by {@link #writeDataRows(RowWriter)}
+    *
+    * @return True if the HTML content writes them to {@link #getDataRows()}; otherwise false
+    */
+   protected boolean isDataWrittenWithHtml()
+   {
+      return false;
+   }
+
+   /**
+    * Get the data file to write along with the HTML content
+    *
+    * @return The row writer; <code>null</code> if there is no data file, or it is written
+    *         separately
+    */
+   protected RowWriter getDataRows()
+   {
+      return dataRows;
+   }
+
    /**
     * Set the archives to be represented by this report
     *
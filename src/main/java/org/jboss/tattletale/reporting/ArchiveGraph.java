@@ -0,0 +1,482 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.tattletale.reporting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jboss.tattletale.core.Archive;
+import org.jboss.tattletale.core.ArchiveType;
+import org.jboss.tattletale.core.NestableArchive;
+import org.jboss.tattletale.reporting.classloader.ClassLoaderStructure;
+
+/**
+ * The dependencies between the archives of a scan, computed once and shared by the
+ * dependency reports.
+ * <p>
+ * A reverse index from class name to the archives providing it, in the order of the
+ * archives, replaces the scan of every archive for each required class, and the
+ * classloader structure is asked at most once whether an archive sees another one.
+ * An archive depends on another one when it, or one of its sub-archives, requires a
+ * class and the other one is the first archive, in order, providing that class that it
+ * can see, as given by {@link #getProvider(Archive, String)}. When two archives ship
+ * the same classes only the first one visible is a dependency, so every report sees
+ * the same edges. {@link #getDependsOn(Archive)} and {@link #getDependants(Archive)}
+ * give both directions of that relation.
+ * <p>
+ * The indexes are built on first use and the graph can be shared between threads.
+ */
+public class ArchiveGraph
+{
+   /** The archives, in order */
+   private final Archive[] archives;
+
+   /** The classloader structure; <code>null</code> if every archive sees the others */
+   private final ClassLoaderStructure cls;
+
+   /** The position of each archive */
+   private final Map<Archive, Integer> indexes;
+
+   /** The visibility of an archive from another one: 0 if not known yet, 1 if visible, 2 if not */
+   private final byte[][] visibility;
+
+   /** Class name to the archives providing it, in order */
+   private volatile Map<String, int[]> providers;
+
+   /** The archives each archive depends on */
+   private volatile List<List<Archive>> dependsOn;
+
+   /** The archives depending on each archive */
+   private List<List<Archive>> dependants;
+
+   /** The graphs of the sub-archives of nestable archives */
+   private final Map<NestableArchive, ArchiveGraph> subGraphs;
+
+   /**
+    * Constructor
+    *
+    * @param archives The archives, in the order in which providers are looked up
+    * @param cls      The classloader structure; <code>null</code> if every archive sees the others
+    */
+   public ArchiveGraph(Collection<Archive> archives, ClassLoaderStructure cls)
+   {
+      this.archives = archives.toArray(new Archive[archives.size()]);
+      this.cls = cls;
+      this.indexes = new IdentityHashMap<>();
+      for (int i = 0; i < this.archives.length; i++)
+      {
+         indexes.put(this.archives[i], i);
+      }
+      this.visibility = new byte[this.archives.length][];
+      this.subGraphs = new IdentityHashMap<>();
+   }
+
+   /**
+    * Get the archives
+    *
+    * @return The archives, in order
+    */
+   public List<Archive> getArchives()
+   {
+      return Collections.unmodifiableList(Arrays.asList(archives));
+   }
+
+   /**
+    * Get the first archive providing a class that can be seen from an archive
+    *
+    * @param from The archive requiring the class
+    * @param clz  The class name
+    * @return The archive; <code>null</code> if none
+    */
+   public Archive getProvider(Archive from, String clz)
+   {
+      return getProvider(from, clz, null);
+   }
+
+   /**
+    * Get the first archive of a type providing a class that can be seen from an archive
+    *
+    * @param from The archive requiring the class
+    * @param clz  The class name
+    * @param type The archive type; <code>null</code> for any type
+    * @return The archive; <code>null</code> if none
+    */
+   public Archive getProvider(Archive from, String clz, ArchiveType type)
+   {
+      int provider = getProviderPosition(from, clz, type);
+      return provider != -1 ? archives[provider] : null;
+   }
+
+   /**
+    * Get the archives an archive depends on
+    *
+    * @param archive The archive
+    * @return The archives, in order; empty if the archive isn't part of this graph
+    */
+   public List<Archive> getDependsOn(Archive archive)
+   {
+      Integer index = indexes.get(archive);
+      if (index == null)
+      {
+         return Collections.emptyList();
+      }
+      buildEdges();
+      return dependsOn.get(index.intValue());
+   }
+
+   /**
+    * Get the archives depending on an archive
+    *
+    * @param archive The archive
+    * @return The archives, in order; empty if the archive isn't part of this graph
+    */
+   public List<Archive> getDependants(Archive archive)
+   {
+      Integer index = indexes.get(archive);
+      if (index == null)
+      {
+         return Collections.emptyList();
+      }
+      buildEdges();
+      return dependants.get(index.intValue());
+   }
+
+   /**
+    * Get the strongly connected components of the edges leading to archives of a type,
+    * where the nodes are the positions of the archives. Followed to the archives they
+    * depend on, the edges lead to the first visible provider of that type, as given by
+    * {@link #getProvider(Archive, String, ArchiveType)}.
+    *
+    * @param dependants True to follow the edges from the archives to their dependants;
+    *                   false to follow them to the archives they depend on
+    * @param type       The type of the archives the edges lead to; <code>null</code> for any type
+    * @return The components
+    */
+   public ComponentGraph getComponents(boolean dependants, ArchiveType type)
+   {
+      BitSet[] edges;
+      if (dependants)
+      {
+         buildEdges();
+         edges = new BitSet[archives.length];
+         for (int i = 0; i < archives.length; i++)
+         {
+            edges[i] = new BitSet(archives.length);
+            for (Archive a : this.dependants.get(i))
+            {
+               if (type == null || a.getType() == type)
+               {
+                  edges[i].set(indexes.get(a).intValue());
+               }
+            }
+         }
+      }
+      else
+      {
+         edges = findEdges(type);
+      }
+
+      int[][] successors = new int[archives.length][];
+      for (int i = 0; i < archives.length; i++)
+      {
+         successors[i] = new int[edges[i].cardinality()];
+         int size = 0;
+         for (int j = edges[i].nextSetBit(0); j >= 0; j = edges[i].nextSetBit(j + 1))
+         {
+            successors[i][size++] = j;
+         }
+      }
+      return new ComponentGraph(successors);
+   }
+
+   /**
+    * Get the graph of the sub-archives of a nestable archive
+    *
+    * @param archive The archive
+    * @return The graph
+    */
+   public ArchiveGraph getSubGraph(NestableArchive archive)
+   {
+      synchronized (subGraphs)
+      {
+         ArchiveGraph graph = subGraphs.get(archive);
+         if (graph == null)
+         {
+            graph = new ArchiveGraph(archive.getSubArchives(), cls);
+            subGraphs.put(archive, graph);
+         }
+         return graph;
+      }
+   }
+
+   /**
+    * Can one archive see the other
+    *
+    * @param from The from archive
+    * @param to   The to archive
+    * @return True if from can see to; otherwise false
+    */
+   public boolean isVisible(Archive from, Archive to)
+   {
+      Integer index = indexes.get(to);
+      if (index == null)
+      {
+         return cls == null || cls.isVisible(from, to);
+      }
+      return isVisible(from, index.intValue());
+   }
+
+   /**
+    * Get the classes required by an archive and its sub-archives
+    *
+    * @param archive The archive
+    * @return The class names
+    */
+   public static Set<String> getRequires(Archive archive)
+   {
+      Set<String> requires = new TreeSet<>();
+      addRequires(archive, requires);
+      return requires;
+   }
+
+   /**
+    * Add the classes required by an archive and its sub-archives
+    *
+    * @param archive  The archive
+    * @param requires The class names
+    */
+   private static void addRequires(Archive archive, Set<String> requires)
+   {
+      requires.addAll(archive.getRequires());
+      if (archive instanceof NestableArchive)
+      {
+         for (Archive sa : ((NestableArchive) archive).getSubArchives())
+         {
+            addRequires(sa, requires);
+         }
+      }
+   }
+
+   /**
+    * Can an archive see the archive at a position, asking the classloader structure
+    * once for the archives of this graph
+    *
+    * @param from The from archive
+    * @param to   The position of the to archive
+    * @return True if from can see to; otherwise false
+    */
+   private boolean isVisible(Archive from, int to)
+   {
+      if (cls == null)
+      {
+         return true;
+      }
+
+      Integer index = indexes.get(from);
+      if (index == null)
+      {
+         return cls.isVisible(from, archives[to]);
+      }
+
+      byte[] row = getVisibilityRow(index.intValue());
+      if (row[to] == 0)
+      {
+         row[to] = cls.isVisible(from, archives[to]) ? (byte) 1 : (byte) 2;
+      }
+      return row[to] == 1;
+   }
+
+   /**
+    * Get the visibility of the archives from the archive at a position
+    *
+    * @param from The position
+    * @return The visibility of each archive
+    */
+   private byte[] getVisibilityRow(int from)
+   {
+      synchronized (visibility)
+      {
+         if (visibility[from] == null)
+         {
+            visibility[from] = new byte[archives.length];
+         }
+         return visibility[from];
+      }
+   }
+
+   /**
+    * Get the position of the first archive of a type providing a class that can be seen
+    * from an archive
+    *
+    * @param from The archive requiring the class
+    * @param clz  The class name
+    * @param type The archive type; <code>null</code> for any type
+    * @return The position; -1 if none
+    */
+   private int getProviderPosition(Archive from, String clz, ArchiveType type)
+   {
+      int[] candidates = getProviders().get(clz);
+      if (candidates != null)
+      {
+         for (int candidate : candidates)
+         {
+            if ((type == null || archives[candidate].getType() == type) && isVisible(from, candidate))
+            {
+               return candidate;
+            }
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Find the archives each archive depends on
+    *
+    * @param type The type of the archives depended on; <code>null</code> for any type
+    * @return The positions of the archives, for each archive
+    */
+   private BitSet[] findEdges(ArchiveType type)
+   {
+      BitSet[] forward = new BitSet[archives.length];
+      for (int i = 0; i < archives.length; i++)
+      {
+         forward[i] = new BitSet(archives.length);
+         for (String require : getRequires(archives[i]))
+         {
+            int provider = getProviderPosition(archives[i], require, type);
+            if (provider != -1)
+            {
+               forward[i].set(provider);
+            }
+         }
+      }
+      return forward;
+   }
+
+   /**
+    * Get the reverse index, building it on first use
+    *
+    * @return Class name to the positions of the archives providing it, ascending
+    */
+   private Map<String, int[]> getProviders()
+   {
+      if (providers != null)
+      {
+         return providers;
+      }
+
+      synchronized (this)
+      {
+         if (providers != null)
+         {
+            return providers;
+         }
+
+         Map<String, int[]> index = new HashMap<>();
+         for (int i = 0; i < archives.length; i++)
+         {
+            for (String clz : archives[i].getProvides().keySet())
+            {
+               int[] previous = index.get(clz);
+               int[] current;
+               if (previous == null)
+               {
+                  current = new int[] {i};
+               }
+               else
+               {
+                  current = new int[previous.length + 1];
+                  System.arraycopy(previous, 0, current, 0, previous.length);
+                  current[previous.length] = i;
+               }
+               index.put(clz, current);
+            }
+         }
+         providers = index;
+         return index;
+      }
+   }
+
+   /** Build the edges of the graph on first use */
+   private void buildEdges()
+   {
+      if (dependsOn != null)
+      {
+         return;
+      }
+
+      synchronized (this)
+      {
+         if (dependsOn != null)
+         {
+            return;
+         }
+
+         BitSet[] forward = findEdges(null);
+         BitSet[] reverse = new BitSet[archives.length];
+         for (int i = 0; i < archives.length; i++)
+         {
+            reverse[i] = new BitSet(archives.length);
+         }
+         for (int i = 0; i < archives.length; i++)
+         {
+            for (int j = forward[i].nextSetBit(0); j >= 0; j = forward[i].nextSetBit(j + 1))
+            {
+               reverse[j].set(i);
+            }
+         }
+
+         dependants = toLists(reverse);
+         dependsOn = toLists(forward);
+      }
+   }
+
+   /**
+    * Turn sets of positions into lists of archives
+    *
+    * @param edges The positions, for each archive
+    * @return The archives, for each archive
+    */
+   private List<List<Archive>> toLists(BitSet[] edges)
+   {
+      List<List<Archive>> lists = new ArrayList<>(edges.length);
+      for (BitSet edge : edges)
+      {
+         List<Archive> list = new ArrayList<>(edge.cardinality());
+         for (int i = edge.nextSetBit(0); i >= 0; i = edge.nextSetBit(i + 1))
+         {
+            list.add(archives[i]);
+         }
+         lists.add(Collections.unmodifiableList(list));
+      }
+      return lists;
+   }
+}
@@ -29,12 +29,12 @@ package org.jboss.tattletale.reporting;
 public class BooleanFilter implements Filter
 {
    /** Boolean Filter */
-   private Boolean booleanFilter;
+   private boolean booleanFilter;
 
    /** Constructor */
    public BooleanFilter()
    {
-      this.booleanFilter = Boolean.FALSE;
+      this.booleanFilter = false;
    }
 
    /**
@@ -85,11 +85,11 @@ public class BooleanFilter implements Filter
       {
          if ("yes".equalsIgnoreCase(filter) || "on".equalsIgnoreCase(filter) || "true".equalsIgnoreCase(filter))
          {
-            booleanFilter = Boolean.TRUE;
+            booleanFilter = true;
          }
          else
          {
-            booleanFilter = Boolean.FALSE;
+            booleanFilter = false;
          }
       }
    }
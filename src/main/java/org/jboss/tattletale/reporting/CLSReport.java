@@ -39,6 +39,9 @@ public abstract class CLSReport extends AbstractReport
    /** the CLS */
    private ClassLoaderStructure cls = null;
 
+   /** The dependencies between the archives */
+   private ArchiveGraph archiveGraph;
+
    /**
     * Constructor
     *
@@ -69,24 +72,61 @@ public abstract class CLSReport extends AbstractReport
     * @param classloaderStructure The Classloader Structure to be used in generating this report
     */
    public void setCLS(String classloaderStructure)
+   {
+      cls = createCLS(classloaderStructure);
+   }
+
+   /**
+    * Create a ClassLoader Structure
+    *
+    * @param classloaderStructure The class name of the Classloader Structure
+    * @return The ClassLoader Structure; <code>null</code> if it can't be created
+    */
+   public static ClassLoaderStructure createCLS(String classloaderStructure)
    {
       try
       {
          Class<?> c = CLSReport.class.getClassLoader().loadClass(classloaderStructure);
-         cls = (ClassLoaderStructure) c.newInstance();
+         return (ClassLoaderStructure) c.newInstance();
       }
       catch (Exception e)
       {
          try
          {
             Class<?> c = CLSReport.class.getClassLoader().loadClass(classloaderStructure);
-            cls = (ClassLoaderStructure) c.newInstance();
+            return (ClassLoaderStructure) c.newInstance();
          }
          catch (Exception ntd)
          {
             // Ignore
          }
       }
+      return null;
+   }
+
+   /**
+    * Get the dependencies between the archives, built from the archives and the
+    * ClassLoader Structure of this report unless one was set
+    *
+    * @return The archive graph
+    */
+   ArchiveGraph getArchiveGraph()
+   {
+      if (archiveGraph == null)
+      {
+         archiveGraph = new ArchiveGraph(archives, cls);
+      }
+      return archiveGraph;
+   }
+
+   /**
+    * Set the dependencies between the archives, shared by the reports
+    *
+    * @param archiveGraph The archive graph
+    */
+   public void setArchiveGraph(ArchiveGraph archiveGraph)
+   {
+      this.archiveGraph = archiveGraph;
    }
 
    /**
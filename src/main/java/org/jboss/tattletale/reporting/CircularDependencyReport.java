@@ -24,8 +24,8 @@ package org.jboss.tattletale.reporting;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
@@ -51,6 +51,9 @@ public class CircularDependencyReport extends CLSReport
    /** DIRECTORY */
    private static final String DIRECTORY = "circulardependency";
 
+   /** The dependencies, while the report is generated */
+   private Dependencies dependencies;
+
    /** Constructor */
    public CircularDependencyReport()
    {
@@ -73,168 +76,342 @@ public class CircularDependencyReport extends CLSReport
       bw.write("     <th>Circular Dependencies</th>" + Dump.newLine());
       bw.write("  </tr>" + Dump.newLine());
 
-      SortedMap<String, SortedSet<String>> dependsOnMap = recursivelyBuildDependsOnFromArchive(archives);
-      SortedMap<String, SortedSet<String>> transitiveDependsOnMap = new TreeMap<>();
-      Iterator<Map.Entry<String, SortedSet<String>>> dit = dependsOnMap.entrySet().iterator();
-      while (dit.hasNext())
-      {
-         Map.Entry<String, SortedSet<String>> entry = dit.next();
+      Dependencies dependencies = getDependencies();
+      String[] names = dependencies.names;
+      ComponentGraph graph = dependencies.graph;
 
-         String archive = entry.getKey();
-         SortedSet<String> value = entry.getValue();
+      boolean odd = true;
 
-         SortedSet<String> result = new TreeSet<>();
+      for (int i = 0; i < names.length; i++)
+      {
+         String archive = names[i];
+         int component = graph.getComponent(i);
+         int[] members = graph.getMembers(component);
 
-         if (value != null && value.size() > 0)
+         // an archive has circular dependencies on the other archives of its component
+         if (members.length > 1)
          {
-            for (String aValue : value)
+            BitSet value = graph.getReachable(i);
+
+            BitSet circular = new BitSet(names.length);
+            for (int member : members)
+            {
+               circular.set(member);
+            }
+            circular.clear(i);
+
+            boolean filtered = isFiltered(archive);
+            if (!filtered)
+            {
+               status = ReportStatus.RED;
+            }
+
+            if (odd)
+            {
+               bw.write("  <tr class=\"rowodd\">" + Dump.newLine());
+            }
+            else
+            {
+               bw.write("  <tr class=\"roweven\">" + Dump.newLine());
+            }
+            bw.write("    <td>" + hrefToReport(archive) + "</td>" + Dump.newLine());
+
+            if (!filtered)
+            {
+               bw.write("    <td>");
+            }
+            else
             {
-               resolveDependsOn(aValue, archive, dependsOnMap, result);
+               bw.write("    <td style=\"text-decoration: line-through;\">");
             }
+            List<String> hrefs = new ArrayList<String>();
+            for (int r = value.nextSetBit(0); r >= 0; r = value.nextSetBit(r + 1))
+            {
+               if (r != i)
+               {
+                  hrefs.add(hrefToReport(names[r], circular.get(r)));
+               }
+            }
+            bw.write(join(hrefs, ", "));
+            bw.write("</td>" + Dump.newLine());
+            bw.write("  </tr>" + Dump.newLine());
+
+            odd = !odd;
+         }
+      }
+
+      bw.write("</table>" + Dump.newLine());
+
+      writeCycles(bw, graph, names);
+   }
+
+   /**
+    * Write the groups of archives depending on each other, with a shortest cycle
+    * through each group
+    *
+    * @param bw    the writer to use
+    * @param graph The components of the dependencies
+    * @param names The archive names
+    * @throws IOException if an error occurs
+    */
+   private void writeCycles(BufferedWriter bw, ComponentGraph graph, String[] names) throws IOException
+   {
+      // the groups in the order of their first archive
+      SortedMap<Integer, int[]> groups = new TreeMap<>();
+      for (int component = 0; component < graph.getComponentCount(); component++)
+      {
+         int[] members = graph.getMembers(component);
+         if (members.length > 1)
+         {
+            groups.put(members[0], members);
          }
+      }
 
-         transitiveDependsOnMap.put(archive, result);
+      if (groups.size() == 0)
+      {
+         return;
       }
 
+      bw.write(Dump.newLine());
+
+      bw.write("<table>" + Dump.newLine());
+
+      bw.write("  <tr>" + Dump.newLine());
+      bw.write("     <th>Cycle</th>" + Dump.newLine());
+      bw.write("     <th>Shortest Path</th>" + Dump.newLine());
+      bw.write("  </tr>" + Dump.newLine());
+
       boolean odd = true;
 
-      dit = transitiveDependsOnMap.entrySet().iterator();
-      while (dit.hasNext())
+      for (int[] members : groups.values())
       {
-         Map.Entry<String, SortedSet<String>> entry = dit.next();
+         boolean filtered = true;
+         List<String> hrefs = new ArrayList<String>();
+         for (int member : members)
+         {
+            filtered = filtered && isFiltered(names[member]);
+            hrefs.add(hrefToReport(names[member]));
+         }
 
-         String archive = entry.getKey();
-         SortedSet<String> value = entry.getValue();
+         if (odd)
+         {
+            bw.write("  <tr class=\"rowodd\">" + Dump.newLine());
+         }
+         else
+         {
+            bw.write("  <tr class=\"roweven\">" + Dump.newLine());
+         }
 
-         int finalDot = archive.lastIndexOf(".");
-         String extension = archive.substring(finalDot + 1);
+         if (!filtered)
+         {
+            bw.write("    <td>");
+         }
+         else
+         {
+            bw.write("    <td style=\"text-decoration: line-through;\">");
+         }
+         bw.write(join(hrefs, ", "));
+         bw.write("</td>" + Dump.newLine());
 
-         if (value.size() != 0)
+         List<String> path = new ArrayList<String>();
+         int[] cycle = graph.getShortestCycle(graph.getComponent(members[0]));
+         for (int node : cycle)
          {
-            SortedSet<String> circular = new TreeSet<>();
+            path.add(hrefToReport(names[node]));
+         }
+         path.add(hrefToReport(names[cycle[0]]));
+         bw.write("    <td>" + join(path, " -&gt; ") + "</td>" + Dump.newLine());
+         bw.write("  </tr>" + Dump.newLine());
+
+         odd = !odd;
+      }
+
+      bw.write("</table>" + Dump.newLine());
+   }
+
+   /**
+    * Get the columns of the data file
+    *
+    * @return The column names
+    */
+   @Override
+   protected String[] getDataColumns()
+   {
+      return new String[] {"archive", "dependencies", "circular", "cycle", "filtered"};
+   }
+
+   /**
+    * Write a row per archive with circular dependencies, with a shortest cycle through
+    * its group
+    *
+    * @param rows The row writer
+    * @throws IOException if an error occurs
+    */
+   @Override
+   protected void writeDataRows(RowWriter rows) throws IOException
+   {
+      Dependencies dependencies = getDependencies();
+      String[] names = dependencies.names;
+      ComponentGraph graph = dependencies.graph;
 
-            Iterator<String> valueIt = value.iterator();
-            while (valueIt.hasNext())
+      for (int i = 0; i < names.length; i++)
+      {
+         int component = graph.getComponent(i);
+         int[] members = graph.getMembers(component);
+
+         if (members.length > 1)
+         {
+            boolean filtered = isFiltered(names[i]);
+            if (!filtered)
             {
-               String r = valueIt.next();
-               SortedSet<String> td = transitiveDependsOnMap.get(r);
-               if (td != null && td.contains(archive))
-               {
-                  circular.add(r);
-               }
+               status = ReportStatus.RED;
             }
 
-            if (circular.size() > 0)
+            BitSet value = graph.getReachable(i);
+            List<String> reachable = new ArrayList<String>(value.cardinality());
+            for (int r = value.nextSetBit(0); r >= 0; r = value.nextSetBit(r + 1))
             {
-               boolean filtered = isFiltered(archive);
-               if (!filtered)
+               if (r != i)
                {
-                  status = ReportStatus.RED;
+                  reachable.add(names[r]);
                }
+            }
 
-               if (odd)
-               {
-                  bw.write("  <tr class=\"rowodd\">" + Dump.newLine());
-               }
-               else
-               {
-                  bw.write("  <tr class=\"roweven\">" + Dump.newLine());
-               }
-bw.write("    <td>" + hrefToReport(archive) + "</td>" + Dump.newLine());
-
-               if (!isFiltered(archive))
-               {
-                  status = ReportStatus.RED;
-                  bw.write("    <td>");
-               }
-               else
-               {
-                  bw.write("    <td style=\"text-decoration: line-through;\">");
-               }
-               List<String> hrefs = new ArrayList<String>();
-               for (String r : value)
+            List<String> circular = new ArrayList<String>(members.length - 1);
+            for (int member : members)
+            {
+               if (member != i)
                {
-                  hrefs.add(hrefToReport(r, circular.contains(r)));
+                  circular.add(names[member]);
                }
-               bw.write(join(hrefs, ", "));
-               bw.write("</td>" + Dump.newLine());
-               bw.write("  </tr>" + Dump.newLine());
+            }
 
-               odd = !odd;
+            int[] cycle = graph.getShortestCycle(component);
+            List<String> path = new ArrayList<String>(cycle.length + 1);
+            for (int node : cycle)
+            {
+               path.add(names[node]);
             }
+            path.add(names[cycle[0]]);
+
+            rows.writeRow(names[i], reachable, circular, path, filtered);
          }
       }
+   }
 
-      bw.write("</table>" + Dump.newLine());
+   /**
+    * Generate the report(s); the dependencies are built once for the HTML page and the
+    * data file
+    *
+    * @param outputDirectory The top-level output directory
+    */
+   @Override
+   public void generate(String outputDirectory)
+   {
+      try
+      {
+         super.generate(outputDirectory);
+      }
+      finally
+      {
+         dependencies = null;
+      }
    }
 
-   private SortedMap<String, SortedSet<String>> recursivelyBuildDependsOnFromArchive(Collection<Archive> archives)
+   /**
+    * Get the dependencies between the archives, built on first use
+    *
+    * @return The dependencies
+    */
+   private Dependencies getDependencies()
    {
-	   
-      SortedMap<String, SortedSet<String>> dependsOnMap = new TreeMap<>();
-      for (Archive archive : archives)
+      if (dependencies == null)
       {
-    	 if (archive instanceof NestableArchive)
-         {
-            NestableArchive nestableArchive = (NestableArchive) archive;
-            SortedMap<String, SortedSet<String>> subMap = recursivelyBuildDependsOnFromArchive(nestableArchive.getSubArchives());
-            dependsOnMap.putAll(subMap);
-         }
-         else
+         List<ArchiveGraph> graphs = new ArrayList<>();
+         collectGraphs(getArchiveGraph(), graphs);
+
+         // the archives of nested graphs with the same name are one node, numbered in
+         // name order so that ascending ids give sorted names
+         SortedSet<String> allNames = new TreeSet<>();
+         List<ComponentGraph> rows = new ArrayList<>(graphs.size());
+         for (ArchiveGraph graph : graphs)
          {
-            SortedSet<String> result = dependsOnMap.get(archive.getName());
-            if (result == null)
+            ComponentGraph row = graph.getComponents(false, ArchiveType.JAR);
+            rows.add(row);
+            List<Archive> nodes = graph.getArchives();
+            for (int i = 0; i < nodes.size(); i++)
             {
-               result = new TreeSet<>();
+               if (!(nodes.get(i) instanceof NestableArchive))
+               {
+                  allNames.add(nodes.get(i).getName());
+                  for (int j : row.getSuccessors(i))
+                  {
+                     allNames.add(nodes.get(j).getName());
+                  }
+               }
             }
+         }
+         String[] names = allNames.toArray(new String[allNames.size()]);
+         Map<String, Integer> ids = new HashMap<>();
+         for (int i = 0; i < names.length; i++)
+         {
+            ids.put(names[i], i);
+         }
 
-            for (String require : archive.getRequires())
+         BitSet[] targets = new BitSet[names.length];
+         for (int g = 0; g < graphs.size(); g++)
+         {
+            List<Archive> nodes = graphs.get(g).getArchives();
+            for (int i = 0; i < nodes.size(); i++)
             {
-               boolean found = false;
-               Iterator<Archive> ait = archives.iterator();
-               while (!found && ait.hasNext())
+               if (!(nodes.get(i) instanceof NestableArchive))
                {
-                  Archive a = ait.next();
-
-                  if (a.getType() == ArchiveType.JAR)
+                  int id = ids.get(nodes.get(i).getName()).intValue();
+                  if (targets[id] == null)
+                  {
+                     targets[id] = new BitSet(names.length);
+                  }
+                  for (int j : rows.get(g).getSuccessors(i))
                   {
-                     if (a.doesProvide(require) && (getCLS() == null || getCLS().isVisible(archive, a)))
-                     {
-                        result.add(a.getName());
-                        found = true;
-                     }
+                     targets[id].set(ids.get(nodes.get(j).getName()).intValue());
                   }
                }
             }
+         }
 
-            dependsOnMap.put(archive.getName(), result);
+         int[][] edges = new int[names.length][];
+         for (int i = 0; i < names.length; i++)
+         {
+            edges[i] = new int[targets[i] != null ? targets[i].cardinality() : 0];
+            int j = 0;
+            if (targets[i] != null)
+            {
+               for (int t = targets[i].nextSetBit(0); t >= 0; t = targets[i].nextSetBit(t + 1))
+               {
+                  edges[i][j++] = t;
+               }
+            }
          }
+
+         dependencies = new Dependencies(names, new ComponentGraph(edges));
       }
-      return dependsOnMap;
+      return dependencies;
    }
 
    /**
-    * Get depends on
+    * Collect a graph and the graphs of its nestable archives
     *
-    * @param scanArchive The scan archive
-    * @param archive     The archive
-    * @param map         The depends on map
-    * @param result      The result
+    * @param graph  The graph
+    * @param graphs The graphs found so far
     */
-   private void resolveDependsOn(String scanArchive, String archive,
-                                 SortedMap<String, SortedSet<String>> map, SortedSet<String> result)
+   private static void collectGraphs(ArchiveGraph graph, List<ArchiveGraph> graphs)
    {
-      if (!archive.equals(scanArchive) && !result.contains(scanArchive))
+      graphs.add(graph);
+      for (Archive archive : graph.getArchives())
       {
-         result.add(scanArchive);
-
-         SortedSet<String> value = map.get(scanArchive);
-         if (value != null)
+         if (archive instanceof NestableArchive)
          {
-            for (String aValue : value)
-            {
-               resolveDependsOn(aValue, archive, map, result);
-            }
+            collectGraphs(graph.getSubGraph((NestableArchive) archive), graphs);
          }
       }
    }
@@ -249,4 +426,28 @@ bw.write("    <td>" + hrefToReport(archive) + "</td>" + Dump.newLine());
    {
       return new KeyFilter();
    }
+
+   /**
+    * The archives, numbered in name order, and the components of their dependencies
+    */
+   private static class Dependencies
+   {
+      /** The archive names */
+      private final String[] names;
+
+      /** The components of the dependencies */
+      private final ComponentGraph graph;
+
+      /**
+       * Constructor
+       *
+       * @param names The archive names
+       * @param graph The components of the dependencies
+       */
+      Dependencies(String[] names, ComponentGraph graph)
+      {
+         this.names = names;
+         this.graph = graph;
+      }
+   }
 }
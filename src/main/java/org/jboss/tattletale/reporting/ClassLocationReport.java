@@ -25,7 +25,6 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import static org.jboss.tattletale.utils.StringUtils.join;
@@ -47,6 +46,9 @@ public class ClassLocationReport extends AbstractReport
    /** Globally provides */
    private SortedMap<String, SortedSet<String>> gProvides;
 
+   /** The archives providing each class */
+   private ProviderIndex providerIndex;
+
    /** Constructor */
    public ClassLocationReport()
    {
@@ -63,6 +65,31 @@ public class ClassLocationReport extends AbstractReport
       this.gProvides = gProvides;
    }
 
+   /**
+    * Set the index of the archives providing each class, shared by the reports
+    *
+    * @param providerIndex The index
+    */
+   public void setProviderIndex(ProviderIndex providerIndex)
+   {
+      this.providerIndex = providerIndex;
+   }
+
+   /**
+    * Get the index of the archives providing each class, built from the globally
+    * provides map unless one was set
+    *
+    * @return The index
+    */
+   ProviderIndex getProviderIndex()
+   {
+      if (providerIndex == null)
+      {
+         providerIndex = new ProviderIndex(gProvides);
+      }
+      return providerIndex;
+   }
+
    /**
     * write the report's content
     *
@@ -79,54 +106,119 @@ public class ClassLocationReport extends AbstractReport
       bw.write("     <th>Archives</th>" + Dump.newLine());
       bw.write("  </tr>" + Dump.newLine());
 
+      writeRows(bw, getDataRows());
+
+      bw.write("</table>" + Dump.newLine());
+   }
+
+   /**
+    * Get the columns of the data file
+    *
+    * @return The column names
+    */
+   @Override
+   protected String[] getDataColumns()
+   {
+      return new String[] {"class", "archives", "filtered"};
+   }
+
+   /**
+    * Write a row per class
+    *
+    * @param rows The row writer
+    * @throws IOException if an error occurs
+    */
+   @Override
+   protected void writeDataRows(RowWriter rows) throws IOException
+   {
+      writeRows(null, rows);
+   }
+
+   /**
+    * The data file is written along with the HTML table
+    *
+    * @return True
+    */
+   @Override
+   protected boolean isDataWrittenWithHtml()
+   {
+      return true;
+   }
+
+   /**
+    * Walk the classes once, writing a HTML table row and a data file row for each,
+    * and set the report status
+    *
+    * @param bw   The HTML writer; <code>null</code> for none
+    * @param rows The row writer; <code>null</code> for none
+    * @throws IOException if an error occurs
+    */
+   private void writeRows(BufferedWriter bw, RowWriter rows) throws IOException
+   {
       boolean odd = true;
 
-      for (Map.Entry<String, SortedSet<String>> entry : gProvides.entrySet())
+      ProviderIndex index = getProviderIndex();
+      for (int i = 0; i < index.size(); i++)
       {
-         String clz = entry.getKey();
-         SortedSet<String> archives = entry.getValue();
-         
-         if (odd)
-         {
-            bw.write("  <tr class=\"rowodd\">" + Dump.newLine());
-         }
-         else
+         String clz = index.getClassName(i);
+         int[] archives = index.getProviders(i);
+         boolean filtered = isFiltered(clz);
+         if (archives.length > 0 && !filtered)
          {
-            bw.write("  <tr class=\"roweven\">" + Dump.newLine());
+            status = ReportStatus.YELLOW;
          }
-         bw.write("     <td>" + clz + "</td>" + Dump.newLine());
-         
-         if (0 == archives.size())
-         {
-            bw.write("<td>&nbsp;");
-         }
-         else
+
+         if (bw != null)
          {
-            if (!isFiltered(clz))
+            if (odd)
             {
-               status = ReportStatus.YELLOW;
-            bw.write("        <td>");
-         }
-         else
-         {
-            bw.write("        <td style=\"text-decoration: line-through;\">");
-         }
+               bw.write("  <tr class=\"rowodd\">" + Dump.newLine());
+            }
+            else
+            {
+               bw.write("  <tr class=\"roweven\">" + Dump.newLine());
+            }
+            bw.write("     <td>" + clz + "</td>" + Dump.newLine());
 
-            List<String> hrefs = new ArrayList<String>();
-            for (String archive : archives)
+            if (0 == archives.length)
             {
-               hrefs.add(hrefToReport(archive));
+               bw.write("<td>&nbsp;");
             }
-            bw.write(join(hrefs, ", "));
-         }
+            else
+            {
+               if (!filtered)
+               {
+                  bw.write("        <td>");
+               }
+               else
+               {
+                  bw.write("        <td style=\"text-decoration: line-through;\">");
+               }
 
-         bw.write("</td>" + Dump.newLine());
-         bw.write("  </tr>" + Dump.newLine());
+               List<String> hrefs = new ArrayList<String>();
+               for (int archive : archives)
+               {
+                  hrefs.add(hrefToReport(index.getArchiveName(archive)));
+               }
+               bw.write(join(hrefs, ", "));
+            }
 
-         odd = !odd;
-      }
+            bw.write("</td>" + Dump.newLine());
+            bw.write("  </tr>" + Dump.newLine());
 
-      bw.write("</table>" + Dump.newLine());
+            odd = !odd;
+         }
+
+         if (rows != null)
+         {
+            List<String> names = new ArrayList<String>(archives.length);
+            for (int archive : archives)
+            {
+               names.add(index.getArchiveName(archive));
+            }
+            rows.writeRow(clz, names, filtered);
+         }
+      }
    }
 
    /**
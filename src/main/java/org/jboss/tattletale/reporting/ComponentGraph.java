@@ -0,0 +1,303 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.tattletale.reporting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The strongly connected components of a directed graph whose nodes are numbered
+ * from 0, found with an iterative version of Tarjan's algorithm in time linear in
+ * the number of nodes and edges.
+ * <p>
+ * Components are numbered in reverse topological order: every edge leaving a
+ * component leads to a component with a lower number. The nodes reachable from a
+ * node are found on the graph of the components, which has no cycles, and are kept
+ * once per component.
+ */
+public class ComponentGraph
+{
+   /** The successors of each node */
+   private final int[][] edges;
+
+   /** The component of each node */
+   private final int[] components;
+
+   /** The nodes of each component, ascending */
+   private final List<int[]> members;
+
+   /** The nodes reachable from each component, computed on first use */
+   private BitSet[] closures;
+
+   /**
+    * Constructor
+    *
+    * @param edges The successors of each node
+    */
+   public ComponentGraph(int[][] edges)
+   {
+      this.edges = edges;
+      this.components = new int[edges.length];
+      this.members = new ArrayList<>();
+
+      int n = edges.length;
+      int[] index = new int[n];
+      int[] lowlink = new int[n];
+      int[] next = new int[n];
+      boolean[] onStack = new boolean[n];
+      int[] stack = new int[n];
+      int[] path = new int[n];
+      int stackSize = 0;
+      int counter = 0;
+      Arrays.fill(index, -1);
+
+      for (int root = 0; root < n; root++)
+      {
+         if (index[root] != -1)
+         {
+            continue;
+         }
+
+         int pathSize = 0;
+         index[root] = lowlink[root] = counter++;
+         stack[stackSize++] = root;
+         onStack[root] = true;
+         path[pathSize++] = root;
+
+         while (pathSize > 0)
+         {
+            int v = path[pathSize - 1];
+            if (next[v] < edges[v].length)
+            {
+               int w = edges[v][next[v]++];
+               if (index[w] == -1)
+               {
+                  index[w] = lowlink[w] = counter++;
+                  stack[stackSize++] = w;
+                  onStack[w] = true;
+                  path[pathSize++] = w;
+               }
+               else if (onStack[w])
+               {
+                  lowlink[v] = Math.min(lowlink[v], index[w]);
+               }
+            }
+            else
+            {
+               pathSize--;
+               if (pathSize > 0)
+               {
+                  int u = path[pathSize - 1];
+                  lowlink[u] = Math.min(lowlink[u], lowlink[v]);
+               }
+
+               if (lowlink[v] == index[v])
+               {
+                  int start = stackSize;
+                  do
+                  {
+                     start--;
+                  }
+                  while (stack[start] != v);
+
+                  int[] component = Arrays.copyOfRange(stack, start, stackSize);
+                  Arrays.sort(component);
+                  for (int w : component)
+                  {
+                     onStack[w] = false;
+                     components[w] = members.size();
+                  }
+                  members.add(component);
+                  stackSize = start;
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Get the number of nodes
+    *
+    * @return The number of nodes
+    */
+   public int getNodeCount()
+   {
+      return edges.length;
+   }
+
+   /**
+    * Get the nodes an edge leads to from a node
+    *
+    * @param node The node
+    * @return The nodes
+    */
+   public int[] getSuccessors(int node)
+   {
+      return edges[node].clone();
+   }
+
+   /**
+    * Get the number of components
+    *
+    * @return The number of components
+    */
+   public int getComponentCount()
+   {
+      return members.size();
+   }
+
+   /**
+    * Get the component of a node
+    *
+    * @param node The node
+    * @return The component
+    */
+   public int getComponent(int node)
+   {
+      return components[node];
+   }
+
+   /**
+    * Get the nodes of a component
+    *
+    * @param component The component
+    * @return The nodes, ascending
+    */
+   public int[] getMembers(int component)
+   {
+      return members.get(component).clone();
+   }
+
+   /**
+    * Get the nodes reachable from a node
+    *
+    * @param node The node
+    * @return The nodes, including the node itself
+    */
+   public BitSet getReachable(int node)
+   {
+      return (BitSet) getClosure(components[node]).clone();
+   }
+
+   /**
+    * Get the nodes reachable from a component. The first call computes them for every
+    * component, in ascending order so that those of the components an edge leads to are
+    * known and reused.
+    *
+    * @param component The component
+    * @return The nodes
+    */
+   private BitSet getClosure(int component)
+   {
+      if (closures == null)
+      {
+         closures = new BitSet[members.size()];
+         for (int c = 0; c < closures.length; c++)
+         {
+            BitSet closure = new BitSet(edges.length);
+            for (int node : members.get(c))
+            {
+               closure.set(node);
+               for (int w : edges[node])
+               {
+                  if (components[w] != c)
+                  {
+                     closure.or(closures[components[w]]);
+                  }
+               }
+            }
+            closures[c] = closure;
+         }
+      }
+      return closures[component];
+   }
+
+   /**
+    * Get a shortest cycle going through the nodes of a component only
+    *
+    * @param component The component
+    * @return The nodes of the cycle, starting with its lowest node and without repeating
+    *         it at the end; empty if the component has no cycle
+    */
+   public int[] getShortestCycle(int component)
+   {
+      int[] nodes = members.get(component);
+      int[] best = new int[0];
+
+      int[] parent = new int[edges.length];
+      int[] queue = new int[nodes.length];
+      for (int start : nodes)
+      {
+         // breadth-first search from start until an edge leads back to it
+         for (int node : nodes)
+         {
+            parent[node] = -1;
+         }
+         int head = 0;
+         int tail = 0;
+         queue[tail++] = start;
+         parent[start] = start;
+         int last = -1;
+
+         while (head < tail && last == -1)
+         {
+            int v = queue[head++];
+            for (int w : edges[v])
+            {
+               if (w == start)
+               {
+                  last = v;
+                  break;
+               }
+               if (components[w] == component && parent[w] == -1)
+               {
+                  parent[w] = v;
+                  queue[tail++] = w;
+               }
+            }
+         }
+
+         if (last != -1)
+         {
+            int length = 1;
+            for (int v = last; v != start; v = parent[v])
+            {
+               length++;
+            }
+
+            if (best.length == 0 || length < best.length)
+            {
+               best = new int[length];
+               int i = length;
+               for (int v = last; v != start; v = parent[v])
+               {
+                  best[--i] = v;
+               }
+               best[0] = start;
+            }
+         }
+      }
+      return best;
+   }
+}
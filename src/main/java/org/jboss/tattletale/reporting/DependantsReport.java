@@ -29,7 +29,6 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.jboss.tattletale.core.Archive;
-import org.jboss.tattletale.core.NestableArchive;
 import static org.jboss.tattletale.utils.StringUtils.join;
 
 /**
@@ -90,17 +89,9 @@ public class DependantsReport extends CLSReport
 
          SortedSet<String> result = new TreeSet<>();
 
-         for (Archive a : archives)
+         for (Archive a : getArchiveGraph().getDependants(archive))
          {
-
-            for (String require : getRequires(archive))
-            {
-
-               if (archive.doesProvide(require) && (getCLS() == null || getCLS().isVisible(a, archive)))
-               {
-                  result.add(a.getName());
-               }
-            }
+            result.add(a.getName());
          }
 
          if (result.size() == 0)
@@ -125,24 +116,4 @@ public class DependantsReport extends CLSReport
 
       bw.write("</table>" + Dump.newLine());
    }
-
-   private SortedSet<String> getRequires(Archive archive)
-   {
-      SortedSet<String> requires = new TreeSet<>();
-      if (archive instanceof NestableArchive)
-      {
-         NestableArchive nestableArchive = (NestableArchive) archive;
-         List<Archive> subArchives = nestableArchive.getSubArchives();
-         requires.addAll(nestableArchive.getRequires());
-         for (Archive sa : subArchives)
-         {
-            requires.addAll(getRequires(sa));
-         }
-      }
-      else
-      {
-         requires.addAll(archive.getRequires());
-      }
-      return requires;
-   }
 }
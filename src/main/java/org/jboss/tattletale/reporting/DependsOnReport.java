@@ -30,7 +30,6 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.jboss.tattletale.core.Archive;
-import org.jboss.tattletale.core.NestableArchive;
 import org.jboss.tattletale.profiles.Profile;
 import org.jboss.tattletale.utils.StringUtils;
 
@@ -90,19 +89,14 @@ public class DependsOnReport extends CLSReport
 
          SortedSet<String> result = new TreeSet<>();
 
-         for (String require : getRequires(archive))
+         for (String require : ArchiveGraph.getRequires(archive))
          {
+            Archive a = getArchiveGraph().getProvider(archive, require);
+            boolean found = a != null;
 
-            boolean found = false;
-
-            for (Archive a : archives)
+            if (found)
             {
-               if (a.doesProvide(require) && (getCLS() == null || getCLS().isVisible(archive, a)))
-               {
-                  result.add(a.getName());
-                  found = true;
-                  break;
-               }
+               result.add(a.getName());
             }
 
             if (!found)
@@ -161,25 +155,4 @@ public class DependsOnReport extends CLSReport
 
       bw.write("</table>" + Dump.newLine());
    }
-
-   private SortedSet<String> getRequires(Archive archive)
-   {
-      SortedSet<String> requires = new TreeSet<>();
-      if (archive instanceof NestableArchive)
-      {
-         NestableArchive nestableArchive = (NestableArchive) archive;
-         List<Archive> subArchives = nestableArchive.getSubArchives();
-         for (Archive sa : subArchives)
-         {
-            requires.addAll(getRequires(sa));
-         }
-
-         requires.addAll(nestableArchive.getRequires());
-      }
-      else
-      {
-         requires.addAll(archive.getRequires());
-      }
-      return requires;
-   }
 }
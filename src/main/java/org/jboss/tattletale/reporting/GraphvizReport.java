@@ -27,7 +27,6 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -129,18 +128,10 @@ public class GraphvizReport extends CLSReport
 
          for (String require : getRequires(archive))
          {
-
-            boolean found = false;
-            Iterator<Archive> ait = archives.iterator();
-            while (!found && ait.hasNext())
+            Archive a = getArchiveGraph().getProvider(archive, require);
+            if (a != null)
             {
-               Archive a = ait.next();
-
-               if (a.doesProvide(require) && (getCLS() == null || getCLS().isVisible(archive, a)))
-               {
-                  result.add(a.getName());
-                  found = true;
-               }
+               result.add(a.getName());
             }
          }
 
@@ -37,6 +37,7 @@ import org.jboss.tattletale.core.NestableArchive;
 import org.jboss.tattletale.profiles.ExtendedProfile;
 import org.jboss.tattletale.profiles.JBossAS7Profile;
 import org.jboss.tattletale.profiles.Profile;
+import org.jboss.tattletale.profiles.ProfileRegistry;
 
 /**
  * Report type that makes use of the {@link org.jboss.tattletale.profiles.ExtendedProfile} to find which module
@@ -157,7 +158,7 @@ public class JBossDeploymentStructureReport extends CLSReport
       bw.write("  <deployment>" + Dump.newLine());
       bw.write("     <dependencies>" + Dump.newLine());
 
-      ExtendedProfile as7Profile = new JBossAS7Profile();
+      ExtendedProfile as7Profile = ProfileRegistry.get(JBossAS7Profile.class);
       SortedSet<String> moduleIdentifiers = new TreeSet<>();
 
       for (String requiredClass : requires)
@@ -21,10 +21,10 @@
  */
 package org.jboss.tattletale.reporting;
 
-import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.StringTokenizer;
-import java.util.TreeSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jboss.tattletale.utils.PrefixTrie;
 
 /**
  * Represents a key filter
@@ -34,12 +34,12 @@ import java.util.TreeSet;
 public class KeyFilter implements Filter
 {
    /** Key Filters */
-   private final SortedSet<String> keyFilters;
+   private PrefixTrie keyFilters;
 
    /** Constructor */
    public KeyFilter()
    {
-      keyFilters = new TreeSet<>(new SizeComparator());
+      keyFilters = PrefixTrie.EMPTY;
    }
 
    /**
@@ -62,32 +62,7 @@ public class KeyFilter implements Filter
    @Override
    public boolean isFiltered(String archive)
    {
-      if (archive.endsWith(".class"))
-      {
-         archive = archive.substring(0, archive.indexOf(".class"));
-      }
-
-      if (archive.endsWith(".jar"))
-      {
-         archive = archive.substring(0, archive.indexOf(".jar"));
-      }
-
-      if (archive.endsWith(".*"))
-      {
-         archive = archive.substring(0, archive.indexOf(".*"));
-      }
-
-      archive = archive.replace('.', '/');
-
-      for (String v : keyFilters)
-      {
-         if (archive.startsWith(v))
-         {
-            return true;
-         }
-      }
-
-      return false;
+      return matches(keyFilters, archive);
    }
 
    /**
@@ -113,6 +88,8 @@ public class KeyFilter implements Filter
    {
       if (filter != null)
       {
+         Set<String> values = new HashSet<>(keyFilters);
+
          for (String value : filter.split(","))
          {
             boolean includeAll = false;
@@ -140,8 +117,49 @@ public class KeyFilter implements Filter
                value += '/';
             }
 
-            keyFilters.add(value);
+            values.add(value);
          }
+
+         keyFilters = new PrefixTrie(values);
+      }
+   }
+
+   /**
+    * Does a name match one of the prefixes; the name is read without its .class, .jar
+    * or .* suffix and with / for ., as the prefixes are stored, without copying it
+    *
+    * @param prefixes The prefixes
+    * @param name     The class, archive or package name
+    * @return True if a prefix matches
+    */
+   static boolean matches(PrefixTrie prefixes, String name)
+   {
+      if (prefixes.isEmpty())
+      {
+         return false;
+      }
+
+      int end = stripSuffix(name, name.length(), ".class");
+      end = stripSuffix(name, end, ".jar");
+      end = stripSuffix(name, end, ".*");
+
+      return prefixes.matches(name, 0, end, '.', '/');
+   }
+
+   /**
+    * Strip a suffix from the start of a name, cutting at its first occurrence
+    *
+    * @param name   The name
+    * @param end    The end of the part of the name read so far
+    * @param suffix The suffix
+    * @return The end of the part of the name without the suffix
+    */
+   static int stripSuffix(String name, int end, String suffix)
+   {
+      if (end >= suffix.length() && name.regionMatches(end - suffix.length(), suffix, 0, suffix.length()))
+      {
+         return name.indexOf(suffix);
       }
+      return end;
    }
 }
@@ -22,11 +22,11 @@
 package org.jboss.tattletale.reporting;
 
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.StringTokenizer;
-import java.util.TreeSet;
+import java.util.Set;
+
+import org.jboss.tattletale.utils.PrefixTrie;
 
 /**
  * Represents a key/value filter
@@ -36,7 +36,7 @@ import java.util.TreeSet;
 public class KeyValueFilter implements Filter
 {
    /** KeyValue Filters */
-   private final Map<String, SortedSet<String>> keyValueFilters;
+   private final Map<String, PrefixTrie> keyValueFilters;
 
    /** Constructor */
    public KeyValueFilter()
@@ -77,37 +77,9 @@ public class KeyValueFilter implements Filter
    @Override
    public boolean isFiltered(String archive, String query)
    {
-      SortedSet<String> ss = keyValueFilters.get(archive);
-
-      if (ss != null)
-      {
-         if (query.endsWith(".class"))
-         {
-            query = query.substring(0, query.indexOf(".class"));
-         }
-
-         if (query.endsWith(".jar"))
-         {
-            query = query.substring(0, query.indexOf(".jar"));
-         }
-
-         if (query.endsWith(".*"))
-         {
-            query = query.substring(0, query.indexOf(".*"));
-         }
-
-         query = query.replace('.', '/');
-
-         for (String v : ss)
-         {
-            if (query.startsWith(v))
-            {
-               return true;
-            }
-         }
-      }
+      PrefixTrie ss = keyValueFilters.get(archive);
 
-      return false;
+      return ss != null && KeyFilter.matches(ss, query);
    }
 
    /**
@@ -127,7 +99,7 @@ public class KeyValueFilter implements Filter
             String key = token.substring(0, equal);
             String values = token.substring(equal + 1);
 
-            SortedSet<String> v = new TreeSet<>(new SizeComparator());
+            Set<String> v = new HashSet<>();
 
             for (String value : values.split(","))
             {
@@ -159,7 +131,7 @@ public class KeyValueFilter implements Filter
                v.add(value);
             }
 
-            keyValueFilters.put(key, v);
+            keyValueFilters.put(key, new PrefixTrie(v));
          }
       }
    }
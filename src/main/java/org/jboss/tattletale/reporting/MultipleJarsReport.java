@@ -25,7 +25,6 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import org.jboss.tattletale.utils.StringUtils;
@@ -47,6 +46,9 @@ public class MultipleJarsReport extends AbstractReport
    /** Globally provides */
    private SortedMap<String, SortedSet<String>> gProvides;
 
+   /** The archives providing each class */
+   private ProviderIndex providerIndex;
+
    /** Constructor */
    public MultipleJarsReport()
    {
@@ -63,6 +65,31 @@ public class MultipleJarsReport extends AbstractReport
       this.gProvides = gProvides;
    }
 
+   /**
+    * Set the index of the archives providing each class, shared by the reports
+    *
+    * @param providerIndex The index
+    */
+   public void setProviderIndex(ProviderIndex providerIndex)
+   {
+      this.providerIndex = providerIndex;
+   }
+
+   /**
+    * Get the index of the archives providing each class, built from the globally
+    * provides map unless one was set
+    *
+    * @return The index
+    */
+   ProviderIndex getProviderIndex()
+   {
+      if (providerIndex == null)
+      {
+         providerIndex = new ProviderIndex(gProvides);
+      }
+      return providerIndex;
+   }
+
 
    /**
     * write out the report's content
@@ -80,50 +107,115 @@ public class MultipleJarsReport extends AbstractReport
       bw.write("     <th>Archives</th>" + Dump.newLine());
       bw.write("  </tr>" + Dump.newLine());
 
+      writeRows(bw, getDataRows());
+
+      bw.write("</table>" + Dump.newLine());
+   }
+
+   /**
+    * Get the columns of the data file
+    *
+    * @return The column names
+    */
+   @Override
+   protected String[] getDataColumns()
+   {
+      return new String[] {"class", "archives", "filtered"};
+   }
+
+   /**
+    * Write a row per class provided by more than one archive
+    *
+    * @param rows The row writer
+    * @throws IOException if an error occurs
+    */
+   @Override
+   protected void writeDataRows(RowWriter rows) throws IOException
+   {
+      writeRows(null, rows);
+   }
+
+   /**
+    * The data file is written along with the HTML table
+    *
+    * @return True
+    */
+   @Override
+   protected boolean isDataWrittenWithHtml()
+   {
+      return true;
+   }
+
+   /**
+    * Walk the classes provided by more than one archive once, writing a HTML table row
+    * and a data file row for each, and set the report status
+    *
+    * @param bw   The HTML writer; <code>null</code> for none
+    * @param rows The row writer; <code>null</code> for none
+    * @throws IOException if an error occurs
+    */
+   private void writeRows(BufferedWriter bw, RowWriter rows) throws IOException
+   {
       boolean odd = true;
 
-      for (Map.Entry<String, SortedSet<String>> entry : gProvides.entrySet())
+      ProviderIndex index = getProviderIndex();
+      for (int i = 0; i < index.size(); i++)
       {
+         int[] archives = index.getProviders(i);
 
-         String clz = entry.getKey();
-         SortedSet<String> archives = entry.getValue();
-
-         if (archives.size() > 1)
+         if (archives.length > 1)
          {
-            if (odd)
-            {
-               bw.write("  <tr class=\"rowodd\">" + Dump.newLine());
-            }
-            else
-            {
-               bw.write("  <tr class=\"roweven\">" + Dump.newLine());
-            }
-            bw.write("     <td>" + clz + "</td>" + Dump.newLine());
-            if (!isFiltered(clz))
+            String clz = index.getClassName(i);
+            boolean filtered = isFiltered(clz);
+            if (!filtered)
             {
                status = ReportStatus.RED;
-               bw.write("     <td>");
             }
-            else
+
+            if (bw != null)
             {
-               bw.write("     <td style=\"text-decoration: line-through;\">");
+               if (odd)
+               {
+                  bw.write("  <tr class=\"rowodd\">" + Dump.newLine());
+               }
+               else
+               {
+                  bw.write("  <tr class=\"roweven\">" + Dump.newLine());
+               }
+               bw.write("     <td>" + clz + "</td>" + Dump.newLine());
+               if (!filtered)
+               {
+                  bw.write("     <td>");
+               }
+               else
+               {
+                  bw.write("     <td style=\"text-decoration: line-through;\">");
+               }
+
+               List<String> hrefs = new ArrayList<String>();
+               for (int archive : archives)
+               {
+                  hrefs.add(hrefToReport(index.getArchiveName(archive)));
+               }
+               bw.write(StringUtils.join(hrefs, ", "));
+
+               bw.write("</td>" + Dump.newLine());
+               bw.write("  </tr>" + Dump.newLine());
+
+               odd = !odd;
             }
 
-            List<String> hrefs = new ArrayList<String>();
-            for (String archive : archives)
+            if (rows != null)
             {
-               hrefs.add(hrefToReport(archive));
+               List<String> names = new ArrayList<String>(archives.length);
+               for (int archive : archives)
+               {
+                  names.add(index.getArchiveName(archive));
+               }
+               rows.writeRow(clz, names, filtered);
             }
-            bw.write(StringUtils.join(hrefs, ", "));
-
-            bw.write("</td>" + Dump.newLine());
-            bw.write("  </tr>" + Dump.newLine());
-
-            odd = !odd;
          }
       }
-
-      bw.write("</table>" + Dump.newLine());
    }
 
    /**
@@ -91,6 +91,12 @@ public class OSGiReport extends AbstractReport
    {
       super.generate(outputDirectory);
 
+      // the archive pages have no data file
+      if (!isHtml())
+      {
+         return;
+      }
+
       try
       {
          for (Archive archive : archives)
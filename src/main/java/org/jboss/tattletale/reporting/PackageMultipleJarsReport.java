@@ -24,12 +24,10 @@ package org.jboss.tattletale.reporting;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
 import static org.jboss.tattletale.utils.StringUtils.join;
 
 /**
@@ -49,6 +47,9 @@ public class PackageMultipleJarsReport extends AbstractReport
    /** Globally provides */
    private SortedMap<String, SortedSet<String>> gProvides;
 
+   /** The archives providing each class */
+   private ProviderIndex providerIndex;
+
    /** Constructor */
    public PackageMultipleJarsReport()
    {
@@ -66,6 +67,31 @@ public class PackageMultipleJarsReport extends AbstractReport
       this.gProvides = gProvides;
    }
 
+   /**
+    * Set the index of the archives providing each class, shared by the reports
+    *
+    * @param providerIndex The index
+    */
+   public void setProviderIndex(ProviderIndex providerIndex)
+   {
+      this.providerIndex = providerIndex;
+   }
+
+   /**
+    * Get the index of the archives providing each class, built from the globally
+    * provides map unless one was set
+    *
+    * @return The index
+    */
+   ProviderIndex getProviderIndex()
+   {
+      if (providerIndex == null)
+      {
+         providerIndex = new ProviderIndex(gProvides);
+      }
+      return providerIndex;
+   }
+
    /**
     * write the report's content
     *
@@ -82,76 +108,44 @@ public class PackageMultipleJarsReport extends AbstractReport
       bw.write("     <th>Archives</th>" + Dump.newLine());
       bw.write("  </tr>" + Dump.newLine());
 
-      SortedMap<String, SortedSet<String>> packageProvides = new TreeMap<>();
+      PackageTrie packages = getProviderIndex().getPackages();
+      int nonFilteredProblems = 0;
+      boolean odd = true;
 
-      for (Map.Entry<String, SortedSet<String>> entry : gProvides.entrySet())
+      // Only display packages that are present in more than 1 lib
+      for (String pkg : packages.getPackages(2))
       {
-         String clz = entry.getKey();
-         SortedSet<String> archives = entry.getValue();
-
-         String packageName;
-         if (clz.indexOf('.') == -1)
+         if (odd)
          {
-            packageName = "";
+            bw.write("  <tr class=\"rowodd\">" + Dump.newLine());
          }
          else
          {
-            packageName = clz.substring(0, clz.lastIndexOf('.'));
+            bw.write("  <tr class=\"roweven\">" + Dump.newLine());
          }
-
-         SortedSet<String> packageJars = packageProvides.get(packageName);
-         if (packageJars == null)
+         bw.write("     <td>" + pkg + "</td>" + Dump.newLine());
+         if (!isFiltered(pkg))
          {
-            packageJars = new TreeSet<>();
+            nonFilteredProblems++;
+            status = ReportStatus.YELLOW;
+            bw.write("        <td>");
          }
-
-         packageJars.addAll(archives);
-
-         packageProvides.put(packageName, packageJars);
-      }
-
-      int nonFilteredProblems = 0;
-      boolean odd = true;
-
-      for (Map.Entry<String, SortedSet<String>> entry : packageProvides.entrySet())
-      {
-         String pkg = entry.getKey();
-         SortedSet<String> archives = entry.getValue();
-
-         // Only display packages that are present in more than 1 lib
-         if (archives.size() > 1)
+         else
          {
-
-            if (odd)
-            {
-               bw.write("  <tr class=\"rowodd\">" + Dump.newLine());
-            }
-            else
-            {
-               bw.write("  <tr class=\"roweven\">" + Dump.newLine());
-            }
-            bw.write("     <td>" + pkg + "</td>" + Dump.newLine());
-            if (!isFiltered(pkg))
-            {
-               nonFilteredProblems++;
-               status = ReportStatus.YELLOW;
-               bw.write("        <td>");
-            }
-            else
-            {
-               bw.write("        <td style=\"text-decoration: line-through;\">");
-            }
-            List<String> hrefs = new ArrayList<String>();
-            for (String archive : archives) {
-                hrefs.add(hrefToReport(archive));
-            }
-            bw.write(join(hrefs, ", "));
-
-            bw.write("</td>" + Dump.newLine());
-            bw.write("  </tr>" + Dump.newLine());
-
-            odd = !odd;
+            bw.write("        <td style=\"text-decoration: line-through;\">");
          }
+         List<String> hrefs = new ArrayList<String>();
+         BitSet archives = packages.getArchives(pkg);
+         for (int id = archives.nextSetBit(0); id >= 0; id = archives.nextSetBit(id + 1))
+         {
+            hrefs.add(hrefToReport(getProviderIndex().getArchiveName(id)));
+         }
+         bw.write(join(hrefs, ", "));
+
+         bw.write("</td>" + Dump.newLine());
+         bw.write("  </tr>" + Dump.newLine());
+
+         odd = !odd;
       }
 
       if (nonFilteredProblems >= 10) status = ReportStatus.RED;
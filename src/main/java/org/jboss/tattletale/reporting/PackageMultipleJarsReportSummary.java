@@ -24,14 +24,12 @@ package org.jboss.tattletale.reporting;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
 import org.jboss.tattletale.utils.StringUtils;
 
 /**
@@ -58,6 +56,11 @@ public class PackageMultipleJarsReportSummary extends SummaryDetailReport
      */
     private SortedMap<String, SortedSet<String>> gProvides;
 
+    /**
+     * The archives providing each class
+     */
+    private ProviderIndex providerIndex;
+
     /**
      * Constructor
      */
@@ -76,6 +79,31 @@ public class PackageMultipleJarsReportSummary extends SummaryDetailReport
         this.gProvides = gProvides;
     }
 
+    /**
+     * Set the index of the archives providing each class, shared by the reports
+     *
+     * @param providerIndex The index
+     */
+    public void setProviderIndex(ProviderIndex providerIndex) 
+    {
+        this.providerIndex = providerIndex;
+    }
+
+    /**
+     * Get the index of the archives providing each class, built from the globally
+     * provides map unless one was set
+     *
+     * @return The index
+     */
+    ProviderIndex getProviderIndex() 
+    {
+        if (providerIndex == null) 
+        {
+            providerIndex = new ProviderIndex(gProvides);
+        }
+        return providerIndex;
+    }
+
     /**
      * write the report's content
      *
@@ -90,9 +118,7 @@ public class PackageMultipleJarsReportSummary extends SummaryDetailReport
 
         writeHtmlTableHeaders(bw);
 
-        SortedMap<String, SortedSet<String>> packageProvides = extractPackageProvides();
-
-        writePackagesArchives(packageProvides, bw);
+        writePackagesArchives(getProviderIndex().getPackages(), bw);
 
         // End of HTML table
         bw.write("</table>" + Dump.newLine());
@@ -108,69 +134,17 @@ public class PackageMultipleJarsReportSummary extends SummaryDetailReport
         bw.write("  </tr>" + Dump.newLine());
     }
 
-    /**
-     * Extract for each package, the jars that provide it
-     * @return SortedMap that map a package name to archives (jars) that provide it
-     */
-    private SortedMap<String, SortedSet<String>> extractPackageProvides() 
-    {
-        // [package name] -> [archives : ie. jars]
-        final SortedMap<String, SortedSet<String>> packageProvides = new TreeMap<>();
-        for (Map.Entry<String, SortedSet<String>> entry : gProvides.entrySet()) 
-        {
-            String clz = entry.getKey();
-            SortedSet<String> clzArchives = entry.getValue();
-
-            // Extract package name
-            String packageName;
-
-            if (clz.indexOf('.') == -1) 
-            {
-                packageName = "";
-            } 
-            else 
-            {
-                packageName = clz.substring(0, clz.lastIndexOf('.'));
-            }
-
-            // Get jars having this package inside if any or create a new set
-            SortedSet<String> packageJars = packageProvides.get(packageName);
-            if (null == packageJars) 
-            {
-                packageJars = new TreeSet<>();
-            }
-
-            // Add new jars found having this package inside
-            packageJars.addAll(clzArchives);
-
-            // Update the jars set for this package
-            packageProvides.put(packageName, packageJars);
-        }
-        return packageProvides;
-    }
-
     /**
      * Write into HTML table common package prefix, included packages and associated archives
-     * @param packageProvides Map of packages names and archives (jars) that provide it
+     * @param packages The packages and the archives (jars) that provide them
      * @param bw
      * @throws IOException 
      */
-    private void writePackagesArchives(SortedMap<String, SortedSet<String>> packageProvides, BufferedWriter bw) throws IOException 
+    private void writePackagesArchives(PackageTrie packages, BufferedWriter bw) throws IOException 
     {
-        // Extract packages that are provided by more than 1 lib
-        SortedSet<String> packagesInMultipleLibs = new TreeSet<>();
+        // Group packages that are provided by more than 1 lib
         int nonFilteredProblems = 0;
-        for (Map.Entry<String, SortedSet<String>> entry : packageProvides.entrySet()) 
-        {
-            String pkg = entry.getKey();
-            SortedSet<String> pkgArchives = entry.getValue();
-            if (pkgArchives.size() > 1) 
-            {
-                packagesInMultipleLibs.add(pkg);
-            }
-        }
-        
-        SortedMap<String, SortedSet<String>> commons = getCommonsSubpackages(packagesInMultipleLibs);
+        SortedMap<String, SortedSet<String>> commons = packages.getCommonSubpackages(2);
         
         // Display package with associated archives/jars
         boolean odd = true;
@@ -205,15 +179,15 @@ public class PackageMultipleJarsReportSummary extends SummaryDetailReport
             }
             List<String> hrefs = new ArrayList<>();
 
-            SortedSet<String> archives = new TreeSet<>();
+            BitSet archives = new BitSet();
             for (String commonPkg : commonPkgs) 
             {
-                archives = packageProvides.get(commonPkg);
+                archives.or(packages.getArchives(commonPkg));
             }
 
-            for (String archive : archives) 
+            for (int id = archives.nextSetBit(0); id >= 0; id = archives.nextSetBit(id + 1)) 
             {
-                hrefs.add(hrefToReport(archive));
+                hrefs.add(hrefToReport(getProviderIndex().getArchiveName(id)));
             }
             bw.write(StringUtils.join(hrefs, ", "));
             bw.write("</td>" + Dump.newLine());
@@ -240,100 +214,14 @@ public class PackageMultipleJarsReportSummary extends SummaryDetailReport
     }
 
     /**
-     * Get common subpackage for packages
+     * Get common subpackage for packages: packages sharing their first two segments
+     * are grouped under the deepest subpackage they have in common
      * @param packages a Set of packages
      * @return SortedMap that maps a common sub package name to included packages
      */
     public static SortedMap<String, SortedSet<String>> getCommonsSubpackages(Set<String> packages) 
     {
-        // Common sub-package name -> set of common/included packages
-        SortedMap<String, SortedSet<String>> commons = new TreeMap<>();
-        for (String pkg : packages) 
-        {
-            boolean found = false;
-            for (String common : commons.keySet()) 
-            {
-                String commonPkg = getLongestCommonSubpackage(pkg, common);
-                if (commonPkg != null) 
-                {
-                    found = true;
-                    commons.get(common).add(pkg);
-                    commons.put(commonPkg, commons.remove(common));
-                    break;
-                }
-            }
-            if (!found) 
-            {
-                SortedSet<String> commonPackages = new TreeSet<>();
-                commonPackages.add(pkg);
-                commons.put(pkg, commonPackages);
-            }
-        }
-        return commons;
-    }
-    
-    /**
-     * Get the longest common subpackage
-     * @param a first package name
-     * @param b second package name
-     * @return common subpackage name
-     */
-    protected static String getLongestCommonSubpackage(String a, String b) 
-    {
-        int max = StringUtils.getGreatestCommonPrefix(a, b);
-        if (max <= 0) 
-        {
-            return null;
-        }
-        String longestString = a.length() > b.length() ? a : b;
-        String commonString = longestString.substring(0, max);
-        
-        String[] parts = commonString.split("\\.");
-        int dotOccurances = parts.length - 1;
-        if (dotOccurances<=0) 
-        {
-            return null;
-        }
-        else if (dotOccurances==1) 
-        {
-            if (commonString.endsWith(".")) 
-            {
-                return commonString.substring(0, commonString.length()-1);
-            }
-            else 
-            {
-                int indexOfNextDot = longestString.indexOf(".", max);
-                if (indexOfNextDot<0) {
-                    // Only parent package and a part of the sub package
-                    //  are the same -> not common
-                    return null;
-                } 
-                else if (commonString.equals(longestString.substring(0, indexOfNextDot))) 
-                {
-                    return commonString;
-                }
-            }
-        }
-        else 
-        {
-            if (commonString.endsWith(".")) 
-            {
-                return commonString.substring(0, commonString.length()-1);
-            }
-            else 
-            {
-                int indexOfNextDot = longestString.indexOf(".", max);
-                if (indexOfNextDot < 0) 
-                {
-                    return commonString.substring(0, commonString.lastIndexOf("."));
-                }
-                else if (commonString.equals(longestString.substring(0, indexOfNextDot))) 
-                {
-                    return commonString;
-                }
-            }
-        }
-        return null;
+        return new PackageTrie(packages).getCommonSubpackages(0);
     }
 
     @Override
@@ -0,0 +1,324 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.tattletale.reporting;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The packages of the classes, as a tree of their name segments, with the archives
+ * providing the classes of each package.
+ * <p>
+ * Packages sharing their first two segments have a common subpackage: the deepest
+ * package, or prefix of packages, they all are part of. Those are found in one
+ * traversal of the tree, from the packages up to the nodes of the first two segments.
+ * The tree is immutable once built and can be shared between threads.
+ */
+public class PackageTrie
+{
+   /** The segments a common subpackage has at least */
+   private static final int COMMON_DEPTH = 2;
+
+   /** The root node, the default package */
+   private final Node root;
+
+   /** The nodes of the packages, by name */
+   private final SortedMap<String, Node> packages;
+
+   /**
+    * Constructor
+    *
+    * @param index The archives providing each class
+    */
+   public PackageTrie(ProviderIndex index)
+   {
+      this.root = new Node("", 0);
+      this.packages = new TreeMap<>();
+
+      Node last = null;
+      for (int i = 0; i < index.size(); i++)
+      {
+         String clz = index.getClassName(i);
+         int end = Math.max(clz.lastIndexOf('.'), 0);
+
+         Node node = last;
+         if (node == null || node.name.length() != end || !clz.startsWith(node.name))
+         {
+            node = add(clz.substring(0, end));
+         }
+
+         for (int id : index.getProviders(i))
+         {
+            node.archives.set(id);
+         }
+         last = node;
+      }
+   }
+
+   /**
+    * Constructor
+    *
+    * @param packageNames The packages, without archives
+    */
+   public PackageTrie(Collection<String> packageNames)
+   {
+      this.root = new Node("", 0);
+      this.packages = new TreeMap<>();
+
+      for (String packageName : packageNames)
+      {
+         add(packageName);
+      }
+   }
+
+   /**
+    * Get the packages provided by a number of archives
+    *
+    * @param minArchives The number of archives a package is provided by at least
+    * @return The package names, ascending
+    */
+   public SortedSet<String> getPackages(int minArchives)
+   {
+      SortedSet<String> result = new TreeSet<>();
+      for (Node node : packages.values())
+      {
+         if (node.archives.cardinality() >= minArchives)
+         {
+            result.add(node.name);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Get the archives providing the classes of a package
+    *
+    * @param packageName The package name
+    * @return The archive numbers of the provider index; empty if the package isn't known
+    */
+   public BitSet getArchives(String packageName)
+   {
+      Node node = packages.get(packageName);
+      return node != null ? (BitSet) node.archives.clone() : new BitSet();
+   }
+
+   /**
+    * Group the packages provided by a number of archives by their common subpackage;
+    * a package without another one sharing its first two segments is its own group
+    *
+    * @param minArchives The number of archives a package is provided by at least
+    * @return The common subpackages, with the packages they include
+    */
+   public SortedMap<String, SortedSet<String>> getCommonSubpackages(int minArchives)
+   {
+      SortedMap<String, SortedSet<String>> result = new TreeMap<>();
+      collect(root, minArchives, result);
+      return result;
+   }
+
+   /**
+    * Add the groups of the packages below a node with less than two segments
+    *
+    * @param node        The node
+    * @param minArchives The number of archives a package is provided by at least
+    * @param result      The common subpackages
+    */
+   private void collect(Node node, int minArchives, SortedMap<String, SortedSet<String>> result)
+   {
+      if (node.isSelected(minArchives))
+      {
+         SortedSet<String> single = new TreeSet<>();
+         single.add(node.name);
+         result.put(node.name, single);
+      }
+
+      for (Node child : node.children.values())
+      {
+         if (child.depth < COMMON_DEPTH)
+         {
+            collect(child, minArchives, result);
+         }
+         else
+         {
+            Group group = rollup(child, minArchives);
+            if (group != null)
+            {
+               result.put(group.name, group.packages);
+            }
+         }
+      }
+   }
+
+   /**
+    * Get the group of the packages below a node with at least two segments
+    *
+    * @param node        The node
+    * @param minArchives The number of archives a package is provided by at least
+    * @return The group; <code>null</code> if there are no such packages
+    */
+   private Group rollup(Node node, int minArchives)
+   {
+      List<Group> groups = new ArrayList<>();
+      for (Node child : node.children.values())
+      {
+         Group group = rollup(child, minArchives);
+         if (group != null)
+         {
+            groups.add(group);
+         }
+      }
+
+      boolean selected = node.isSelected(minArchives);
+      if (!selected && groups.size() <= 1)
+      {
+         return groups.isEmpty() ? null : groups.get(0);
+      }
+
+      Group result = new Group(node.name);
+      if (selected)
+      {
+         result.packages.add(node.name);
+      }
+      for (Group group : groups)
+      {
+         result.packages.addAll(group.packages);
+      }
+      return result;
+   }
+
+   /**
+    * Get the node of a package, adding the nodes of its segments
+    *
+    * @param packageName The package name
+    * @return The node
+    */
+   private Node add(String packageName)
+   {
+      Node node = packages.get(packageName);
+      if (node != null)
+      {
+         return node;
+      }
+
+      node = root;
+      int start = 0;
+      while (start < packageName.length())
+      {
+         int end = packageName.indexOf('.', start);
+         if (end == -1)
+         {
+            end = packageName.length();
+         }
+
+         String segment = packageName.substring(start, end);
+         Node child = node.children.get(segment);
+         if (child == null)
+         {
+            child = new Node(packageName.substring(0, end), node.depth + 1);
+            node.children.put(segment, child);
+         }
+         node = child;
+         start = end + 1;
+      }
+
+      node.isPackage = true;
+      packages.put(packageName, node);
+      return node;
+   }
+
+   /**
+    * A package, or a prefix of packages
+    */
+   private static class Node
+   {
+      /** The name */
+      private final String name;
+
+      /** The number of segments */
+      private final int depth;
+
+      /** The nodes one segment longer, by segment */
+      private final Map<String, Node> children;
+
+      /** The archives providing the classes of the package */
+      private final BitSet archives;
+
+      /** Whether it is a package, and not only a prefix */
+      private boolean isPackage;
+
+      /**
+       * Constructor
+       *
+       * @param name  The name
+       * @param depth The number of segments
+       */
+      Node(String name, int depth)
+      {
+         this.name = name;
+         this.depth = depth;
+         this.children = new TreeMap<>();
+         this.archives = new BitSet();
+         this.isPackage = false;
+      }
+
+      /**
+       * Is the node a package provided by a number of archives
+       *
+       * @param minArchives The number of archives
+       * @return True if it is
+       */
+      boolean isSelected(int minArchives)
+      {
+         return isPackage && archives.cardinality() >= minArchives;
+      }
+   }
+
+   /**
+    * Packages and their common subpackage
+    */
+   private static class Group
+   {
+      /** The common subpackage */
+      private final String name;
+
+      /** The packages */
+      private final SortedSet<String> packages;
+
+      /**
+       * Constructor
+       *
+       * @param name The common subpackage
+       */
+      Group(String name)
+      {
+         this.name = name;
+         this.packages = new TreeSet<>();
+      }
+   }
+}
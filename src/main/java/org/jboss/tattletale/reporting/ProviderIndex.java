@@ -0,0 +1,195 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.tattletale.reporting;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * The archives providing each class, built once from the globally provides map and
+ * shared by the reports.
+ * <p>
+ * Archives are numbered in name order and classes in class name order, and each class
+ * holds the ascending numbers of its archives, so the index can be walked in the order
+ * of the globally provides map and a class can be looked up without building any set.
+ */
+public class ProviderIndex
+{
+   /** No archives */
+   private static final int[] NONE = new int[0];
+
+   /** The archive names, ascending */
+   private final String[] archives;
+
+   /** The class names, ascending */
+   private final String[] classes;
+
+   /** The archives providing each class, ascending */
+   private final int[][] providers;
+
+   /** The number of each archive */
+   private final Map<String, Integer> archiveIds;
+
+   /** The packages of the classes, built on first use */
+   private volatile PackageTrie packages;
+
+   /**
+    * Constructor
+    *
+    * @param gProvides The globally provides map
+    */
+   public ProviderIndex(SortedMap<String, SortedSet<String>> gProvides)
+   {
+      SortedSet<String> names = new TreeSet<>();
+      for (SortedSet<String> value : gProvides.values())
+      {
+         names.addAll(value);
+      }
+
+      this.archives = names.toArray(new String[names.size()]);
+      this.archiveIds = new HashMap<>();
+      for (int i = 0; i < archives.length; i++)
+      {
+         archiveIds.put(archives[i], i);
+      }
+
+      this.classes = new String[gProvides.size()];
+      this.providers = new int[gProvides.size()][];
+      int i = 0;
+      for (Map.Entry<String, SortedSet<String>> entry : gProvides.entrySet())
+      {
+         classes[i] = entry.getKey();
+         int[] ids = new int[entry.getValue().size()];
+         int j = 0;
+         for (String archive : entry.getValue())
+         {
+            ids[j++] = archiveIds.get(archive);
+         }
+         providers[i] = ids;
+         i++;
+      }
+   }
+
+   /**
+    * Get the number of classes
+    *
+    * @return The number of classes
+    */
+   public int size()
+   {
+      return classes.length;
+   }
+
+   /**
+    * Get a class name
+    *
+    * @param index The class number
+    * @return The class name
+    */
+   public String getClassName(int index)
+   {
+      return classes[index];
+   }
+
+   /**
+    * Get the archives providing a class
+    *
+    * @param index The class number
+    * @return The archive numbers, ascending; not to be modified
+    */
+   public int[] getProviders(int index)
+   {
+      return providers[index];
+   }
+
+   /**
+    * Get the archives providing a class
+    *
+    * @param clz The class name
+    * @return The archive numbers, ascending and empty if none; not to be modified
+    */
+   public int[] getProviders(String clz)
+   {
+      int index = Arrays.binarySearch(classes, clz);
+      return index >= 0 ? providers[index] : NONE;
+   }
+
+   /**
+    * Get the number of archives
+    *
+    * @return The number of archives
+    */
+   public int getArchiveCount()
+   {
+      return archives.length;
+   }
+
+   /**
+    * Get an archive name
+    *
+    * @param id The archive number
+    * @return The archive name
+    */
+   public String getArchiveName(int id)
+   {
+      return archives[id];
+   }
+
+   /**
+    * Get the number of an archive
+    *
+    * @param name The archive name
+    * @return The archive number; -1 if the archive provides no class
+    */
+   public int getArchiveId(String name)
+   {
+      Integer id = archiveIds.get(name);
+      return id != null ? id.intValue() : -1;
+   }
+
+   /**
+    * Get the packages of the classes with the archives providing them
+    *
+    * @return The packages
+    */
+   public PackageTrie getPackages()
+   {
+      PackageTrie result = packages;
+      if (result == null)
+      {
+         synchronized (this)
+         {
+            result = packages;
+            if (result == null)
+            {
+               result = new PackageTrie(this);
+               packages = result;
+            }
+         }
+      }
+      return result;
+   }
+}
@@ -0,0 +1,302 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.tattletale.reporting;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Locale;
+
+import org.jboss.tattletale.utils.StringUtils;
+
+/**
+ * Writes the rows of a report as they are produced, as JSON Lines or CSV, for tools
+ * reading the results of a run instead of the HTML pages.
+ * <p>
+ * A JSON row is an object keyed by column name on a line of its own. A CSV file starts
+ * with the column names; a collection in a cell is written as its values separated by
+ * a space, and cells are quoted when needed.
+ */
+public class RowWriter implements Closeable
+{
+   /**
+    * The formats
+    */
+   public enum Format
+   {
+      /** JSON Lines */
+      JSON("jsonl"),
+
+      /** Comma separated values */
+      CSV("csv");
+
+      /** The file extension */
+      private final String extension;
+
+      /**
+       * Constructor
+       *
+       * @param extension The file extension
+       */
+      Format(String extension)
+      {
+         this.extension = extension;
+      }
+
+      /**
+       * Get the file extension
+       *
+       * @return The value
+       */
+      public String getExtension()
+      {
+         return extension;
+      }
+
+      /**
+       * Get a format by name
+       *
+       * @param name The name: json, jsonl or csv, in any case
+       * @return The format; <code>null</code> if the name is <code>null</code> or empty
+       * @exception IllegalArgumentException If the name is not a format
+       */
+      public static Format of(String name)
+      {
+         if (name == null || name.trim().isEmpty())
+         {
+            return null;
+         }
+
+         String value = name.trim().toLowerCase(Locale.US);
+         for (Format format : values())
+         {
+            if (format.name().toLowerCase(Locale.US).equals(value) || format.extension.equals(value))
+            {
+               return format;
+            }
+         }
+         throw new IllegalArgumentException("Unknown data format: " + name);
+      }
+   }
+
+   /** The writer */
+   private final Writer out;
+
+   /** The format */
+   private final Format format;
+
+   /** The column names */
+   private final String[] columns;
+
+   /**
+    * Constructor
+    *
+    * @param file    The file
+    * @param format  The format
+    * @param columns The column names
+    * @exception IOException If the file can't be written
+    */
+   public RowWriter(File file, Format format, String... columns) throws IOException
+   {
+      this(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 8192),
+           format, columns);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param out     The writer
+    * @param format  The format
+    * @param columns The column names
+    * @exception IOException If the column names can't be written
+    */
+   public RowWriter(Writer out, Format format, String... columns) throws IOException
+   {
+      this.out = out;
+      this.format = format;
+      this.columns = columns.clone();
+
+      if (format == Format.CSV)
+      {
+         for (int i = 0; i < columns.length; i++)
+         {
+            if (i > 0)
+            {
+               out.write(',');
+            }
+            writeCsv(columns[i]);
+         }
+         out.write('\n');
+      }
+   }
+
+   /**
+    * Write a row
+    *
+    * @param values The values, one per column: strings, numbers, booleans, collections
+    *               of those or <code>null</code>
+    * @exception IOException If the row can't be written
+    */
+   public void writeRow(Object... values) throws IOException
+   {
+      if (values.length != columns.length)
+      {
+         throw new IllegalArgumentException(values.length + " values for " + columns.length + " columns");
+      }
+
+      if (format == Format.JSON)
+      {
+         out.write('{');
+         for (int i = 0; i < values.length; i++)
+         {
+            if (i > 0)
+            {
+               out.write(", ");
+            }
+            writeJson(columns[i]);
+            out.write(": ");
+            writeJson(values[i]);
+         }
+         out.write("}\n");
+      }
+      else
+      {
+         for (int i = 0; i < values.length; i++)
+         {
+            if (i > 0)
+            {
+               out.write(',');
+            }
+            writeCsv(values[i]);
+         }
+         out.write('\n');
+      }
+   }
+
+   /**
+    * Close the writer
+    *
+    * @exception IOException If an error occurs
+    */
+   @Override
+   public void close() throws IOException
+   {
+      out.close();
+   }
+
+   /**
+    * Write a JSON value
+    *
+    * @param value The value
+    * @exception IOException If an error occurs
+    */
+   private void writeJson(Object value) throws IOException
+   {
+      if (value == null || value instanceof Number || value instanceof Boolean)
+      {
+         out.write(String.valueOf(value));
+      }
+      else if (value instanceof Collection)
+      {
+         out.write('[');
+         boolean first = true;
+         for (Object element : (Collection<?>) value)
+         {
+            if (!first)
+            {
+               out.write(", ");
+            }
+            writeJson(element);
+            first = false;
+         }
+         out.write(']');
+      }
+      else
+      {
+         out.write(StringUtils.quoteJson(value.toString()));
+      }
+   }
+
+   /**
+    * Write a CSV cell
+    *
+    * @param value The value
+    * @exception IOException If an error occurs
+    */
+   private void writeCsv(Object value) throws IOException
+   {
+      if (value == null)
+      {
+         return;
+      }
+
+      String s;
+      if (value instanceof Collection)
+      {
+         StringBuilder sb = new StringBuilder();
+         for (Object element : (Collection<?>) value)
+         {
+            if (sb.length() > 0)
+            {
+               sb.append(' ');
+            }
+            sb.append(element);
+         }
+         s = sb.toString();
+      }
+      else
+      {
+         s = value.toString();
+      }
+
+      boolean quote = false;
+      for (int i = 0; i < s.length() && !quote; i++)
+      {
+         char c = s.charAt(i);
+         quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+      }
+
+      if (!quote)
+      {
+         out.write(s);
+         return;
+      }
+
+      out.write('"');
+      for (int i = 0; i < s.length(); i++)
+      {
+         char c = s.charAt(i);
+         if (c == '"')
+         {
+            out.write('"');
+         }
+         out.write(c);
+      }
+      out.write('"');
+   }
+}
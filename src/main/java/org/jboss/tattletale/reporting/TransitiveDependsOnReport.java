@@ -24,18 +24,11 @@ package org.jboss.tattletale.reporting;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.SortedMap;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
 
 import org.jboss.tattletale.core.Archive;
 import org.jboss.tattletale.core.ArchiveType;
-import org.jboss.tattletale.core.NestableArchive;
 import org.jboss.tattletale.utils.StringUtils;
 
 /**
@@ -74,59 +67,18 @@ public class TransitiveDependsOnReport extends CLSReport
       bw.write("     <th>Depends On</th>" + Dump.newLine());
       bw.write("  </tr>" + Dump.newLine());
 
-      SortedMap<String, SortedSet<String>> dependsOnMap = new TreeMap<>();
-
-      for (Archive archive : archives)
-      {
-         SortedSet<String> result = new TreeSet<>();
-
-         for (Archive a : archives)
-         {
-
-            if (a.getType() == ArchiveType.JAR)
-            {
-               for (String require : getRequires(a))
-               {
-
-                  if (archive.doesProvide(require) && (getCLS() == null || getCLS().isVisible(a, archive)))
-                  {
-                     result.add(a.getName());
-                  }
-               }
-            }
-         }
-
-         dependsOnMap.put(archive.getName(), result);
-      }
-
-      SortedMap<String, SortedSet<String>> transitiveDependsOnMap = new TreeMap<>();
-
-      for (Map.Entry<String, SortedSet<String>> entry : dependsOnMap.entrySet())
-      {
-
-         String archive = entry.getKey();
-         SortedSet<String> value = entry.getValue();
-
-         SortedSet<String> result = new TreeSet<>();
-
-         if (value != null && value.size() > 0)
-         {
-            for (String aValue : value)
-            {
-               resolveDependsOn(aValue, archive, dependsOnMap, result);
-            }
-         }
-
-         transitiveDependsOnMap.put(archive, result);
-      }
+      // the archives reachable from each archive, by position
+      ArchiveGraph graph = getArchiveGraph();
+      List<Archive> nodes = graph.getArchives();
+      ComponentGraph components = graph.getComponents(false, ArchiveType.JAR);
 
       boolean odd = true;
 
-      for (Map.Entry<String, SortedSet<String>> entry : transitiveDependsOnMap.entrySet())
+      for (int i = 0; i < nodes.size(); i++)
       {
-
-         String archive = entry.getKey();
-         SortedSet<String> value = entry.getValue();
+         String archive = nodes.get(i).getName();
+         BitSet value = components.getReachable(i);
+         value.clear(i);
 
          if (odd)
          {
@@ -139,15 +91,16 @@ public class TransitiveDependsOnReport extends CLSReport
          bw.write("    <td>" + hrefToReport(archive) + "</td>" + Dump.newLine());
          bw.write("     <td>");
 
-         if (value.size() == 0)
+         if (value.isEmpty())
          {
             bw.write("&nbsp;");
          }
          else
          {
             List<String> hrefs = new ArrayList<String>();
-            for (String r : value)
+            for (int j = value.nextSetBit(0); j >= 0; j = value.nextSetBit(j + 1))
             {
+               String r = nodes.get(j).getName();
                if (r.endsWith(".jar"))
                {
                   hrefs.add(hrefToReport(r));
@@ -176,51 +129,4 @@ public class TransitiveDependsOnReport extends CLSReport
 
       bw.write("</table>" + Dump.newLine());
    }
-
-   private Set<String> getRequires(Archive a)
-   {
-      Set<String> requires = new HashSet<>();
-      if (a instanceof NestableArchive)
-      {
-         NestableArchive na = (NestableArchive) a;
-         List<Archive> subArchives = na.getSubArchives();
-         requires.addAll(na.getRequires());
-
-         for (Archive sa : subArchives)
-         {
-            requires.addAll(getRequires(sa));
-         }
-      }
-      else
-      {
-         requires.addAll(a.getRequires());
-      }
-      return requires;
-   }
-
-   /**
-    * Get depends on
-    *
-    * @param scanArchive The scan archive
-    * @param archive     The archive
-    * @param map         The depends on map
-    * @param result      The result
-    */
-   private void resolveDependsOn(String scanArchive, String archive,
-                                 SortedMap<String, SortedSet<String>> map, SortedSet<String> result)
-   {
-      if (!archive.equals(scanArchive) && !result.contains(scanArchive))
-      {
-         result.add(scanArchive);
-
-         SortedSet<String> value = map.get(scanArchive);
-         if (value != null)
-         {
-            for (String aValue : value)
-            {
-               resolveDependsOn(aValue, archive, map, result);
-            }
-         }
-      }
-   }
 }
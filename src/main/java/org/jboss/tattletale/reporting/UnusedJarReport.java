@@ -25,6 +25,8 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.SortedMap;
+import java.util.SortedSet;
 //import java.util.Iterator;
 //import java.util.stream.Collectors;
 
@@ -45,12 +47,75 @@ public class UnusedJarReport extends AbstractReport
     /** DIRECTORY */
     private static final String DIRECTORY = "unusedjar";
 
+    /** Globally provides */
+    private SortedMap<String, SortedSet<String>> gProvides;
+
+    /** The archives providing each class */
+    private ProviderIndex providerIndex;
+
+    /** Whether each archive of the index is used, while the report is generated */
+    private boolean[] usedArchives;
+
     /** Constructor */
     public UnusedJarReport() 
     {
         super(DIRECTORY, ReportSeverity.WARNING, NAME, DIRECTORY);
     }
 
+    /**
+     * Set the globally provides map to be used in generating this report
+     *
+     * @param gProvides the map of global provides
+     */
+    public void setGlobalProvides(SortedMap<String, SortedSet<String>> gProvides)
+    {
+        this.gProvides = gProvides;
+    }
+
+    /**
+     * Set the index of the archives providing each class, shared by the reports
+     *
+     * @param providerIndex The index
+     */
+    public void setProviderIndex(ProviderIndex providerIndex)
+    {
+        this.providerIndex = providerIndex;
+    }
+
+    /**
+     * Get the index of the archives providing each class, built from the globally
+     * provides map unless one was set
+     *
+     * @return The index
+     */
+    ProviderIndex getProviderIndex()
+    {
+        if (providerIndex == null)
+        {
+            providerIndex = new ProviderIndex(gProvides);
+        }
+        return providerIndex;
+    }
+
+    /**
+     * Generate the report(s); the used archives are found once for the HTML page and
+     * the data file
+     *
+     * @param outputDirectory The top-level output directory
+     */
+    @Override
+    public void generate(String outputDirectory)
+    {
+        try
+        {
+            super.generate(outputDirectory);
+        }
+        finally
+        {
+            usedArchives = null;
+        }
+    }
+
     /**
      * Write out the report's content
      *
@@ -75,30 +140,13 @@ public class UnusedJarReport extends AbstractReport
         //arch = arch.stream()
         //	.sorted((a1, a2) -> a1.getName().compareToIgnoreCase(a2.getName())).collect(Collectors.toList());
         //for (Archive archive : arch) {
+        ProviderIndex index = getProviderIndex();
+        boolean[] usedIds = getUsedIds(index);
+
         for (Archive archive : archives) {
-            boolean archiveStatus = false;
             String archiveName = archive.getName();
-            for (Archive a : archives) {
-                if (!archiveName.equals(a.getName())) {
-                    for (String require : a.getRequires()) {
-//			Iterator<Archive> it = arch.iterator();
-//			while (!archiveStatus && it.hasNext()) {
-//				Archive a = it.next();
-//				if (!archive.getName().equals(a.getName())) {
-//					Iterator<String> sit = a.getRequires().iterator();
-//					while (!archiveStatus && sit.hasNext()) {
-//						String require = sit.next();
-                        if (archive.getProvides().keySet().contains(require)) {
-                            archiveStatus = true;
-                            break;
-                        }
-                    }
-                }
-                if (archiveStatus) 
-                {
-                   break;
-                }
-            }
+            int id = index.getArchiveId(archiveName);
+            boolean archiveStatus = id != -1 && usedIds[id];
             if (odd) {
                 bw.write("  <tr class=\"rowodd\">" + Dump.newLine());
             } 
@@ -148,6 +196,66 @@ public class UnusedJarReport extends AbstractReport
         bw.write("</table>" + Dump.newLine());
     }
 
+    /**
+     * Get the columns of the data file
+     *
+     * @return The column names
+     */
+    @Override
+    protected String[] getDataColumns()
+    {
+        return new String[] {"archive", "used", "filtered"};
+    }
+
+    /**
+     * Write a row per archive
+     *
+     * @param rows The row writer
+     * @throws IOException if an error occurs
+     */
+    @Override
+    protected void writeDataRows(RowWriter rows) throws IOException
+    {
+        ProviderIndex index = getProviderIndex();
+        boolean[] usedIds = getUsedIds(index);
+
+        for (Archive archive : archives) {
+            String archiveName = archive.getName();
+            int id = index.getArchiveId(archiveName);
+            boolean archiveStatus = id != -1 && usedIds[id];
+            boolean filtered = isFiltered(archiveName);
+            if (!archiveStatus && !filtered) {
+                status = ReportStatus.YELLOW;
+            }
+            rows.writeRow(archiveName, archiveStatus, filtered);
+        }
+    }
+
+    /**
+     * Find the archives providing a class another archive requires, in one pass over
+     * all requires, on first use
+     *
+     * @param index The index of the archives providing each class
+     * @return Whether each archive of the index is used
+     */
+    private boolean[] getUsedIds(ProviderIndex index)
+    {
+        if (usedArchives == null) {
+            boolean[] result = new boolean[index.getArchiveCount()];
+            for (Archive a : archives) {
+                for (String require : a.getRequires()) {
+                    for (int id : index.getProviders(require)) {
+                        if (!result[id] && !a.getName().equals(index.getArchiveName(id))) {
+                            result[id] = true;
+                        }
+                    }
+                }
+            }
+            usedArchives = result;
+        }
+        return usedArchives;
+    }
+
     /**
      * Build the extension path for the jar files.
      *
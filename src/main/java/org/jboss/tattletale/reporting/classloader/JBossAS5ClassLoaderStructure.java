@@ -22,10 +22,6 @@
 package org.jboss.tattletale.reporting.classloader;
 
 import java.io.File;
-import java.util.SortedSet;
-
-import org.jboss.tattletale.core.Archive;
-import org.jboss.tattletale.core.Location;
 
 /**
  * A classloader structure class that represents the JBoss Application Server 5.x
@@ -40,104 +36,85 @@ public class JBossAS5ClassLoaderStructure extends JBossASClassLoaderStructure
    }
 
    /**
-    * Can one archive see the other
+    * Can one directory see the other
     *
-    * @param from The from archive
-    * @param to   The to archive
-    * @return True if from can see to; otherwise false
+    * @param f The from directory
+    * @param t The to directory
+    * @return True if f can see t; otherwise false
     */
    @Override
-   public boolean isVisible(Archive from, Archive to)
+   protected boolean isVisible(String f, String t)
    {
-      SortedSet<Location> fromLocations = from.getLocations();
-      SortedSet<Location> toLocations = to.getLocations();
+      if (f.startsWith("docs"))
+      {
+         return false;
+      }
 
-      for (Location fromLocation : fromLocations)
+      // Same directory
+      if (f.equals(t))
       {
-         String fromPath = fromLocation.getFilename();
+         return true;
+      }
 
-         int fIdx = fromPath.indexOf(from.getName());
-         String f = fromPath.substring(0, fIdx);
-         f = stripPrefix(f);
+      // bin and client can only see same directory
+      if (!f.startsWith("bin") && !f.startsWith("client"))
+      {
+         // Top-level bin, lib and common is always visible
+         if (t.startsWith("bin") || t.startsWith("lib") || t.startsWith("common"))
+         {
+            return true;
+         }
 
-         if (!f.startsWith("docs"))
+         if (f.startsWith("lib") || f.startsWith("common"))
          {
-            for (Location toLocation : toLocations)
+            // A sub-directory can see higher level or bin
+            if (f.startsWith(t) || t.startsWith("bin"))
             {
-               String toPath = toLocation.getFilename();
-
-               int tIdx = toPath.indexOf(to.getName());
-               String t = toPath.substring(0, tIdx);
-               t = stripPrefix(t);
-
-               // Same directory
-               if (f.equals(t))
+               return true;
+            }
+         }
+         else
+         {
+            // Exclude client from target
+            if (!t.startsWith("client"))
+            {
+               // A sub-directory can see higher level
+               if (f.startsWith(t))
                {
                   return true;
                }
 
-               // bin and client can only see same directory
-               if (!f.startsWith("bin") && !f.startsWith("client"))
+               // server/xxx/lib directories can only see same directory at this point
+               if (!f.endsWith("lib" + File.separator))
                {
-                  // Top-level bin, lib and common is always visible
-                  if (t.startsWith("bin") || t.startsWith("lib") || t.startsWith("common"))
-                  {
-                     return true;
-                  }
+                  int deploy = f.indexOf("deploy");
+                  int deployers = f.indexOf("deployers");
 
-                  if (f.startsWith("lib") || f.startsWith("common"))
+                  // server/xxx/deploy
+                  if (deploy != -1 && deployers == -1)
                   {
-                     // A sub-directory can see higher level or bin
-                     if (f.startsWith(t) || t.startsWith("bin"))
+                     String config = f.substring(0, deploy);
+
+                     // server/xxx/lib
+                     if (t.equals(config + "lib" + File.separator))
+                     {
+                        return true;
+                     }
+
+                     // server/xxx/deployers
+                     if (t.startsWith(config + "deployers" + File.separator))
                      {
                         return true;
                      }
                   }
-                  else
+                  else if (deployers != -1)
                   {
-                     // Exclude client from target
-                     if (!t.startsWith("client"))
+                     String config = f.substring(0, deployers);
+
+                     // server/xxx/lib
+                     if (t.equals(config + "lib" + File.separator))
                      {
-                        // A sub-directory can see higher level
-                        if (f.startsWith(t))
-                        {
-                           return true;
-                        }
-
-                        // server/xxx/lib directories can only see same directory at this point
-                        if (!f.endsWith("lib" + File.separator))
-                        {
-                           int deploy = f.indexOf("deploy");
-                           int deployers = f.indexOf("deployers");
-
-                           // server/xxx/deploy
-                           if (deploy != -1 && deployers == -1)
-                           {
-                              String config = f.substring(0, deploy);
-
-                              // server/xxx/lib
-                              if (t.equals(config + "lib" + File.separator))
-                              {
-                                 return true;
-                              }
-
-                              // server/xxx/deployers
-                              if (t.startsWith(config + "deployers" + File.separator))
-                              {
-                                 return true;
-                              }
-                           }
-                           else if (deployers != -1)
-                           {
-                              String config = f.substring(0, deployers);
-
-                              // server/xxx/lib
-                              if (t.equals(config + "lib" + File.separator))
-                              {
-                                 return true;
-                              }
-                           }
-                        }
+                        return true;
                      }
                   }
                }
@@ -151,10 +128,11 @@ public class JBossAS5ClassLoaderStructure extends JBossASClassLoaderStructure
    /**
     * Strip prefix
     *
-    * @param input The inout string
+    * @param input The input string
     * @return The result
     */
-   private String stripPrefix(String input)
+   @Override
+   protected String stripPrefix(String input)
    {
       int idx = input.indexOf("bin");
       if (idx != -1)
@@ -1,35 +1,183 @@
-/*
- * JBoss, Home of Professional Open Source.
- * Copyright 2009, Red Hat Middleware LLC, and individual contributors
- * as indicated by the @author tags. See the copyright.txt file in the
- * distribution for a full listing of individual contributors.
- *
- * This is free software; you can redistribute it and/or modify it
- * under the terms of the GNU Lesser General Public License as
- * published by the Free Software Foundation; either version 2.1 of
- * the License, or (at your option) any later version.
- *
- * This software is distributed in the hope that it will be useful,
- * but WITHOUT ANY WARRANTY; without even the implied warranty of
- * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
- * Lesser General Public License for more details.
- *
- * You should have received a copy of the GNU Lesser General Public
- * License along with this software; if not, write to the Free
- * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
- * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
- */
-package org.jboss.tattletale.reporting.classloader;
-
-/**
- * A classloader structure class that represents the JBoss Application Server
- *
- * @author Jesper Pedersen <jesper.pedersen@jboss.org>
- */
-public abstract class JBossASClassLoaderStructure implements ClassLoaderStructure
-{
-   /** Constructor */
-   public JBossASClassLoaderStructure()
-   {
-   }
-}
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.tattletale.reporting.classloader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+import org.jboss.tattletale.core.Archive;
+import org.jboss.tattletale.core.Location;
+
+/**
+ * A classloader structure class that represents the JBoss Application Server
+ * <p>
+ * The visibility only depends on the directories of the archives: the path of each
+ * location is reduced once to its directory below the server installation, its domain,
+ * and whether a domain sees another one is decided once by the version specific rules
+ * and kept in a table for the following archives.
+ *
+ * @author Jesper Pedersen <jesper.pedersen@jboss.org>
+ */
+public abstract class JBossASClassLoaderStructure implements ClassLoaderStructure
+{
+   /** The domains of each archive */
+   private final Map<Archive, int[]> archiveDomains;
+
+   /** The position of each domain */
+   private final Map<String, Integer> domainIds;
+
+   /** The domains, by position */
+   private final List<String> domains;
+
+   /** The visibility of a domain from another one: 0 if not known yet, 1 if visible, 2 if not */
+   private byte[][] visibility;
+
+   /** Constructor */
+   public JBossASClassLoaderStructure()
+   {
+      this.archiveDomains = new IdentityHashMap<>();
+      this.domainIds = new HashMap<>();
+      this.domains = new ArrayList<>();
+      this.visibility = new byte[0][];
+   }
+
+   /**
+    * Can one archive see the other
+    *
+    * @param from The from archive
+    * @param to   The to archive
+    * @return True if from can see to; otherwise false
+    */
+   @Override
+   public synchronized boolean isVisible(Archive from, Archive to)
+   {
+      int[] fromDomains = getDomains(from);
+      int[] toDomains = getDomains(to);
+
+      for (int f : fromDomains)
+      {
+         byte[] row = visibility[f];
+         for (int t : toDomains)
+         {
+            if (row[t] == 0)
+            {
+               row[t] = isVisible(domains.get(f), domains.get(t)) ? (byte) 1 : (byte) 2;
+            }
+            if (row[t] == 1)
+            {
+               return true;
+            }
+         }
+      }
+
+      return false;
+   }
+
+   /**
+    * Can one directory see the other
+    *
+    * @param from The from directory, as given by {@link #stripPrefix(String)}
+    * @param to   The to directory, as given by {@link #stripPrefix(String)}
+    * @return True if from can see to; otherwise false
+    */
+   protected abstract boolean isVisible(String from, String to);
+
+   /**
+    * Strip the installation path from a directory
+    *
+    * @param input The directory
+    * @return The directory below the installation
+    */
+   protected abstract String stripPrefix(String input);
+
+   /**
+    * Get the domains of an archive, parsing its locations the first time
+    *
+    * @param archive The archive
+    * @return The positions of the domains, in the order of the locations
+    */
+   private int[] getDomains(Archive archive)
+   {
+      int[] result = archiveDomains.get(archive);
+      if (result == null)
+      {
+         SortedSet<Location> locations = archive.getLocations();
+         result = new int[locations.size()];
+
+         int i = 0;
+         for (Location location : locations)
+         {
+            result[i++] = getDomain(stripPrefix(getDirectory(location.getFilename(), archive.getName())));
+         }
+
+         archiveDomains.put(archive, result);
+      }
+      return result;
+   }
+
+   /**
+    * Get the position of a domain, adding it when it is new
+    *
+    * @param domain The domain
+    * @return The position
+    */
+   private int getDomain(String domain)
+   {
+      Integer id = domainIds.get(domain);
+      if (id == null)
+      {
+         id = domains.size();
+         domainIds.put(domain, id);
+         domains.add(domain);
+
+         visibility = Arrays.copyOf(visibility, domains.size());
+         for (int i = 0; i < visibility.length; i++)
+         {
+            visibility[i] = visibility[i] == null ? new byte[domains.size()] : Arrays.copyOf(visibility[i], domains.size());
+         }
+      }
+      return id.intValue();
+   }
+
+   /**
+    * Get the directory of an archive location
+    *
+    * @param path The path of the location
+    * @param name The name of the archive
+    * @return The path up to the archive name; the parent directory of a copy stored under another name
+    */
+   private static String getDirectory(String path, String name)
+   {
+      int idx = path.indexOf(name);
+      if (idx == -1)
+      {
+         idx = path.lastIndexOf(File.separatorChar) + 1;
+      }
+      return path.substring(0, idx);
+   }
+}
@@ -0,0 +1,365 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.tattletale.reporting.classloader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedSet;
+
+import org.jboss.tattletale.core.Archive;
+import org.jboss.tattletale.core.Location;
+import org.jboss.tattletale.reporting.ComponentGraph;
+import org.jboss.tattletale.tools.as7.ModuleXml;
+
+/**
+ * A classloader structure class that represents JBoss Modules, as used by JBoss
+ * Application Server 7 and JBoss EAP 6 and 7
+ * <p>
+ * An archive next to a <code>module.xml</code> belongs to that module. The module
+ * definitions of the installation, found from the <code>modules</code> directory above
+ * the archive with its layers and add-ons, are read once; a module sees itself, its
+ * dependencies and what those export, transitively, and this closure is computed once
+ * per module. A module sees no archive outside the modules, while such an archive, a
+ * deployment, is taken to see every archive.
+ */
+public class JBossModulesClassLoaderStructure implements ClassLoaderStructure
+{
+   /** The modules of the locations of each archive; null for those outside the modules */
+   private final Map<Archive, Module[]> archiveModules;
+
+   /** The installations, by modules directory */
+   private final Map<File, Installation> installations;
+
+   /** Constructor */
+   public JBossModulesClassLoaderStructure()
+   {
+      this.archiveModules = new IdentityHashMap<>();
+      this.installations = new HashMap<>();
+   }
+
+   /**
+    * Can one archive see the other
+    *
+    * @param from The from archive
+    * @param to   The to archive
+    * @return True if from can see to; otherwise false
+    */
+   @Override
+   public synchronized boolean isVisible(Archive from, Archive to)
+   {
+      Module[] fromModules = getModules(from);
+      Module[] toModules = getModules(to);
+
+      for (Module f : fromModules)
+      {
+         if (f == null)
+         {
+            return true;
+         }
+
+         for (Module t : toModules)
+         {
+            if (t != null && f.installation == t.installation && f.installation.visible[f.id].get(t.id))
+            {
+               return true;
+            }
+         }
+      }
+
+      return false;
+   }
+
+   /**
+    * Get the modules of the locations of an archive
+    *
+    * @param archive The archive
+    * @return The modules, in the order of the locations; null for a location outside the modules
+    */
+   private Module[] getModules(Archive archive)
+   {
+      Module[] result = archiveModules.get(archive);
+      if (result == null)
+      {
+         SortedSet<Location> locations = archive.getLocations();
+         result = new Module[locations.size()];
+
+         int i = 0;
+         for (Location location : locations)
+         {
+            result[i++] = getModule(new File(location.getFilename()).getAbsoluteFile().getParentFile());
+         }
+
+         archiveModules.put(archive, result);
+      }
+      return result;
+   }
+
+   /**
+    * Get the module defined in a directory
+    *
+    * @param directory The directory
+    * @return The module; <code>null</code> if there is none
+    */
+   private Module getModule(File directory)
+   {
+      if (directory == null || !new File(directory, "module.xml").isFile())
+      {
+         return null;
+      }
+
+      File modules = directory.getParentFile();
+      while (modules != null && !"modules".equals(modules.getName()))
+      {
+         modules = modules.getParentFile();
+      }
+
+      if (modules == null)
+      {
+         return null;
+      }
+
+      Installation installation = installations.get(modules);
+      if (installation == null)
+      {
+         installation = new Installation(modules);
+         installations.put(modules, installation);
+      }
+
+      Integer id = installation.directories.get(directory);
+      return id != null ? new Module(installation, id.intValue()) : null;
+   }
+
+   /**
+    * A module of an installation
+    */
+   private static class Module
+   {
+      /** The installation */
+      private final Installation installation;
+
+      /** The position of the module in the installation */
+      private final int id;
+
+      /**
+       * Constructor
+       *
+       * @param installation The installation
+       * @param id           The position of the module in the installation
+       */
+      Module(Installation installation, int id)
+      {
+         this.installation = installation;
+         this.id = id;
+      }
+   }
+
+   /**
+    * The modules of an installation and what each of them sees
+    */
+   private static class Installation
+   {
+      /** The position of each module, by directory */
+      private final Map<File, Integer> directories;
+
+      /** The modules each module sees */
+      private final BitSet[] visible;
+
+      /**
+       * Constructor
+       *
+       * @param modules The modules directory
+       */
+      Installation(File modules)
+      {
+         this.directories = new HashMap<>();
+
+         Map<String, Integer> ids = new HashMap<>();
+         List<ModuleXml> definitions = new ArrayList<>();
+         for (File root : getModulePath(modules))
+         {
+            readModules(root, root == modules, ids, definitions);
+         }
+
+         int[][] dependencies = new int[definitions.size()][];
+         int[][] exports = new int[definitions.size()][];
+         for (int i = 0; i < definitions.size(); i++)
+         {
+            dependencies[i] = resolve(definitions.get(i).getDependencies(), ids);
+            exports[i] = resolve(definitions.get(i).getExports(), ids);
+         }
+
+         ComponentGraph exported = new ComponentGraph(exports);
+         this.visible = new BitSet[definitions.size()];
+         for (int i = 0; i < visible.length; i++)
+         {
+            visible[i] = new BitSet(visible.length);
+            visible[i].set(i);
+            for (int dependency : dependencies[i])
+            {
+               visible[i].or(exported.getReachable(dependency));
+            }
+         }
+      }
+
+      /**
+       * Read the module definitions below a module root; the first definition of a
+       * module id is kept
+       *
+       * @param directory   The directory
+       * @param root        Is the directory the modules directory, whose layers are roots of their own
+       * @param ids         The position of each module id
+       * @param definitions The module definitions, by position
+       */
+      private void readModules(File directory, boolean root, Map<String, Integer> ids, List<ModuleXml> definitions)
+      {
+         File moduleXml = new File(directory, "module.xml");
+         if (moduleXml.isFile())
+         {
+            ModuleXml definition = ModuleXml.read(moduleXml);
+            if (definition != null)
+            {
+               Integer id = ids.get(definition.getId());
+               if (id == null)
+               {
+                  id = definitions.size();
+                  ids.put(definition.getId(), id);
+                  definitions.add(definition);
+               }
+               directories.put(directory, id);
+            }
+         }
+
+         File[] children = directory.listFiles();
+         if (children != null)
+         {
+            for (File child : children)
+            {
+               if (child.isDirectory() && !(root && "system".equals(child.getName())))
+               {
+                  readModules(child, false, ids, definitions);
+               }
+            }
+         }
+      }
+
+      /**
+       * Get the module roots of an installation, in the order they are searched: the
+       * modules directory, the layers listed in <code>layers.conf</code> followed by the
+       * base layer, and the add-ons
+       *
+       * @param modules The modules directory
+       * @return The roots
+       */
+      private static List<File> getModulePath(File modules)
+      {
+         List<File> result = new ArrayList<>();
+         result.add(modules);
+
+         List<String> layers = new ArrayList<>();
+         Properties layersConf = new Properties();
+         File layersFile = new File(modules, "layers.conf");
+         if (layersFile.isFile())
+         {
+            try (InputStream is = new FileInputStream(layersFile))
+            {
+               layersConf.load(is);
+            }
+            catch (IOException ioe)
+            {
+               // Base layer only
+            }
+         }
+         String listed = layersConf.getProperty("layers");
+         if (listed != null)
+         {
+            for (String layer : listed.split(","))
+            {
+               if (!layer.trim().isEmpty() && !layers.contains(layer.trim()))
+               {
+                  layers.add(layer.trim());
+               }
+            }
+         }
+         if (!layers.contains("base"))
+         {
+            layers.add("base");
+         }
+
+         File system = new File(modules, "system");
+         for (String layer : layers)
+         {
+            File dir = new File(system, "layers" + File.separator + layer);
+            if (dir.isDirectory())
+            {
+               result.add(dir);
+            }
+         }
+
+         File[] addOns = new File(system, "add-ons").listFiles();
+         if (addOns != null)
+         {
+            Arrays.sort(addOns);
+            for (File addOn : addOns)
+            {
+               if (addOn.isDirectory())
+               {
+                  result.add(addOn);
+               }
+            }
+         }
+
+         return result;
+      }
+
+      /**
+       * Get the positions of module ids, leaving out those not in the installation
+       *
+       * @param moduleIds The module ids
+       * @param ids       The position of each module id
+       * @return The positions
+       */
+      private static int[] resolve(List<String> moduleIds, Map<String, Integer> ids)
+      {
+         int[] result = new int[moduleIds.size()];
+         int size = 0;
+         for (String moduleId : moduleIds)
+         {
+            Integer id = ids.get(moduleId);
+            if (id != null)
+            {
+               result[size++] = id.intValue();
+            }
+         }
+         return size == result.length ? result : Arrays.copyOf(result, size);
+      }
+   }
+}
@@ -24,6 +24,9 @@ package org.jboss.tattletale.tools.as7;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
@@ -36,6 +39,154 @@ import javax.xml.stream.XMLStreamReader;
  */
 public class ModuleXml
 {
+   /** The slot of a module that doesn't name one */
+   public static final String DEFAULT_SLOT = "main";
+
+   /** The module id */
+   private String id;
+
+   /** The ids of the modules this module depends on */
+   private List<String> dependencies;
+
+   /** The ids of the dependencies this module exports */
+   private List<String> exports;
+
+   /**
+    * Constructor
+    */
+   private ModuleXml()
+   {
+      this.id = null;
+      this.dependencies = new ArrayList<String>();
+      this.exports = new ArrayList<String>();
+   }
+
+   /**
+    * Get the id of the module, its name and slot
+    * @return The value
+    */
+   public String getId()
+   {
+      return id;
+   }
+
+   /**
+    * Get the ids of the modules this module depends on
+    * @return The value
+    */
+   public List<String> getDependencies()
+   {
+      return Collections.unmodifiableList(dependencies);
+   }
+
+   /**
+    * Get the ids of the dependencies this module exports to the modules depending on it;
+    * an alias exports its target
+    * @return The value
+    */
+   public List<String> getExports()
+   {
+      return Collections.unmodifiableList(exports);
+   }
+
+   /**
+    * Read the module, or module alias, defined by the specified file
+    * @param f The file
+    * @return The module; <code>null</code> if the file doesn't define one
+    */
+   public static ModuleXml read(File f)
+   {
+      FileReader fr = null;
+      try
+      {
+         fr = new FileReader(f);
+
+         XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+         XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(fr);
+
+         ModuleXml result = new ModuleXml();
+         int depth = 0;
+         boolean inDependencies = false;
+
+         while (xmlStreamReader.hasNext())
+         {
+            int eventCode = xmlStreamReader.next();
+
+            switch (eventCode)
+            {
+               case XMLStreamReader.START_ELEMENT :
+                  depth++;
+                  String element = xmlStreamReader.getLocalName();
+
+                  if (depth == 1 && "module".equals(element))
+                  {
+                     result.id = getId(xmlStreamReader, "name", "slot");
+                  }
+                  else if (depth == 1 && "module-alias".equals(element))
+                  {
+                     result.id = getId(xmlStreamReader, "name", "slot");
+
+                     String target = getId(xmlStreamReader, "target-name", "target-slot");
+                     if (target != null)
+                     {
+                        result.dependencies.add(target);
+                        result.exports.add(target);
+                     }
+                  }
+                  else if (depth == 2 && "dependencies".equals(element))
+                  {
+                     inDependencies = true;
+                  }
+                  else if (depth == 3 && inDependencies && "module".equals(element))
+                  {
+                     String dependency = getId(xmlStreamReader, "name", "slot");
+                     if (dependency != null)
+                     {
+                        result.dependencies.add(dependency);
+                        if ("true".equals(getAttribute(xmlStreamReader, "export")))
+                        {
+                           result.exports.add(dependency);
+                        }
+                     }
+                  }
+
+                  break;
+               case XMLStreamReader.END_ELEMENT :
+                  if (depth == 2)
+                  {
+                     inDependencies = false;
+                  }
+                  depth--;
+
+                  break;
+               default :
+            }
+         }
+
+         return result.id != null ? result : null;
+      }
+      catch (Throwable t)
+      {
+         // Nothing to do
+      }
+      finally
+      {
+         if (fr != null)
+         {
+            try
+            {
+               fr.close();
+            }
+            catch (IOException ioe)
+            {
+               // Ignore
+            }
+         }
+      }
+
+      return null;
+   }
+
    /**
     * Get the module id from the specified file
     * @param f The file
@@ -98,6 +249,43 @@ public class ModuleXml
       return null;
    }
 
+   /**
+    * Get a module id from the name and slot attributes of the current element
+    * @param xmlStreamReader The XML stream
+    * @param nameAttribute The name of the name attribute
+    * @param slotAttribute The name of the slot attribute
+    * @return The value; <code>null</code> if there is no name
+    */
+   private static String getId(XMLStreamReader xmlStreamReader, String nameAttribute, String slotAttribute)
+   {
+      String name = getAttribute(xmlStreamReader, nameAttribute);
+      if (name == null)
+      {
+         return null;
+      }
+
+      String slot = getAttribute(xmlStreamReader, slotAttribute);
+      return name + ":" + (slot != null ? slot : DEFAULT_SLOT);
+   }
+
+   /**
+    * Get an attribute of the current element
+    * @param xmlStreamReader The XML stream
+    * @param name The name of the attribute
+    * @return The value; <code>null</code> if there is none
+    */
+   private static String getAttribute(XMLStreamReader xmlStreamReader, String name)
+   {
+      for (int i = 0; i < xmlStreamReader.getAttributeCount(); i++)
+      {
+         if (name.equals(xmlStreamReader.getAttributeLocalName(i)))
+         {
+            return xmlStreamReader.getAttributeValue(i);
+         }
+      }
+      return null;
+   }
+
    /**
     * Read a string
     * @param xmlStreamReader The XML stream
@@ -0,0 +1,341 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings and counters of a run, written as JSON next to the reports.
+ * <p>
+ * Wall clock timings cover a whole phase. Thread timings are summed over all threads that
+ * did the work, so with several scanner threads they can be bigger than the wall clock time
+ * of the scan.
+ */
+public class Metrics
+{
+   /** Number of slowest archives that are kept */
+   public static final int SLOWEST_ARCHIVES = 10;
+
+   /** Orders archive timings, fastest first */
+   private static final Comparator<ArchiveTiming> FASTEST_FIRST = new Comparator<ArchiveTiming>()
+   {
+      @Override
+      public int compare(ArchiveTiming t1, ArchiveTiming t2)
+      {
+         return t1.nanos < t2.nanos ? -1 : (t1.nanos == t2.nanos ? 0 : 1);
+      }
+   };
+
+   /** Counters */
+   private static final ConcurrentMap<String, AtomicLong> COUNTERS = new ConcurrentHashMap<>();
+
+   /** Wall clock timings in nanoseconds */
+   private static final ConcurrentMap<String, AtomicLong> WALL = new ConcurrentHashMap<>();
+
+   /** Thread timings in nanoseconds */
+   private static final ConcurrentMap<String, AtomicLong> THREADS = new ConcurrentHashMap<>();
+
+   /** Report generation timings in nanoseconds, by report id */
+   private static final ConcurrentMap<String, AtomicLong> REPORTS = new ConcurrentHashMap<>();
+
+   /** Profile load timings in nanoseconds, by profile name */
+   private static final ConcurrentMap<String, AtomicLong> PROFILES = new ConcurrentHashMap<>();
+
+   /** The slowest archives */
+   private static final PriorityQueue<ArchiveTiming> SLOWEST =
+      new PriorityQueue<>(SLOWEST_ARCHIVES + 1, FASTEST_FIRST);
+
+   /** Constructor */
+   private Metrics()
+   {
+   }
+
+   /**
+    * Clear all metrics
+    */
+   public static void reset()
+   {
+      COUNTERS.clear();
+      WALL.clear();
+      THREADS.clear();
+      REPORTS.clear();
+      PROFILES.clear();
+      synchronized (SLOWEST)
+      {
+         SLOWEST.clear();
+      }
+   }
+
+   /**
+    * Add to a counter
+    *
+    * @param name  The counter
+    * @param value The value to add
+    */
+   public static void count(String name, long value)
+   {
+      add(COUNTERS, name, value);
+   }
+
+   /**
+    * Add to a wall clock timing
+    *
+    * @param phase The phase
+    * @param nanos The time in nanoseconds
+    */
+   public static void wallTime(String phase, long nanos)
+   {
+      add(WALL, phase, nanos);
+   }
+
+   /**
+    * Add to a thread timing
+    *
+    * @param phase The phase
+    * @param nanos The time in nanoseconds
+    */
+   public static void threadTime(String phase, long nanos)
+   {
+      add(THREADS, phase, nanos);
+   }
+
+   /**
+    * Record the generation of a report
+    *
+    * @param id    The report id
+    * @param nanos The time in nanoseconds
+    */
+   public static void reportGenerated(String id, long nanos)
+   {
+      add(REPORTS, id, nanos);
+   }
+
+   /**
+    * Record the load of a profile
+    *
+    * @param name  The profile name
+    * @param nanos The time in nanoseconds
+    */
+   public static void profileLoaded(String name, long nanos)
+   {
+      add(PROFILES, name, nanos);
+   }
+
+   /**
+    * Record the scan of an archive
+    *
+    * @param path  The path of the archive
+    * @param nanos The time in nanoseconds
+    */
+   public static void archiveScanned(String path, long nanos)
+   {
+      synchronized (SLOWEST)
+      {
+         if (SLOWEST.size() < SLOWEST_ARCHIVES || SLOWEST.peek().nanos < nanos)
+         {
+            SLOWEST.add(new ArchiveTiming(path, nanos));
+            if (SLOWEST.size() > SLOWEST_ARCHIVES)
+            {
+               SLOWEST.poll();
+            }
+         }
+      }
+   }
+
+   /**
+    * Write the metrics as JSON
+    *
+    * @param file The file
+    * @exception IOException If the file can't be written
+    */
+   public static void write(File file) throws IOException
+   {
+      long scanNanos = get(WALL, "scan");
+
+      SortedMap<String, Double> rates = new TreeMap<>();
+      if (scanNanos > 0)
+      {
+         double seconds = scanNanos / 1e9;
+         rates.put("archivesPerSecond", get(COUNTERS, "archives") / seconds);
+         rates.put("classesPerSecond", get(COUNTERS, "classes") / seconds);
+         rates.put("bytesPerSecond", get(COUNTERS, "bytesRead") / seconds);
+      }
+
+      List<ArchiveTiming> slowest;
+      synchronized (SLOWEST)
+      {
+         slowest = new ArrayList<>(SLOWEST);
+      }
+      Collections.sort(slowest, Collections.reverseOrder(FASTEST_FIRST));
+
+      try (BufferedWriter bw = new BufferedWriter(
+         new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))
+      {
+         bw.write("{\n");
+         writeValues(bw, "counters", COUNTERS, false);
+         bw.write(",\n");
+         writeValues(bw, "wallMillis", WALL, true);
+         bw.write(",\n");
+         writeValues(bw, "threadMillis", THREADS, true);
+         bw.write(",\n");
+
+         bw.write("  \"rates\": {");
+         String separator = "\n";
+         for (Map.Entry<String, Double> entry : rates.entrySet())
+         {
+            bw.write(separator + "    " + StringUtils.quoteJson(entry.getKey()) + ": "
+                     + String.format(Locale.US, "%.1f", entry.getValue()));
+            separator = ",\n";
+         }
+         bw.write(rates.isEmpty() ? "}" : "\n  }");
+         bw.write(",\n");
+
+         writeValues(bw, "reportMillis", REPORTS, true);
+         bw.write(",\n");
+         writeValues(bw, "profileMillis", PROFILES, true);
+         bw.write(",\n");
+
+         bw.write("  \"slowestArchives\": [");
+         separator = "\n";
+         for (ArchiveTiming timing : slowest)
+         {
+            bw.write(separator + "    {\"path\": " + StringUtils.quoteJson(timing.path)
+                     + ", \"millis\": " + millis(timing.nanos) + "}");
+            separator = ",\n";
+         }
+         bw.write(slowest.isEmpty() ? "]\n" : "\n  ]\n");
+         bw.write("}\n");
+      }
+   }
+
+   /**
+    * Write a JSON object of values, sorted by key
+    *
+    * @param bw     The writer
+    * @param name   The name of the object
+    * @param values The values
+    * @param nanos  Whether the values are nanoseconds that are written as milliseconds
+    * @exception IOException If the values can't be written
+    */
+   private static void writeValues(BufferedWriter bw, String name, Map<String, AtomicLong> values, boolean nanos)
+      throws IOException
+   {
+      bw.write("  " + StringUtils.quoteJson(name) + ": {");
+      String separator = "\n";
+      for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(values).entrySet())
+      {
+         long value = entry.getValue().get();
+         bw.write(separator + "    " + StringUtils.quoteJson(entry.getKey()) + ": "
+                  + (nanos ? millis(value) : value));
+         separator = ",\n";
+      }
+      bw.write(values.isEmpty() ? "}" : "\n  }");
+   }
+
+   /**
+    * Add to a value
+    *
+    * @param values The values
+    * @param key    The key
+    * @param value  The value to add
+    */
+   private static void add(ConcurrentMap<String, AtomicLong> values, String key, long value)
+   {
+      AtomicLong current = values.get(key);
+      if (current == null)
+      {
+         AtomicLong created = new AtomicLong();
+         current = values.putIfAbsent(key, created);
+         if (current == null)
+         {
+            current = created;
+         }
+      }
+      current.addAndGet(value);
+   }
+
+   /**
+    * Get a value
+    *
+    * @param values The values
+    * @param key    The key
+    * @return The value; 0 if there is none
+    */
+   private static long get(Map<String, AtomicLong> values, String key)
+   {
+      AtomicLong value = values.get(key);
+      return value != null ? value.get() : 0L;
+   }
+
+   /**
+    * Convert nanoseconds to milliseconds
+    *
+    * @param nanos The nanoseconds
+    * @return The milliseconds
+    */
+   private static long millis(long nanos)
+   {
+      return nanos / 1000000L;
+   }
+
+   /**
+    * The scan time of an archive
+    */
+   private static class ArchiveTiming
+   {
+      /** The path */
+      private final String path;
+
+      /** The time in nanoseconds */
+      private final long nanos;
+
+      /**
+       * Constructor
+       *
+       * @param path  The path
+       * @param nanos The time in nanoseconds
+       */
+      ArchiveTiming(String path, long nanos)
+      {
+         this.path = path;
+         this.nanos = nanos;
+      }
+   }
+}
@@ -0,0 +1,277 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.utils;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/**
+ * An immutable set of prefixes, compiled into a trie.
+ * <p>
+ * {@link #matches(String)} tells whether a string starts with any of the prefixes, in time
+ * proportional to the length of the string however many prefixes there are.
+ */
+public class PrefixTrie extends AbstractSet<String>
+{
+   /** An empty trie */
+   public static final PrefixTrie EMPTY = new PrefixTrie(new TreeSet<String>());
+
+   /** The prefixes, sorted */
+   private final String[] prefixes;
+
+   /** The root node */
+   private final Node root;
+
+   /**
+    * Constructor
+    *
+    * @param prefixes The prefixes
+    */
+   public PrefixTrie(Collection<String> prefixes)
+   {
+      this.prefixes = new TreeSet<>(prefixes).toArray(new String[0]);
+      this.root = build(this.prefixes, 0, this.prefixes.length, 0);
+   }
+
+   /**
+    * Get the prefixes as trie
+    *
+    * @param prefixes The prefixes; may be <code>null</code>
+    * @return The trie; the prefixes themselves if they already are one
+    */
+   public static PrefixTrie of(Collection<String> prefixes)
+   {
+      if (prefixes == null)
+      {
+         return EMPTY;
+      }
+      if (prefixes instanceof PrefixTrie)
+      {
+         return (PrefixTrie) prefixes;
+      }
+      return new PrefixTrie(prefixes);
+   }
+
+   /**
+    * Does the string start with one of the prefixes
+    *
+    * @param s The string
+    * @return True if a prefix matches
+    */
+   public boolean matches(String s)
+   {
+      return matches(s, 0, s.length());
+   }
+
+   /**
+    * Does a part of the string start with one of the prefixes
+    *
+    * @param s     The string
+    * @param start The start of the part
+    * @param end   The end of the part
+    * @return True if a prefix matches
+    */
+   public boolean matches(CharSequence s, int start, int end)
+   {
+      Node node = root;
+      for (int i = start; node != null; i++)
+      {
+         if (node.terminal)
+         {
+            return true;
+         }
+         if (i == end)
+         {
+            return false;
+         }
+         node = node.child(s.charAt(i));
+      }
+      return false;
+   }
+
+   /**
+    * Does a part of the string start with one of the prefixes, reading a character
+    * of the string as another one
+    *
+    * @param s       The string
+    * @param start   The start of the part
+    * @param end     The end of the part
+    * @param oldChar The character of the string
+    * @param newChar The character it is read as
+    * @return True if a prefix matches
+    */
+   public boolean matches(CharSequence s, int start, int end, char oldChar, char newChar)
+   {
+      Node node = root;
+      for (int i = start; node != null; i++)
+      {
+         if (node.terminal)
+         {
+            return true;
+         }
+         if (i == end)
+         {
+            return false;
+         }
+         char c = s.charAt(i);
+         node = node.child(c == oldChar ? newChar : c);
+      }
+      return false;
+   }
+
+   @Override
+   public boolean contains(Object o)
+   {
+      return o instanceof String && Arrays.binarySearch(prefixes, o) >= 0;
+   }
+
+   @Override
+   public Iterator<String> iterator()
+   {
+      return new Iterator<String>()
+      {
+         private int index;
+
+         @Override
+         public boolean hasNext()
+         {
+            return index < prefixes.length;
+         }
+
+         @Override
+         public String next()
+         {
+            if (index >= prefixes.length)
+            {
+               throw new NoSuchElementException();
+            }
+            return prefixes[index++];
+         }
+
+         @Override
+         public void remove()
+         {
+            throw new UnsupportedOperationException();
+         }
+      };
+   }
+
+   @Override
+   public int size()
+   {
+      return prefixes.length;
+   }
+
+   /**
+    * Build the node for the sorted prefixes that share their first characters
+    *
+    * @param sorted The sorted prefixes
+    * @param from   The first prefix
+    * @param to     The end of the prefixes
+    * @param depth  The number of shared characters
+    * @return The node
+    */
+   private static Node build(String[] sorted, int from, int to, int depth)
+   {
+      Node node = new Node();
+
+      if (from < to && sorted[from].length() == depth)
+      {
+         // Longer prefixes are never reached
+         node.terminal = true;
+         return node;
+      }
+
+      int count = 0;
+      for (int i = from; i < to; i = next(sorted, i, to, depth))
+      {
+         count++;
+      }
+
+      node.labels = new char[count];
+      node.children = new Node[count];
+
+      int index = 0;
+      for (int i = from; i < to;)
+      {
+         int end = next(sorted, i, to, depth);
+         node.labels[index] = sorted[i].charAt(depth);
+         node.children[index] = build(sorted, i, end, depth + 1);
+         index++;
+         i = end;
+      }
+
+      return node;
+   }
+
+   /**
+    * Find the first prefix with another character at a depth
+    *
+    * @param sorted The sorted prefixes
+    * @param from   The first prefix
+    * @param to     The end of the prefixes
+    * @param depth  The depth
+    * @return The index of the prefix
+    */
+   private static int next(String[] sorted, int from, int to, int depth)
+   {
+      char c = sorted[from].charAt(depth);
+      int i = from + 1;
+      while (i < to && sorted[i].charAt(depth) == c)
+      {
+         i++;
+      }
+      return i;
+   }
+
+   /**
+    * A node of the trie
+    */
+   private static class Node
+   {
+      /** Whether a prefix ends here */
+      private boolean terminal;
+
+      /** The characters of the children, sorted */
+      private char[] labels;
+
+      /** The children */
+      private Node[] children;
+
+      /**
+       * Get a child
+       *
+       * @param c The character
+       * @return The child; <code>null</code> if there is none
+       */
+      Node child(char c)
+      {
+         int index = Arrays.binarySearch(labels, c);
+         return index >= 0 ? children[index] : null;
+      }
+   }
+}
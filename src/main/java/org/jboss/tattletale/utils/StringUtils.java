@@ -1,6 +1,7 @@
 package org.jboss.tattletale.utils;
 
 import java.util.Collection;
+import java.util.Locale;
 
 /**
  * Simple helper class for handling strings
@@ -58,4 +59,33 @@ public class StringUtils {
       }
       return minLength;
    }
+
+   /**
+    * Quote a string as a JSON string, escaping quotes, backslashes and control characters
+    * @param s the string
+    * @return the quoted string
+    */
+   public static String quoteJson(String s)
+   {
+      StringBuilder sb = new StringBuilder(s.length() + 2);
+      sb.append('"');
+      for (int i = 0; i < s.length(); i++)
+      {
+         char c = s.charAt(i);
+         if (c == '"' || c == '\\')
+         {
+            sb.append('\\').append(c);
+         }
+         else if (c < 0x20)
+         {
+            sb.append(String.format(Locale.US, "\\u%04x", (int) c));
+         }
+         else
+         {
+            sb.append(c);
+         }
+      }
+      sb.append('"');
+      return sb.toString();
+   }
 }
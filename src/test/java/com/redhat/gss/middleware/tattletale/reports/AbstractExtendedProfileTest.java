@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.redhat.gss.middleware.tattletale.reports;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.tattletale.profiles.ClassTable;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lookups and memory footprint of the class to location storage of {@link AbstractExtendedProfile},
+ * on the EAP 7 profile, the largest one.
+ */
+public class AbstractExtendedProfileTest
+{
+   /** Location of the hibernate 4.1 integration */
+   private static final String HIBERNATE41 =
+      "jboss-eap-7.0/modules/system/layers/base/org/hibernate/4.1/jipijapa-hibernate4-1-7.0.0.GA-redhat-2.jar";
+
+   /** Location of the hibernate 4.3 integration */
+   private static final String HIBERNATE43 =
+      "jboss-eap-7.0/modules/system/layers/base/org/hibernate/jipijapa-hibernate4-3/main/"
+      + "jipijapa-hibernate4-3-7.0.0.GA-redhat-2.jar";
+
+   /** The class list of the profile */
+   private static final String CLASS_SET = "eap700.clz.gz";
+
+   /** The largest the profile may take on the heap */
+   private static final long MAX_FOOTPRINT = 4L * 1024 * 1024;
+
+   /**
+    * A class gets all its locations in file order, an unknown one none
+    */
+   @Test
+   public void testGetLocationProvided()
+   {
+      AbstractExtendedProfile profile = new EAP700();
+
+      assertEquals(Arrays.asList("jboss-eap-7.0/modules/system/layers/base/net/jcip/main/"
+                                 + "jcip-annotations-1.0.0.redhat-8.jar"),
+                   profile.getLocationProvided("net.jcip.annotations.Immutable"));
+
+      List<String> locations =
+         profile.getLocationProvided("org.jboss.as.jpa.hibernate4.management.HibernateEntityStatistics$5");
+      assertEquals(Arrays.asList(HIBERNATE41, HIBERNATE43), locations);
+      assertEquals("[" + HIBERNATE41 + ", " + HIBERNATE43 + "]", locations.toString());
+
+      assertNull(profile.getLocationProvided("net.jcip.annotations.Immutable2"));
+      assertNull(profile.getLocationProvided("java.lang.String"));
+
+      assertTrue(profile.doesProvide("net.jcip.annotations.ThreadSafe"));
+      assertFalse(profile.doesProvide("net.jcip.annotations"));
+   }
+
+   /**
+    * The profile must stay well under what a map of lists per class takes, over 12 MB,
+    * whether its table is read from a packaged jar into the heap, mapped from a file or
+    * parsed from the class list
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testFootprint() throws Exception
+   {
+      ClassLoader cl = EAP700.class.getClassLoader();
+      String compiledName = ClassTable.compiledName(CLASS_SET);
+
+      // a packaged jar: the precompiled form is read into a heap buffer
+      byte[] bytes;
+      try (InputStream is = cl.getResourceAsStream(compiledName))
+      {
+         ByteArrayOutputStream bos = new ByteArrayOutputStream();
+         byte[] chunk = new byte[8192];
+         int n;
+         while ((n = is.read(chunk)) != -1)
+         {
+            bos.write(chunk, 0, n);
+         }
+         bytes = bos.toByteArray();
+      }
+      AbstractExtendedProfile.Locations packaged = AbstractExtendedProfile.Locations.read(ByteBuffer.wrap(bytes));
+      assertFootprint(packaged);
+
+      // the classes directory: the precompiled form is mapped
+      ByteBuffer mapped = ClassTable.map(cl, compiledName);
+      assertTrue(mapped.isDirect());
+      AbstractExtendedProfile.Locations files = AbstractExtendedProfile.Locations.read(mapped);
+      assertFootprint(files);
+      assertEquals(packaged.getFootprint(), files.getFootprint());
+
+      // no precompiled form: the class list is parsed
+      AbstractExtendedProfile.Locations parsed;
+      try (InputStream is = cl.getResourceAsStream(CLASS_SET))
+      {
+         parsed = AbstractExtendedProfile.Locations.parse(is);
+      }
+      assertFootprint(parsed);
+   }
+
+   /**
+    * Check the footprint of the locations, and that they give the same results
+    *
+    * @param locations The locations
+    */
+   private static void assertFootprint(AbstractExtendedProfile.Locations locations)
+   {
+      long footprint = locations.getFootprint();
+      assertTrue("Footprint of " + footprint + " bytes", footprint < MAX_FOOTPRINT);
+      assertEquals(Arrays.asList(HIBERNATE41, HIBERNATE43),
+                   locations.get("org.jboss.as.jpa.hibernate4.management.HibernateEntityStatistics$5"));
+   }
+}
@@ -0,0 +1,362 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.analyzers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Test of reading nested archives with {@link ArchiveInput}.
+ */
+public class ArchiveInputTest
+{
+   /** The manifest of the nested archive */
+   private static final String MANIFEST = "Manifest-Version: 1.0\r\nImplementation-Version: 1.2\r\n\r\n";
+
+   /**
+    * A nested archive with stored entries followed by a data descriptor is read from
+    * memory, as JarFile reads it from disk
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testStoredWithDataDescriptor() throws Exception
+   {
+      byte[] nested = storedWithDataDescriptor();
+
+      // the layout that ZipInputStream can't read
+      try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(nested)))
+      {
+         zis.getNextEntry();
+         fail("ZipInputStream read a stored entry with a data descriptor");
+      }
+      catch (ZipException ze)
+      {
+         // Expected
+      }
+
+      for (long threshold : new long[] {ArchiveInput.DEFAULT_SPILL_THRESHOLD, 0L})
+      {
+         ArchiveInput.setSpillThreshold(threshold);
+         try
+         {
+            assertNested(nested);
+         }
+         finally
+         {
+            ArchiveInput.setSpillThreshold(ArchiveInput.DEFAULT_SPILL_THRESHOLD);
+         }
+      }
+   }
+
+   /**
+    * A nested archive written by ZipOutputStream, with deflated entries
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testDeflated() throws Exception
+   {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      try (ZipOutputStream zos = new ZipOutputStream(baos))
+      {
+         for (String[] entry : entries())
+         {
+            zos.putNextEntry(new ZipEntry(entry[0]));
+            zos.write(entry[1].getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+         }
+      }
+      assertNested(baos.toByteArray());
+   }
+
+   /**
+    * A nested archive without a manifest
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testNoManifest() throws Exception
+   {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      try (ZipOutputStream zos = new ZipOutputStream(baos))
+      {
+         zos.putNextEntry(new ZipEntry("a/A.class"));
+         zos.write(new byte[] {1, 2, 3});
+         zos.closeEntry();
+      }
+
+      File outer = outer(baos.toByteArray());
+      try (ArchiveInput input = ArchiveInput.open(outer);
+           ArchiveInput nested = input.openNested(input.getNextEntry()))
+      {
+         assertEquals("a/A.class", nested.getNextEntry().getName());
+         assertNull(nested.getNextEntry());
+         assertNull(nested.getManifest());
+      }
+      finally
+      {
+         outer.delete();
+      }
+   }
+
+   /**
+    * Read a nested archive and compare it with its entries
+    *
+    * @param nested The nested archive
+    * @exception IOException If an error occurs
+    */
+   private static void assertNested(byte[] nested) throws IOException
+   {
+      File outer = outer(nested);
+      try (ArchiveInput input = ArchiveInput.open(outer))
+      {
+         JarEntry entry = input.getNextEntry();
+         try (ArchiveInput in = input.openNested(entry))
+         {
+            assertEquals("nested.jar", in.getName());
+            assertEquals(Digests.sha1(nestedFile(nested)), in.getDigest());
+
+            List<ClassEntry> classEntries = new ArrayList<>();
+            for (String[] expected : entries())
+            {
+               JarEntry e = in.getNextEntry();
+               assertNotNull(expected[0], e);
+               assertEquals(expected[0], e.getName());
+               if (e.getName().endsWith(".class"))
+               {
+                  classEntries.add(in.getClassEntry(e));
+               }
+               else
+               {
+                  assertArrayEquals(expected[1].getBytes(StandardCharsets.UTF_8), read(in.getInputStream(e)));
+               }
+            }
+            assertNull(in.getNextEntry());
+
+            // class entries can be read after moving on
+            assertArrayEquals(entries()[1][1].getBytes(StandardCharsets.UTF_8), read(classEntries.get(0).openStream()));
+            assertArrayEquals(entries()[2][1].getBytes(StandardCharsets.UTF_8), read(classEntries.get(1).openStream()));
+
+            assertEquals("1.2", in.getManifest().getMainAttributes().getValue("Implementation-Version"));
+         }
+      }
+      finally
+      {
+         outer.delete();
+      }
+   }
+
+   /**
+    * The entries of the nested archive
+    *
+    * @return The names and contents
+    */
+   private static String[][] entries()
+   {
+      return new String[][] {
+         {JarFile.MANIFEST_NAME, MANIFEST},
+         {"org/example/A.class", "class A"},
+         {"org/example/B.class", "class B, a little longer than A"},
+         {"readme.txt", "nested"}
+      };
+   }
+
+   /**
+    * Write an archive of the entries where every entry is stored and followed by a data
+    * descriptor, as some archivers do when streaming
+    *
+    * @return The archive
+    */
+   private static byte[] storedWithDataDescriptor()
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream central = new ByteArrayOutputStream();
+      String[][] entries = entries();
+
+      for (String[] entry : entries)
+      {
+         byte[] name = entry[0].getBytes(StandardCharsets.UTF_8);
+         byte[] content = entry[1].getBytes(StandardCharsets.UTF_8);
+         CRC32 crc = new CRC32();
+         crc.update(content);
+         int offset = out.size();
+
+         writeInt(out, 0x04034b50);
+         writeShort(out, 10);
+         writeShort(out, 8);
+         writeShort(out, 0);
+         writeInt(out, 0);
+         writeInt(out, 0);
+         writeInt(out, 0);
+         writeInt(out, 0);
+         writeShort(out, name.length);
+         writeShort(out, 0);
+         out.write(name, 0, name.length);
+         out.write(content, 0, content.length);
+         writeInt(out, 0x08074b50);
+         writeInt(out, (int) crc.getValue());
+         writeInt(out, content.length);
+         writeInt(out, content.length);
+
+         writeInt(central, 0x02014b50);
+         writeShort(central, 20);
+         writeShort(central, 10);
+         writeShort(central, 8);
+         writeShort(central, 0);
+         writeInt(central, 0);
+         writeInt(central, (int) crc.getValue());
+         writeInt(central, content.length);
+         writeInt(central, content.length);
+         writeShort(central, name.length);
+         writeShort(central, 0);
+         writeShort(central, 0);
+         writeShort(central, 0);
+         writeShort(central, 0);
+         writeInt(central, 0);
+         writeInt(central, offset);
+         central.write(name, 0, name.length);
+      }
+
+      int start = out.size();
+      out.write(central.toByteArray(), 0, central.size());
+      writeInt(out, 0x06054b50);
+      writeShort(out, 0);
+      writeShort(out, 0);
+      writeShort(out, entries.length);
+      writeShort(out, entries.length);
+      writeInt(out, central.size());
+      writeInt(out, start);
+      writeShort(out, 0);
+      return out.toByteArray();
+   }
+
+   /**
+    * Write an archive holding a nested archive
+    *
+    * @param nested The nested archive
+    * @return The file
+    * @exception IOException If an error occurs
+    */
+   private static File outer(byte[] nested) throws IOException
+   {
+      File file = File.createTempFile("tattletale-test-", ".ear");
+      try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file)))
+      {
+         zos.putNextEntry(new ZipEntry("lib/nested.jar"));
+         zos.write(nested);
+         zos.closeEntry();
+      }
+      return file;
+   }
+
+   /**
+    * Write a nested archive to a file of its own
+    *
+    * @param nested The nested archive
+    * @return The file, deleted on exit
+    * @exception IOException If an error occurs
+    */
+   private static File nestedFile(byte[] nested) throws IOException
+   {
+      File file = File.createTempFile("tattletale-test-", ".jar");
+      file.deleteOnExit();
+      try (FileOutputStream out = new FileOutputStream(file))
+      {
+         out.write(nested);
+      }
+      return file;
+   }
+
+   /**
+    * Read a stream and close it
+    *
+    * @param is The input stream
+    * @return The bytes
+    * @exception IOException If an error occurs
+    */
+   private static byte[] read(InputStream is) throws IOException
+   {
+      try
+      {
+         ByteArrayOutputStream baos = new ByteArrayOutputStream();
+         byte[] buffer = new byte[8192];
+         int n;
+         while ((n = is.read(buffer)) != -1)
+         {
+            baos.write(buffer, 0, n);
+         }
+         return baos.toByteArray();
+      }
+      finally
+      {
+         is.close();
+      }
+   }
+
+   /**
+    * Write a little-endian 16 bit value
+    *
+    * @param out   The stream
+    * @param value The value
+    */
+   private static void writeShort(ByteArrayOutputStream out, int value)
+   {
+      out.write(value & 0xFF);
+      out.write((value >> 8) & 0xFF);
+   }
+
+   /**
+    * Write a little-endian 32 bit value
+    *
+    * @param out   The stream
+    * @param value The value
+    */
+   private static void writeInt(ByteArrayOutputStream out, int value)
+   {
+      writeShort(out, value & 0xFFFF);
+      writeShort(out, (value >> 16) & 0xFFFF);
+   }
+}
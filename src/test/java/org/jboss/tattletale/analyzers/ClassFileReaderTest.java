@@ -0,0 +1,275 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.analyzers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.NotFoundException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Differential test of {@link ClassFileReader} against Javassist on the classes of
+ * Tattletale itself and of the Javassist and JUnit archives on the test class path.
+ */
+public class ClassFileReaderTest
+{
+   /**
+    * Every class must give the same name, version, serialVersionUID and referenced classes
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testSameAsJavassist() throws Exception
+   {
+      ClassFileReader reader = new ClassFileReader();
+      int classes = 0;
+
+      classes += compareDirectory(reader, location(ClassFileReader.class));
+      classes += compareJar(reader, location(ClassPool.class));
+      classes += compareJar(reader, location(Test.class));
+
+      assertTrue("Only " + classes + " classes compared", classes > 500);
+   }
+
+   /**
+    * The serialVersionUID constant is read from the static field only
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testSerialVersionUID() throws Exception
+   {
+      ClassFileReader reader = new ClassFileReader();
+
+      reader.read(classStream(String.class));
+      assertEquals("java.lang.String", reader.getClassName());
+      assertEquals(Long.valueOf(-6849794470754667710L), reader.getSerialVersionUID());
+      assertTrue(reader.getRefClasses().contains("java.lang.String"));
+
+      reader.read(classStream(ClassFileReaderTest.class));
+      assertNull(reader.getSerialVersionUID());
+      assertTrue(reader.getRefClasses().contains("org.junit.Test"));
+   }
+
+   /**
+    * Compare all classes below a directory
+    *
+    * @param reader The reader
+    * @param root   The directory
+    * @return The number of classes
+    * @exception IOException If an error occurs
+    */
+   private int compareDirectory(ClassFileReader reader, File root) throws IOException
+   {
+      List<File> files = new ArrayList<>();
+      listClasses(root, files);
+
+      for (File f : files)
+      {
+         compare(reader, readFully(new FileInputStream(f)), f.getPath());
+      }
+      return files.size();
+   }
+
+   /**
+    * Compare all classes of an archive
+    *
+    * @param reader The reader
+    * @param file   The archive
+    * @return The number of classes
+    * @exception IOException If an error occurs
+    */
+   private int compareJar(ClassFileReader reader, File file) throws IOException
+   {
+      int classes = 0;
+
+      try (JarFile jarFile = new JarFile(file))
+      {
+         Enumeration<JarEntry> entries = jarFile.entries();
+         while (entries.hasMoreElements())
+         {
+            JarEntry entry = entries.nextElement();
+            if (entry.getName().endsWith(".class"))
+            {
+               compare(reader, readFully(jarFile.getInputStream(entry)), file.getName() + ":" + entry.getName());
+               classes++;
+            }
+         }
+      }
+      return classes;
+   }
+
+   /**
+    * Compare the reader with Javassist for one class
+    *
+    * @param reader The reader
+    * @param data   The class file
+    * @param name   The name used in failure messages
+    * @exception IOException If an error occurs
+    */
+   private void compare(ClassFileReader reader, byte[] data, String name) throws IOException
+   {
+      CtClass ctClz = new ClassPool().makeClass(new ByteArrayInputStream(data));
+
+      Long serialVersionUID = null;
+      boolean supported = true;
+      try
+      {
+         CtField field = ctClz.getField("serialVersionUID");
+         Object value = field.getConstantValue();
+         supported = value == null || value instanceof Long;
+         if (supported)
+         {
+            serialVersionUID = (Long) value;
+         }
+      }
+      catch (NotFoundException nfe)
+      {
+         // Not serializable
+      }
+
+      try
+      {
+         reader.read(new ByteArrayInputStream(data));
+         if (!supported)
+         {
+            fail(name + ": non-long serialVersionUID accepted");
+         }
+      }
+      catch (IOException ioe)
+      {
+         if (supported)
+         {
+            throw ioe;
+         }
+         return;
+      }
+
+      Set<String> expected = new HashSet<>();
+      for (Object o : ctClz.getRefClasses())
+      {
+         expected.add((String) o);
+      }
+
+      assertEquals(name, ctClz.getName(), reader.getClassName());
+      assertEquals(name, ctClz.getClassFile2().getMajorVersion(), reader.getMajorVersion());
+      assertEquals(name, serialVersionUID, reader.getSerialVersionUID());
+      assertEquals(name, expected, reader.getRefClasses());
+   }
+
+   /**
+    * Find the class path element of a class
+    *
+    * @param clz The class
+    * @return The directory or archive
+    * @exception URISyntaxException If the location isn't a valid URI
+    */
+   private static File location(Class<?> clz) throws URISyntaxException
+   {
+      return new File(clz.getProtectionDomain().getCodeSource().getLocation().toURI());
+   }
+
+   /**
+    * Get the class file of a class
+    *
+    * @param clz The class
+    * @return The input stream
+    */
+   private static InputStream classStream(Class<?> clz)
+   {
+      return ClassLoader.getSystemResourceAsStream(clz.getName().replace('.', '/') + ".class");
+   }
+
+   /**
+    * List the class files below a directory
+    *
+    * @param dir   The directory
+    * @param files The list of class files
+    */
+   private static void listClasses(File dir, List<File> files)
+   {
+      File[] children = dir.listFiles();
+      if (children != null)
+      {
+         for (File child : children)
+         {
+            if (child.isDirectory())
+            {
+               listClasses(child, files);
+            }
+            else if (child.getName().endsWith(".class"))
+            {
+               files.add(child);
+            }
+         }
+      }
+   }
+
+   /**
+    * Read a stream and close it
+    *
+    * @param is The input stream
+    * @return The bytes
+    * @exception IOException If an error occurs
+    */
+   private static byte[] readFully(InputStream is) throws IOException
+   {
+      try
+      {
+         ByteArrayOutputStream baos = new ByteArrayOutputStream();
+         byte[] buffer = new byte[8192];
+         int n;
+         while ((n = is.read(buffer)) != -1)
+         {
+            baos.write(buffer, 0, n);
+         }
+         return baos.toByteArray();
+      }
+      finally
+      {
+         is.close();
+      }
+   }
+}
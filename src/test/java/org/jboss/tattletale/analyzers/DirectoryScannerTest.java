@@ -0,0 +1,184 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.analyzers;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test of {@link DirectoryScanner}
+ */
+public class DirectoryScannerTest
+{
+   /** The scanned directory */
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /**
+    * Create the files
+    *
+    * @exception Exception If an error occurs
+    */
+   @Before
+   public void setUp() throws Exception
+   {
+      for (String path : new String[] {"a.jar", "a-b.jar", "a.b.jar", "a/x.jar", "a0.jar", "a/b/y.war",
+                                       "lib/test/t.jar", "lib/main/m.jar", "lib/main/test/u.jar", "app.ear",
+                                       "notes.txt", "skip/s.jar", "c1.jar", "c22.jar"})
+      {
+         File file = new File(folder.getRoot(), path.replace('/', File.separatorChar));
+         file.getParentFile().mkdirs();
+         file.createNewFile();
+      }
+   }
+
+   /**
+    * Directories sort as their name followed by a separator, so archives come in the
+    * order of their paths
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testOrder() throws Exception
+   {
+      List<File> files = new DirectoryScanner(null, null, 4).scanArchives(folder.getRoot());
+
+      assertEquals(Arrays.asList("a-b.jar", "a.b.jar", "a.jar", "a/b/y.war", "a/x.jar", "a0.jar", "c1.jar",
+                                 "c22.jar", "lib/main/m.jar", "lib/main/test/u.jar", "lib/test/t.jar",
+                                 "skip/s.jar"),
+                   relative(files));
+
+      List<File> sorted = new ArrayList<>(files);
+      Collections.sort(sorted);
+      assertEquals(sorted, files);
+   }
+
+   /**
+    * The archive types are extensions, with or without a leading *
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testArchiveTypes() throws Exception
+   {
+      assertEquals(Arrays.asList("app.ear", "notes.txt"),
+                   relative(new DirectoryScanner("*.ear,.txt", null, 1).scanArchives(folder.getRoot())));
+   }
+
+   /**
+    * An exclude is part of the path; * and ? match within a path element, ** across
+    * path elements, and an excluded directory excludes everything below it
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testExcludes() throws Exception
+   {
+      assertEquals(Arrays.asList("a-b.jar", "a.b.jar", "a.jar", "a/b/y.war", "a/x.jar", "a0.jar", "c1.jar",
+                                 "c22.jar", "lib/main/m.jar", "lib/main/test/u.jar", "lib/test/t.jar"),
+                   scan("skip"));
+      assertEquals(Arrays.asList("a-b.jar", "a.b.jar", "a.jar", "a/b/y.war", "a/x.jar", "a0.jar", "c22.jar",
+                                 "lib/main/m.jar", "lib/main/test/u.jar", "lib/test/t.jar", "skip/s.jar"),
+                   scan("c?.jar"));
+      assertEquals(Arrays.asList("a/b/y.war", "a/x.jar", "lib/main/m.jar", "lib/main/test/u.jar",
+                                 "lib/test/t.jar", "skip/s.jar"),
+                   scan(File.separator + "a*.jar", File.separator + "c*.jar"));
+      // ** stands for at least the separator between the elements around it
+      assertEquals(Arrays.asList("a-b.jar", "a.b.jar", "a.jar", "a/x.jar", "a0.jar", "c1.jar", "c22.jar",
+                                 "lib/main/m.jar", "lib/test/t.jar", "skip/s.jar"),
+                   scan("*.war", "lib" + File.separator + "**" + File.separator + "test" + File.separator));
+      assertEquals(Arrays.asList("a-b.jar", "a.b.jar", "a.jar", "a0.jar", "c1.jar", "c22.jar",
+                                 "lib/main/m.jar", "lib/main/test/u.jar", "lib/test/t.jar", "skip/s.jar"),
+                   scan("a" + File.separator));
+   }
+
+   /**
+    * The deprecated static methods scan with the archive types last set
+    */
+   @Test
+   @SuppressWarnings("deprecation")
+   public void testStatic()
+   {
+      try
+      {
+         assertEquals(Arrays.asList("a-b.jar", "a.b.jar", "a.jar", "a/b/y.war", "a/x.jar", "a0.jar", "c1.jar",
+                                    "c22.jar", "lib/main/m.jar", "lib/main/test/u.jar", "lib/test/t.jar",
+                                    "skip/s.jar"),
+                      relative(DirectoryScanner.scan(folder.getRoot())));
+
+         DirectoryScanner.setArchives(".ear");
+         assertEquals(Collections.singletonList("app.ear"), relative(DirectoryScanner.scan(folder.getRoot())));
+
+         DirectoryScanner.setArchives(".jar");
+         assertEquals(Arrays.asList("a-b.jar", "a.b.jar", "a.jar", "a/x.jar", "a0.jar", "c1.jar", "c22.jar",
+                                    "skip/s.jar"),
+                      relative(DirectoryScanner.scan(folder.getRoot(), new HashSet<>(Arrays.asList("lib")))));
+      }
+      finally
+      {
+         DirectoryScanner.setArchives(null);
+      }
+   }
+
+   /**
+    * Scan the directory with excludes
+    *
+    * @param excludes The excludes
+    * @return The paths found, relative to the directory
+    * @exception Exception If an error occurs
+    */
+   private List<String> scan(String... excludes) throws Exception
+   {
+      Set<String> set = new HashSet<>(Arrays.asList(excludes));
+      return relative(new DirectoryScanner(null, set, 2).scanArchives(folder.getRoot()));
+   }
+
+   /**
+    * Get the paths of files relative to the directory, with / as separator
+    *
+    * @param files The files
+    * @return The paths
+    */
+   private List<String> relative(List<File> files)
+   {
+      String root = folder.getRoot().getAbsolutePath() + File.separator;
+      List<String> result = new ArrayList<>();
+      for (File file : files)
+      {
+         result.add(file.getAbsolutePath().substring(root.length()).replace(File.separatorChar, '/'));
+      }
+      return result;
+   }
+}
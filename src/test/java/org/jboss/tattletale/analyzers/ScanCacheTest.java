@@ -0,0 +1,358 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.analyzers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.jboss.tattletale.core.Archive;
+import org.jboss.tattletale.core.JarArchive;
+import org.jboss.tattletale.core.Location;
+import org.jboss.tattletale.profiles.Java8;
+import org.jboss.tattletale.profiles.JavaEE7;
+import org.jboss.tattletale.profiles.Profile;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link ScanCache} and of the ways its entries are invalidated
+ */
+public class ScanCacheTest
+{
+   /** The folder of the scanned file and of the cache */
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /** The scanned file */
+   private File file;
+
+   /** The cache directory */
+   private File directory;
+
+   /** The profiles */
+   private List<Profile> known;
+
+   /** The black listed packages */
+   private Set<String> blacklisted;
+
+   /**
+    * Create the scanned file
+    *
+    * @exception Exception If an error occurs
+    */
+   @Before
+   public void setUp() throws Exception
+   {
+      file = folder.newFile("lib.jar");
+      write(file, "first content");
+      directory = new File(folder.getRoot(), "cache");
+      known = Arrays.<Profile>asList(new Java8(), new JavaEE7());
+      blacklisted = new HashSet<>(Arrays.asList("org.a", "org.b"));
+   }
+
+   /**
+    * An unchanged file is loaded from the cache with its provides
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testHit() throws Exception
+   {
+      store(new ScanCache(directory, known, blacklisted));
+
+      ScanCache cache = new ScanCache(directory, known, blacklisted);
+      SortedMap<String, SortedSet<String>> gProvides = new TreeMap<>();
+      ScanCache.Entry entry = cache.load(file, gProvides);
+
+      assertNotNull(entry);
+      assertEquals("lib.jar", entry.getArchive().getName());
+      assertEquals(Collections.singleton("org.lib.Api"), gProvides.keySet());
+      assertTrue(cache.getStatistics().endsWith(": 1 hits, 0 misses"));
+   }
+
+   /**
+    * A file without classes is cached too
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testNoArchive() throws Exception
+   {
+      ScanCache cache = new ScanCache(directory, known, blacklisted);
+      cache.store(file, null, new TreeMap<String, SortedSet<String>>());
+
+      ScanCache.Entry entry = cache.load(file, new TreeMap<String, SortedSet<String>>());
+      assertNotNull(entry);
+      assertNull(entry.getArchive());
+   }
+
+   /**
+    * A new modification time with the same content, as found by the SHA-1, is a hit and
+    * the new time is remembered
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testModifiedSameContent() throws Exception
+   {
+      ScanCache cache = new ScanCache(directory, known, blacklisted);
+      store(cache);
+      long touched = file.lastModified() + 10000L;
+      assertTrue(file.setLastModified(touched));
+
+      assertNotNull(cache.load(file, new TreeMap<String, SortedSet<String>>()));
+
+      // with the remembered time the content isn't hashed again
+      write(file, "other content");
+      assertTrue(file.setLastModified(touched));
+      assertNotNull(cache.load(file, new TreeMap<String, SortedSet<String>>()));
+   }
+
+   /**
+    * A new modification time with other content of the same size is a miss
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testModifiedOtherContent() throws Exception
+   {
+      ScanCache cache = new ScanCache(directory, known, blacklisted);
+      store(cache);
+      long lastModified = file.lastModified();
+      write(file, "other content");
+      assertTrue(file.setLastModified(lastModified + 10000L));
+
+      SortedMap<String, SortedSet<String>> gProvides = new TreeMap<>();
+      assertNull(cache.load(file, gProvides));
+      assertTrue(gProvides.isEmpty());
+      assertTrue(cache.getStatistics().endsWith(": 0 hits, 1 misses"));
+   }
+
+   /**
+    * A new size is a miss, whatever the modification time
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testOtherSize() throws Exception
+   {
+      ScanCache cache = new ScanCache(directory, known, blacklisted);
+      store(cache);
+      long lastModified = file.lastModified();
+      write(file, "longer content");
+      assertTrue(file.setLastModified(lastModified));
+
+      assertNull(cache.load(file, new TreeMap<String, SortedSet<String>>()));
+   }
+
+   /**
+    * Other profiles or black listed packages are misses; the order of the black listed
+    * packages doesn't matter
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testSettings() throws Exception
+   {
+      store(new ScanCache(directory, known, blacklisted));
+
+      List<Profile> otherProfiles = Arrays.<Profile>asList(new Java8());
+      assertNull(new ScanCache(directory, otherProfiles, blacklisted)
+         .load(file, new TreeMap<String, SortedSet<String>>()));
+      assertNull(new ScanCache(directory, known, new HashSet<>(Arrays.asList("org.a")))
+         .load(file, new TreeMap<String, SortedSet<String>>()));
+      assertNull(new ScanCache(directory, null, null).load(file, new TreeMap<String, SortedSet<String>>()));
+
+      Set<String> reordered = new TreeSet<>(Collections.reverseOrder());
+      reordered.addAll(blacklisted);
+      assertNotNull(new ScanCache(directory, known, reordered).load(file, new TreeMap<String, SortedSet<String>>()));
+   }
+
+   /**
+    * An entry written by another cache format is a miss
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testFormatVersion() throws Exception
+   {
+      ScanCache cache = new ScanCache(directory, known, blacklisted);
+      store(cache);
+      File cacheFile = getCacheFile();
+
+      rewrite(cacheFile, ScanCache.FORMAT_VERSION);
+      assertNotNull(cache.load(file, new TreeMap<String, SortedSet<String>>()));
+
+      rewrite(cacheFile, ScanCache.FORMAT_VERSION + 1);
+      assertNull(cache.load(file, new TreeMap<String, SortedSet<String>>()));
+   }
+
+   /**
+    * A truncated or corrupt cache file is a miss, and is replaced by the next store
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testCorrupt() throws Exception
+   {
+      ScanCache cache = new ScanCache(directory, known, blacklisted);
+      store(cache);
+      File cacheFile = getCacheFile();
+
+      try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw"))
+      {
+         raf.setLength(raf.length() / 2);
+      }
+      SortedMap<String, SortedSet<String>> gProvides = new TreeMap<>();
+      assertNull(cache.load(file, gProvides));
+      assertTrue(gProvides.isEmpty());
+
+      write(cacheFile, "not a cache file");
+      assertNull(cache.load(file, gProvides));
+
+      try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw"))
+      {
+         raf.setLength(0);
+      }
+      assertNull(cache.load(file, gProvides));
+
+      store(cache);
+      assertNotNull(cache.load(file, gProvides));
+      assertTrue(cache.getStatistics().endsWith(": 1 hits, 3 misses"));
+   }
+
+   /**
+    * Store the scan result of the file
+    *
+    * @param cache The cache
+    */
+   private void store(ScanCache cache)
+   {
+      SortedMap<String, Long> provides = new TreeMap<>();
+      provides.put("org.lib.Api", 0L);
+      Archive archive = new JarArchive("lib.jar", 51, new ArrayList<String>(), new ArrayList<String>(),
+                                       new TreeSet<String>(), provides,
+                                       new TreeMap<String, SortedSet<String>>(),
+                                       new TreeMap<String, SortedSet<String>>(),
+                                       new TreeMap<String, SortedSet<String>>(),
+                                       new Location(file.getPath(), "1.0"));
+
+      SortedMap<String, SortedSet<String>> gProvides = new TreeMap<>();
+      gProvides.put("org.lib.Api", new TreeSet<>(Collections.singleton("lib.jar")));
+      cache.store(file, archive, gProvides);
+   }
+
+   /**
+    * Get the only cache file
+    *
+    * @return The file
+    */
+   private File getCacheFile()
+   {
+      File[] files = directory.listFiles();
+      assertEquals(1, files.length);
+      return files[0];
+   }
+
+   /**
+    * Write a cache file again with a format version
+    *
+    * @param cacheFile The cache file
+    * @param version   The format version
+    * @exception Exception If an error occurs
+    */
+   private static void rewrite(File cacheFile, int version) throws Exception
+   {
+      String tattletale;
+      String settings;
+      String path;
+      long length;
+      long lastModified;
+      String hash;
+      Object archive;
+      Object provides;
+      try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(cacheFile))))
+      {
+         ois.readInt();
+         tattletale = ois.readUTF();
+         settings = ois.readUTF();
+         path = ois.readUTF();
+         length = ois.readLong();
+         lastModified = ois.readLong();
+         hash = ois.readUTF();
+         archive = ois.readObject();
+         provides = ois.readObject();
+      }
+
+      try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile))))
+      {
+         oos.writeInt(version);
+         oos.writeUTF(tattletale);
+         oos.writeUTF(settings);
+         oos.writeUTF(path);
+         oos.writeLong(length);
+         oos.writeLong(lastModified);
+         oos.writeUTF(hash);
+         oos.writeObject(archive);
+         oos.writeObject(provides);
+      }
+   }
+
+   /**
+    * Replace the content of a file
+    *
+    * @param f       The file
+    * @param content The content
+    * @exception Exception If an error occurs
+    */
+   private static void write(File f, String content) throws Exception
+   {
+      Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+   }
+}
@@ -0,0 +1,127 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.profiles;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Module lookups of {@link JBossAS7Profile} on the JBoss AS 7 class list.
+ */
+public class JBossAS7ProfileTest
+{
+   /**
+    * A class listed in several modules belongs to the first one in the file
+    */
+   @Test
+   public void testFirstModuleWins()
+   {
+      JBossAS7Profile profile = new JBossAS7Profile();
+
+      // listed in org.apache.commons.beanutils first, then in org.apache.commons.collections
+      assertEquals("org.apache.commons.beanutils",
+                   profile.getModuleIdentifier("org.apache.commons.collections.ArrayStack"));
+      assertEquals("org.apache.commons.beanutils",
+                   profile.getModuleIdentifier("org.apache.commons.collections.FastHashMap$1"));
+
+      // listed twice in the same module
+      assertEquals("com.sun.jsf-impl", profile.getModuleIdentifier("com.sun.faces.RIConstants"));
+
+      assertEquals("asm.asm", profile.getModuleIdentifier("org.objectweb.asm.ClassReader"));
+   }
+
+   /**
+    * A nested class that isn't listed belongs to the module of its enclosing class
+    */
+   @Test
+   public void testNestedClass()
+   {
+      JBossAS7Profile profile = new JBossAS7Profile();
+
+      assertEquals("asm.asm", profile.getModuleIdentifier("org.objectweb.asm.ClassReader$Unlisted"));
+      assertEquals("asm.asm", profile.getModuleIdentifier("org.objectweb.asm.ClassReader$Unlisted$Inner"));
+      assertEquals("org.apache.commons.beanutils",
+                   profile.getModuleIdentifier("org.apache.commons.collections.FastHashMap$1$Unlisted"));
+
+      assertNull(profile.getModuleIdentifier("com.example.Unlisted$Inner"));
+      assertNull(profile.getModuleIdentifier("$Unlisted"));
+      assertNull(profile.getModuleIdentifier("org.objectweb.asm.ClassReaderUnlisted"));
+
+      // only the module lookup falls back, not doesProvide
+      assertTrue(profile.doesProvide("org.objectweb.asm.ClassReader"));
+      assertFalse(profile.doesProvide("org.objectweb.asm.ClassReader$Unlisted"));
+   }
+
+   /**
+    * The precompiled index gives every class the same module as the class list
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testCompiledSameAsList() throws Exception
+   {
+      ClassLoader cl = JBossAS7Profile.class.getClassLoader();
+      ByteBuffer buffer = ClassTable.map(cl, "jbossas7.clz.bin");
+      assertNotNull("jbossas7.clz.bin not built", buffer);
+
+      JBossAS7Profile.Modules compiled = JBossAS7Profile.Modules.read(buffer);
+      JBossAS7Profile.Modules parsed;
+      try (InputStream is = cl.getResourceAsStream("jbossas7.clz.gz"))
+      {
+         parsed = JBossAS7Profile.Modules.parse(is);
+      }
+
+      int classes = 0;
+      for (String clz : parsed.getClasses())
+      {
+         assertEquals(clz, parsed.get(clz), compiled.get(clz));
+         classes++;
+      }
+      assertEquals(classes, compiled.getClasses().size());
+      assertNull(compiled.get("org.objectweb.asm.ClassReader$Unlisted"));
+   }
+
+   /**
+    * The class index is the only structure the profile keeps
+    */
+   @Test
+   public void testSingleStructure()
+   {
+      JBossAS7Profile profile = new JBossAS7Profile();
+      profile.load();
+
+      assertTrue(profile.subProfiles.isEmpty());
+      assertTrue(profile.classSet.contains("org.objectweb.asm.ClassReader"));
+
+      // the distinct class names of the 57251 lines of the list
+      assertEquals(56456, profile.classSet.size());
+   }
+}
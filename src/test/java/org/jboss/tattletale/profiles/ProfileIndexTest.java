@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.profiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.redhat.gss.middleware.tattletale.reports.EAP700;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test of {@link ProfileIndex} against asking each profile in turn.
+ */
+public class ProfileIndexTest
+{
+   /**
+    * The index gives the same profile as the first one whose doesProvide accepts the class
+    */
+   @Test
+   public void testSameAsDoesProvide()
+   {
+      ProfileArchive archive = new ProfileArchive("custom.jar", null);
+      archive.addClass("com.example.Custom");
+      archive.addClass("java.lang.String");
+
+      // a profile that can only be asked
+      Profile opaque = new Profile()
+      {
+         @Override
+         public boolean doesProvide(String clz)
+         {
+            return clz.startsWith("com.example.opaque.") || clz.equals("javax.inject.Inject");
+         }
+
+         @Override
+         public String getName()
+         {
+            return "opaque";
+         }
+
+         @Override
+         public String getModuleIdentifier()
+         {
+            return null;
+         }
+      };
+
+      List<Profile> profiles = Arrays.<Profile>asList(new SunJava6(), opaque, new JavaEE7(), archive,
+                                                      new JBossAS7Profile(), new Spring30(), new EAP700(),
+                                                      new Java8());
+      ProfileIndex index = new ProfileIndex(profiles);
+      assertEquals(profiles, index);
+
+      Set<String> classes = new LinkedHashSet<>();
+      for (Profile profile : profiles)
+      {
+         if (profile instanceof AbstractProfile)
+         {
+            ((AbstractProfile) profile).load();
+            addSample(((AbstractProfile) profile).classSet, classes);
+            for (Profile sub : ((AbstractProfile) profile).subProfiles)
+            {
+               addSample(((AbstractProfile) sub).classSet, classes);
+            }
+         }
+      }
+      classes.addAll(Arrays.asList("com.example.Custom", "com.example.opaque.A", "javax.inject.Inject",
+                                   "java.lang.String", "javax.crypto.Cipher", "com.example.Unknown", ""));
+
+      for (String clz : classes)
+      {
+         Profile expected = null;
+         for (Profile profile : profiles)
+         {
+            if (profile.doesProvide(clz))
+            {
+               expected = profile;
+               break;
+            }
+         }
+         assertSame(clz, expected, index.getProvider(clz));
+         assertSame(clz, expected, ProfileIndex.findProvider(index, clz));
+         assertSame(clz, expected, ProfileIndex.findProvider(profiles, clz));
+
+         long mask = 0L;
+         for (int i = 0; i < profiles.size(); i++)
+         {
+            if (profiles.get(i) != opaque && profiles.get(i).doesProvide(clz))
+            {
+               mask |= 1L << i;
+            }
+         }
+         assertEquals(clz, mask, index.getMask(clz));
+      }
+
+      // the sub-profiles of SunJava6 count for it, before the opaque profile
+      assertSame(profiles.get(0), index.getProvider("javax.crypto.Cipher"));
+      assertSame(opaque, index.getProvider("com.example.opaque.A"));
+      assertSame(archive, index.getProvider("com.example.Custom"));
+      assertNull(index.getProvider("com.example.Unknown"));
+   }
+
+   /**
+    * A class provided by several profiles has a bit for each of them, and the first one wins
+    */
+   @Test
+   public void testSharedClass()
+   {
+      ProfileArchive archive = new ProfileArchive("custom.jar", null);
+      archive.addClass("java.lang.String");
+      archive.addClass("com.example.Custom");
+
+      List<Profile> profiles = Arrays.<Profile>asList(new JavaEE7(), archive, new SunJava6(), new Java8());
+      ProfileIndex index = new ProfileIndex(profiles);
+
+      assertEquals((1L << 1) | (1L << 2) | (1L << 3), index.getMask("java.lang.String"));
+      assertSame(archive, index.getProvider("java.lang.String"));
+      assertEquals(1L << 1, index.getMask("com.example.Custom"));
+      assertEquals(0L, index.getMask("com.example.Unknown"));
+
+      // the same profiles in another order
+      index = new ProfileIndex(Arrays.<Profile>asList(new Java8(), archive));
+      assertEquals((1L << 0) | (1L << 1), index.getMask("java.lang.String"));
+      assertSame(index.get(0), index.getProvider("java.lang.String"));
+   }
+
+   /**
+    * Add every 50th class of a set
+    *
+    * @param set     The classes
+    * @param classes The sample
+    */
+   private static void addSample(Set<String> set, Set<String> classes)
+   {
+      List<String> all = new ArrayList<>(set);
+      for (int i = 0; i < all.size(); i += 50)
+      {
+         classes.add(all.get(i));
+         classes.add(all.get(i) + "$Unlisted");
+      }
+   }
+}
@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.reporting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.jboss.tattletale.core.Archive;
+import org.jboss.tattletale.core.ArchiveType;
+import org.jboss.tattletale.core.JarArchive;
+import org.jboss.tattletale.core.Location;
+import org.jboss.tattletale.reporting.classloader.ClassLoaderStructure;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of the edges of {@link ArchiveGraph} when two archives provide the same classes.
+ */
+public class ArchiveGraphTest
+{
+   /**
+    * An archive depends on the first archive providing a class only, in every view of
+    * the graph
+    */
+   @Test
+   public void testFirstProviderOnly()
+   {
+      // lib-1 and lib-2 both provide org.lib.Api; lib-2 also requires a class of app
+      Archive app = jar("app.jar", Arrays.asList("org.app.Main"), Arrays.asList("org.lib.Api"));
+      Archive lib1 = jar("lib-1.jar", Arrays.asList("org.lib.Api"), Collections.<String>emptyList());
+      Archive lib2 = jar("lib-2.jar", Arrays.asList("org.lib.Api"), Arrays.asList("org.app.Main"));
+
+      ArchiveGraph graph = new ArchiveGraph(new TreeSet<>(Arrays.asList(app, lib1, lib2)), null);
+
+      assertEquals(lib1, graph.getProvider(app, "org.lib.Api"));
+      assertEquals(Arrays.asList(lib1), graph.getDependsOn(app));
+      assertEquals(Arrays.asList(app), graph.getDependsOn(lib2));
+      assertEquals(Arrays.asList(app), graph.getDependants(lib1));
+      assertTrue(graph.getDependants(lib2).isEmpty());
+
+      // the transitive views follow the same edges: no cycle through lib-2
+      ComponentGraph dependsOn = graph.getComponents(false, ArchiveType.JAR);
+      assertEquals(bits(0, 1), dependsOn.getReachable(0));
+      assertEquals(bits(0, 1, 2), dependsOn.getReachable(2));
+      assertFalse(dependsOn.getComponent(0) == dependsOn.getComponent(2));
+
+      ComponentGraph dependants = graph.getComponents(true, ArchiveType.JAR);
+      assertEquals(bits(0, 1, 2), dependants.getReachable(1));
+      assertEquals(bits(2), dependants.getReachable(2));
+   }
+
+   /**
+    * A provider that can't be seen is skipped for the next one
+    */
+   @Test
+   public void testFirstVisibleProvider()
+   {
+      Archive app = jar("app.jar", Arrays.asList("org.app.Main"), Arrays.asList("org.lib.Api"));
+      final Archive lib1 = jar("lib-1.jar", Arrays.asList("org.lib.Api"), Collections.<String>emptyList());
+      Archive lib2 = jar("lib-2.jar", Arrays.asList("org.lib.Api"), Collections.<String>emptyList());
+
+      ArchiveGraph graph = new ArchiveGraph(new TreeSet<>(Arrays.asList(app, lib1, lib2)),
+         new ClassLoaderStructure()
+         {
+            @Override
+            public boolean isVisible(Archive from, Archive to)
+            {
+               return to != lib1;
+            }
+         });
+
+      assertEquals(lib2, graph.getProvider(app, "org.lib.Api"));
+      assertEquals(Arrays.asList(lib2), graph.getDependsOn(app));
+      assertTrue(graph.getDependants(lib1).isEmpty());
+      assertEquals(bits(0, 2), graph.getComponents(false, null).getReachable(0));
+   }
+
+   /**
+    * Create a jar archive
+    *
+    * @param name     The name
+    * @param provides The classes it provides
+    * @param requires The classes it requires
+    * @return The archive
+    */
+   private static Archive jar(String name, List<String> provides, List<String> requires)
+   {
+      SortedMap<String, Long> provideMap = new TreeMap<>();
+      for (String clz : provides)
+      {
+         provideMap.put(clz, 0L);
+      }
+      return new JarArchive(name, 51, new ArrayList<String>(), new ArrayList<String>(),
+                            new TreeSet<>(requires), provideMap,
+                            new TreeMap<String, SortedSet<String>>(),
+                            new TreeMap<String, SortedSet<String>>(),
+                            new TreeMap<String, SortedSet<String>>(),
+                            new Location(name, "1.0"));
+   }
+
+   /**
+    * Create a bit set
+    *
+    * @param bits The set bits
+    * @return The bit set
+    */
+   private static BitSet bits(int... bits)
+   {
+      BitSet set = new BitSet();
+      for (int bit : bits)
+      {
+         set.set(bit);
+      }
+      return set;
+   }
+}
@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.reporting;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link ComponentGraph}
+ */
+public class ComponentGraphTest
+{
+   /**
+    * A node with an edge to itself is a cycle on its own
+    */
+   @Test
+   public void testSelfLoop()
+   {
+      ComponentGraph graph = new ComponentGraph(new int[][] {{0, 1}, {}});
+
+      assertEquals(2, graph.getComponentCount());
+      assertArrayEquals(new int[] {0}, graph.getMembers(graph.getComponent(0)));
+      assertArrayEquals(new int[] {0}, graph.getShortestCycle(graph.getComponent(0)));
+      assertArrayEquals(new int[0], graph.getShortestCycle(graph.getComponent(1)));
+      assertEquals(bits(0, 1), graph.getReachable(0));
+      assertEquals(bits(1), graph.getReachable(1));
+   }
+
+   /**
+    * Two cycles joined by an edge are two components, numbered in reverse topological order
+    */
+   @Test
+   public void testTwoCycles()
+   {
+      // 0 <-> 1 -> 2 -> 3 -> 4 -> 2, and 5 alone
+      ComponentGraph graph = new ComponentGraph(new int[][] {{1}, {0, 2}, {3}, {4}, {2}, {}});
+
+      assertEquals(3, graph.getComponentCount());
+      int first = graph.getComponent(0);
+      int second = graph.getComponent(2);
+      assertTrue(second < first);
+      assertArrayEquals(new int[] {0, 1}, graph.getMembers(first));
+      assertArrayEquals(new int[] {2, 3, 4}, graph.getMembers(second));
+      assertArrayEquals(new int[] {5}, graph.getMembers(graph.getComponent(5)));
+
+      assertArrayEquals(new int[] {0, 1}, graph.getShortestCycle(first));
+      assertArrayEquals(new int[] {2, 3, 4}, graph.getShortestCycle(second));
+      assertArrayEquals(new int[0], graph.getShortestCycle(graph.getComponent(5)));
+
+      assertEquals(bits(0, 1, 2, 3, 4), graph.getReachable(1));
+      assertEquals(bits(2, 3, 4), graph.getReachable(3));
+      assertEquals(bits(5), graph.getReachable(5));
+   }
+
+   /**
+    * A chain far deeper than a recursive search could follow
+    */
+   @Test
+   public void testLongChain()
+   {
+      int n = 100000;
+      int[][] edges = new int[n][];
+      for (int i = 0; i < n - 1; i++)
+      {
+         edges[i] = new int[] {i + 1};
+      }
+      edges[n - 1] = new int[0];
+
+      ComponentGraph chain = new ComponentGraph(edges);
+      assertEquals(n, chain.getComponentCount());
+      for (int i = 0; i < n; i++)
+      {
+         // the last node of the chain is completed first
+         assertEquals(n - 1 - i, chain.getComponent(i));
+      }
+
+      // closing the chain makes a single cycle through every node
+      edges[n - 1] = new int[] {0};
+      ComponentGraph cycle = new ComponentGraph(edges);
+      assertEquals(1, cycle.getComponentCount());
+      assertEquals(n, cycle.getMembers(0).length);
+      assertEquals(n, cycle.getReachable(n / 2).cardinality());
+   }
+
+   /**
+    * The shortest cycle of a component is chosen over a longer one found first
+    */
+   @Test
+   public void testShortestCycle()
+   {
+      // 0 -> 1 -> 2 -> 3 -> 0, and 2 <-> 4
+      ComponentGraph graph = new ComponentGraph(new int[][] {{1}, {2}, {3, 4}, {0}, {2}});
+
+      assertEquals(1, graph.getComponentCount());
+      assertArrayEquals(new int[] {0, 1, 2, 3, 4}, graph.getMembers(0));
+      assertArrayEquals(new int[] {2, 4}, graph.getShortestCycle(0));
+   }
+
+   /**
+    * Create a bit set
+    *
+    * @param values The bits to set
+    * @return The bit set
+    */
+   private static BitSet bits(int... values)
+   {
+      BitSet result = new BitSet();
+      for (int value : values)
+      {
+         result.set(value);
+      }
+      return result;
+   }
+}
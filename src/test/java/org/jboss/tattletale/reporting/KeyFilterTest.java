@@ -0,0 +1,148 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.reporting;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.tattletale.utils.PrefixTrie;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link KeyFilter}
+ */
+public class KeyFilterTest
+{
+   /**
+    * A suffix is cut at its first occurrence, and only when the name ends with it
+    */
+   @Test
+   public void testStripSuffix()
+   {
+      assertEquals(3, KeyFilter.stripSuffix("foo.class", 9, ".class"));
+      assertEquals(3, KeyFilter.stripSuffix("foo.jar", 7, ".jar"));
+      assertEquals(3, KeyFilter.stripSuffix("foo.*", 5, ".*"));
+      assertEquals(7, KeyFilter.stripSuffix("foo.jar", 7, ".class"));
+      assertEquals(3, KeyFilter.stripSuffix("foo.jar.class", 7, ".jar"));
+      assertEquals(1, KeyFilter.stripSuffix("a.class.b.class", 15, ".class"));
+      assertEquals(4, KeyFilter.stripSuffix(".jar", 4, ".class"));
+      assertEquals(0, KeyFilter.stripSuffix(".jar", 4, ".jar"));
+      assertEquals(2, KeyFilter.stripSuffix("ab", 2, ".class"));
+   }
+
+   /**
+    * Names are matched without their suffixes and with / for ., as the filter values are
+    */
+   @Test
+   public void testMatches()
+   {
+      KeyFilter filter = new KeyFilter();
+      filter.init("foo.jar,org.example.Api.class,com.acme.*,bar");
+
+      assertTrue(filter.isFiltered("foo.jar"));
+      assertTrue(filter.isFiltered("foo.jar.class"));
+      assertTrue(filter.isFiltered("foo-1.0.jar"));
+      assertTrue(filter.isFiltered("org.example.Api"));
+      assertTrue(filter.isFiltered("org.example.Api.class"));
+      assertTrue(filter.isFiltered("org.example.Api$Inner"));
+      assertTrue(filter.isFiltered("org/example/Api.class"));
+      assertTrue(filter.isFiltered("com.acme.Tool"));
+      assertTrue(filter.isFiltered("com.acme.sub.Tool.class"));
+      assertTrue(filter.isFiltered("bar"));
+      assertTrue(filter.isFiltered("barn.jar"));
+
+      assertFalse(filter.isFiltered("fo.jar"));
+      assertFalse(filter.isFiltered("org.example.Ap"));
+      assertFalse(filter.isFiltered("com.acme"));
+      // the package itself, as com.acme.* is read, isn't below it
+      assertFalse(filter.isFiltered("com.acme.*"));
+      assertFalse(filter.isFiltered("com.acmex.Tool"));
+      assertFalse(filter.isFiltered("ba.class"));
+      assertFalse(filter.isFiltered(""));
+
+      assertFalse(new KeyFilter().isFiltered("foo.jar"));
+   }
+
+   /**
+    * Matching without copying the name gives what the name, stripped and with / for .,
+    * gives
+    */
+   @Test
+   public void testSameAsCopy()
+   {
+      PrefixTrie prefixes = new PrefixTrie(Arrays.asList("foo", "org/example/", "a/b", "x"));
+      String[] names = {"foo", "foo.jar", "foo.jar.class", "foo.class.jar", "org.example.*", "org.example",
+                        "org.example.A.class", "a.b.class", "a.b.jar.class", "a.class", "a/b", "x.*", ".jar",
+                        ".class", ".*", "", "y.jar.x"};
+
+      for (String name : names)
+      {
+         String copy = name;
+         if (copy.endsWith(".class"))
+         {
+            copy = copy.substring(0, copy.indexOf(".class"));
+         }
+         if (copy.endsWith(".jar"))
+         {
+            copy = copy.substring(0, copy.indexOf(".jar"));
+         }
+         if (copy.endsWith(".*"))
+         {
+            copy = copy.substring(0, copy.indexOf(".*"));
+         }
+         copy = copy.replace('.', '/');
+
+         assertEquals(name, prefixes.matches(copy), KeyFilter.matches(prefixes, name));
+      }
+   }
+
+   /**
+    * The reports of a run share their initialized filters
+    */
+   @Test
+   public void testSharedFilters()
+   {
+      ConcurrentMap<String, Filter> filters = new ConcurrentHashMap<>();
+
+      AbstractReport first = new CircularDependencyReport();
+      first.setFilters(filters);
+      first.setFilter("foo.jar");
+      AbstractReport second = new CircularDependencyReport();
+      second.setFilters(filters);
+      second.setFilter("foo.jar");
+      assertEquals(1, filters.size());
+      assertTrue(second.isFiltered("foo.jar"));
+
+      // a report outside a run keeps its filter to itself
+      AbstractReport alone = new CircularDependencyReport();
+      alone.setFilter("bar.jar");
+      assertTrue(alone.isFiltered("bar.jar"));
+      assertEquals(1, filters.size());
+   }
+}
@@ -0,0 +1,177 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.tattletale.reporting;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.jboss.tattletale.core.Archive;
+import org.jboss.tattletale.core.JarArchive;
+import org.jboss.tattletale.core.Location;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link MultipleJarsReport} and {@link ClassLocationReport} writing the HTML page
+ * and the data file in one pass
+ */
+public class MultipleJarsReportTest
+{
+   /** The output directory */
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /**
+    * The HTML table and the data file have the same rows, and the status is set once
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testHtmlAndData() throws Exception
+   {
+      MultipleJarsReport report = new MultipleJarsReport();
+      report.setGlobalProvides(getProvides());
+      report.setArchives(getArchives());
+      report.setFilter("com.filtered.*");
+      report.setDataFormat("json");
+      report.generate(folder.getRoot().getPath());
+
+      assertEquals(Report.ReportStatus.RED, report.getStatus());
+      String html = read(new File(report.getOutputDirectory(), "index.html"));
+      assertTrue(html, html.contains("<td>com.x.Shared</td>"));
+      assertTrue(html, html.contains("<td>com.filtered.Shared</td>"));
+      assertFalse(html, html.contains("com.x.Single"));
+      assertEquals(2, count(html, "<tr class=\"row"));
+
+      assertEquals("{\"class\": \"com.filtered.Shared\", \"archives\": [\"a.jar\", \"b.jar\"], \"filtered\": true}\n"
+                   + "{\"class\": \"com.x.Shared\", \"archives\": [\"a.jar\", \"b.jar\"], \"filtered\": false}\n",
+                   read(new File(report.getOutputDirectory(), "index.jsonl")));
+   }
+
+   /**
+    * Without the HTML page the data file has the same rows, and the status is the same
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testDataOnly() throws Exception
+   {
+      ClassLocationReport both = new ClassLocationReport();
+      both.setGlobalProvides(getProvides());
+      both.setArchives(getArchives());
+      both.setDataFormat("csv");
+      both.generate(new File(folder.getRoot(), "both").getPath());
+
+      ClassLocationReport data = new ClassLocationReport();
+      data.setGlobalProvides(getProvides());
+      data.setArchives(getArchives());
+      data.setDataFormat("csv");
+      data.setHtml(false);
+      data.generate(new File(folder.getRoot(), "data").getPath());
+
+      assertEquals(Report.ReportStatus.YELLOW, both.getStatus());
+      assertEquals(both.getStatus(), data.getStatus());
+      assertFalse(new File(data.getOutputDirectory(), "index.html").exists());
+
+      String csv = read(new File(data.getOutputDirectory(), "index.csv"));
+      assertEquals(read(new File(both.getOutputDirectory(), "index.csv")), csv);
+      assertEquals(4, count(csv, "\n"));
+      assertEquals(3, count(read(new File(both.getOutputDirectory(), "index.html")), "<tr class=\"row"));
+   }
+
+   /**
+    * Get the provides of the tests
+    *
+    * @return The archives providing each class
+    */
+   private static SortedMap<String, SortedSet<String>> getProvides()
+   {
+      SortedMap<String, SortedSet<String>> gProvides = new TreeMap<>();
+      gProvides.put("com.x.Shared", new TreeSet<>(Arrays.asList("a.jar", "b.jar")));
+      gProvides.put("com.x.Single", new TreeSet<>(Arrays.asList("a.jar")));
+      gProvides.put("com.filtered.Shared", new TreeSet<>(Arrays.asList("a.jar", "b.jar")));
+      return gProvides;
+   }
+
+   /**
+    * Get the archives of the tests
+    *
+    * @return The archives
+    */
+   private static SortedSet<Archive> getArchives()
+   {
+      SortedSet<Archive> archives = new TreeSet<>();
+      for (String name : Arrays.asList("a.jar", "b.jar"))
+      {
+         List<String> empty = new ArrayList<>();
+         archives.add(new JarArchive(name, 51, empty, empty, new TreeSet<String>(), new TreeMap<String, Long>(),
+                                     new TreeMap<String, SortedSet<String>>(),
+                                     new TreeMap<String, SortedSet<String>>(),
+                                     new TreeMap<String, SortedSet<String>>(),
+                                     new Location(name, "1.0")));
+      }
+      return archives;
+   }
+
+   /**
+    * Read a file
+    *
+    * @param file The file
+    * @return The content
+    * @exception Exception If an error occurs
+    */
+   private static String read(File file) throws Exception
+   {
+      return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+   }
+
+   /**
+    * Count the occurrences of a string
+    *
+    * @param text The text
+    * @param s    The string
+    * @return The count
+    */
+   private static int count(String text, String s)
+   {
+      int n = 0;
+      for (int i = text.indexOf(s); i != -1; i = text.indexOf(s, i + s.length()))
+      {
+         n++;
+      }
+      return n;
+   }
+}
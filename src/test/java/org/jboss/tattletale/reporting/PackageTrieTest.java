@@ -0,0 +1,190 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.reporting;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.jboss.tattletale.core.Archive;
+import org.jboss.tattletale.core.JarArchive;
+import org.jboss.tattletale.core.Location;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link PackageTrie}
+ */
+public class PackageTrieTest
+{
+   /** The output directory */
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /**
+    * Packages are grouped by whole segments: com.x.a and com.xy.b share no
+    * subpackage, while com.x.a and com.x.b share com.x
+    */
+   @Test
+   public void testWholeSegments()
+   {
+      SortedMap<String, SortedSet<String>> commons =
+         new PackageTrie(Arrays.asList("com.x.a", "com.xy.b")).getCommonSubpackages(0);
+      assertEquals(new TreeSet<>(Arrays.asList("com.x.a", "com.xy.b")), commons.keySet());
+
+      commons = new PackageTrie(Arrays.asList("com.x.a", "com.x.b", "com.xy.b")).getCommonSubpackages(0);
+      assertEquals(new TreeSet<>(Arrays.asList("com.x", "com.xy.b")), commons.keySet());
+      assertEquals(new TreeSet<>(Arrays.asList("com.x.a", "com.x.b")), commons.get("com.x"));
+      assertEquals(Collections.singleton("com.xy.b"), commons.get("com.xy.b"));
+   }
+
+   /**
+    * The archives of each package are the bits of their numbers in the provider index
+    */
+   @Test
+   public void testArchives()
+   {
+      ProviderIndex index = new ProviderIndex(getProvides());
+      PackageTrie packages = index.getPackages();
+
+      assertEquals(bits(0, 1), packages.getArchives("com.x.a"));
+      assertEquals(bits(1, 2), packages.getArchives("com.x.b"));
+      assertEquals(bits(3, 4), packages.getArchives("com.xy.b"));
+      assertEquals(bits(0), packages.getArchives("org.single"));
+      assertEquals(bits(0), packages.getArchives(""));
+
+      // a prefix of packages, or an unknown package, has no archives
+      assertEquals(new BitSet(), packages.getArchives("com.x"));
+      assertEquals(new BitSet(), packages.getArchives("com.unknown"));
+
+      // the result is a copy
+      packages.getArchives("com.x.a").set(4);
+      assertEquals(bits(0, 1), packages.getArchives("com.x.a"));
+
+      assertEquals(new TreeSet<>(Arrays.asList("com.x.a", "com.x.b", "com.xy.b")), packages.getPackages(2));
+      assertEquals(new TreeSet<>(Arrays.asList("", "com.x.a", "com.x.b", "com.xy.b", "org.single")),
+                   packages.getPackages(1));
+
+      SortedMap<String, SortedSet<String>> commons = packages.getCommonSubpackages(2);
+      assertEquals(new TreeSet<>(Arrays.asList("com.x", "com.xy.b")), commons.keySet());
+      assertEquals(new TreeSet<>(Arrays.asList("com.x.a", "com.x.b")), commons.get("com.x"));
+   }
+
+   /**
+    * The Archives column of a common subpackage is the union of the archives of its
+    * packages
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testArchivesColumn() throws Exception
+   {
+      SortedMap<String, SortedSet<String>> gProvides = getProvides();
+      SortedSet<Archive> archives = new TreeSet<>();
+      for (String name : Arrays.asList("a.jar", "b.jar", "c.jar", "d.jar", "e.jar"))
+      {
+         archives.add(new JarArchive(name, 51, new ArrayList<String>(), new ArrayList<String>(),
+                                     new TreeSet<String>(), new TreeMap<String, Long>(),
+                                     new TreeMap<String, SortedSet<String>>(),
+                                     new TreeMap<String, SortedSet<String>>(),
+                                     new TreeMap<String, SortedSet<String>>(),
+                                     new Location(name, "1.0")));
+      }
+
+      PackageMultipleJarsReportSummary report = new PackageMultipleJarsReportSummary();
+      report.setGlobalProvides(gProvides);
+      report.setArchives(archives);
+      report.generate(folder.getRoot().getPath());
+
+      String html = new String(Files.readAllBytes(new File(report.getOutputDirectory(), "index.html").toPath()),
+                               StandardCharsets.UTF_8);
+      String comX = row(html, "com.x.*");
+      assertTrue(comX, comX.contains("com.x.a, com.x.b"));
+      assertTrue(comX, comX.contains(">a.jar</a>, <a href=\"../jar/b.jar.html\">b.jar</a>, "
+                                     + "<a href=\"../jar/c.jar.html\">c.jar</a>"));
+      String comXyB = row(html, "com.xy.b.*");
+      assertTrue(comXyB, comXyB.contains(">d.jar</a>, <a href=\"../jar/e.jar.html\">e.jar</a>"));
+      assertTrue(comXyB, !comXyB.contains("c.jar"));
+      assertTrue(html, !html.contains("org.single"));
+   }
+
+   /**
+    * Get the provides of the tests: archive numbers follow their names, a.jar being 0
+    *
+    * @return The archives providing each class
+    */
+   private static SortedMap<String, SortedSet<String>> getProvides()
+   {
+      SortedMap<String, SortedSet<String>> gProvides = new TreeMap<>();
+      gProvides.put("Top", new TreeSet<>(Arrays.asList("a.jar")));
+      gProvides.put("com.x.a.A", new TreeSet<>(Arrays.asList("a.jar")));
+      gProvides.put("com.x.a.B", new TreeSet<>(Arrays.asList("b.jar")));
+      gProvides.put("com.x.b.C", new TreeSet<>(Arrays.asList("b.jar", "c.jar")));
+      gProvides.put("com.xy.b.D", new TreeSet<>(Arrays.asList("d.jar", "e.jar")));
+      gProvides.put("org.single.E", new TreeSet<>(Arrays.asList("a.jar")));
+      return gProvides;
+   }
+
+   /**
+    * Get the row of a common subpackage
+    *
+    * @param html The page
+    * @param pkg  The common subpackage, as shown
+    * @return The row
+    */
+   private static String row(String html, String pkg)
+   {
+      int start = html.indexOf("<td>" + pkg + "</td>");
+      assertTrue(html, start != -1);
+      return html.substring(start, html.indexOf("</tr>", start));
+   }
+
+   /**
+    * Create a bit set
+    *
+    * @param values The bits to set
+    * @return The bit set
+    */
+   private static BitSet bits(int... values)
+   {
+      BitSet result = new BitSet();
+      for (int value : values)
+      {
+         result.set(value);
+      }
+      return result;
+   }
+}
@@ -0,0 +1,146 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.reporting;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Test of {@link RowWriter}
+ */
+public class RowWriterTest
+{
+   /**
+    * A CSV cell is quoted when it holds a comma, a quote or a line break, and its
+    * quotes are doubled
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testCsvQuoting() throws Exception
+   {
+      StringWriter out = new StringWriter();
+      try (RowWriter rows = new RowWriter(out, RowWriter.Format.CSV, "name", "values", "flag"))
+      {
+         rows.writeRow("plain", Arrays.asList("a.jar", "b.jar"), true);
+         rows.writeRow("a,b", "say \"hi\"", null);
+         rows.writeRow("line\nbreak", Arrays.asList("x,y", "z"), 42);
+         rows.writeRow("cr\rhere", Collections.emptyList(), false);
+      }
+
+      assertEquals("name,values,flag\n"
+                   + "plain,a.jar b.jar,true\n"
+                   + "\"a,b\",\"say \"\"hi\"\"\",\n"
+                   + "\"line\nbreak\",\"x,y z\",42\n"
+                   + "\"cr\rhere\",,false\n", out.toString());
+   }
+
+   /**
+    * A JSON row is an object keyed by column name, with quotes, backslashes and control
+    * characters escaped
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testJsonEscaping() throws Exception
+   {
+      StringWriter out = new StringWriter();
+      try (RowWriter rows = new RowWriter(out, RowWriter.Format.JSON, "name", "values", "flag"))
+      {
+         rows.writeRow("say \"hi\"", Arrays.asList("a\\b", "tab\there"), true);
+         rows.writeRow("line\nbreak\u0001", Collections.emptyList(), null);
+         rows.writeRow("caf\u00e9", Arrays.asList(1, 2.5), false);
+      }
+
+      assertEquals("{\"name\": \"say \\\"hi\\\"\", \"values\": [\"a\\\\b\", \"tab\\u0009here\"], \"flag\": true}\n"
+                   + "{\"name\": \"line\\u000abreak\\u0001\", \"values\": [], \"flag\": null}\n"
+                   + "{\"name\": \"caf\u00e9\", \"values\": [1, 2.5], \"flag\": false}\n", out.toString());
+   }
+
+   /**
+    * A row needs one value per column
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testColumnCount() throws Exception
+   {
+      for (RowWriter.Format format : RowWriter.Format.values())
+      {
+         StringWriter out = new StringWriter();
+         try (RowWriter rows = new RowWriter(out, format, "a", "b"))
+         {
+            String written = out.toString();
+            try
+            {
+               rows.writeRow("only one");
+               fail(format + ": a row with too few values");
+            }
+            catch (IllegalArgumentException iae)
+            {
+               assertEquals("1 values for 2 columns", iae.getMessage());
+            }
+            try
+            {
+               rows.writeRow("1", "2", "3");
+               fail(format + ": a row with too many values");
+            }
+            catch (IllegalArgumentException iae)
+            {
+               assertEquals("3 values for 2 columns", iae.getMessage());
+            }
+            assertEquals(written, out.toString());
+         }
+      }
+   }
+
+   /**
+    * Formats are found by name or extension, in any case
+    */
+   @Test
+   public void testFormat()
+   {
+      assertSame(RowWriter.Format.JSON, RowWriter.Format.of("json"));
+      assertSame(RowWriter.Format.JSON, RowWriter.Format.of(" JSONL "));
+      assertSame(RowWriter.Format.CSV, RowWriter.Format.of("Csv"));
+      assertNull(RowWriter.Format.of(null));
+      assertNull(RowWriter.Format.of(" "));
+      try
+      {
+         RowWriter.Format.of("xml");
+         fail("xml isn't a format");
+      }
+      catch (IllegalArgumentException iae)
+      {
+         // Expected
+      }
+   }
+}
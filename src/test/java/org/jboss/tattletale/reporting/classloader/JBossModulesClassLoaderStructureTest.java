@@ -0,0 +1,199 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.reporting.classloader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.jboss.tattletale.core.Archive;
+import org.jboss.tattletale.core.JarArchive;
+import org.jboss.tattletale.core.Location;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link JBossModulesClassLoaderStructure} against the installation in
+ * <code>src/test/resources/modules</code>: the layers <code>custom</code>, listed in
+ * <code>layers.conf</code>, and <code>base</code>, and the add-on <code>extra</code>
+ */
+public class JBossModulesClassLoaderStructureTest
+{
+   /** The modules directory */
+   private static File modules;
+
+   /**
+    * Find the modules directory
+    *
+    * @exception Exception If an error occurs
+    */
+   @BeforeClass
+   public static void findModules() throws Exception
+   {
+      modules = new File(JBossModulesClassLoaderStructureTest.class.getResource("/modules/layers.conf").toURI())
+         .getParentFile();
+   }
+
+   /**
+    * A module sees the dependencies it has and what they export, but not what they
+    * don't export
+    */
+   @Test
+   public void testExports()
+   {
+      ClassLoaderStructure cls = new JBossModulesClassLoaderStructure();
+      Archive app = module("base", "app");
+      Archive impl = module("base", "impl");
+      Archive api = module("base", "api");
+      Archive util = module("base", "util");
+
+      assertTrue(cls.isVisible(app, app));
+      assertTrue(cls.isVisible(app, impl));
+      assertTrue(cls.isVisible(app, api));
+      assertFalse(cls.isVisible(app, util));
+
+      assertTrue(cls.isVisible(impl, api));
+      assertTrue(cls.isVisible(impl, util));
+      assertFalse(cls.isVisible(impl, app));
+      assertFalse(cls.isVisible(api, impl));
+   }
+
+   /**
+    * A module depending on an alias sees its target and what the target exports
+    */
+   @Test
+   public void testAlias()
+   {
+      ClassLoaderStructure cls = new JBossModulesClassLoaderStructure();
+      Archive client = module("base", "client");
+
+      assertTrue(cls.isVisible(client, module("base", "impl")));
+      assertTrue(cls.isVisible(client, module("base", "api")));
+      assertFalse(cls.isVisible(client, module("base", "util")));
+   }
+
+   /**
+    * The first definition of a module, in the order of <code>layers.conf</code>, the base
+    * layer and the add-ons, is the one used for every archive of that module
+    */
+   @Test
+   public void testFirstDefinitionWins()
+   {
+      ClassLoaderStructure cls = new JBossModulesClassLoaderStructure();
+      Archive libCustom = module("custom", "lib", "lib-custom.jar");
+      Archive libBase = module("base", "lib");
+      Archive util = module("base", "util");
+      Archive utilExtra = archive("util-extra.jar", location("system/add-ons/extra/org/util/main/util-extra.jar"));
+      Archive extra = archive("extra.jar", location("system/add-ons/extra/org/extra/main/extra.jar"));
+
+      // org.lib of the custom layer depends on org.util, the one of the base layer doesn't
+      assertTrue(cls.isVisible(libCustom, util));
+      assertTrue(cls.isVisible(libBase, util));
+      assertTrue(cls.isVisible(libBase, libCustom));
+
+      // org.util of the add-on depends on org.api, the one of the base layer doesn't
+      assertFalse(cls.isVisible(utilExtra, module("base", "api")));
+      assertTrue(cls.isVisible(utilExtra, util));
+      assertTrue(cls.isVisible(util, utilExtra));
+
+      // an add-on module sees the layers, and a missing dependency is left out
+      assertTrue(cls.isVisible(extra, libBase));
+      assertFalse(cls.isVisible(extra, util));
+      assertFalse(cls.isVisible(libBase, extra));
+   }
+
+   /**
+    * An archive outside the modules sees every archive, and no module sees it
+    */
+   @Test
+   public void testOutsideModules()
+   {
+      ClassLoaderStructure cls = new JBossModulesClassLoaderStructure();
+      File file = new File(modules.getParentFile(), "deployment.jar");
+      Archive deployment = archive("deployment.jar", new Location(file.getPath(), "1.0"));
+      Archive app = module("base", "app");
+
+      assertTrue(cls.isVisible(deployment, app));
+      assertTrue(cls.isVisible(deployment, module("base", "util")));
+      assertFalse(cls.isVisible(app, deployment));
+   }
+
+   /**
+    * Create an archive of a module of a layer, named after the module
+    *
+    * @param layer  The layer
+    * @param module The last part of the module name
+    * @return The archive
+    */
+   private static Archive module(String layer, String module)
+   {
+      return module(layer, module, module + ".jar");
+   }
+
+   /**
+    * Create an archive of a module of a layer
+    *
+    * @param layer  The layer
+    * @param module The last part of the module name
+    * @param name   The archive name
+    * @return The archive
+    */
+   private static Archive module(String layer, String module, String name)
+   {
+      return archive(name, location("system/layers/" + layer + "/org/" + module + "/main/" + name));
+   }
+
+   /**
+    * Create an archive
+    *
+    * @param name     The archive name
+    * @param location The location
+    * @return The archive
+    */
+   private static Archive archive(String name, Location location)
+   {
+      return new JarArchive(name, 51, new ArrayList<String>(), new ArrayList<String>(),
+                            new TreeSet<String>(), new TreeMap<String, Long>(),
+                            new TreeMap<String, SortedSet<String>>(),
+                            new TreeMap<String, SortedSet<String>>(),
+                            new TreeMap<String, SortedSet<String>>(),
+                            location);
+   }
+
+   /**
+    * Create a location below the modules directory
+    *
+    * @param path The path
+    * @return The location
+    */
+   private static Location location(String path)
+   {
+      return new Location(new File(modules, path.replace('/', File.separatorChar)).getPath(), "1.0");
+   }
+}
@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.tools.as7;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test of {@link ModuleXml} against the modules in <code>src/test/resources/modules</code>
+ */
+public class ModuleXmlTest
+{
+   /**
+    * The dependencies of a module, and those it exports
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testModule() throws Exception
+   {
+      ModuleXml module = ModuleXml.read(file("system/layers/base/org/impl/main/module.xml"));
+
+      assertEquals("org.impl:main", module.getId());
+      assertEquals(Arrays.asList("org.api:main", "org.util:main"), module.getDependencies());
+      assertEquals(Collections.singletonList("org.api:main"), module.getExports());
+   }
+
+   /**
+    * An alias depends on its target and exports it
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testAlias() throws Exception
+   {
+      ModuleXml alias = ModuleXml.read(file("system/layers/base/org/alias/main/module.xml"));
+
+      assertEquals("org.alias:main", alias.getId());
+      assertEquals(Collections.singletonList("org.impl:main"), alias.getDependencies());
+      assertEquals(Collections.singletonList("org.impl:main"), alias.getExports());
+   }
+
+   /**
+    * A file that isn't a module definition
+    *
+    * @exception Exception If an error occurs
+    */
+   @Test
+   public void testNotAModule() throws Exception
+   {
+      assertNull(ModuleXml.read(file("layers.conf")));
+      assertNull(ModuleXml.read(file("system/layers/base/org/impl/main/missing.xml")));
+   }
+
+   /**
+    * Get a file below the modules directory
+    *
+    * @param path The path
+    * @return The file
+    * @exception Exception If an error occurs
+    */
+   private static File file(String path) throws Exception
+   {
+      File modules = new File(ModuleXmlTest.class.getResource("/modules/layers.conf").toURI()).getParentFile();
+      return new File(modules, path.replace('/', File.separatorChar));
+   }
+}
@@ -0,0 +1,167 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.tattletale.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link PrefixTrie}
+ */
+public class PrefixTrieTest
+{
+   /**
+    * An empty set matches nothing, not even the empty string
+    */
+   @Test
+   public void testEmpty()
+   {
+      PrefixTrie empty = new PrefixTrie(Collections.<String>emptyList());
+
+      assertTrue(empty.isEmpty());
+      assertFalse(empty.matches(""));
+      assertFalse(empty.matches("org.example"));
+      assertFalse(PrefixTrie.EMPTY.matches("a"));
+      assertFalse(empty.iterator().hasNext());
+      assertSame(PrefixTrie.EMPTY, PrefixTrie.of(null));
+   }
+
+   /**
+    * The empty prefix matches every string
+    */
+   @Test
+   public void testEmptyPrefix()
+   {
+      PrefixTrie all = new PrefixTrie(Arrays.asList("", "org.example"));
+
+      assertTrue(all.matches(""));
+      assertTrue(all.matches("anything"));
+      assertTrue(all.matches("anything", 3, 3));
+      assertTrue(all.matches("a.b", 0, 3, '.', '/'));
+      assertTrue(all.contains(""));
+      assertEquals(2, all.size());
+   }
+
+   /**
+    * A prefix of another prefix matches what the longer one matches and more
+    */
+   @Test
+   public void testNestedPrefixes()
+   {
+      PrefixTrie trie = new PrefixTrie(Arrays.asList("org/example/", "org/", "com/acme", "com/acme/tools/"));
+
+      assertTrue(trie.matches("org/"));
+      assertTrue(trie.matches("org/other/A"));
+      assertTrue(trie.matches("org/example/A"));
+      assertTrue(trie.matches("com/acme"));
+      assertTrue(trie.matches("com/acmex"));
+      assertTrue(trie.matches("com/acme/tools/A"));
+      assertFalse(trie.matches("org"));
+      assertFalse(trie.matches("com/acm"));
+      assertFalse(trie.matches("net/org/"));
+
+      // the longer prefixes are still members
+      assertTrue(trie.contains("org/example/"));
+      assertTrue(trie.contains("com/acme/tools/"));
+   }
+
+   /**
+    * Only the part of the string between start and end is matched
+    */
+   @Test
+   public void testRange()
+   {
+      PrefixTrie trie = new PrefixTrie(Arrays.asList("org/example/", "javax/"));
+      String s = "lib/org/example/A.class";
+
+      assertTrue(trie.matches(s, 4, s.length()));
+      assertFalse(trie.matches(s, 0, s.length()));
+      assertFalse(trie.matches(s, 5, s.length()));
+
+      // the part ends before the prefix does
+      assertFalse(trie.matches(s, 4, 15));
+      assertTrue(trie.matches(s, 4, 16));
+      assertFalse(trie.matches(s, 4, 4));
+
+      StringBuilder sb = new StringBuilder("[javax/x]");
+      assertTrue(trie.matches(sb, 1, sb.length() - 1));
+   }
+
+   /**
+    * A character of the string can be read as another one, as class names are
+    * matched against package paths
+    */
+   @Test
+   public void testReplacedCharacter()
+   {
+      PrefixTrie trie = new PrefixTrie(Arrays.asList("org/example/", "a.b"));
+      String s = "org.example.A";
+
+      assertTrue(trie.matches(s, 0, s.length(), '.', '/'));
+      assertFalse(trie.matches(s, 0, s.length()));
+      assertFalse(trie.matches(s, 0, 11, '.', '/'));
+      assertTrue(trie.matches(s, 0, 12, '.', '/'));
+
+      // a prefix holding the replaced character itself can't be matched
+      assertFalse(trie.matches("a.b", 0, 3, '.', '/'));
+      assertTrue(trie.matches("a.b", 0, 3));
+   }
+
+   /**
+    * Membership is exact, and the prefixes are iterated sorted and once each
+    */
+   @Test
+   public void testContainsAndOrder()
+   {
+      PrefixTrie trie = new PrefixTrie(Arrays.asList("b", "a/c", "a", "b", "a/b"));
+
+      assertEquals(4, trie.size());
+      assertTrue(trie.contains("a"));
+      assertTrue(trie.contains("a/b"));
+      assertFalse(trie.contains("a/"));
+      assertFalse(trie.contains("a/b/c"));
+      assertFalse(trie.contains(null));
+      assertFalse(trie.contains(Integer.valueOf(1)));
+
+      List<String> iterated = new ArrayList<>();
+      for (String prefix : trie)
+      {
+         iterated.add(prefix);
+      }
+      assertEquals(Arrays.asList("a", "a/b", "a/c", "b"), iterated);
+
+      assertEquals(new HashSet<>(Arrays.asList("a", "a/b", "a/c", "b")), trie);
+      assertSame(trie, PrefixTrie.of(trie));
+      assertEquals(trie, PrefixTrie.of(new HashSet<>(Arrays.asList("b", "a", "a/b", "a/c"))));
+   }
+}